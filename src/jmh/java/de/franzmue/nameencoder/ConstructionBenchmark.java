@@ -0,0 +1,47 @@
+package de.franzmue.nameencoder;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the cost of creating an encoder and encoding a first name with it.
+ * <p>
+ * The first encoding is included because rule layers may be compiled lazily.
+ * </p>
+ *
+ * @author Franz Muehlbauer, info@franz-mue.de
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ConstructionBenchmark {
+
+	private final static String WORD = "M\u00fchlbauer";
+
+	@Param
+	public EncoderType encoderType;
+
+	@Benchmark
+	public NameEncoder construct() {
+		return encoderType.createEncoder();
+	}
+
+	@Benchmark
+	public String constructAndEncode() {
+		return encoderType.createEncoder().codeOf(WORD);
+	}
+
+}
@@ -0,0 +1,76 @@
+package de.franzmue.nameencoder;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the throughput of {@link NameEncoder#getEncodedName} if one encoder is shared by 1, 4 or 16 threads.
+ *
+ * @author Franz Muehlbauer, info@franz-mue.de
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ContendedBenchmark {
+
+	@Param
+	public EncoderType encoderType;
+
+	@Param
+	public NameDistribution distribution;
+
+	private NameEncoder encoder;
+	private String[] names;
+
+	@Setup
+	public void setUp() {
+		encoder = encoderType.createEncoder();
+		names = distribution.createNames(EncodeBenchmark.NAME_COUNT);
+	}
+
+	@State(Scope.Thread)
+	public static class Cursor {
+
+		private int index;
+
+		String nextName(ContendedBenchmark benchmark) {
+			index = (index + 1) & (EncodeBenchmark.NAME_COUNT - 1);
+			return benchmark.names[index];
+		}
+
+	}
+
+	@Benchmark
+	@Threads(1)
+	public String getEncodedName1(Cursor cursor) {
+		return encoder.getEncodedName(cursor.nextName(this));
+	}
+
+	@Benchmark
+	@Threads(4)
+	public String getEncodedName4(Cursor cursor) {
+		return encoder.getEncodedName(cursor.nextName(this));
+	}
+
+	@Benchmark
+	@Threads(16)
+	public String getEncodedName16(Cursor cursor) {
+		return encoder.getEncodedName(cursor.nextName(this));
+	}
+
+}
@@ -0,0 +1,90 @@
+package de.franzmue.nameencoder;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the throughput of encoding single names and of comparing two names with one encoder per thread.
+ *
+ * @author Franz Muehlbauer, info@franz-mue.de
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class EncodeBenchmark {
+
+	final static int NAME_COUNT = 1024; // a power of two
+
+	@Param
+	public EncoderType encoderType;
+
+	@Param
+	public NameDistribution distribution;
+
+	private NameEncoder encoder;
+	private NameEncoder bufferedEncoder;
+	private NameEncoder compiledEncoder;
+	private StringBuilder sink;
+	private String[] names;
+	private int index;
+
+	@Setup
+	public void setUp() {
+		encoder = encoderType.createEncoder();
+		bufferedEncoder = encoderType.createEncoder().setBufferedEngine(true);
+		compiledEncoder = encoderType.createEncoder().compile();
+		sink = new StringBuilder();
+		names = distribution.createNames(NAME_COUNT);
+	}
+
+	private String nextName() {
+		index = (index + 1) & (NAME_COUNT - 1);
+		return names[index];
+	}
+
+	@Benchmark
+	public String encode() {
+		return encoder.encode(nextName()).getCode();
+	}
+
+	@Benchmark
+	public String codeOf() {
+		return encoder.codeOf(nextName());
+	}
+
+	@Benchmark
+	public String codeOfBuffered() {
+		return bufferedEncoder.codeOf(nextName());
+	}
+
+	@Benchmark
+	public String codeOfCompiled() {
+		return compiledEncoder.codeOf(nextName());
+	}
+
+	@Benchmark
+	public StringBuilder appendCodeOfBuffered() {
+		sink.setLength(0);
+		return bufferedEncoder.appendCodeOf(nextName(), sink);
+	}
+
+	@Benchmark
+	public boolean isEncodeEqual() {
+		return encoder.isEncodeEqual(nextName(), nextName());
+	}
+
+}
@@ -0,0 +1,28 @@
+package de.franzmue.nameencoder;
+
+import java.util.function.Supplier;
+
+/**
+ * The encoders which are shipped with the library, including the generated ones, and compared by the benchmarks.
+ *
+ * @author Franz Muehlbauer, info@franz-mue.de
+ */
+public enum EncoderType {
+
+	NameEncoder(() -> new NameEncoder()),
+	GermanNameEncoder(() -> new GermanNameEncoder()),
+	ExtendedGermanNameEncoder(() -> new ExtendedGermanNameEncoder()),
+	GeneratedGermanNameEncoder(() -> new GeneratedGermanNameEncoder()),
+	GeneratedExtendedGermanNameEncoder(() -> new GeneratedExtendedGermanNameEncoder());
+
+	private final Supplier<NameEncoder> supplier;
+
+	private EncoderType(Supplier<NameEncoder> supplier) {
+		this.supplier = supplier;
+	}
+
+	public NameEncoder createEncoder() {
+		return supplier.get();
+	}
+
+}
@@ -0,0 +1,63 @@
+package de.franzmue.nameencoder;
+
+import java.util.Random;
+
+/**
+ * Name samples the benchmarks are run against.
+ * <p>
+ * Each distribution creates a reproducible array of names by drawing from a list of typical German family names
+ * with a fixed seed.
+ * </p>
+ *
+ * @author Franz Muehlbauer, info@franz-mue.de
+ */
+public enum NameDistribution {
+
+	SHORT(new String[] {
+		"Beck", "Roth", "Kuhn", "Fuchs", "Maier", "Meier", "Vogt", "Graf", "Lutz", "Haas",
+		"Ernst", "Frank", "Jung", "Hahn", "Voigt", "Lang", "Sauer", "Wolf", "Kraus", "Otto",
+	}),
+
+	LONG(new String[] {
+		"Schwarzenberger", "Hohenzollern-Sigmaringen", "Oberhollenzer", "Leutheusser-Schnarrenberger",
+		"Katzenellenbogen", "Schimmelpfennig", "Dietrichsteiner", "Wolfsteinhauser", "Hinterberger-Mitterhuber",
+		"Kochanowskiewicz", "Fritzenwallner", "Brandenburgerin", "Rautenstrauch", "Schweinsteiger",
+	}),
+
+	UMLAUT(new String[] {
+		"M\u00fcller", "M\u00fchlbauer", "J\u00e4ger", "K\u00f6\u00dfler", "Sch\u00fc\u00dfler", "B\u00e4\u00dfler",
+		"Gro\u00df", "Kr\u00f6\u00df", "F\u00fc\u00dfl", "W\u00f6hrl", "S\u00fc\u00df", "H\u00e4u\u00dfler",
+		"L\u00f6\u00dfl", "R\u00f6\u00dfner", "Br\u00fcckner", "K\u00e4stner", "G\u00f6\u00dfwein", "St\u00f6\u00dfel",
+	}),
+
+	WHITESPACE(new String[] {
+		"von der Heide", " M\u00fcller ", "van  den  Berg", "de la Cruz", "zu\tGuttenberg", "von Br\u00fchl",
+		"Schmidt  ", "  Meier", "von und zu Liechtenstein", "ter Horst", "auf der Mauer", "Graf von Bismarck",
+	});
+
+	private final static long SEED = 4711L;
+
+	private final String[] samples;
+
+	private NameDistribution(String[] samples) {
+		this.samples = samples;
+	}
+
+	/**
+	 * Creates the names of the distribution.
+	 *
+	 * @param count The number of names to create.
+	 * @return The names; the same count always leads to the same names.
+	 */
+	public String[] createNames(int count) {
+		Random random = new Random(SEED + ordinal());
+		String[] names = new String[count];
+
+		for (int index = 0; index < count; index++) {
+			names[index] = samples[random.nextInt(samples.length)];
+		}
+
+		return names;
+	}
+
+}
@@ -0,0 +1,150 @@
+package de.franzmue.nameencoder;
+
+import java.util.List;
+import java.util.Locale;
+
+import de.franzmue.nameencoder.Rules;
+
+/**
+ * Encodes names by moving the code between two reusable buffers per thread through all rule layers.
+ * <p>
+ * The name is prepared and the consecutive duplicates are removed directly in the buffers, and each rewriter writes
+ * its result into the other buffer only if the code changes. Rewriters which cannot match the characters of the code
+ * are skipped. Apart from the final code string, and the matchers of regex rules which are not compiled to automata,
+ * encoding a name therefore allocates nothing.
+ * </p><p>
+ * The engine implements the standard processing of {@link NameEncoder}; it is not used for encoders
+ * overriding the processing methods.
+ * </p>
+ *
+ * @author Franz Muehlbauer, info@franz-mue.de
+ */
+final class BufferedEngine {
+
+	private final static int INITIAL_CAPACITY = 64;
+	private final static int MAXIMUM_RETAINED_CAPACITY = 1024;
+	private final static char LATIN_1_LIMIT = '\u0100';
+
+	private final static ThreadLocal<StringBuilder[]> BUFFERS = ThreadLocal.withInitial(
+		() -> new StringBuilder[] { new StringBuilder(INITIAL_CAPACITY), new StringBuilder(INITIAL_CAPACITY) });
+
+	private BufferedEngine() {
+	}
+
+	/**
+	 * Encodes a name.
+	 *
+	 * @param rulesLayers The rule layers to apply.
+	 * @param word The name to encode.
+	 * @return The code of the name.
+	 */
+	static String code(List<Rules> rulesLayers, CharSequence word) {
+		if (rulesLayers.isEmpty()) // the code is the unprepared name then
+			return word.toString();
+
+		StringBuilder[] buffers = BUFFERS.get();
+		String code = encode(rulesLayers, word, buffers).toString();
+		releaseLargeBuffers(buffers);
+
+		return code;
+	}
+
+	/**
+	 * Encodes a name and appends the code to the sink.
+	 *
+	 * @param rulesLayers The rule layers to apply.
+	 * @param word The name to encode.
+	 * @param sink The buffer to append the code to.
+	 */
+	static void appendCode(List<Rules> rulesLayers, CharSequence word, StringBuilder sink) {
+		if (rulesLayers.isEmpty()) { // the code is the unprepared name then
+			sink.append(word);
+			return;
+		}
+
+		StringBuilder[] buffers = BUFFERS.get();
+		sink.append(encode(rulesLayers, word, buffers));
+		releaseLargeBuffers(buffers);
+	}
+
+	private static StringBuilder encode(List<Rules> rulesLayers, CharSequence word, StringBuilder[] buffers) {
+		StringBuilder current = buffers[0];
+		StringBuilder next = buffers[1];
+
+		current.setLength(0);
+		prepare(word, current);
+
+		long characters = CharacterMask.of(current); // removing duplicates keeps the characters of a code
+
+		for (Rules rules: rulesLayers) {
+			for (CodeRewriter rewriter: rules.getRewriters()) {
+				if (current.length() == 0)
+					break;
+
+				if (!rewriter.canRewrite(current, characters))
+					continue;
+
+				next.setLength(0);
+
+				if (rewriter.rewrite(current, next)) {
+					StringBuilder swap = current;
+					current = next;
+					next = swap;
+					characters = CharacterMask.of(current);
+				}
+			}
+
+			removeConsecutiveDuplicates(current);
+		}
+
+		return current;
+	}
+
+	private static void releaseLargeBuffers(StringBuilder[] buffers) {
+		if (buffers[0].capacity() > MAXIMUM_RETAINED_CAPACITY || buffers[1].capacity() > MAXIMUM_RETAINED_CAPACITY) {
+			buffers[0] = new StringBuilder(INITIAL_CAPACITY); // do not keep the buffers of an exceptionally long name
+			buffers[1] = new StringBuilder(INITIAL_CAPACITY);
+		}
+	}
+
+	/**
+	 * Removes the whitespaces and converts the name to lower case like {@link NameEncoder#prepareProcessing}.
+	 */
+	private static void prepare(CharSequence word, StringBuilder code) {
+		for (int index = 0; index < word.length(); index++) {
+			char c = word.charAt(index);
+
+			if (c >= LATIN_1_LIMIT) { // the lower case of other characters may depend on their context
+				code.setLength(0);
+				code.append(word.toString().replaceAll("\\s+", "").toLowerCase(Locale.GERMAN));
+				return;
+			}
+
+			if (!isWhitespace(c))
+				code.append(Character.toLowerCase(c));
+		}
+	}
+
+	private static boolean isWhitespace(char c) { // the characters matching \s
+		return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+	}
+
+	private static void removeConsecutiveDuplicates(StringBuilder code) {
+		int length = code.length();
+
+		if (length == 0)
+			return;
+
+		int kept = 1;
+
+		for (int index = 1; index < length; index++) {
+			char c = code.charAt(index);
+
+			if (c != code.charAt(kept - 1))
+				code.setCharAt(kept++, c);
+		}
+
+		code.setLength(kept);
+	}
+
+}
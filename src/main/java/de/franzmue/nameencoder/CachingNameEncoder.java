@@ -0,0 +1,338 @@
+package de.franzmue.nameencoder;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+import de.franzmue.nameencoder.EncodingResult;
+import de.franzmue.nameencoder.NameEncoder;
+import de.franzmue.nameencoder.NameEncoderInterface;
+
+/**
+ * Decorates a name encoder with a bounded cache of the codes of recently and frequently encoded names.
+ * <p>
+ * Family names are distributed very unevenly, so a small cache avoids most of the encodings. If the decorated encoder is
+ * a {@link NameEncoder}, the cache is keyed by the name after {@link NameEncoder#prepareProcessing} so that variants
+ * differing in whitespaces or case share one entry; the codes of other encoders are keyed by the name itself.
+ * </p><p>
+ * The codes are read from a concurrent map without locking, so the threads requesting the same frequent name do not
+ * wait for each other. The cache evicts by the segmented LRU policy: a new code enters the probationary part and is
+ * moved to the protected part when it is requested again. Names requested only once are therefore evicted before
+ * frequent names. As in W-TinyLFU, a read only records the access in a small buffer of the current thread's stripe; the
+ * buffers are applied to the policy by the thread which gets its lock, and accesses are dropped while a buffer is full.
+ * Only new codes wait for the lock of the policy.
+ * </p><p>
+ * Only the codes are cached. Results with code path as well as the fluent {@link #encode} method are delegated to the
+ * decorated encoder.
+ * </p>
+ *
+ * @author Franz Muehlbauer, info@franz-mue.de
+ */
+public class CachingNameEncoder implements NameEncoderInterface {
+
+	private final static String CAPACITY_ERROR_MESSAGE = "The maximum size of the cache has to be positive!\n";
+
+	private final static int READ_BUFFER_COUNT = 16; // a power of two
+	private final static int READ_BUFFER_SIZE = 64; // a power of two
+	private final static int DRAIN_THRESHOLD = READ_BUFFER_SIZE / 2;
+	private final static double PROTECTED_RATIO = 0.8;
+
+	private final NameEncoderInterface encoder;
+	private final NameEncoder nameEncoder; // the decorated encoder if its names are prepared before the lookup or null
+	private final int maximumSize;
+	private final int protectedCapacity;
+
+	private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+	private final ReadBuffer[] readBuffers = new ReadBuffer[READ_BUFFER_COUNT];
+
+	private final ReentrantLock policyLock = new ReentrantLock(); // guards the following fields and the entry links
+	private final Entry probationEntries = new Entry(null, null); // the head of a circular list, eldest first
+	private final Entry protectedEntries = new Entry(null, null);
+	private int protectedSize;
+
+	private final LongAdder hitCount = new LongAdder();
+	private final LongAdder missCount = new LongAdder();
+	private final LongAdder evictionCount = new LongAdder();
+
+	/**
+	 * @param encoder The encoder to decorate; its rules must not be changed afterwards.
+	 * @param maximumSize The maximum number of cached codes.
+	 */
+	public CachingNameEncoder(NameEncoderInterface encoder, int maximumSize) {
+		if (maximumSize <= 0)
+			throw new IllegalArgumentException(CAPACITY_ERROR_MESSAGE);
+
+		this.encoder = encoder;
+		this.nameEncoder = encoder instanceof NameEncoder && ((NameEncoder) encoder).hasRuleLayers() ? (NameEncoder) encoder : null;
+		this.maximumSize = maximumSize;
+		this.protectedCapacity = (int) (maximumSize * PROTECTED_RATIO);
+
+		for (int index = 0; index < READ_BUFFER_COUNT; index++) {
+			readBuffers[index] = new ReadBuffer();
+		}
+	}
+
+	/**
+	 * @return The decorated encoder.
+	 */
+	public NameEncoderInterface getEncoder() {
+		return encoder;
+	}
+
+	/**
+	 * @see de.franzmue.nameencoder.NameEncoderInterface#isEncodeEqual(String, String)
+	 */
+	public boolean isEncodeEqual(final String word1, final String word2) {
+		return codeOf(word1).equals(codeOf(word2));
+	}
+
+	/**
+	 * @see de.franzmue.nameencoder.NameEncoderInterface#getEncodedName(String)
+	 */
+	public String getEncodedName(String word) {
+		return codeOf(word);
+	}
+
+	/**
+	 * @see de.franzmue.nameencoder.NameEncoderInterface#codeOf(CharSequence)
+	 */
+	public String codeOf(CharSequence word) {
+		String startCode = word.toString();
+		String key = nameEncoder == null ? startCode : nameEncoder.prepareProcessing(startCode);
+		Entry entry = entries.get(key);
+
+		if (entry != null) {
+			hitCount.increment();
+			recordAccess(entry);
+
+			return entry.code;
+		}
+
+		missCount.increment();
+		String code = nameEncoder == null ? encoder.codeOf(startCode) : nameEncoder.applyRules(startCode, key, null);
+		add(key, code);
+
+		return code;
+	}
+
+	/**
+	 * @see de.franzmue.nameencoder.NameEncoderInterface#resultOf(CharSequence)
+	 */
+	public EncodingResult resultOf(CharSequence word) {
+		if (!(encoder instanceof NameEncoder))
+			return encoder.resultOf(word);
+
+		return resultOf(word, ((NameEncoder) encoder).isCodePathTracing());
+	}
+
+	/**
+	 * @see de.franzmue.nameencoder.NameEncoderInterface#resultOf(CharSequence, boolean)
+	 */
+	public EncodingResult resultOf(CharSequence word, boolean tracing) {
+		if (tracing)
+			return encoder.resultOf(word, true);
+
+		return new EncodingResult(word.toString(), codeOf(word), null);
+	}
+
+	/**
+	 * Encodes a name by the decorated encoder without using the cache.
+	 *
+	 * @see de.franzmue.nameencoder.NameEncoderInterface#encode(String)
+	 */
+	public NameEncoder encode(String word) {
+		return encoder.encode(word);
+	}
+
+	/**
+	 * @see de.franzmue.nameencoder.NameEncoderInterface#getCode()
+	 */
+	public String getCode() {
+		return encoder.getCode();
+	}
+
+	/**
+	 * @see de.franzmue.nameencoder.NameEncoderInterface#getCodePath()
+	 */
+	public List<String> getCodePath() {
+		return encoder.getCodePath();
+	}
+
+	/**
+	 * @return The number of codes taken from the cache.
+	 */
+	public long getHitCount() {
+		return hitCount.sum();
+	}
+
+	/**
+	 * @return The number of codes which had to be encoded.
+	 */
+	public long getMissCount() {
+		return missCount.sum();
+	}
+
+	/**
+	 * @return The number of codes removed from the cache to keep its size.
+	 */
+	public long getEvictionCount() {
+		return evictionCount.sum();
+	}
+
+	/**
+	 * @return The current number of cached codes.
+	 */
+	public int size() {
+		return entries.size();
+	}
+
+	private void recordAccess(Entry entry) {
+		ReadBuffer buffer = readBuffers[(int) Thread.currentThread().getId() & (READ_BUFFER_COUNT - 1)];
+
+		if (buffer.offer(entry) >= DRAIN_THRESHOLD && policyLock.tryLock()) {
+			try {
+				drainReadBuffers();
+			} finally {
+				policyLock.unlock();
+			}
+		}
+	}
+
+	private void add(String key, String code) {
+		policyLock.lock();
+
+		try {
+			drainReadBuffers();
+
+			if (entries.containsKey(key)) // added by another thread meanwhile
+				return;
+
+			Entry entry = new Entry(key, code);
+			entries.put(key, entry);
+			entry.linkBefore(probationEntries);
+
+			if (entries.size() > maximumSize)
+				evict();
+		} finally {
+			policyLock.unlock();
+		}
+	}
+
+	private void drainReadBuffers() {
+		for (ReadBuffer buffer: readBuffers) {
+			buffer.drain(this);
+		}
+	}
+
+	private void onAccess(Entry entry) {
+		if (entry.evicted)
+			return;
+
+		entry.unlink();
+		entry.linkBefore(protectedEntries); // most recently used
+
+		if (!entry.protectedEntry) {
+			entry.protectedEntry = true;
+			protectedSize++;
+
+			if (protectedSize > protectedCapacity) {
+				Entry eldest = protectedEntries.next;
+				eldest.unlink();
+				eldest.protectedEntry = false;
+				eldest.linkBefore(probationEntries); // demoted, but not evicted
+				protectedSize--;
+			}
+		}
+	}
+
+	private void evict() {
+		Entry eldest = probationEntries.next != probationEntries ? probationEntries.next : protectedEntries.next;
+		eldest.unlink();
+		eldest.evicted = true;
+
+		if (eldest.protectedEntry)
+			protectedSize--;
+
+		entries.remove(eldest.key);
+		evictionCount.increment();
+	}
+
+	private final static class Entry {
+
+		private final String key;
+		private final String code;
+
+		private Entry previous = this; // the links and flags are guarded by the policy lock
+		private Entry next = this;
+		private boolean protectedEntry;
+		private boolean evicted;
+
+		Entry(String key, String code) {
+			this.key = key;
+			this.code = code;
+		}
+
+		void linkBefore(Entry head) {
+			previous = head.previous;
+			next = head;
+			head.previous.next = this;
+			head.previous = this;
+		}
+
+		void unlink() {
+			previous.next = next;
+			next.previous = previous;
+			previous = this;
+			next = this;
+		}
+
+	}
+
+	/**
+	 * A lossy ring buffer of the accesses of some threads; it is written without locking and drained under the policy lock.
+	 */
+	private final static class ReadBuffer {
+
+		private final AtomicReferenceArray<Entry> slots = new AtomicReferenceArray<>(READ_BUFFER_SIZE);
+		private final AtomicLong writeCount = new AtomicLong();
+		private volatile long readCount;
+
+		/**
+		 * @return The number of pending accesses including this one or 0 if the access has been dropped.
+		 */
+		int offer(Entry entry) {
+			long written = writeCount.get();
+			long pending = written - readCount;
+
+			if (pending >= READ_BUFFER_SIZE || !writeCount.compareAndSet(written, written + 1))
+				return 0;
+
+			slots.lazySet((int) written & (READ_BUFFER_SIZE - 1), entry);
+
+			return (int) pending + 1;
+		}
+
+		void drain(CachingNameEncoder cache) {
+			long read = readCount;
+			long written = writeCount.get();
+
+			for (; read < written; read++) {
+				int index = (int) read & (READ_BUFFER_SIZE - 1);
+				Entry entry = slots.get(index);
+
+				if (entry == null) // the access is not visible yet
+					break;
+
+				slots.lazySet(index, null);
+				cache.onAccess(entry);
+			}
+
+			readCount = read;
+		}
+
+	}
+
+}
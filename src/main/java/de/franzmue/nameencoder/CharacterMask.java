@@ -0,0 +1,49 @@
+package de.franzmue.nameencoder;
+
+/**
+ * Describes sets of characters by 64 bit masks to rule out cheaply that a rule matches a code.
+ * <p>
+ * Each character is mapped to the bit given by its lowest six bits, so the lower case letters have a bit of their own.
+ * Other characters may share a bit, therefore a mask stands for a superset of its characters and a check against it
+ * can only tell that a character is certainly missing.
+ * </p>
+ *
+ * @author Franz Muehlbauer, info@franz-mue.de
+ */
+final class CharacterMask {
+
+	private CharacterMask() {
+	}
+
+	/**
+	 * @param c The character.
+	 * @return The mask of the character.
+	 */
+	static long of(char c) {
+		return 1L << (c & 63);
+	}
+
+	/**
+	 * @param characters The characters.
+	 * @return The mask of all characters.
+	 */
+	static long of(CharSequence characters) {
+		long mask = 0L;
+
+		for (int index = 0; index < characters.length(); index++) {
+			mask |= 1L << (characters.charAt(index) & 63);
+		}
+
+		return mask;
+	}
+
+	/**
+	 * @param mask The mask of the characters present.
+	 * @param required The mask of the characters required.
+	 * @return Can all required characters be present?
+	 */
+	static boolean containsAll(long mask, long required) {
+		return (mask & required) == required;
+	}
+
+}
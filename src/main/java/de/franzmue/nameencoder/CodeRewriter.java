@@ -0,0 +1,48 @@
+package de.franzmue.nameencoder;
+
+/**
+ * A compiled part of a rule layer which rewrites an intermediate code in one pass.
+ * <p>
+ * A rewriter either stands for a single rule or for a group of rules which are applied together
+ * while giving the same result as applying them one after another.
+ * </p>
+ *
+ * @author Franz Muehlbauer, info@franz-mue.de
+ */
+interface CodeRewriter {
+
+	/**
+	 * Rewrites the given code.
+	 *
+	 * @param code The intermediate code; not empty.
+	 * @return The rewritten code or the given code itself if nothing has changed.
+	 */
+	String rewrite(String code);
+
+	/**
+	 * Rewrites the given code into a buffer.
+	 * <p>
+	 * If the code is changed the complete new code is appended to the result buffer. Otherwise the result buffer
+	 * is left unchanged, so the caller can keep the given code without copying it.
+	 * </p>
+	 *
+	 * @param code The intermediate code; not empty.
+	 * @param result The buffer to append the rewritten code to.
+	 * @return Has the code been changed and appended to the result buffer?
+	 */
+	boolean rewrite(CharSequence code, StringBuilder result);
+
+	/**
+	 * Checks cheaply whether the rewriter can change the code at all.
+	 * <p>
+	 * The check compares the characters required by the rules, and the characters at the beginning and the end
+	 * of the code required by anchored rules, with the characters present in the code.
+	 * </p>
+	 *
+	 * @param code The intermediate code; not empty.
+	 * @param characters The {@link CharacterMask} of the code.
+	 * @return False if rewriting would certainly leave the code unchanged.
+	 */
+	boolean canRewrite(CharSequence code, long characters);
+
+}
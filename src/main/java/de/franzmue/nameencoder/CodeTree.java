@@ -0,0 +1,211 @@
+package de.franzmue.nameencoder;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * A BK-tree of codes for finding all codes within an edit distance of a given code.
+ * <p>
+ * Each node keeps its children by their Levenshtein distance to the code of the node. By the triangle inequality
+ * a search for the codes within distance k of a query only has to descend into the children whose distance differs
+ * by at most k from the distance of the query to the node, so small distances visit only a fraction of the codes.
+ * </p><p>
+ * The tree can be searched concurrently by any number of threads; adding a code locks the tree for a moment.
+ * </p>
+ *
+ * @author Franz Muehlbauer, info@franz-mue.de
+ */
+final class CodeTree {
+
+	private final static Comparator<Match> BY_DISTANCE = Comparator.<Match>comparingInt(match -> match.distance).thenComparing(match -> match.code);
+
+	private final ReadWriteLock lock = new ReentrantReadWriteLock();
+	private Node root;
+	private int size;
+
+	/**
+	 * Adds a code unless it is already in the tree.
+	 *
+	 * @param code The code to add.
+	 * @return Has the code been added?
+	 */
+	boolean add(String code) {
+		lock.writeLock().lock();
+
+		try {
+			if (root == null) {
+				root = new Node(code);
+				size++;
+
+				return true;
+			}
+
+			Node node = root;
+
+			while (true) {
+				int distance = distance(code, node.code);
+
+				if (distance == 0)
+					return false;
+
+				Node child = node.childAt(distance);
+
+				if (child == null) {
+					node.setChild(distance, new Node(code));
+					size++;
+
+					return true;
+				}
+
+				node = child;
+			}
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * @return The number of codes in the tree.
+	 */
+	int size() {
+		lock.readLock().lock();
+
+		try {
+			return size;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Finds all codes within an edit distance of a code.
+	 *
+	 * @param code The code to search for.
+	 * @param maxDistance The maximum Levenshtein distance.
+	 * @return The codes found, ordered by their distance and then by the codes themselves.
+	 */
+	List<Match> search(String code, int maxDistance) {
+		List<Match> matches = new ArrayList<>();
+		ArrayDeque<Node> nodes = new ArrayDeque<>();
+		int[] rows = new int[2 * (code.length() + 1)];
+
+		lock.readLock().lock();
+
+		try {
+			if (root != null)
+				nodes.push(root);
+
+			while (!nodes.isEmpty()) {
+				Node node = nodes.pop();
+				int distance = distance(code, node.code, rows);
+
+				if (distance <= maxDistance)
+					matches.add(new Match(node.code, distance));
+
+				int lowest = Math.max(1, distance - maxDistance);
+				int highest = Math.min(node.children.length, distance + maxDistance);
+
+				for (int childDistance = lowest; childDistance <= highest; childDistance++) {
+					Node child = node.children[childDistance - 1];
+
+					if (child != null)
+						nodes.push(child);
+				}
+			}
+		} finally {
+			lock.readLock().unlock();
+		}
+
+		matches.sort(BY_DISTANCE);
+
+		return matches;
+	}
+
+	/**
+	 * Calculates the Levenshtein distance, the minimum number of inserted, deleted and replaced characters.
+	 *
+	 * @return The edit distance of the codes.
+	 */
+	static int distance(String code, String otherCode) {
+		return distance(code, otherCode, new int[2 * (code.length() + 1)]);
+	}
+
+	private static int distance(String code, String otherCode, int[] rows) {
+		int length = code.length();
+		int previous = 0;
+		int current = length + 1;
+
+		for (int index = 0; index <= length; index++) {
+			rows[index] = index;
+		}
+
+		for (int otherIndex = 0; otherIndex < otherCode.length(); otherIndex++) {
+			char otherCharacter = otherCode.charAt(otherIndex);
+			rows[current] = otherIndex + 1;
+
+			for (int index = 0; index < length; index++) {
+				int replaced = rows[previous + index] + (code.charAt(index) == otherCharacter ? 0 : 1);
+				int inserted = rows[current + index] + 1;
+				int deleted = rows[previous + index + 1] + 1;
+
+				rows[current + index + 1] = Math.min(replaced, Math.min(inserted, deleted));
+			}
+
+			int swap = previous;
+			previous = current;
+			current = swap;
+		}
+
+		return rows[previous + length];
+	}
+
+	/**
+	 * A code found by a search together with its distance to the searched code.
+	 */
+	final static class Match {
+
+		final String code;
+		final int distance;
+
+		Match(String code, int distance) {
+			this.code = code;
+			this.distance = distance;
+		}
+
+		@Override
+		public String toString() {
+			return code + ":" + distance;
+		}
+
+	}
+
+	private final static class Node {
+
+		private final static Node[] NO_CHILDREN = new Node[0];
+
+		final String code;
+		Node[] children = NO_CHILDREN; // indexed by the distance minus one
+
+		Node(String code) {
+			this.code = code;
+		}
+
+		Node childAt(int distance) {
+			return distance <= children.length ? children[distance - 1] : null;
+		}
+
+		void setChild(int distance, Node child) {
+			if (distance > children.length)
+				children = Arrays.copyOf(children, distance);
+
+			children[distance - 1] = child;
+		}
+
+	}
+
+}
@@ -0,0 +1,19 @@
+package de.franzmue.nameencoder;
+
+/**
+ * Rule layers compiled into a class of their own by {@link RuleCompiler}.
+ *
+ * @author Franz Muehlbauer, info@franz-mue.de
+ */
+interface CompiledRules {
+
+	/**
+	 * Encodes a prepared name by the compiled rule layers with the standard processing of the NameEncoder class.
+	 *
+	 * @param word The name to encode; it is the code if there are no rule layers.
+	 * @param preparedCode The prepared name.
+	 * @return The code of the name.
+	 */
+	String apply(String word, String preparedCode);
+
+}
@@ -0,0 +1,475 @@
+package de.franzmue.nameencoder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import de.franzmue.nameencoder.NameEncoder;
+import de.franzmue.nameencoder.RegexRule;
+import de.franzmue.nameencoder.ReplacementRule;
+import de.franzmue.nameencoder.RuleSetOptimizer;
+import de.franzmue.nameencoder.Rules;
+
+/**
+ * Generates the Java source of an encoder class which applies the rule layers of a given encoder by straight-line code.
+ * <p>
+ * Each rule layer becomes a static method calling its rewriters one after another. A group of replacement rules
+ * applied in a single pass (see {@link ReplacementAutomaton}) is unrolled into a scan of the code with a switch on
+ * the current character and the comparisons of the following source characters. Each remaining regex rule is held
+ * by a static final field of its rewriter type, so every call site sees a single type. The layers are the ones
+ * optimized by the {@link RuleSetOptimizer}.
+ * </p><p>
+ * The generated class extends the given encoder. Encoding with code path tracing or profiling is left to the
+ * inherited rule layers, so the code path still shows the original layers. When the generated class is instantiated
+ * it compares the fingerprint of the inherited rule layers with the one it has been generated from.
+ * </p><p>
+ * Run the class with an output directory and the names of encoder classes; the Gradle task generateEncoders
+ * generates the classes for the shipped encoders, e. g. GeneratedGermanNameEncoder. The same code is generated
+ * for {@link NameEncoder#compile()} at run time, wrapped into a {@link CompiledRules} class.
+ * </p>
+ *
+ * @see de.franzmue.nameencoder.NameEncoder#getRuleSetFingerprint()
+ * @author Franz Muehlbauer, info@franz-mue.de
+ */
+public final class EncoderGenerator {
+
+	final static String USAGE_MESSAGE = "The source of an encoder class is generated for each given encoder class: <output directory> <encoder class>...%n";
+	final static String GENERATED_MESSAGE = "Generated %s%n";
+	final static String CLASS_NAME_PREFIX = "Generated";
+
+	private final static String PROCESSING_ERROR_MESSAGE = "Only encoders with the standard processing can be generated: ";
+	private final static String WRITE_ERROR_MESSAGE = "The generated class cannot be written: ";
+
+	private final static String PACKAGE_NAME = NameEncoder.class.getPackage().getName();
+
+	private final static String[] HELPER_METHODS = {
+		"private static StringBuilder replace(StringBuilder result, String code, int copied, int index, String destination) {",
+		"	StringBuilder currentResult = result != null ? result : new StringBuilder(code.length() + 16);",
+		"",
+		"	return currentResult.append(code, copied, index).append(destination);",
+		"}",
+		"",
+		"private static String removeConsecutiveDuplicates(String code) {",
+		"	int length = code.length();",
+		"	int index = 1;",
+		"",
+		"	while (index < length && code.charAt(index - 1) != code.charAt(index)) {",
+		"		index++;",
+		"	}",
+		"",
+		"	if (index >= length)",
+		"		return code;",
+		"",
+		"	StringBuilder result = new StringBuilder(length).append(code, 0, index);",
+		"",
+		"	for (index++; index < length; index++) {",
+		"		if (code.charAt(index - 1) != code.charAt(index))",
+		"			result.append(code.charAt(index));",
+		"	}",
+		"",
+		"	return result.toString();",
+		"}",
+	};
+
+	private EncoderGenerator() {
+	}
+
+	public static void main(String[] args) {
+		if (args.length < 2) {
+			System.out.printf(USAGE_MESSAGE);
+			return;
+		}
+
+		Path directory = Paths.get(args[0]).resolve(PACKAGE_NAME.replace('.', '/'));
+
+		for (int index = 1; index < args.length; index++) {
+			NameEncoder encoder = RuleSetOptimizer.createEncoder(args[index]);
+			String className = CLASS_NAME_PREFIX + encoder.getClass().getSimpleName();
+			Path file = directory.resolve(className + ".java");
+
+			try {
+				Files.createDirectories(directory);
+				Files.write(file, generate(encoder, className).getBytes(StandardCharsets.UTF_8));
+			} catch (IOException e) {
+				throw new RuntimeException(WRITE_ERROR_MESSAGE + file, e);
+			}
+
+			System.out.printf(GENERATED_MESSAGE, file);
+		}
+	}
+
+	/**
+	 * Generates the source of an encoder class.
+	 *
+	 * @param encoder The encoder with the standard processing; its class must be public and have a public default constructor.
+	 * @param className The simple name of the generated class in the package of the NameEncoder class.
+	 * @return The Java source.
+	 */
+	static String generate(NameEncoder encoder, String className) {
+		if (encoder.overridesProcessingMethods())
+			throw new IllegalArgumentException(PROCESSING_ERROR_MESSAGE + encoder.getClass().getName());
+
+		String encoderName = encoder.getClass().getName();
+		List<Rules> layers = RuleSetOptimizer.optimizedLayersOf(encoder);
+		List<String> fields = new ArrayList<>();
+		SourceWriter methods = generateMethods(layers, fields);
+		SourceWriter source = new SourceWriter();
+
+		source.line(0, "package " + PACKAGE_NAME + ";");
+		source.line(0, "");
+		source.line(0, "import java.util.Base64;");
+		source.line(0, "import java.util.List;");
+		source.line(0, "");
+		source.line(0, "/**");
+		source.line(0, " * Applies the rule layers of {@link " + encoderName + "} by generated straight-line code.");
+		source.line(0, " * <p>");
+		source.line(0, " * Generated by {@link " + EncoderGenerator.class.getName() + "} from " + encoder.rulesLayers.size()
+			+ " rule layers optimized to " + layers.size() + " layers; do not edit.");
+		source.line(0, " * </p>");
+		source.line(0, " */");
+		source.line(0, "public final class " + className + " extends " + encoderName + " {");
+		source.line(0, "");
+		source.line(1, "private final static String FINGERPRINT = \"" + Base64.getEncoder().encodeToString(encoder.getRuleSetFingerprint()) + "\";");
+		source.line(1, "private final static String FINGERPRINT_ERROR_MESSAGE = \"The rules have changed since the encoder has been generated!\\n\";");
+		appendFields(source, fields);
+		source.line(0, "");
+		source.line(1, "public static void main(String[] args) {");
+		source.line(2, "createCodes(args, () -> new " + className + "());");
+		source.line(1, "}");
+		source.line(0, "");
+		source.line(1, "public " + className + "() {");
+		source.line(2, "super();");
+		source.line(0, "");
+		source.line(2, "if (!FINGERPRINT.equals(Base64.getEncoder().encodeToString(getRuleSetFingerprint())))");
+		source.line(3, "throw new RuntimeException(FINGERPRINT_ERROR_MESSAGE);");
+		source.line(1, "}");
+		source.line(0, "");
+		source.line(1, "@Override");
+		source.line(1, "public String codeOf(CharSequence word) {");
+		source.line(2, "if (isProfiling())");
+		source.line(3, "return super.codeOf(word);");
+		source.line(0, "");
+		source.line(2, "String startCode = word.toString();");
+		source.line(0, "");
+		source.line(2, "return codeOf(startCode, prepareProcessing(startCode));");
+		source.line(1, "}");
+		source.line(0, "");
+		source.line(1, "@Override");
+		source.line(1, "public StringBuilder appendCodeOf(CharSequence word, StringBuilder sink) {");
+		source.line(2, "if (isProfiling())");
+		source.line(3, "return super.appendCodeOf(word, sink);");
+		source.line(0, "");
+		source.line(2, "return sink.append(codeOf(word));");
+		source.line(1, "}");
+		source.line(0, "");
+		source.line(1, "@Override");
+		source.line(1, "String applyRules(String word, String preparedCode, List<String> path) {");
+		source.line(2, "if (path != null || isProfiling())");
+		source.line(3, "return super.applyRules(word, preparedCode, path);");
+		source.line(0, "");
+		source.line(2, "return codeOf(word, preparedCode);");
+		source.line(1, "}");
+		source.append(methods);
+		source.line(0, "}");
+
+		return source.toString();
+	}
+
+	/**
+	 * Generates the source of a {@link CompiledRules} class applying the given rule layers.
+	 *
+	 * @param layers The rule layers, applied with the standard processing of the NameEncoder class.
+	 * @param className The simple name of the generated class in the package of the NameEncoder class.
+	 * @return The Java source.
+	 */
+	static String generateCompiledRules(List<Rules> layers, String className) {
+		List<String> fields = new ArrayList<>();
+		SourceWriter methods = generateMethods(layers, fields);
+		SourceWriter source = new SourceWriter();
+
+		source.line(0, "package " + PACKAGE_NAME + ";");
+		source.line(0, "");
+		source.line(0, "final class " + className + " implements CompiledRules {");
+		appendFields(source, fields);
+		source.line(0, "");
+		source.line(1, "@Override");
+		source.line(1, "public String apply(String word, String preparedCode) {");
+		source.line(2, "return codeOf(word, preparedCode);");
+		source.line(1, "}");
+		source.append(methods);
+		source.line(0, "}");
+
+		return source.toString();
+	}
+
+	private static void appendFields(SourceWriter source, List<String> fields) {
+		if (!fields.isEmpty())
+			source.line(0, "");
+
+		for (String field: fields) {
+			source.line(1, field);
+		}
+	}
+
+	/**
+	 * Generates the static method codeOf(String word, String preparedCode) applying the rule layers,
+	 * the methods of the layers and the helper methods.
+	 *
+	 * @param layers The rule layers.
+	 * @param fields The list to add the declarations of the static fields used by the methods to.
+	 * @return The methods, each preceded by an empty line and followed by a final empty line.
+	 */
+	private static SourceWriter generateMethods(List<Rules> layers, List<String> fields) {
+		SourceWriter source = new SourceWriter();
+		SourceWriter layerMethods = new SourceWriter();
+
+		for (int layerIndex = 0; layerIndex < layers.size(); layerIndex++) {
+			generateLayer(layerIndex + 1, layers.get(layerIndex), fields, layerMethods);
+		}
+
+		source.line(0, "");
+		source.line(1, "private static String codeOf(String word, String preparedCode) {");
+
+		if (layers.isEmpty()) {
+			source.line(2, "return word;");
+		} else {
+			source.line(2, "String code = preparedCode;");
+			source.line(0, "");
+
+			for (int layerNumber = 1; layerNumber <= layers.size(); layerNumber++) {
+				source.line(2, "code = removeConsecutiveDuplicates(layer" + layerNumber + "(code));");
+			}
+
+			source.line(0, "");
+			source.line(2, "return code;");
+		}
+
+		source.line(1, "}");
+		source.append(layerMethods);
+		source.line(0, "");
+
+		for (String line: HELPER_METHODS) {
+			source.line(line.isEmpty() ? 0 : 1, line);
+		}
+
+		source.line(0, "");
+
+		return source;
+	}
+
+	private static void generateLayer(int layerNumber, Rules layer, List<String> fields, SourceWriter methods) {
+		CodeRewriter[] rewriters = layer.getRewriters();
+		boolean masked = false;
+
+		for (CodeRewriter rewriter: rewriters) {
+			masked |= !(rewriter instanceof ReplacementAutomaton);
+		}
+
+		SourceWriter layerMethod = new SourceWriter();
+		SourceWriter groupMethods = new SourceWriter();
+
+		layerMethod.line(0, "");
+		layerMethod.line(1, "// " + escape(layer.getRules().toString(), false));
+		layerMethod.line(1, "private static String layer" + layerNumber + "(String code) {");
+		layerMethod.line(2, "String currentCode = code;");
+
+		if (masked)
+			layerMethod.line(2, "long characters = CharacterMask.of(currentCode);");
+
+		for (int index = 0; index < rewriters.length; index++) {
+			CodeRewriter rewriter = rewriters[index];
+			String name = "layer" + layerNumber + "Rewriter" + (index + 1);
+			String call;
+			String condition = "!currentCode.isEmpty()";
+
+			if (rewriter instanceof ReplacementAutomaton) {
+				generateGroup(name, ((ReplacementAutomaton) rewriter).getRules(), groupMethods);
+				call = name + "(currentCode)";
+			} else {
+				String fieldName = "LAYER_" + layerNumber + "_REWRITER_" + (index + 1);
+				RegexRule rule = ruleOf(rewriter);
+				String ruleSource = "new RegexRule(\"" + escape(rule.getRegex(), true) + "\", \"" + escape(rule.getDestination(), true) + "\")";
+
+				if (rewriter instanceof RegexAutomaton)
+					fields.add("private final static RegexAutomaton " + fieldName + " = RegexAutomaton.compile(" + ruleSource + ");");
+				else
+					fields.add("private final static RegexRewriter " + fieldName + " = new RegexRewriter(" + ruleSource + ");");
+
+				call = fieldName + ".rewrite(currentCode)";
+				condition += " && " + fieldName + ".canRewrite(currentCode, characters)";
+			}
+
+			layerMethod.line(0, "");
+
+			if (masked) {
+				layerMethod.line(2, "if (" + condition + ") {");
+				layerMethod.line(3, "String newCode = " + call + ";");
+				layerMethod.line(0, "");
+				layerMethod.line(3, "if (newCode != currentCode) {");
+				layerMethod.line(4, "currentCode = newCode;");
+				layerMethod.line(4, "characters = CharacterMask.of(currentCode);");
+				layerMethod.line(3, "}");
+				layerMethod.line(2, "}");
+			} else {
+				layerMethod.line(2, "if (" + condition + ")");
+				layerMethod.line(3, "currentCode = " + call + ";");
+			}
+		}
+
+		layerMethod.line(0, "");
+		layerMethod.line(2, "return currentCode;");
+		layerMethod.line(1, "}");
+
+		methods.append(layerMethod);
+		methods.append(groupMethods);
+	}
+
+	private static RegexRule ruleOf(CodeRewriter rewriter) {
+		return rewriter instanceof RegexAutomaton ? ((RegexAutomaton) rewriter).getRule() : ((RegexRewriter) rewriter).getRule();
+	}
+
+	/**
+	 * Generates the single pass scan of a group of replacement rules.
+	 * <p>
+	 * At each position the rules are tried in their order among those whose source starts with the current character,
+	 * which applies the rule with the lowest index like {@link ReplacementAutomaton}.
+	 * </p>
+	 */
+	private static void generateGroup(String name, List<ReplacementRule> rules, SourceWriter methods) {
+		methods.line(0, "");
+		methods.line(1, "// " + escape(rules.toString(), false));
+		methods.line(1, "private static String " + name + "(String code) {");
+
+		if (rules.get(0).getSource().isEmpty()) { // inserts the destination between all characters; never joined with other rules
+			methods.line(2, "return code.replace(\"\", \"" + escape(rules.get(0).getDestination(), true) + "\");");
+			methods.line(1, "}");
+			return;
+		}
+
+		Map<Character, List<ReplacementRule>> rulesByFirstCharacter = new TreeMap<>();
+
+		for (ReplacementRule rule: rules) {
+			rulesByFirstCharacter.computeIfAbsent(rule.getSource().charAt(0), c -> new ArrayList<>()).add(rule);
+		}
+
+		methods.line(2, "int length = code.length();");
+		methods.line(2, "StringBuilder result = null;");
+		methods.line(2, "int copied = 0;");
+		methods.line(2, "int index = 0;");
+		methods.line(0, "");
+		methods.line(2, "while (index < length) {");
+		methods.line(3, "switch (code.charAt(index)) {");
+
+		for (Map.Entry<Character, List<ReplacementRule>> entry: rulesByFirstCharacter.entrySet()) {
+			boolean unconditional = false;
+
+			methods.line(3, "case '" + escape(String.valueOf(entry.getKey()), true) + "':");
+
+			for (ReplacementRule rule: entry.getValue()) {
+				String source = rule.getSource();
+				int indent = 4;
+
+				if (source.length() > 1) {
+					StringBuilder condition = new StringBuilder("index + " + source.length() + " <= length");
+
+					for (int offset = 1; offset < source.length(); offset++) {
+						condition.append(" && code.charAt(index + ").append(offset).append(") == '")
+							.append(escape(String.valueOf(source.charAt(offset)), true)).append('\'');
+					}
+
+					methods.line(4, "if (" + condition + ") {");
+					indent = 5;
+				}
+
+				methods.line(indent, "result = replace(result, code, copied, index, \"" + escape(rule.getDestination(), true) + "\");");
+				methods.line(indent, "index += " + source.length() + ";");
+				methods.line(indent, "copied = index;");
+				methods.line(indent, "continue;");
+
+				if (source.length() > 1) {
+					methods.line(4, "}");
+				} else {
+					unconditional = true;
+					break; // the following rules of the character can never be applied
+				}
+			}
+
+			if (!unconditional)
+				methods.line(4, "break;");
+		}
+
+		methods.line(3, "default:");
+		methods.line(4, "break;");
+		methods.line(3, "}");
+		methods.line(0, "");
+		methods.line(3, "index++;");
+		methods.line(2, "}");
+		methods.line(0, "");
+		methods.line(2, "return result == null ? code : result.append(code, copied, length).toString();");
+		methods.line(1, "}");
+	}
+
+	/**
+	 * Escapes a text for a Java string or character literal, or for a line comment.
+	 * <p>
+	 * All characters except printable ASCII characters are written as unicode escapes, apart from line terminators
+	 * which would end the literal or comment after the unicode escapes have been translated by the compiler.
+	 * Backslashes are doubled in comments, too, so they cannot start a unicode escape.
+	 * </p>
+	 *
+	 * @param text The text to escape.
+	 * @param literal Escape for a literal, i. e. escape quotes, too?
+	 * @return The escaped text.
+	 */
+	static String escape(String text, boolean literal) {
+		StringBuilder escaped = new StringBuilder(text.length());
+
+		for (int index = 0; index < text.length(); index++) {
+			char c = text.charAt(index);
+
+			if (c == '\n')
+				escaped.append("\\n");
+			else if (c == '\r')
+				escaped.append("\\r");
+			else if (c == '\\' || literal && (c == '"' || c == '\''))
+				escaped.append('\\').append(c);
+			else if (c >= ' ' && c <= '~')
+				escaped.append(c);
+			else
+				escaped.append(String.format("\\u%04x", (int) c));
+		}
+
+		return escaped.toString();
+	}
+
+	private final static class SourceWriter {
+
+		private final StringBuilder source = new StringBuilder();
+
+		void line(int indent, String text) {
+			for (int level = 0; level < indent; level++) {
+				source.append('\t');
+			}
+
+			source.append(text).append('\n');
+		}
+
+		void append(SourceWriter writer) {
+			source.append(writer.source);
+		}
+
+		@Override
+		public String toString() {
+			return source.toString();
+		}
+
+	}
+
+}
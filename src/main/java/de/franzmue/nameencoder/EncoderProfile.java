@@ -0,0 +1,221 @@
+package de.franzmue.nameencoder;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+import de.franzmue.nameencoder.Rule;
+
+/**
+ * A snapshot of the profiling counters of an encoder: per rule layer and per rule the number of invocations,
+ * the number of changed codes, the time spent and the number of characters scanned.
+ * <p>
+ * A rule is skipped if the code lacks characters it requires; skipped rules are counted as invocations
+ * but do not add to the time and to the scanned characters. The counters of a layer do not include
+ * {@link NameEncoder#postprocessCode}.
+ * </p>
+ *
+ * @see de.franzmue.nameencoder.NameEncoder#setProfiling(boolean)
+ * @author Franz Muehlbauer, info@franz-mue.de
+ */
+public final class EncoderProfile {
+
+	private final static String HEADER_FORMAT = "%-40s %12s %12s %12s %14s %14s%n";
+	private final static String ROW_FORMAT = "%-40s %12d %12s %12d %14d %14.1f%n";
+
+	private final List<LayerProfile> layers;
+
+	EncoderProfile(List<LayerProfile> layers) {
+		this.layers = Collections.unmodifiableList(layers);
+	}
+
+	/**
+	 * @return The profiles of the rule layers in their order.
+	 */
+	public List<LayerProfile> getLayers() {
+		return layers;
+	}
+
+	/**
+	 * @return The profiles of all rules of all layers in their order.
+	 */
+	public List<RuleProfile> getRules() {
+		List<RuleProfile> rules = new ArrayList<>();
+
+		for (LayerProfile layer: layers) {
+			rules.addAll(layer.getRules());
+		}
+
+		return rules;
+	}
+
+	/**
+	 * Dumps the profile as a table with one line per layer followed by one line per rule of the layer.
+	 */
+	@Override
+	public String toString() {
+		StringBuilder dump = new StringBuilder();
+		dump.append(String.format(Locale.ROOT, HEADER_FORMAT, "Layer / rule", "Invocations", "Skipped", "Changed", "Characters", "Time [us]"));
+
+		for (LayerProfile layer: layers) {
+			dump.append(String.format(Locale.ROOT, ROW_FORMAT, String.valueOf(layer.getLayerNumber()), layer.getInvocationCount(), "",
+				layer.getChangeCount(), layer.getScannedCharacterCount(), layer.getNanoTime() / 1000.0));
+
+			for (RuleProfile rule: layer.getRules()) {
+				dump.append(String.format(Locale.ROOT, ROW_FORMAT, "  " + rule.getLayerNumber() + "." + rule.getRuleNumber() + " " + rule.getRule(),
+					rule.getInvocationCount(), String.valueOf(rule.getSkipCount()), rule.getChangeCount(),
+					rule.getScannedCharacterCount(), rule.getNanoTime() / 1000.0));
+			}
+		}
+
+		return dump.toString();
+	}
+
+	/**
+	 * The counters of a rule layer.
+	 */
+	public final static class LayerProfile {
+
+		private final int layerNumber;
+		private final List<RuleProfile> rules;
+		private final long invocationCount;
+		private final long changeCount;
+		private final long scannedCharacterCount;
+		private final long nanoTime;
+
+		LayerProfile(int layerNumber, List<RuleProfile> rules, long invocationCount, long changeCount, long scannedCharacterCount, long nanoTime) {
+			this.layerNumber = layerNumber;
+			this.rules = Collections.unmodifiableList(rules);
+			this.invocationCount = invocationCount;
+			this.changeCount = changeCount;
+			this.scannedCharacterCount = scannedCharacterCount;
+			this.nanoTime = nanoTime;
+		}
+
+		/**
+		 * @return The number of the layer starting with 1.
+		 */
+		public int getLayerNumber() {
+			return layerNumber;
+		}
+
+		/**
+		 * @return The profiles of the rules of the layer in their order.
+		 */
+		public List<RuleProfile> getRules() {
+			return rules;
+		}
+
+		/**
+		 * @return The number of codes the layer has been applied to.
+		 */
+		public long getInvocationCount() {
+			return invocationCount;
+		}
+
+		/**
+		 * @return The number of codes changed by the layer.
+		 */
+		public long getChangeCount() {
+			return changeCount;
+		}
+
+		/**
+		 * @return The total length of the codes the layer has been applied to.
+		 */
+		public long getScannedCharacterCount() {
+			return scannedCharacterCount;
+		}
+
+		/**
+		 * @return The total time spent in the rules of the layer in nanoseconds.
+		 */
+		public long getNanoTime() {
+			return nanoTime;
+		}
+
+	}
+
+	/**
+	 * The counters of a rule.
+	 */
+	public final static class RuleProfile {
+
+		private final int layerNumber;
+		private final int ruleNumber;
+		private final Rule rule;
+		private final long invocationCount;
+		private final long skipCount;
+		private final long changeCount;
+		private final long scannedCharacterCount;
+		private final long nanoTime;
+
+		RuleProfile(int layerNumber, int ruleNumber, Rule rule, long invocationCount, long skipCount, long changeCount,
+			long scannedCharacterCount, long nanoTime) {
+			this.layerNumber = layerNumber;
+			this.ruleNumber = ruleNumber;
+			this.rule = rule;
+			this.invocationCount = invocationCount;
+			this.skipCount = skipCount;
+			this.changeCount = changeCount;
+			this.scannedCharacterCount = scannedCharacterCount;
+			this.nanoTime = nanoTime;
+		}
+
+		/**
+		 * @return The number of the layer of the rule starting with 1.
+		 */
+		public int getLayerNumber() {
+			return layerNumber;
+		}
+
+		/**
+		 * @return The number of the rule within its layer starting with 1.
+		 */
+		public int getRuleNumber() {
+			return ruleNumber;
+		}
+
+		public Rule getRule() {
+			return rule;
+		}
+
+		/**
+		 * @return The number of codes the rule has been applied to, including the skipped ones.
+		 */
+		public long getInvocationCount() {
+			return invocationCount;
+		}
+
+		/**
+		 * @return The number of codes lacking characters required by the rule.
+		 */
+		public long getSkipCount() {
+			return skipCount;
+		}
+
+		/**
+		 * @return The number of codes changed by the rule.
+		 */
+		public long getChangeCount() {
+			return changeCount;
+		}
+
+		/**
+		 * @return The total length of the codes the rule has been matched against.
+		 */
+		public long getScannedCharacterCount() {
+			return scannedCharacterCount;
+		}
+
+		/**
+		 * @return The total time spent in matching and replacing in nanoseconds.
+		 */
+		public long getNanoTime() {
+			return nanoTime;
+		}
+
+	}
+
+}
@@ -0,0 +1,67 @@
+package de.franzmue.nameencoder;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The immutable result of encoding a name: the name itself, its code and the code path.
+ *
+ * @see de.franzmue.nameencoder.NameEncoderInterface#resultOf(CharSequence)
+ * @author Franz Muehlbauer, info@franz-mue.de
+ */
+public final class EncodingResult {
+
+	private final static String CODE_PATH_ERROR_MESSAGE = "Code path is available after encoding with code path tracing!\n";
+
+	private final String word;
+	private final String code;
+	private final List<String> codePath;
+
+	EncodingResult(String word, String code, List<String> codePath) { // the code path is taken over, not copied
+		this.word = word;
+		this.code = code;
+		this.codePath = codePath == null ? null : Collections.unmodifiableList(codePath);
+	}
+
+	/**
+	 * @return The encoded name.
+	 */
+	public String getWord() {
+		return word;
+	}
+
+	/**
+	 * @return The code of the name.
+	 */
+	public String getCode() {
+		return code;
+	}
+
+	/**
+	 * Returns the code path of the name.
+	 *
+	 * The code path is only available if it has been traced while encoding; see {@link #isCodePathTraced}.
+	 *
+	 * @return An unmodifiable list starting with the name followed by the code after each rule layer.
+	 * @see de.franzmue.nameencoder.NameEncoderInterface#getCodePath()
+	 */
+	public List<String> getCodePath() {
+		if (codePath == null)
+			throw new RuntimeException(CODE_PATH_ERROR_MESSAGE);
+
+		return codePath;
+	}
+
+	/**
+	 * @return Has the code path been recorded while encoding?
+	 */
+	public boolean isCodePathTraced() {
+		return codePath != null;
+	}
+
+	@Override
+	public String toString() {
+		return word + " -> " + code;
+	}
+
+}
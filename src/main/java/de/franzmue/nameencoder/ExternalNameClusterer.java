@@ -0,0 +1,562 @@
+package de.franzmue.nameencoder;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import de.franzmue.nameencoder.NameEncoder;
+import de.franzmue.nameencoder.NameEncoderInterface;
+import de.franzmue.nameencoder.StreamingEncoder;
+
+/**
+ * Groups the lines of an input by the codes of their names when the lines do not fit into the heap.
+ * <p>
+ * The lines are read and encoded in parallel batches like by the {@link StreamingEncoder}. They are collected grouped
+ * by their codes until the memory budget is used up. Then only the distinct codes are sorted, and the groups are spilled
+ * to a temporary file as a sorted run, while the next lines are already read and encoded. At the end the groups of the
+ * runs are merged by a k-way merge and each line is written followed by a tab and its code, like by the
+ * {@link StreamingEncoder}, but with the lines of the same code following each other. The codes are sorted by {@link String#compareTo}; lines with the same code keep their order.
+ * </p><p>
+ * If there are more runs than can be merged at once, they are merged in several passes, which needs up to twice the
+ * space of the runs on disk. The temporary files are deleted when the grouping ends, even if it fails; the grouping fails
+ * if the temporary files would exceed the disk budget.
+ * </p>
+ *
+ * @author Franz Muehlbauer, info@franz-mue.de
+ */
+public class ExternalNameClusterer {
+
+	final static String GROUP_OPTION = "--group";
+	final static String MEMORY_OPTION = "--memory";
+	final static String DISK_OPTION = "--disk";
+	final static String TEMPORARY_DIRECTORY_OPTION = "--temp";
+
+	final static String OPTION_ERROR_MESSAGE = "Invalid arguments; usage: --group [--column <number>] [--memory <MB>] [--disk <MB>] [--temp <directory>] [--compile] [<file>]%n";
+
+	private final static String COLUMN_ERROR_MESSAGE = "The column number has to be positive!\n";
+	private final static String BUDGET_ERROR_MESSAGE = "The memory budget has to be at least 1 MB!\n";
+	private final static String DISK_ERROR_MESSAGE = "The temporary files exceed the disk budget of %d bytes!%n";
+
+	private final static char SEPARATOR = '\t';
+	private final static int BATCH_SIZE = 8192;
+	private final static int BUFFER_SIZE = 1 << 16;
+	private final static int MAXIMUM_FAN_IN = 64;
+	private final static long MINIMUM_MEMORY = 1L << 20;
+	private final static long MEGABYTE = 1L << 20;
+	private final static int LINE_OVERHEAD = 56; // the objects of a line besides its characters
+	private final static int GROUP_OVERHEAD = 160; // the objects of a group besides the characters of its code
+
+	private final NameEncoderInterface encoder;
+	private final int column;
+	private final long memoryBudget;
+	private final long diskBudget;
+	private final Path temporaryDirectory;
+	private final int maximumFanIn;
+
+	/**
+	 * @param encoder The encoder to use; it is shared by the encoding threads.
+	 * @param column The number of the tab separated column containing the name starting with 1, or 0 if the whole line is the name.
+	 * @param memoryBudget The heap in bytes to use for the lines and codes; two runs are held at a time, each using half of it.
+	 * @param diskBudget The maximum size in bytes of all temporary files at a time.
+	 * @param temporaryDirectory The directory for the temporary files or null for the default directory for temporary files.
+	 */
+	public ExternalNameClusterer(NameEncoderInterface encoder, int column, long memoryBudget, long diskBudget, Path temporaryDirectory) {
+		this(encoder, column, memoryBudget, diskBudget, temporaryDirectory, MAXIMUM_FAN_IN);
+	}
+
+	ExternalNameClusterer(NameEncoderInterface encoder, int column, long memoryBudget, long diskBudget, Path temporaryDirectory, int maximumFanIn) {
+		if (column < 0)
+			throw new IllegalArgumentException(COLUMN_ERROR_MESSAGE);
+
+		if (memoryBudget < MINIMUM_MEMORY)
+			throw new IllegalArgumentException(BUDGET_ERROR_MESSAGE);
+
+		this.encoder = encoder;
+		this.column = column;
+		this.memoryBudget = memoryBudget;
+		this.diskBudget = diskBudget;
+		this.temporaryDirectory = temporaryDirectory;
+		this.maximumFanIn = maximumFanIn;
+	}
+
+	/**
+	 * Runs the command line grouping mode: {@code --group [--column <number>] [--memory <MB>] [--disk <MB>] [--temp <directory>] [<file>]}.
+	 * <p>
+	 * Without a file the names are read from standard input. The output is written to standard output in UTF-8.
+	 * The memory budget defaults to a quarter of the maximum heap, the disk budget is unlimited by default. Invalid
+	 * arguments and failing input, output or temporary files, e. g. an exceeded disk budget, are reported on standard
+	 * error; a failing encoding is thrown.
+	 * </p>
+	 *
+	 * @param args The command line arguments starting with {@value #GROUP_OPTION}.
+	 * @param encoder The encoder to use.
+	 * @return The exit status; see {@link NameEncoder#USAGE_STATUS} and {@link NameEncoder#FAILURE_STATUS}.
+	 */
+	static int createGroups(String[] args, NameEncoderInterface encoder) {
+		int column = 0;
+		long memoryBudget = Runtime.getRuntime().maxMemory() / 4;
+		long diskBudget = Long.MAX_VALUE;
+		Path temporaryDirectory = null;
+		String fileName = null;
+		ExternalNameClusterer clusterer;
+
+		try {
+			for (int index = 1; index < args.length; index++) {
+				if (StreamingEncoder.COLUMN_OPTION.equals(args[index]) && index + 1 < args.length)
+					column = Integer.parseInt(args[++index]);
+				else if (MEMORY_OPTION.equals(args[index]) && index + 1 < args.length)
+					memoryBudget = Long.parseLong(args[++index]) * MEGABYTE;
+				else if (DISK_OPTION.equals(args[index]) && index + 1 < args.length)
+					diskBudget = Long.parseLong(args[++index]) * MEGABYTE;
+				else if (TEMPORARY_DIRECTORY_OPTION.equals(args[index]) && index + 1 < args.length)
+					temporaryDirectory = Paths.get(args[++index]);
+				else if (fileName == null && !args[index].startsWith("--"))
+					fileName = args[index];
+				else
+					throw new IllegalArgumentException(args[index]);
+			}
+		} catch (IllegalArgumentException e) {
+			System.err.printf(OPTION_ERROR_MESSAGE);
+			return NameEncoder.USAGE_STATUS;
+		}
+
+		try {
+			clusterer = new ExternalNameClusterer(encoder, column, memoryBudget, diskBudget, temporaryDirectory);
+		} catch (IllegalArgumentException e) {
+			System.err.print(e.getMessage());
+			return NameEncoder.USAGE_STATUS;
+		}
+
+		try {
+			Reader reader = fileName == null
+				? new InputStreamReader(System.in, StandardCharsets.UTF_8)
+				: Files.newBufferedReader(Paths.get(fileName), StandardCharsets.UTF_8);
+
+			try (BufferedReader input = new BufferedReader(reader, BUFFER_SIZE)) {
+				Writer writer = new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8), BUFFER_SIZE);
+				clusterer.group(input, writer);
+				writer.flush();
+			}
+		} catch (IOException e) {
+			System.err.println(e.getMessage());
+			return NameEncoder.FAILURE_STATUS;
+		}
+
+		return 0;
+	}
+
+	/**
+	 * Groups all lines of the input by their codes.
+	 *
+	 * @param input The lines to group.
+	 * @param output The writer for the lines with their codes; it is not flushed or closed.
+	 * @return The number of grouped lines.
+	 * @throws IOException If reading, writing or spilling fails or the disk budget is exceeded.
+	 */
+	public long group(BufferedReader input, Writer output) throws IOException {
+		ExecutorService spiller = Executors.newSingleThreadExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "ExternalNameClusterer spiller");
+			thread.setDaemon(true);
+			return thread;
+		});
+
+		Runs runs = new Runs();
+		Throwable failure = null;
+
+		try {
+			Run run = new Run();
+			CompletableFuture<Void> spilling = CompletableFuture.completedFuture(null);
+			String[] lines = new String[BATCH_SIZE];
+			String[] codes = new String[BATCH_SIZE];
+			long lineCount = 0;
+			int batchSize;
+
+			do {
+				batchSize = 0;
+
+				String line;
+
+				while (batchSize < BATCH_SIZE && (line = input.readLine()) != null) {
+					lines[batchSize++] = line;
+				}
+
+				IntStream.range(0, batchSize).parallel().forEach(index -> codes[index] = encoder.codeOf(StreamingEncoder.nameOf(lines[index], column)));
+
+				for (int index = 0; index < batchSize; index++) {
+					run.add(codes[index], lines[index]);
+				}
+
+				lineCount += batchSize;
+
+				if (run.memory >= memoryBudget / 2) { // the previous run is spilled while this one is filled
+					join(spilling);
+					Run fullRun = run;
+					spilling = CompletableFuture.runAsync(() -> runs.spill(fullRun), spiller);
+
+					run = new Run();
+				}
+			} while (batchSize == BATCH_SIZE);
+
+			join(spilling);
+
+			if (runs.isEmpty()) {
+				for (String code: run.sortedCodes()) {
+					for (String line: run.groups.get(code)) {
+						write(code, line, output);
+					}
+				}
+			} else {
+				runs.spill(run);
+				runs.merge(output);
+			}
+
+			return lineCount;
+		} catch (Throwable e) {
+			failure = e;
+			throw e;
+		} finally {
+			spiller.shutdown();
+
+			try {
+				spiller.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS); // a failed grouping may still be spilling
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+
+			try {
+				runs.delete();
+			} catch (IOException e) {
+				if (failure == null)
+					throw e;
+
+				failure.addSuppressed(e); // the cause of the failed grouping is reported
+			}
+		}
+	}
+
+	private static void write(String code, String line, Writer output) throws IOException {
+		output.write(line);
+		output.write(SEPARATOR);
+		output.write(code);
+		output.write('\n');
+	}
+
+	private static void join(CompletableFuture<Void> future) throws IOException {
+		try {
+			future.join();
+		} catch (CompletionException e) {
+			if (e.getCause() instanceof UncheckedIOException)
+				throw ((UncheckedIOException) e.getCause()).getCause();
+
+			throw e;
+		}
+	}
+
+	/**
+	 * The lines collected in memory, grouped by their codes in the order of the input.
+	 */
+	private final static class Run {
+
+		final Map<String, List<String>> groups = new HashMap<>();
+		long memory;
+
+		void add(String code, String line) {
+			List<String> lines = groups.get(code);
+
+			if (lines == null) {
+				lines = new ArrayList<>();
+				groups.put(code, lines);
+				memory += GROUP_OVERHEAD + 2L * code.length();
+			}
+
+			lines.add(line);
+			memory += LINE_OVERHEAD + 2L * line.length();
+		}
+
+		String[] sortedCodes() {
+			String[] codes = groups.keySet().toArray(new String[groups.size()]);
+			Arrays.parallelSort(codes);
+
+			return codes;
+		}
+
+	}
+
+	/**
+	 * The sorted runs spilled to temporary files in the order of the input.
+	 * <p>
+	 * A run file is a sequence of groups, each written as the length and the UTF-8 bytes of its code, the number of its
+	 * lines and the length and the UTF-8 bytes of each line. The same code may follow in the next group.
+	 * </p>
+	 */
+	private class Runs {
+
+		private final List<Path> files = new ArrayList<>();
+		private final List<Path> createdFiles = new ArrayList<>();
+		private long diskUsage;
+
+		synchronized boolean isEmpty() {
+			return files.isEmpty();
+		}
+
+		void spill(Run run) {
+			try {
+				Path file = createFile();
+
+				try (RunWriter writer = new RunWriter(file)) {
+					for (String code: run.sortedCodes()) {
+						writer.write(code, run.groups.get(code));
+					}
+				}
+
+				synchronized (this) {
+					files.add(file);
+				}
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+
+		/**
+		 * Merges the runs into the output; the runs are first merged into fewer runs if there are too many of them.
+		 */
+		void merge(Writer output) throws IOException {
+			while (files.size() > maximumFanIn) {
+				List<Path> mergedFiles = new ArrayList<>();
+
+				for (int start = 0; start < files.size(); start += maximumFanIn) {
+					List<Path> runFiles = files.subList(start, Math.min(start + maximumFanIn, files.size()));
+					Path mergedFile = createFile();
+
+					try (RunWriter writer = new RunWriter(mergedFile)) {
+						merge(runFiles, (code, reader) -> writer.write(code, reader));
+					}
+
+					for (Path file: runFiles) {
+						release(file);
+					}
+
+					mergedFiles.add(mergedFile);
+				}
+
+				files.clear();
+				files.addAll(mergedFiles);
+			}
+
+			merge(files, (code, reader) -> {
+				for (int count = reader.remaining; count > 0; count--) {
+					write(code, reader.nextLine(), output);
+				}
+			});
+		}
+
+		/**
+		 * Merges the groups of the runs; the groups of the same code are taken from the runs in their order.
+		 */
+		private void merge(List<Path> runFiles, GroupConsumer consumer) throws IOException {
+			PriorityQueue<RunReader> readers = new PriorityQueue<>(runFiles.size());
+
+			try {
+				for (int index = 0; index < runFiles.size(); index++) {
+					RunReader reader = new RunReader(runFiles.get(index), index);
+
+					if (reader.nextGroup())
+						readers.add(reader);
+					else
+						reader.close();
+				}
+
+				while (!readers.isEmpty()) {
+					RunReader reader = readers.poll();
+					consumer.accept(reader.code, reader);
+
+					if (reader.nextGroup())
+						readers.add(reader);
+					else
+						reader.close();
+				}
+			} finally {
+				for (RunReader reader: readers) {
+					reader.close();
+				}
+			}
+		}
+
+		private synchronized Path createFile() throws IOException {
+			Path file = temporaryDirectory == null ? Files.createTempFile("clusters", ".run") : Files.createTempFile(temporaryDirectory, "clusters", ".run");
+			createdFiles.add(file);
+
+			return file;
+		}
+
+		private synchronized void release(Path file) throws IOException {
+			diskUsage -= Files.size(file);
+			Files.delete(file);
+			createdFiles.remove(file);
+		}
+
+		private synchronized void reserve(long size) throws IOException {
+			if (diskUsage + size > diskBudget)
+				throw new IOException(String.format(DISK_ERROR_MESSAGE, diskBudget));
+
+			diskUsage += size;
+		}
+
+		/**
+		 * Deletes all temporary files; if some of them cannot be deleted, the others are deleted anyway.
+		 */
+		synchronized void delete() throws IOException {
+			IOException failure = null;
+
+			for (Path file: createdFiles) {
+				try {
+					Files.deleteIfExists(file);
+				} catch (IOException e) {
+					if (failure == null)
+						failure = e;
+					else
+						failure.addSuppressed(e);
+				}
+			}
+
+			createdFiles.clear();
+
+			if (failure != null)
+				throw failure;
+		}
+
+		private class RunWriter implements AutoCloseable {
+
+			private final DataOutputStream output;
+
+			RunWriter(Path file) throws IOException {
+				output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), BUFFER_SIZE));
+			}
+
+			void write(String code, List<String> lines) throws IOException {
+				writeGroup(code, lines.size());
+
+				for (String line: lines) {
+					writeString(line);
+				}
+			}
+
+			void write(String code, RunReader reader) throws IOException {
+				writeGroup(code, reader.remaining);
+
+				for (int count = reader.remaining; count > 0; count--) {
+					writeString(reader.nextLine());
+				}
+			}
+
+			private void writeGroup(String code, int lineCount) throws IOException {
+				writeString(code);
+				reserve(4);
+				output.writeInt(lineCount);
+			}
+
+			private void writeString(String string) throws IOException {
+				byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+
+				reserve(4 + bytes.length);
+				output.writeInt(bytes.length);
+				output.write(bytes);
+			}
+
+			@Override
+			public void close() throws IOException {
+				output.close();
+			}
+
+		}
+
+	}
+
+	private final static class RunReader implements Comparable<RunReader>, AutoCloseable {
+
+		private final DataInputStream input;
+		private final int runIndex;
+		String code;
+		int remaining; // the lines of the group not read yet
+
+		RunReader(Path file, int runIndex) throws IOException {
+			this.input = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), BUFFER_SIZE));
+			this.runIndex = runIndex;
+		}
+
+		boolean nextGroup() throws IOException {
+			int codeLength;
+
+			try {
+				codeLength = input.readInt();
+			} catch (EOFException e) {
+				code = null;
+				return false;
+			}
+
+			code = readString(codeLength);
+			remaining = input.readInt();
+
+			return true;
+		}
+
+		String nextLine() throws IOException {
+			remaining--;
+
+			return readString(input.readInt());
+		}
+
+		private String readString(int length) throws IOException {
+			byte[] bytes = new byte[length];
+			input.readFully(bytes);
+
+			return new String(bytes, StandardCharsets.UTF_8);
+		}
+
+		@Override
+		public int compareTo(RunReader other) {
+			int comparison = code.compareTo(other.code);
+
+			return comparison != 0 ? comparison : Integer.compare(runIndex, other.runIndex); // the earlier run first
+		}
+
+		@Override
+		public void close() throws IOException {
+			input.close();
+		}
+
+	}
+
+	private interface GroupConsumer {
+
+		void accept(String code, RunReader reader) throws IOException;
+
+	}
+
+}
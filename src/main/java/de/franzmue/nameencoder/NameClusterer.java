@@ -0,0 +1,443 @@
+package de.franzmue.nameencoder;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import de.franzmue.nameencoder.NameEncoder;
+import de.franzmue.nameencoder.NameEncoderInterface;
+import de.franzmue.nameencoder.PackedCode;
+import de.franzmue.nameencoder.StreamingEncoder;
+
+/**
+ * Groups names by their codes, e. g. for finding the duplicates in a register of persons.
+ * <p>
+ * The names are read and encoded in batches like by the {@link StreamingEncoder}. Each code is packed into a {@code long}
+ * (see {@link PackedCode}) and assigned to one of a fixed number of partitions by its hash. After a batch has been
+ * encoded in parallel its names are sorted by their partitions, and the partitions are filled in parallel, each by a
+ * single thread. So the grouping needs no locks and no thread waits for another one, however large a cluster gets.
+ * </p><p>
+ * A partition finds the cluster of a packed code in an open addressing hash table of primitive keys. Only codes in the
+ * overflow form of a packed code, which may be shared by different codes, are looked up by the code itself.
+ * </p><p>
+ * Names with an empty code, e. g. empty lines, are skipped. The clusters are returned sorted by their size.
+ * </p>
+ *
+ * @author Franz Muehlbauer, info@franz-mue.de
+ */
+public class NameClusterer {
+
+	final static String CLUSTER_OPTION = "--cluster";
+	final static String MINIMUM_SIZE_OPTION = "--min-size";
+
+	final static String OPTION_ERROR_MESSAGE = "Invalid arguments; usage: --cluster [--column <number>] [--min-size <number>] [--compile] [<file>]%n";
+
+	private final static String COLUMN_ERROR_MESSAGE = "The column number has to be positive!\n";
+
+	private final static char SEPARATOR = '\t';
+	private final static int BATCH_SIZE = 1 << 16;
+	private final static int BUFFER_SIZE = 1 << 16;
+	private final static int PARTITION_BITS = 8;
+	private final static int PARTITION_COUNT = 1 << PARTITION_BITS;
+	private final static int MINIMUM_CAPACITY = 16;
+	private final static long FREE = -1L; // an overflow form, which is never kept in the hash tables
+
+	private final static Comparator<Cluster> BY_SIZE = Comparator.comparingLong(Cluster::getSize).reversed().thenComparing(Cluster::getCode);
+
+	private final NameEncoderInterface encoder;
+	private final int column;
+
+	/**
+	 * @param encoder The encoder to use; it is shared by the encoding threads.
+	 * @param column The number of the tab separated column containing the name starting with 1, or 0 if the whole line is the name.
+	 */
+	public NameClusterer(NameEncoderInterface encoder, int column) {
+		if (column < 0)
+			throw new IllegalArgumentException(COLUMN_ERROR_MESSAGE);
+
+		this.encoder = encoder;
+		this.column = column;
+	}
+
+	/**
+	 * Runs the command line clustering mode: {@code --cluster [--column <number>] [--min-size <number>] [<file>]}.
+	 * <p>
+	 * Without a file the names are read from standard input. Each cluster with at least the minimum number of names
+	 * (default 1) is written to standard output in UTF-8 as a line with its size and its code followed by a line per
+	 * distinct name with its count, indented by a tab. The largest clusters come first. Invalid arguments and failing
+	 * input or output are reported on standard error; a failing encoding is thrown.
+	 * </p>
+	 *
+	 * @param args The command line arguments starting with {@value #CLUSTER_OPTION}.
+	 * @param encoder The encoder to use.
+	 * @return The exit status; see {@link NameEncoder#USAGE_STATUS} and {@link NameEncoder#FAILURE_STATUS}.
+	 */
+	static int createClusters(String[] args, NameEncoderInterface encoder) {
+		int column = 0;
+		long minimumSize = 1;
+		String fileName = null;
+		NameClusterer clusterer;
+
+		try {
+			for (int index = 1; index < args.length; index++) {
+				if (StreamingEncoder.COLUMN_OPTION.equals(args[index]) && index + 1 < args.length)
+					column = Integer.parseInt(args[++index]);
+				else if (MINIMUM_SIZE_OPTION.equals(args[index]) && index + 1 < args.length)
+					minimumSize = Long.parseLong(args[++index]);
+				else if (fileName == null && !args[index].startsWith("--"))
+					fileName = args[index];
+				else
+					throw new IllegalArgumentException(args[index]);
+			}
+		} catch (IllegalArgumentException e) {
+			System.err.printf(OPTION_ERROR_MESSAGE);
+			return NameEncoder.USAGE_STATUS;
+		}
+
+		try {
+			clusterer = new NameClusterer(encoder, column);
+		} catch (IllegalArgumentException e) {
+			System.err.print(e.getMessage());
+			return NameEncoder.USAGE_STATUS;
+		}
+
+		try {
+			Reader reader = fileName == null
+				? new InputStreamReader(System.in, StandardCharsets.UTF_8)
+				: Files.newBufferedReader(Paths.get(fileName), StandardCharsets.UTF_8);
+
+			try (BufferedReader input = new BufferedReader(reader, BUFFER_SIZE)) {
+				Writer writer = new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8), BUFFER_SIZE);
+				write(clusterer.cluster(input), minimumSize, writer);
+				writer.flush();
+			}
+		} catch (IOException e) {
+			System.err.println(e.getMessage());
+			return NameEncoder.FAILURE_STATUS;
+		}
+
+		return 0;
+	}
+
+	/**
+	 * Writes clusters as a line with the size and the code of each cluster followed by a line per distinct name
+	 * with its count, indented by a tab.
+	 *
+	 * @param clusters The clusters to write.
+	 * @param minimumSize The minimum size of the clusters to write.
+	 * @param output The writer; it is not flushed or closed.
+	 * @throws IOException If writing fails.
+	 */
+	public static void write(List<Cluster> clusters, long minimumSize, Writer output) throws IOException {
+		for (Cluster cluster: clusters) {
+			if (cluster.getSize() < minimumSize)
+				continue;
+
+			output.write(Long.toString(cluster.getSize()));
+			output.write(SEPARATOR);
+			output.write(cluster.getCode());
+			output.write('\n');
+
+			for (Map.Entry<String, Long> name: cluster.getNames().entrySet()) {
+				output.write(SEPARATOR);
+				output.write(name.getValue().toString());
+				output.write(SEPARATOR);
+				output.write(name.getKey());
+				output.write('\n');
+			}
+		}
+	}
+
+	/**
+	 * Groups the names of all lines of the input.
+	 *
+	 * @param input The lines with the names.
+	 * @return The clusters sorted by their size, the largest first, and then by their codes.
+	 * @throws IOException If reading fails.
+	 */
+	public List<Cluster> cluster(BufferedReader input) throws IOException {
+		Partitions partitions = new Partitions();
+		String[] lines = new String[BATCH_SIZE];
+		int batchSize;
+
+		do {
+			batchSize = 0;
+
+			String line;
+
+			while (batchSize < BATCH_SIZE && (line = input.readLine()) != null) {
+				lines[batchSize++] = line;
+			}
+
+			partitions.add(lines, batchSize, column);
+		} while (batchSize == BATCH_SIZE);
+
+		return partitions.clusters();
+	}
+
+	/**
+	 * Groups the given names.
+	 *
+	 * @param names The names; they are not split into columns.
+	 * @return The clusters sorted by their size, the largest first, and then by their codes.
+	 */
+	public List<Cluster> cluster(Iterable<String> names) {
+		Partitions partitions = new Partitions();
+		String[] batch = new String[BATCH_SIZE];
+		Iterator<String> iterator = names.iterator();
+		int batchSize;
+
+		do {
+			batchSize = 0;
+
+			while (batchSize < BATCH_SIZE && iterator.hasNext()) {
+				batch[batchSize++] = iterator.next();
+			}
+
+			partitions.add(batch, batchSize, 0);
+		} while (batchSize == BATCH_SIZE);
+
+		return partitions.clusters();
+	}
+
+	private static int partitionOf(long packedCode) { // the high bits, as the hash tables of the partitions use the low bits
+		return PackedCode.hash(packedCode) >>> (Integer.SIZE - PARTITION_BITS);
+	}
+
+	/**
+	 * The clusters under construction; each partition is only changed by one thread at a time.
+	 */
+	private class Partitions {
+
+		private final List<Partition> clusters = new ArrayList<>(PARTITION_COUNT);
+
+		Partitions() {
+			for (int partition = 0; partition < PARTITION_COUNT; partition++) {
+				clusters.add(new Partition());
+			}
+		}
+
+		void add(String[] lines, int batchSize, int lineColumn) {
+			String[] names = new String[batchSize];
+			String[] codes = new String[batchSize];
+			long[] packedCodes = new long[batchSize];
+			int[] partitions = new int[batchSize];
+
+			IntStream.range(0, batchSize).parallel().forEach(index -> {
+				String name = StreamingEncoder.nameOf(lines[index], lineColumn).toString();
+				names[index] = name;
+				codes[index] = encoder.codeOf(name);
+				packedCodes[index] = PackedCode.pack(codes[index]);
+				partitions[index] = partitionOf(packedCodes[index]);
+			});
+
+			// the indexes of the names sorted by their partitions
+
+			int[] starts = new int[PARTITION_COUNT + 1];
+
+			for (int index = 0; index < batchSize; index++) {
+				starts[partitions[index] + 1]++;
+			}
+
+			for (int partition = 0; partition < PARTITION_COUNT; partition++) {
+				starts[partition + 1] += starts[partition];
+			}
+
+			int[] positions = Arrays.copyOf(starts, PARTITION_COUNT);
+			int[] order = new int[batchSize];
+
+			for (int index = 0; index < batchSize; index++) {
+				order[positions[partitions[index]]++] = index;
+			}
+
+			IntStream.range(0, PARTITION_COUNT).parallel().forEach(partition -> {
+				Partition partitionClusters = clusters.get(partition);
+
+				for (int position = starts[partition]; position < starts[partition + 1]; position++) {
+					int index = order[position];
+
+					if (packedCodes[index] != PackedCode.EMPTY)
+						partitionClusters.clusterOf(packedCodes[index], codes[index]).add(names[index]);
+				}
+			});
+		}
+
+		List<Cluster> clusters() {
+			List<Cluster> result = clusters.parallelStream()
+				.flatMap(Partition::clusters)
+				.map(ClusterBuilder::build)
+				.collect(Collectors.toCollection(ArrayList::new));
+
+			result.sort(BY_SIZE);
+
+			return result;
+		}
+
+	}
+
+	/**
+	 * The clusters of one partition; it is not thread safe.
+	 */
+	private final static class Partition {
+
+		private long[] keys = newKeys(MINIMUM_CAPACITY);
+		private int[] slotClusters = new int[MINIMUM_CAPACITY]; // the number of the cluster of each slot
+		private final List<ClusterBuilder> packedClusters = new ArrayList<>();
+		private final Map<String, ClusterBuilder> overflowClusters = new HashMap<>();
+
+		ClusterBuilder clusterOf(long packedCode, String code) {
+			if (PackedCode.isOverflow(packedCode))
+				return overflowClusters.computeIfAbsent(code, ClusterBuilder::new);
+
+			int mask = keys.length - 1;
+			int slot = PackedCode.hash(packedCode) & mask;
+
+			while (keys[slot] != FREE) {
+				if (keys[slot] == packedCode)
+					return packedClusters.get(slotClusters[slot]);
+
+				slot = (slot + 1) & mask;
+			}
+
+			ClusterBuilder cluster = new ClusterBuilder(code);
+			keys[slot] = packedCode;
+			slotClusters[slot] = packedClusters.size();
+			packedClusters.add(cluster);
+
+			if (2 * packedClusters.size() > keys.length) // at most half of the slots are used
+				grow();
+
+			return cluster;
+		}
+
+		Stream<ClusterBuilder> clusters() {
+			return Stream.concat(packedClusters.stream(), overflowClusters.values().stream());
+		}
+
+		private void grow() {
+			long[] oldKeys = keys;
+			int[] oldSlotClusters = slotClusters;
+			keys = newKeys(2 * oldKeys.length);
+			slotClusters = new int[keys.length];
+			int mask = keys.length - 1;
+
+			for (int oldSlot = 0; oldSlot < oldKeys.length; oldSlot++) {
+				if (oldKeys[oldSlot] == FREE)
+					continue;
+
+				int slot = PackedCode.hash(oldKeys[oldSlot]) & mask;
+
+				while (keys[slot] != FREE) {
+					slot = (slot + 1) & mask;
+				}
+
+				keys[slot] = oldKeys[oldSlot];
+				slotClusters[slot] = oldSlotClusters[oldSlot];
+			}
+		}
+
+		private static long[] newKeys(int capacity) {
+			long[] keys = new long[capacity];
+			Arrays.fill(keys, FREE);
+
+			return keys;
+		}
+
+	}
+
+	private final static class ClusterBuilder {
+
+		private final String code;
+		private final Map<String, long[]> names = new HashMap<>();
+		private long size;
+
+		ClusterBuilder(String code) {
+			this.code = code;
+		}
+
+		void add(String name) {
+			long[] count = names.get(name);
+
+			if (count == null)
+				names.put(name, new long[] { 1 });
+			else
+				count[0]++;
+
+			size++;
+		}
+
+		Cluster build() {
+			List<Map.Entry<String, long[]>> entries = new ArrayList<>(names.entrySet());
+			entries.sort(Comparator.<Map.Entry<String, long[]>>comparingLong(entry -> -entry.getValue()[0]).thenComparing(Map.Entry::getKey));
+
+			Map<String, Long> counts = new LinkedHashMap<>();
+
+			for (Map.Entry<String, long[]> entry: entries) {
+				counts.put(entry.getKey(), entry.getValue()[0]);
+			}
+
+			return new Cluster(code, size, counts);
+		}
+
+	}
+
+	/**
+	 * The names with the same code.
+	 */
+	public final static class Cluster {
+
+		private final String code;
+		private final long size;
+		private final Map<String, Long> names;
+
+		Cluster(String code, long size, Map<String, Long> names) {
+			this.code = code;
+			this.size = size;
+			this.names = Collections.unmodifiableMap(names);
+		}
+
+		public String getCode() {
+			return code;
+		}
+
+		/**
+		 * @return The number of names in the cluster including repeated names.
+		 */
+		public long getSize() {
+			return size;
+		}
+
+		/**
+		 * @return The distinct names with their counts, the most frequent first.
+		 */
+		public Map<String, Long> getNames() {
+			return names;
+		}
+
+		@Override
+		public String toString() {
+			return code + ":" + size + names;
+		}
+
+	}
+
+}
@@ -1,5 +1,7 @@
 package de.franzmue.nameencoder;
 
+import java.lang.reflect.Method;
+import java.util.Arrays;
 import java.util.Locale;
 import java.util.Collections;
 import java.util.List;
@@ -8,7 +10,6 @@ import java.util.ArrayList;
 import java.util.function.Supplier;
 
 import de.franzmue.nameencoder.NameEncoderInterface;
-import de.franzmue.nameencoder.RegexRule;
 import de.franzmue.nameencoder.Rule;
 import de.franzmue.nameencoder.Rules;
 
@@ -39,6 +40,10 @@ import de.franzmue.nameencoder.Rules;
  * In order to customize the processing of the code overwrite the {@link #prepareProcessing},
  * {@link #preprocessCode} or {@link #postprocessCode} methods in a subclass.
  * </p><p>
+ * The methods {@link #codeOf} and {@link #resultOf} do not change the state of the encoder. As long as no rules are added
+ * after construction one encoder object can be shared by any number of threads without locking. The fluent
+ * {@link #encode} method stores the code path in the encoder object and is kept for compatibility.
+ * </p><p>
  * Each rule either replaces the occurrences of a substring or a regular expression matching by another string.
  * <p>
  * 
@@ -46,25 +51,78 @@ import de.franzmue.nameencoder.Rules;
  */
 public class NameEncoder implements NameEncoderInterface {
 	
-	final static String USAGE_MESSAGE = "A list of given names is encoded to their codes.%n";
+	final static String USAGE_MESSAGE = "A list of given names is encoded to their codes.%n"
+		+ "Use --stream [--column <number>] [<file>] to encode the names of standard input or a file line by line.%n"
+		+ "Use --cluster [--column <number>] [--min-size <number>] [<file>] to group the names of standard input or a file by their codes.%n"
+		+ "Use --group [--column <number>] [--memory <MB>] [--disk <MB>] [--temp <directory>] [<file>] to sort the lines of standard input or a file by their codes with temporary files.%n"
+		+ "Add --compile to compile the rules at run time for large inputs.%n";
+	final static String COMPILE_OPTION = "--compile";
 	final static String RESULT_MESSAGE = "Encoding of %s: %s%n";
 
+	final static int FAILURE_STATUS = 1; // the exit status if reading or writing fails
+	final static int USAGE_STATUS = 2; // the exit status if the arguments are invalid
+
 	private final static String CODE_ERROR_MESSAGE = "Code is available after encoding!\n";
+	private final static String CODE_PATH_ERROR_MESSAGE = "Code path is available after encoding with code path tracing!\n";
 	private final static String RULE_ERROR_MESSAGE = "Rules can be added after adding a rule layer!\n";
-	private final static String INVALID_RULE_TYPE_MESSAGE = "Implementation error: The rule type is not existing!\n";
+	private final static String PROFILE_ERROR_MESSAGE = "Profile is available after switching on the profiling!\n";
+
+	private final static List<String> PROCESSING_METHODS = Arrays.asList("prepareProcessing", "preprocessCode", "postprocessCode");
+	private final static ClassValue<Boolean> PROCESSING_OVERRIDES = new ClassValue<Boolean>() {
+
+		@Override
+		protected Boolean computeValue(Class<?> encoderClass) {
+			for (Class<?> type = encoderClass; type != NameEncoder.class; type = type.getSuperclass()) {
+				for (Method method: type.getDeclaredMethods()) {
+					if (PROCESSING_METHODS.contains(method.getName()) && Arrays.equals(method.getParameterTypes(), new Class<?>[] { String.class }))
+						return true;
+				}
+			}
+
+			return false;
+		}
+
+	};
 	
 	protected List<Rules> rulesLayers = new ArrayList<>();
 	protected List<String> codePath;
 	
+	private String code;
+	private boolean codePathTracing = true;
+	private boolean bufferedEngine = false;
+	private volatile RulesProfiler profiler;
+	private volatile RuleSet ruleSet;
+	private volatile CompiledRules compiledRules;
+	
 	protected static Supplier<NameEncoder> encoderSupplier = () -> new NameEncoder();
 
 	public static void main(String[] args) {
 		createCodes(args, encoderSupplier);
 	}
 
+	/**
+	 * Runs the command line: encodes the given names or runs one of the modes for large inputs.
+	 * <p>
+	 * The modes for large inputs compile the rules at run time only with {@value #COMPILE_OPTION}, since compiling takes
+	 * longer than encoding small inputs; without a Java compiler the rules are interpreted.
+	 * If the arguments are invalid or reading or writing fails, the Java virtual machine exits with a non-zero status;
+	 * a failing encoding is thrown.
+	 * </p>
+	 *
+	 * @param args The command line arguments.
+	 * @param encoderSupplier The supplier of the encoder to use.
+	 */
 	protected static void createCodes(String[] args, Supplier<NameEncoder> encoderSupplier) {
+		int status = 0;
+
 		if (args.length == 0) {
 			System.out.printf(USAGE_MESSAGE);
+		} else if (StreamingEncoder.STREAM_OPTION.equals(args[0])) {
+			status = StreamingEncoder.createCodes(modeArgumentsOf(args), modeEncoderOf(args, encoderSupplier));
+		} else if (NameClusterer.CLUSTER_OPTION.equals(args[0])) {
+			status = NameClusterer.createClusters(modeArgumentsOf(args), modeEncoderOf(args, encoderSupplier));
+		} else if (ExternalNameClusterer.GROUP_OPTION.equals(args[0])) {
+			status = ExternalNameClusterer.createGroups(modeArgumentsOf(args), modeEncoderOf(args, encoderSupplier));
 		} else {
 			NameEncoder encoder = encoderSupplier.get();
 			
@@ -74,14 +132,27 @@ public class NameEncoder implements NameEncoderInterface {
 				System.out.printf(RESULT_MESSAGE, word, code);
 			}
 		}
+
+		if (status != 0)
+			System.exit(status);
+	}
+
+	private static String[] modeArgumentsOf(String[] args) {
+		return Arrays.stream(args).filter(arg -> !COMPILE_OPTION.equals(arg)).toArray(String[]::new);
+	}
+
+	private static NameEncoder modeEncoderOf(String[] args, Supplier<NameEncoder> encoderSupplier) {
+		NameEncoder encoder = encoderSupplier.get().setCodePathTracing(false);
+
+		return Arrays.asList(args).contains(COMPILE_OPTION) ? encoder.compile() : encoder;
 	}
 
   /**
    * @see de.franzmue.nameencoder.NameEncoderInterface#isEncodeEqual(String, String)
    */
   public boolean isEncodeEqual(final String word1, final String word2) {
-  	String code1 = encode(word1).getCode();
-  	String code2 = encode(word2).getCode();
+  	String code1 = codeOf(word1);
+  	String code2 = codeOf(word2);
 
   	return code1.equals(code2);
   }
@@ -89,58 +160,385 @@ public class NameEncoder implements NameEncoderInterface {
   /**
    * @see de.franzmue.nameencoder.NameEncoderInterface#getEncodedName(String)
    */
-  public synchronized String getEncodedName(String word) {
-  	return encode(word).getCode();
+  public String getEncodedName(String word) {
+  	return codeOf(word);
   }
 
+  /**
+   * @see de.franzmue.nameencoder.NameEncoderInterface#codeOf(CharSequence)
+   */
+	public String codeOf(CharSequence word) {
+		if (bufferedEngine && profiler == null && compiledRules == null)
+			return BufferedEngine.code(untracedLayers(), word);
+
+		return applyRules(word.toString(), null);
+	}
+
+	/**
+	 * Encodes a name and appends the code to the given buffer without changing the state of the encoder.
+	 * <p>
+	 * Using the buffered engine (see {@link #setBufferedEngine}) the encoding does not allocate any objects then.
+	 * </p>
+	 *
+	 * @param word The name to encode.
+	 * @param sink The buffer to append the code to.
+	 * @return The given buffer.
+	 */
+	public StringBuilder appendCodeOf(CharSequence word, StringBuilder sink) {
+		if (bufferedEngine && profiler == null && compiledRules == null)
+			BufferedEngine.appendCode(untracedLayers(), word, sink);
+		else
+			sink.append(applyRules(word.toString(), null));
+
+		return sink;
+	}
+
+  /**
+   * @see de.franzmue.nameencoder.NameEncoderInterface#resultOf(CharSequence)
+   */
+	public EncodingResult resultOf(CharSequence word) {
+		return resultOf(word, codePathTracing);
+	}
+
+  /**
+   * @see de.franzmue.nameencoder.NameEncoderInterface#resultOf(CharSequence, boolean)
+   */
+	public EncodingResult resultOf(CharSequence word, boolean tracing) {
+		String startCode = word.toString();
+
+		if (!tracing)
+			return new EncodingResult(startCode, codeOf(startCode), null);
+
+		List<String> path = new ArrayList<>(rulesLayers.size() + 1);
+		path.add(startCode); // including the word to be encoded
+
+		String resultCode = applyRules(startCode, path);
+
+		return new EncodingResult(startCode, resultCode, path);
+	}
+
   /**
    * @see de.franzmue.nameencoder.NameEncoderInterface#encode(String)
    */
 	public NameEncoder encode(String word) {
-		resetCodePath(word);
-		applyRules(word);
+		EncodingResult result = resultOf(word);
+
+		code = result.getCode();
+		codePath = result.isCodePathTraced() ? result.getCodePath() : null;
+
 		return this;
 	}
 	
-	private void resetCodePath(String startCode) {
-		codePath = new ArrayList<>(rulesLayers.size() + 1);
-		codePath.add(startCode); // including the word to be encoded
-	}
-	
   /**
    * @see de.franzmue.nameencoder.NameEncoderInterface#getCode()
    */
 	public String getCode() {
-		if (codePath == null)
+		if (code == null)
 			throw new RuntimeException(CODE_ERROR_MESSAGE);
 
-		return codePath.get(codePath.size() - 1);
+		return code;
 	}
 	
   /**
    * @see de.franzmue.nameencoder.NameEncoderInterface#getCodePath()
    */
 	public List<String> getCodePath() {
-		if (codePath == null)
+		if (code == null)
 			throw new RuntimeException(CODE_ERROR_MESSAGE);
 
+		if (codePath == null)
+			throw new RuntimeException(CODE_PATH_ERROR_MESSAGE);
+
 		return Collections.unmodifiableList(codePath);
 	}
+
+	/**
+	 * Switches the recording of the code path on or off.
+	 * <p>
+	 * Code path tracing is on by default. If it is switched off {@link #encode} and {@link #resultOf(CharSequence)}
+	 * only keep the final code and do not create any intermediate path elements; {@link #getCodePath} is not available then.
+	 * All codes are then encoded by the rule layers as optimized by the {@link RuleSetOptimizer}, which has fewer layers
+	 * but gives the same codes.
+	 * The tracing should be set before the encoder is shared between threads.
+	 * </p>
+	 *
+	 * @param tracing Record the code path?
+	 * @return The NameEncoder object itself in order to provide a fluent interface.
+	 */
+	public NameEncoder setCodePathTracing(boolean tracing) {
+		codePathTracing = tracing;
+		return this;
+	}
+
+	public boolean isCodePathTracing() {
+		return codePathTracing;
+	}
+
+	/**
+	 * Switches the buffered engine on or off.
+	 * <p>
+	 * The buffered engine moves the code between two reusable buffers per thread through all rule layers and only
+	 * allocates the final code, or nothing at all using {@link #appendCodeOf}. It is used whenever the code path is not traced
+	 * and the rules are not profiled.
+	 * </p><p>
+	 * The engine implements the standard processing of the NameEncoder class. If a subclass overrides any of the methods
+	 * {@link #prepareProcessing}, {@link #preprocessCode} or {@link #postprocessCode} the buffered engine is not switched on.
+	 * The engine should be set before the encoder is shared between threads.
+	 * </p>
+	 *
+	 * @param buffered Use the buffered engine?
+	 * @return The NameEncoder object itself in order to provide a fluent interface.
+	 */
+	public NameEncoder setBufferedEngine(boolean buffered) {
+		bufferedEngine = buffered && !overridesProcessingMethods();
+		return this;
+	}
+
+	public boolean isBufferedEngine() {
+		return bufferedEngine;
+	}
+
+	/**
+	 * Compiles the rule layers into a class of their own at run time.
+	 * <p>
+	 * The rule layers, optimized as for encoding without code path tracing, are translated into straight-line code
+	 * like the one of the generated encoders (see {@link EncoderGenerator}) and compiled by the system Java compiler.
+	 * The compiled class is used whenever the code path is not traced and the rules are not profiled; it takes
+	 * precedence over the buffered engine. Adding rules discards it.
+	 * </p><p>
+	 * If no compiler is available or a subclass overrides any of the methods {@link #prepareProcessing},
+	 * {@link #preprocessCode} or {@link #postprocessCode}, the rules stay interpreted; see {@link #isCompiled()}.
+	 * Compiling takes some time and creates a class which is not unloaded, so an encoder should be compiled once
+	 * after all rules have been added and then be shared between threads.
+	 * </p>
+	 *
+	 * @return The NameEncoder object itself in order to provide a fluent interface.
+	 */
+	public NameEncoder compile() {
+		compiledRules = overridesProcessingMethods() ? null : getRuleSet().getCompiledRules(this);
+		return this;
+	}
+
+	public boolean isCompiled() {
+		return compiledRules != null;
+	}
+
+	/**
+	 * Switches the profiling of the rules on or off.
+	 * <p>
+	 * While profiling, the rules of each layer are applied one by one instead of in combined passes, and the invocations,
+	 * changes, time and scanned characters of each rule and layer are counted. Switching the profiling on starts
+	 * a new profile. The counters are striped between threads, so a profiled encoder can still be shared.
+	 * </p>
+	 *
+	 * @param profiling Profile the rules?
+	 * @return The NameEncoder object itself in order to provide a fluent interface.
+	 * @see #getProfile()
+	 */
+	public NameEncoder setProfiling(boolean profiling) {
+		profiler = profiling ? new RulesProfiler() : null;
+		return this;
+	}
+
+	public boolean isProfiling() {
+		return profiler != null;
+	}
+
+	/**
+	 * Returns a snapshot of the profiling counters.
+	 *
+	 * @return The profile of all rule layers and rules since switching on the profiling.
+	 */
+	public EncoderProfile getProfile() {
+		RulesProfiler currentProfiler = profiler;
+
+		if (currentProfiler == null)
+			throw new RuntimeException(PROFILE_ERROR_MESSAGE);
+
+		return currentProfiler.snapshot(getRuleSet().getRulesLayers());
+	}
+
+	boolean overridesProcessingMethods() {
+		return PROCESSING_OVERRIDES.get(getClass());
+	}
+
+	/**
+	 * Calculates a fingerprint of the rule layers of the encoder.
+	 * <p>
+	 * The fingerprint is the SHA-256 hash of the types, sources and destinations of all rules in their layers.
+	 * Persisted codes can be checked by it whether they have been created by the same rules.
+	 * </p>
+	 *
+	 * @return The 32 bytes of the fingerprint.
+	 */
+	public byte[] getRuleSetFingerprint() {
+		return getRuleSet().getFingerprint();
+	}
+
+	/**
+	 * Returns the immutable snapshot of the rule layers, which is shared by all encoders with the same rules.
+	 * <p>
+	 * The encoding uses the compiled rewriters of the rule set, so the rules are compiled once for all encoders
+	 * with the same rules. Adding rules to the encoder replaces its rule set.
+	 * </p>
+	 *
+	 * @return The rule set of the encoder.
+	 */
+	public RuleSet getRuleSet() {
+		RuleSet currentRuleSet = ruleSet;
+
+		if (currentRuleSet == null) {
+			currentRuleSet = RuleSet.of(rulesLayers);
+			ruleSet = currentRuleSet;
+		}
+
+		return currentRuleSet;
+	}
 	
-	private void applyRules(String word) {
-		String currentCode = prepareProcessing(word);
+	/**
+	 * Adds the rule layers of a rule set to an encoder without rules and uses the compiled rewriters of the rule set.
+	 *
+	 * @param newRuleSet The rule set, e. g. one read from a snapshot by {@link RuleFile}.
+	 * @return The NameEncoder object itself in order to provide a fluent interface.
+	 */
+	NameEncoder useRuleSet(RuleSet newRuleSet) {
+		boolean empty = rulesLayers.isEmpty();
+
+		for (List<Rule> layer: newRuleSet.getLayers()) {
+			Rules rulesLayer = new Rules();
+
+			for (Rule rule: layer) {
+				rulesLayer.addRule(rule);
+			}
+
+			rulesLayers.add(rulesLayer);
+		}
+
+		discardRuleSet();
+
+		if (empty)
+			ruleSet = newRuleSet;
 
-		for (Rules rules: rulesLayers) {
+		return this;
+	}
+
+	private String applyRules(String word, List<String> path) {
+		return applyRules(word, prepareProcessing(word), path);
+	}
+
+	/**
+	 * Encodes a name which has already been prepared by {@link #prepareProcessing}.
+	 *
+	 * @param word The name to encode; it is the code if there are no rule layers.
+	 * @param preparedCode The prepared name.
+	 * @param path The list to add the code path elements to or null if the code path is not traced.
+	 * @return The code of the name.
+	 */
+	String applyRules(String word, String preparedCode, List<String> path) {
+		RulesProfiler currentProfiler = profiler;
+		CompiledRules currentRules = compiledRules;
+
+		if (path == null && currentProfiler == null && currentRules != null)
+			return currentRules.apply(word, preparedCode);
+
+		return applyRules(path == null ? untracedLayers() : getRuleSet().getRulesLayers(), word, preparedCode, path, currentProfiler);
+	}
+
+	/**
+	 * Encodes a prepared name by the given rule layers.
+	 *
+	 * @param layers The rule layers, either the ones of the encoder or an optimized copy of them.
+	 * @param word The name to encode; it is the code if there are no rule layers.
+	 * @param preparedCode The prepared name.
+	 * @param path The list to add the code path elements to or null if the code path is not traced.
+	 * @param currentProfiler The profiler counting the rules or null.
+	 * @return The code of the name.
+	 */
+	String applyRules(List<Rules> layers, String word, String preparedCode, List<String> path, RulesProfiler currentProfiler) {
+		String code = word;
+		String currentCode = preparedCode;
+
+		for (Rules rules: layers) {
 			preprocessCode(currentCode);
-			
-			for (Rule rule: rules) {
-				currentCode = applyRule(currentCode, rule);
-			}
+
+			if (currentProfiler == null)
+				currentCode = applyRewriters(rules, currentCode);
+			else
+				currentCode = currentProfiler.apply(rules, currentCode);
 
 			currentCode = postprocessCode(currentCode);
+
+			if (path != null)
+				path.add(currentCode);
+
+			code = currentCode;
+		}
+
+		return code;
+	}
+	
+	/**
+	 * Encodes a prepared name by the given rule layers unless its code certainly differs from a given code.
+	 * <p>
+	 * After each layer the encoding stops if the given code has a character which is neither in the current code nor
+	 * in the destinations of the remaining layers; see {@link NameMatcher}.
+	 * </p>
+	 *
+	 * @param layers The rule layers without code path tracing or profiling.
+	 * @param preparedCode The prepared name.
+	 * @param codeMask The character mask of the given code.
+	 * @param producibleMasks For each number of applied layers the character mask of the destinations of the remaining layers.
+	 * @return The code of the name or null if it cannot be the given code.
+	 */
+	String applyRulesTowards(List<Rules> layers, String preparedCode, long codeMask, long[] producibleMasks) {
+		String currentCode = preparedCode;
+
+		for (int layer = 0; layer < layers.size(); layer++) {
+			preprocessCode(currentCode);
+			currentCode = postprocessCode(applyRewriters(layers.get(layer), currentCode));
+
+			if ((codeMask & ~(CharacterMask.of(currentCode) | producibleMasks[layer + 1])) != 0)
+				return null;
 		}
+
+		return currentCode;
 	}
 	
+	private static String applyRewriters(Rules rules, String code) {
+		String currentCode = code;
+		long characters = CharacterMask.of(currentCode);
+
+		for (CodeRewriter rewriter: rules.getRewriters()) {
+			if (currentCode.length() == 0)
+				break;
+
+			if (!rewriter.canRewrite(currentCode, characters)) // the rules cannot match
+				continue;
+
+			String newCode = rewriter.rewrite(currentCode);
+
+			if (newCode != currentCode) {
+				currentCode = newCode;
+				characters = CharacterMask.of(currentCode);
+			}
+		}
+
+		return currentCode;
+	}
+
+	private List<Rules> untracedLayers() {
+		RuleSet currentRuleSet = getRuleSet();
+
+		if (codePathTracing || profiler != null || overridesProcessingMethods())
+			return currentRuleSet.getRulesLayers();
+
+		return currentRuleSet.getOptimizedLayers(this);
+	}
+
+	boolean hasRuleLayers() {
+		return !rulesLayers.isEmpty();
+	}
+
 	protected String prepareProcessing(String word) {
 		return removeWhitespaces(word).toLowerCase(Locale.GERMAN);
 	}
@@ -153,25 +551,8 @@ public class NameEncoder implements NameEncoderInterface {
 		return code;
 	}
 
-	private String applyRule(String currentCode, Rule rule) {
-		if (currentCode.length() == 0)
-			return currentCode;
-		
-		if (rule instanceof RegexRule)
-			return rule.getPattern().matcher(currentCode).replaceAll(rule.getDestination());
-
-		if (rule instanceof ReplacementRule)
-			return currentCode.replace(rule.getSource(), rule.getDestination());
-
-		throw new RuntimeException(INVALID_RULE_TYPE_MESSAGE);
-	}
-
 	protected String postprocessCode(String newCode) {
-		String code = removeConsecutiveDuplicates(newCode);
-
-		codePath.add(code);
-		
-		return code;
+		return removeConsecutiveDuplicates(newCode);
 	}
 
 	private String removeConsecutiveDuplicates(String code) {
@@ -211,6 +592,7 @@ public class NameEncoder implements NameEncoderInterface {
 			throw new RuntimeException(RULE_ERROR_MESSAGE);
 
 		getCurrentRulesLayer().addReplacementRule(source, destination);
+		discardRuleSet();
 
 		return this;
 	}
@@ -235,6 +617,7 @@ public class NameEncoder implements NameEncoderInterface {
 			throw new RuntimeException(RULE_ERROR_MESSAGE);
 
 		getCurrentRulesLayer().addRegexRule(regex, replacement);
+		discardRuleSet();
 		
 		return this;
 	}
@@ -242,9 +625,17 @@ public class NameEncoder implements NameEncoderInterface {
 	protected NameEncoder addRuleLayer() {
 		Rules rulesLayer = new Rules();
 		rulesLayers.add(rulesLayer);
+		discardRuleSet();
 		return this;
 	}
 
+	private void discardRuleSet() {
+		if (ruleSet != null || compiledRules != null) { // writing volatile fields is costly while the constructors add rules
+			ruleSet = null;
+			compiledRules = null;
+		}
+	}
+
 	private Rules getCurrentRulesLayer() {
 		return rulesLayers.get(rulesLayers.size() - 1);
 	}
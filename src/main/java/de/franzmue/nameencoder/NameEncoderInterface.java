@@ -1,8 +1,17 @@
 package de.franzmue.nameencoder;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
+import de.franzmue.nameencoder.EncodingResult;
 import de.franzmue.nameencoder.NameEncoder;
+import de.franzmue.nameencoder.NameMatcher;
+import de.franzmue.nameencoder.PackedCode;
 
 /**
  * Defines how the NameEncoder Java 9 library can be used.
@@ -23,13 +32,99 @@ public interface NameEncoderInterface {
   /**
    * Encodes a name and returns the resulting code.
    * 
-   * The method combines the {@link #encode} and the {@link #getCode} methods and embeds them in a synchronized section.
+   * The method is equivalent to {@link #codeOf} and can be called concurrently without locking.
    *
    * @param word The name to encode
    * @return The code of a name..
    */
 	public String getEncodedName(String word);
 	
+  /**
+   * Prepares the comparison of many names with one query name, which is encoded only once.
+   * 
+   * The matcher can be shared by any number of threads as long as the encoder can.
+   *
+   * @param query The name to compare the other names with.
+   * @return The matcher of the names with the same code as the query.
+   */
+	public default NameMatcher matcherFor(String query) {
+		return new NameMatcher(this, query);
+	}
+	
+  /**
+   * Encodes a name and returns the resulting code without changing the state of the encoder.
+   * 
+   * The method can be called by any number of threads sharing the same encoder. By default it calls
+   * {@link #getEncodedName}; implementations which can encode without locking override it.
+   *
+   * @param word The name to encode.
+   * @return The code of the name.
+   */
+	public default String codeOf(CharSequence word) {
+		return getEncodedName(word.toString());
+	}
+	
+  /**
+   * Encodes a name and returns the code together with the code path without changing the state of the encoder.
+   * 
+   * The method can be called by any number of threads sharing the same encoder.
+   * The code path is only recorded if code path tracing is switched on for the encoder. By default the name is
+   * encoded by {@link #encode} in a section synchronized on the encoder; implementations which can encode without
+   * locking override it.
+   *
+   * @param word The name to encode.
+   * @return An immutable result containing the code and the code path of the name.
+   */
+	public default EncodingResult resultOf(CharSequence word) {
+		String startCode = word.toString();
+
+		synchronized (this) {
+			encode(startCode);
+			List<String> path;
+
+			try {
+				path = new ArrayList<>(getCodePath());
+			} catch (RuntimeException e) { // the code path has not been traced
+				path = null;
+			}
+
+			return new EncodingResult(startCode, getCode(), path);
+		}
+	}
+	
+  /**
+   * Encodes a name and returns the code packed into a {@code long} without changing the state of the encoder.
+   * 
+   * The method can be called by any number of threads sharing the same encoder.
+   *
+   * @param word The name to encode.
+   * @return The packed code of the name; see {@link PackedCode#pack(CharSequence)}.
+   */
+	public default long packedCodeOf(CharSequence word) {
+		return PackedCode.pack(codeOf(word));
+	}
+	
+  /**
+   * Encodes a name and returns the code together with the code path if requested without changing the state of the encoder.
+   * 
+   * The method can be called by any number of threads sharing the same encoder. By default an untraced result is
+   * built from {@link #codeOf} and a traced one from {@link #resultOf(CharSequence)}, so the encoder itself has to
+   * trace the code path then; implementations which can trace without locking override it.
+   *
+   * @param word The name to encode.
+   * @param tracing Record the code path regardless of the setting of the encoder?
+   * @return An immutable result containing the code and, if traced, the code path of the name.
+   */
+	public default EncodingResult resultOf(CharSequence word, boolean tracing) {
+		if (!tracing)
+			return new EncodingResult(word.toString(), codeOf(word), null);
+
+		EncodingResult result = resultOf(word);
+		result.getCodePath(); // fails if the encoder does not trace the code path
+
+		return result;
+	}
+	
   /**
    * Encodes a name.
    * 
@@ -60,10 +155,79 @@ public interface NameEncoderInterface {
    * ist added to the code path. The last path element is the final code which can immediately being
    * accessed by calling {@link #getCode}.
    * </p><p>
-   * The encoding has to be done before; see the {@link #encode} method.
+   * The encoding has to be done before with code path tracing switched on; see the {@link #encode} method.
    * </p>
    *
    * @return A list with the code path elements of a name.
    */
 	public List<String> getCodePath();
+	
+  /**
+   * Encodes a list of names in parallel.
+   * <p>
+   * The names are split across the threads of the common fork-join pool; see {@link #encodeAll(List, ForkJoinPool)}
+   * in order to use another pool. The results are computed by {@link #resultOf(CharSequence, boolean)} without the
+   * code path, whatever the code path tracing setting of the encoder is, so a caching encoder takes the codes from its cache.
+   * </p>
+   *
+   * @param words The names to encode.
+   * @return An unmodifiable list of the results in the order of the given names.
+   */
+	public default List<EncodingResult> encodeAll(List<String> words) {
+		return encodeAll(words.toArray(new String[words.size()]));
+	}
+	
+  /**
+   * Encodes a list of names in parallel by the threads of the given fork-join pool.
+   *
+   * @param words The names to encode.
+   * @param pool The pool to run the encoding in.
+   * @return An unmodifiable list of the results in the order of the given names.
+   */
+	public default List<EncodingResult> encodeAll(List<String> words, ForkJoinPool pool) {
+		return pool.submit(() -> encodeAll(words)).join(); // parallel streams run in the pool of the calling task
+	}
+	
+  /**
+   * Encodes an array of names in parallel.
+   *
+   * @param words The names to encode.
+   * @return An unmodifiable list of the results in the order of the given names.
+   * @see #encodeAll(List)
+   */
+	public default List<EncodingResult> encodeAll(String[] words) {
+		EncodingResult[] results = new EncodingResult[words.length];
+
+		IntStream.range(0, words.length).parallel().forEach(index -> results[index] = resultOf(words[index], false));
+
+		return Collections.unmodifiableList(Arrays.asList(results));
+	}
+	
+  /**
+   * Maps a stream of names to a parallel stream of their results.
+   * <p>
+   * The encounter order of the names is kept, e. g. by {@link Stream#forEachOrdered} or by collecting the results.
+   * As for {@link #encodeAll(List)} the code path is not traced.
+   * </p>
+   *
+   * @param words The names to encode.
+   * @return The parallel stream of the results.
+   */
+	public default Stream<EncodingResult> encodeAll(Stream<String> words) {
+		return words.parallel().map(word -> resultOf(word, false));
+	}
+	
+  /**
+   * Encodes an array of names in parallel to their packed codes.
+   *
+   * @param words The names to encode.
+   * @return The packed codes in the order of the given names; see {@link #packedCodeOf(CharSequence)}.
+   */
+	public default long[] packedCodesOf(String[] words) {
+		long[] packedCodes = new long[words.length];
+
+		IntStream.range(0, words.length).parallel().forEach(index -> packedCodes[index] = packedCodeOf(words[index]));
+
+		return packedCodes;
+	}
 }
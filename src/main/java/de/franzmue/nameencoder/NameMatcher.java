@@ -0,0 +1,132 @@
+package de.franzmue.nameencoder;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import de.franzmue.nameencoder.CharacterMask;
+import de.franzmue.nameencoder.NameEncoder;
+import de.franzmue.nameencoder.NameEncoderInterface;
+import de.franzmue.nameencoder.Rule;
+import de.franzmue.nameencoder.Rules;
+
+/**
+ * Compares many names with one query name, which is encoded only once; see {@link NameEncoderInterface#matcherFor(String)}.
+ * <p>
+ * A candidate matches if its code equals the code of the query. For a {@link NameEncoder} with the standard processing
+ * most candidates are ruled out before they are encoded completely: the rules only remove characters, keep them or
+ * insert the characters of their destinations. So the final code of a candidate only consists of the characters of its
+ * current code and the ones in the destinations of the remaining rule layers. If the code of the query has a character
+ * besides them, the candidate cannot match any more. The candidate is checked before the first layer and, if the rules
+ * are interpreted anyway, after every layer; a compiled or generated encoder encodes the remaining candidates at once.
+ * </p><p>
+ * The matcher can be shared by any number of threads as long as its encoder can.
+ * </p>
+ *
+ * @author Franz Muehlbauer, info@franz-mue.de
+ */
+public final class NameMatcher {
+
+	private final NameEncoderInterface encoder;
+	private final String query;
+	private final String code;
+	private final long codeMask;
+	private final NameEncoder nameEncoder; // the encoder whose candidates are ruled out early or null
+	private final List<Rules> layers;
+	private final long[] producibleMasks; // for each number of applied layers the characters the remaining layers can insert
+	private final boolean interpreted;
+
+	NameMatcher(NameEncoderInterface encoder, String query) {
+		this.encoder = encoder;
+		this.query = query;
+		this.code = encoder.codeOf(query);
+		this.codeMask = CharacterMask.of(code);
+
+		NameEncoder standardEncoder = encoder instanceof NameEncoder ? (NameEncoder) encoder : null;
+		List<Rules> optimizedLayers = null;
+
+		if (standardEncoder != null && !standardEncoder.overridesProcessingMethods() && standardEncoder.hasRuleLayers() && !standardEncoder.isProfiling())
+			optimizedLayers = standardEncoder.getRuleSet().getOptimizedLayers(standardEncoder);
+
+		if (optimizedLayers == null || optimizedLayers.isEmpty()) { // only the codes are compared
+			this.nameEncoder = null;
+			this.layers = null;
+			this.producibleMasks = null;
+			this.interpreted = false;
+		} else {
+			this.nameEncoder = standardEncoder;
+			this.layers = optimizedLayers;
+			this.producibleMasks = producibleMasksOf(optimizedLayers);
+			this.interpreted = !standardEncoder.isCompiled() && !standardEncoder.isBufferedEngine() && !overridesCodeOf(standardEncoder);
+		}
+	}
+
+	public String getQuery() {
+		return query;
+	}
+
+	/**
+	 * @return The code of the query.
+	 */
+	public String getCode() {
+		return code;
+	}
+
+	/**
+	 * Checks whether a candidate name has the same code as the query.
+	 *
+	 * @param candidate The name to compare.
+	 * @return Does the encoding of the candidate lead to the code of the query?
+	 */
+	public boolean matches(CharSequence candidate) {
+		if (nameEncoder == null)
+			return code.equals(encoder.codeOf(candidate));
+
+		String word = candidate.toString();
+		String preparedCode = nameEncoder.prepareProcessing(word);
+
+		if ((codeMask & ~(CharacterMask.of(preparedCode) | producibleMasks[0])) != 0)
+			return false;
+
+		if (interpreted)
+			return code.equals(nameEncoder.applyRulesTowards(layers, preparedCode, codeMask, producibleMasks));
+
+		return code.equals(encoder.codeOf(word));
+	}
+
+	/**
+	 * Selects the candidate names with the same code as the query in parallel.
+	 *
+	 * @param candidates The names to compare.
+	 * @return An unmodifiable list of the matching names in the order of the candidates.
+	 */
+	public List<String> filter(Collection<String> candidates) {
+		return Collections.unmodifiableList(candidates.parallelStream().filter(this::matches).collect(Collectors.toList()));
+	}
+
+	private static long[] producibleMasksOf(List<Rules> layers) {
+		long[] masks = new long[layers.size() + 1];
+
+		for (int layer = layers.size() - 1; layer >= 0; layer--) {
+			long mask = masks[layer + 1];
+
+			for (Rule rule: layers.get(layer).getRules()) {
+				mask |= CharacterMask.of(rule.getDestination()); // the group references of a regex rule only add characters to the mask
+			}
+
+			masks[layer] = mask;
+		}
+
+		return masks;
+	}
+
+	private static boolean overridesCodeOf(NameEncoder encoder) {
+		try {
+			return encoder.getClass().getMethod("codeOf", CharSequence.class).getDeclaringClass() != NameEncoder.class;
+		} catch (NoSuchMethodException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+}
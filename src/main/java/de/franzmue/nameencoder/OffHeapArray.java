@@ -0,0 +1,158 @@
+package de.franzmue.nameencoder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * A fixed size area of memory outside of the heap, either allocated directly or mapped from a file.
+ * <p>
+ * The area is split into chunks of {@value #CHUNK_SIZE} bytes, each a {@link ByteBuffer}, so it is not limited to the
+ * 2 GB of a single buffer. As the chunk size is a multiple of eight, no {@code int} or {@code long} value is split
+ * between two chunks if the values are addressed by their index. The values are stored in big endian order, both in
+ * memory and in files, so an area written to a file can be mapped again as it is.
+ * </p><p>
+ * Only the array of the chunk buffers is kept on the heap. The memory of allocated chunks is released when the area
+ * becomes unreachable; the size of all allocated areas is limited by {@code -XX:MaxDirectMemorySize}.
+ * </p>
+ *
+ * @author Franz Muehlbauer, info@franz-mue.de
+ */
+final class OffHeapArray {
+
+	final static int CHUNK_SIZE = 1 << 27;
+
+	private final static int CHUNK_BITS = 27;
+	private final static int CHUNK_MASK = CHUNK_SIZE - 1;
+
+	private final ByteBuffer[] chunks;
+	private final long length;
+
+	private OffHeapArray(ByteBuffer[] chunks, long length) {
+		this.chunks = chunks;
+		this.length = length;
+	}
+
+	/**
+	 * Allocates a zeroed area.
+	 *
+	 * @param length The length in bytes.
+	 * @return The area.
+	 */
+	static OffHeapArray allocate(long length) {
+		ByteBuffer[] chunks = new ByteBuffer[chunkCount(length)];
+
+		for (int chunk = 0; chunk < chunks.length; chunk++) {
+			chunks[chunk] = ByteBuffer.allocateDirect(chunkLength(length, chunk));
+		}
+
+		return new OffHeapArray(chunks, length);
+	}
+
+	/**
+	 * Maps a part of a file read-only; the mapping stays valid after the channel has been closed.
+	 *
+	 * @param channel The channel of the file.
+	 * @param position The position of the area in the file.
+	 * @param length The length in bytes.
+	 * @return The area.
+	 * @throws IOException If the file cannot be mapped.
+	 */
+	static OffHeapArray map(FileChannel channel, long position, long length) throws IOException {
+		ByteBuffer[] chunks = new ByteBuffer[chunkCount(length)];
+
+		for (int chunk = 0; chunk < chunks.length; chunk++) {
+			chunks[chunk] = channel.map(FileChannel.MapMode.READ_ONLY, position + ((long) chunk << CHUNK_BITS), chunkLength(length, chunk));
+		}
+
+		return new OffHeapArray(chunks, length);
+	}
+
+	/**
+	 * @param newLength The length of the new area in bytes.
+	 * @return A new area with the content of this one, cut or filled with zeros to the new length.
+	 */
+	OffHeapArray copyOf(long newLength) {
+		OffHeapArray copy = allocate(newLength);
+		long copyLength = Math.min(length, newLength);
+
+		for (int chunk = 0; chunk < copy.chunks.length && ((long) chunk << CHUNK_BITS) < copyLength; chunk++) {
+			ByteBuffer source = chunks[chunk].duplicate();
+			source.position(0).limit((int) Math.min(source.capacity(), copyLength - ((long) chunk << CHUNK_BITS)));
+			copy.chunks[chunk].duplicate().put(source);
+		}
+
+		return copy;
+	}
+
+	/**
+	 * @return The length in bytes.
+	 */
+	long length() {
+		return length;
+	}
+
+	long getLong(long index) {
+		long offset = index << 3;
+		return chunks[(int) (offset >>> CHUNK_BITS)].getLong((int) offset & CHUNK_MASK);
+	}
+
+	void putLong(long index, long value) {
+		long offset = index << 3;
+		chunks[(int) (offset >>> CHUNK_BITS)].putLong((int) offset & CHUNK_MASK, value);
+	}
+
+	int getInt(long index) {
+		long offset = index << 2;
+		return chunks[(int) (offset >>> CHUNK_BITS)].getInt((int) offset & CHUNK_MASK);
+	}
+
+	void putInt(long index, int value) {
+		long offset = index << 2;
+		chunks[(int) (offset >>> CHUNK_BITS)].putInt((int) offset & CHUNK_MASK, value);
+	}
+
+	byte getByte(long offset) {
+		return chunks[(int) (offset >>> CHUNK_BITS)].get((int) offset & CHUNK_MASK);
+	}
+
+	void putByte(long offset, byte value) {
+		chunks[(int) (offset >>> CHUNK_BITS)].put((int) offset & CHUNK_MASK, value);
+	}
+
+	/**
+	 * Fills the area with a {@code long} value.
+	 */
+	void fill(long value) {
+		for (long index = 0; index < length >>> 3; index++) {
+			putLong(index, value);
+		}
+	}
+
+	/**
+	 * Writes the first bytes of the area to a channel at its current position.
+	 *
+	 * @param channel The channel to write to.
+	 * @param byteCount The number of bytes to write.
+	 * @throws IOException If writing fails.
+	 */
+	void write(FileChannel channel, long byteCount) throws IOException {
+		for (int chunk = 0; chunk < chunks.length && ((long) chunk << CHUNK_BITS) < byteCount; chunk++) {
+			ByteBuffer buffer = chunks[chunk].duplicate();
+			buffer.position(0).limit((int) Math.min(buffer.capacity(), byteCount - ((long) chunk << CHUNK_BITS)));
+
+			while (buffer.hasRemaining()) {
+				channel.write(buffer);
+			}
+		}
+	}
+
+	private static int chunkCount(long length) {
+		return (int) ((length + CHUNK_SIZE - 1) >>> CHUNK_BITS);
+	}
+
+	private static int chunkLength(long length, int chunk) {
+		return (int) Math.min(CHUNK_SIZE, length - ((long) chunk << CHUNK_BITS));
+	}
+
+}
@@ -0,0 +1,530 @@
+package de.franzmue.nameencoder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import de.franzmue.nameencoder.NameEncoder;
+import de.franzmue.nameencoder.NameEncoderInterface;
+import de.franzmue.nameencoder.OffHeapArray;
+import de.franzmue.nameencoder.PackedCode;
+import de.franzmue.nameencoder.PackedPostingMap;
+import de.franzmue.nameencoder.PhoneticIndexFile;
+
+/**
+ * A read-only phonetic index kept outside of the heap, so its size does not prolong the garbage collection.
+ * <p>
+ * The index has the structure of a {@link PackedPostingMap}: a hash table of the packed codes with the numbers of their
+ * posting lists and one array of the ids of all posting lists. All of them are {@link OffHeapArray}s, and so are the few
+ * codes in their overflow form, which are kept by their UTF-8 bytes. The heap use of an index does not depend on the
+ * number of its records, neither while it is built by a {@link Builder} nor afterwards.
+ * </p><p>
+ * The memory of an index is laid out exactly like its file, so {@link #write(Path)} copies the memory to a file and
+ * {@link #open(Path, NameEncoderInterface)} maps the file into memory instead of loading it. File layout (big endian):
+ * </p>
+ * <pre>
+ * header  as of a {@link PhoneticIndexFile}: magic number "PHOH", format version, encoder class name and rule set fingerprint
+ * int     flags: 1 if the ids are stored as long values instead of int values
+ * long    number of records
+ * long    number of codes n
+ * long    number of slots of the hash table s, a power of two
+ * long    number of codes in their overflow form o
+ * long    length of the overflow code area
+ * long[]  s packed codes of the slots, -1 for a free slot
+ * int[]   s numbers of the posting lists of the slots
+ * long[]  n + 1 starts of the posting lists in the ids
+ * int[]   ids (or long[]) of the records, each posting list in the order the records have been added
+ * long[]  2 o numbers of the posting lists of the overflow codes, ascending, each with the offset of its code
+ * byte[]  overflow code area: the length and the UTF-8 bytes of each overflow code
+ * </pre>
+ * <p>
+ * Each area starts at a multiple of eight bytes. The index can be read by any number of threads.
+ * </p>
+ *
+ * @author Franz Muehlbauer, info@franz-mue.de
+ */
+public final class OffHeapPhoneticIndex {
+
+	final static int MAGIC = 0x50484f48; // "PHOH"
+	final static int VERSION = 1;
+
+	private final static long FREE = -1L;
+	private final static int LONG_IDS = 1;
+	private final static int MINIMUM_CAPACITY = 1024;
+	private final static int HEADER_LIMIT = 1 << 16;
+	private final static long[] NO_IDS = new long[0];
+
+	private final static String FORMAT_ERROR_MESSAGE = "The phonetic index file is damaged: ";
+	private final static String SIZE_ERROR_MESSAGE = "A posting list has too many ids for an array!\n";
+
+	private final NameEncoderInterface encoder;
+	private final long recordCount;
+	private final long codeCount;
+	private final boolean longIds;
+	private final OffHeapArray keys;
+	private final OffHeapArray lists;
+	private final OffHeapArray starts;
+	private final OffHeapArray ids;
+	private final long overflowCount;
+	private final OffHeapArray overflowLists; // pairs of list numbers and code offsets
+	private final OffHeapArray overflowCodes;
+
+	private OffHeapPhoneticIndex(NameEncoderInterface encoder, long recordCount, long codeCount, boolean longIds, OffHeapArray keys, OffHeapArray lists,
+			OffHeapArray starts, OffHeapArray ids, long overflowCount, OffHeapArray overflowLists, OffHeapArray overflowCodes) {
+		this.encoder = encoder;
+		this.recordCount = recordCount;
+		this.codeCount = codeCount;
+		this.longIds = longIds;
+		this.keys = keys;
+		this.lists = lists;
+		this.starts = starts;
+		this.ids = ids;
+		this.overflowCount = overflowCount;
+		this.overflowLists = overflowLists;
+		this.overflowCodes = overflowCodes;
+	}
+
+	public NameEncoderInterface getEncoder() {
+		return encoder;
+	}
+
+	/**
+	 * Returns the ids of all records with a name similar to the given name.
+	 *
+	 * @param name The name to look up.
+	 * @return The ids in the order they have been added; an empty array if there is no similar name.
+	 */
+	public long[] lookup(String name) {
+		return lookupCode(encoder.codeOf(name));
+	}
+
+	/**
+	 * Returns the ids of all records whose names have the given code.
+	 *
+	 * @param code The code to look up.
+	 * @return The ids in the order they have been added; an empty array if there is no such code.
+	 */
+	public long[] lookupCode(CharSequence code) {
+		long list = find(keys, lists, overflowLists, overflowCount, overflowCodes, PackedCode.pack(code), code);
+
+		if (list < 0)
+			return NO_IDS;
+
+		long start = starts.getLong(list);
+		long end = starts.getLong(list + 1);
+
+		if (end - start > Integer.MAX_VALUE - 8)
+			throw new RuntimeException(SIZE_ERROR_MESSAGE);
+
+		long[] listIds = new long[(int) (end - start)];
+
+		for (int index = 0; index < listIds.length; index++) {
+			listIds[index] = longIds ? ids.getLong(start + index) : ids.getInt(start + index);
+		}
+
+		return listIds;
+	}
+
+	/**
+	 * @param code The code.
+	 * @return The number of records with the code.
+	 */
+	public long count(CharSequence code) {
+		long list = find(keys, lists, overflowLists, overflowCount, overflowCodes, PackedCode.pack(code), code);
+
+		return list < 0 ? 0 : starts.getLong(list + 1) - starts.getLong(list);
+	}
+
+	/**
+	 * @return The number of distinct codes.
+	 */
+	public long getCodeCount() {
+		return codeCount;
+	}
+
+	/**
+	 * @return The number of records.
+	 */
+	public long size() {
+		return recordCount;
+	}
+
+	/**
+	 * Writes the index to a file which can be mapped by {@link #open(Path, NameEncoderInterface)}.
+	 *
+	 * @param file The file to write; an existing file is replaced.
+	 * @throws IOException If writing fails.
+	 * @throws IllegalArgumentException If the encoder is neither a NameEncoder nor a CachingNameEncoder.
+	 */
+	public void write(Path file) throws IOException {
+		ByteArrayOutputStream header = new ByteArrayOutputStream();
+
+		try (DataOutputStream output = new DataOutputStream(header)) {
+			PhoneticIndexFile.writeHeader(output, PhoneticIndexFile.nameEncoderOf(encoder), MAGIC, VERSION);
+			output.writeInt(longIds ? LONG_IDS : 0);
+			output.writeLong(recordCount);
+			output.writeLong(codeCount);
+			output.writeLong(keys.length() / 8);
+			output.writeLong(overflowCount);
+			output.writeLong(overflowCodes.length());
+
+			while (output.size() % 8 != 0) {
+				output.write(0);
+			}
+		}
+
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+			ByteBuffer buffer = ByteBuffer.wrap(header.toByteArray());
+
+			while (buffer.hasRemaining()) {
+				channel.write(buffer);
+			}
+
+			for (OffHeapArray area: new OffHeapArray[] { keys, lists, starts, ids, overflowLists, overflowCodes }) {
+				area.write(channel, area.length());
+
+				ByteBuffer padding = ByteBuffer.allocate((int) (-area.length() & 7));
+
+				while (padding.hasRemaining()) {
+					channel.write(padding);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Opens an index file by mapping it into memory.
+	 *
+	 * @param file The file to open.
+	 * @param encoder The encoder for the lookups; it has to be of the same class and with the same rules as the one which created the file.
+	 * @return The index.
+	 * @throws IOException If the file cannot be read, is not an index file or has been created by another encoder.
+	 * @throws IllegalArgumentException If the encoder is neither a NameEncoder nor a CachingNameEncoder.
+	 */
+	public static OffHeapPhoneticIndex open(Path file, NameEncoderInterface encoder) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			long fileLength = channel.size();
+			ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(fileLength, HEADER_LIMIT));
+			int position = PhoneticIndexFile.readHeader(header, file, encoder, MAGIC, VERSION);
+
+			if (position + 44 > header.limit())
+				throw new IOException(FORMAT_ERROR_MESSAGE + file);
+
+			boolean longIds = (header.getInt(position) & LONG_IDS) != 0;
+			long recordCount = header.getLong(position + 4);
+			long codeCount = header.getLong(position + 12);
+			long capacity = header.getLong(position + 20);
+			long overflowCount = header.getLong(position + 28);
+			long overflowCodesLength = header.getLong(position + 36);
+
+			long[] lengths = { 8 * capacity, 4 * capacity, 8 * (codeCount + 1), (longIds ? 8 : 4) * recordCount, 16 * overflowCount, overflowCodesLength };
+			OffHeapArray[] areas = new OffHeapArray[lengths.length];
+			long areaPosition = (position + 44 + 7) & ~7L;
+
+			for (int area = 0; area < areas.length; area++) {
+				if (lengths[area] < 0 || areaPosition + lengths[area] > fileLength)
+					throw new IOException(FORMAT_ERROR_MESSAGE + file);
+
+				areas[area] = OffHeapArray.map(channel, areaPosition, lengths[area]);
+				areaPosition = (areaPosition + lengths[area] + 7) & ~7L;
+			}
+
+			if (Long.bitCount(capacity) != 1 || areas[2].getLong(codeCount) != recordCount)
+				throw new IOException(FORMAT_ERROR_MESSAGE + file);
+
+			return new OffHeapPhoneticIndex(encoder, recordCount, codeCount, longIds, areas[0], areas[1], areas[2], areas[3], overflowCount, areas[4], areas[5]);
+		}
+	}
+
+	/**
+	 * Finds the posting list of a code in a hash table; codes in their overflow form are confirmed by their bytes.
+	 *
+	 * @return The number of the posting list or -1 if the code is missing.
+	 */
+	private static long find(OffHeapArray keys, OffHeapArray lists, OffHeapArray overflowLists, long overflowCount, OffHeapArray overflowCodes, long packedCode, CharSequence code) {
+		long mask = keys.length() / 8 - 1;
+		byte[] codeBytes = PackedCode.isOverflow(packedCode) ? code.toString().getBytes(StandardCharsets.UTF_8) : null;
+
+		for (long slot = PackedCode.hash(packedCode) & mask; keys.getLong(slot) != FREE; slot = (slot + 1) & mask) {
+			if (keys.getLong(slot) == packedCode) {
+				long list = lists.getInt(slot) & 0xffffffffL;
+
+				if (codeBytes == null || hasOverflowCode(overflowLists, overflowCount, overflowCodes, list, codeBytes))
+					return list;
+			}
+		}
+
+		return -1;
+	}
+
+	private static boolean hasOverflowCode(OffHeapArray overflowLists, long overflowCount, OffHeapArray overflowCodes, long list, byte[] codeBytes) {
+		long low = 0;
+		long high = overflowCount - 1;
+
+		while (low <= high) { // the overflow codes are ordered by their posting lists
+			long middle = (low + high) >>> 1;
+			long middleList = overflowLists.getLong(2 * middle);
+
+			if (middleList < list) {
+				low = middle + 1;
+			} else if (middleList > list) {
+				high = middle - 1;
+			} else {
+				long offset = overflowLists.getLong(2 * middle + 1);
+
+				if (overflowCodes.getInt(offset / 4) != codeBytes.length)
+					return false;
+
+				for (int index = 0; index < codeBytes.length; index++) {
+					if (overflowCodes.getByte(offset + 4 + index) != codeBytes[index])
+						return false;
+				}
+
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * Collects the records of an {@link OffHeapPhoneticIndex} outside of the heap; it is not thread safe.
+	 */
+	public final static class Builder {
+
+		private final NameEncoderInterface encoder;
+		private OffHeapArray packedCodes = OffHeapArray.allocate(8 * MINIMUM_CAPACITY); // the offsets of the overflow codes for codes in their overflow form
+		private OffHeapArray recordIds = OffHeapArray.allocate(8 * MINIMUM_CAPACITY);
+		private OffHeapArray codeBytes = OffHeapArray.allocate(MINIMUM_CAPACITY);
+		private long count;
+		private long codeBytesLength;
+		private boolean intRange = true;
+
+		/**
+		 * @param encoder The encoder calculating the codes.
+		 */
+		public Builder(NameEncoderInterface encoder) {
+			this.encoder = encoder;
+		}
+
+		/**
+		 * Adds a record.
+		 *
+		 * @param name The name of the record.
+		 * @param id The id of the record.
+		 * @return The Builder object itself in order to provide a fluent interface.
+		 */
+		public Builder add(String name, long id) {
+			long packedCode = encoder.packedCodeOf(name);
+
+			return PackedCode.isOverflow(packedCode) ? addOverflowCode(encoder.codeOf(name), id) : addPacked(packedCode, id);
+		}
+
+		/**
+		 * Adds a record with an already calculated code.
+		 *
+		 * @param code The code of the name of the record.
+		 * @param id The id of the record.
+		 * @return The Builder object itself in order to provide a fluent interface.
+		 */
+		public Builder addCode(CharSequence code, long id) {
+			long packedCode = PackedCode.pack(code);
+
+			return PackedCode.isOverflow(packedCode) ? addOverflowCode(code, id) : addPacked(packedCode, id);
+		}
+
+		/**
+		 * Encodes names in parallel and adds their records.
+		 *
+		 * @param names The names of the records.
+		 * @param ids The ids of the records in the order of the names.
+		 * @return The Builder object itself in order to provide a fluent interface.
+		 */
+		public Builder addNames(String[] names, long[] ids) {
+			long[] namePackedCodes = encoder.packedCodesOf(names);
+
+			for (int index = 0; index < names.length; index++) {
+				if (PackedCode.isOverflow(namePackedCodes[index]))
+					addOverflowCode(encoder.codeOf(names[index]), ids[index]);
+				else
+					addPacked(namePackedCodes[index], ids[index]);
+			}
+
+			return this;
+		}
+
+		private Builder addOverflowCode(CharSequence code, long id) {
+			byte[] bytes = code.toString().getBytes(StandardCharsets.UTF_8);
+			long offset = codeBytesLength;
+
+			codeBytesLength = codeEnd(offset, bytes);
+			codeBytes = putCode(codeBytes, offset, bytes);
+
+			return addPacked(offset, id, true);
+		}
+
+		private Builder addPacked(long packedCode, long id) {
+			return addPacked(packedCode, id, false);
+		}
+
+		private Builder addPacked(long value, long id, boolean overflow) {
+			if (8 * count == packedCodes.length()) {
+				packedCodes = packedCodes.copyOf(2 * packedCodes.length());
+				recordIds = recordIds.copyOf(2 * recordIds.length());
+			}
+
+			packedCodes.putLong(count, overflow ? ~value : value); // the offsets of overflow codes become negative like their packed codes
+			recordIds.putLong(count++, id);
+			intRange &= id == (int) id;
+
+			return this;
+		}
+
+		/**
+		 * Builds the index of all records added so far; the builder must not be used afterwards.
+		 *
+		 * @return The index.
+		 */
+		public OffHeapPhoneticIndex build() {
+			// first pass: the posting list of each record, which replaces its packed code, and the number of ids of each list
+
+			OffHeapArray keys = newKeys(MINIMUM_CAPACITY);
+			OffHeapArray lists = OffHeapArray.allocate(4L * MINIMUM_CAPACITY);
+			OffHeapArray counts = OffHeapArray.allocate(8L * MINIMUM_CAPACITY);
+			OffHeapArray overflowLists = OffHeapArray.allocate(16L * MINIMUM_CAPACITY);
+			OffHeapArray overflowCodes = OffHeapArray.allocate(MINIMUM_CAPACITY); // each distinct overflow code only once
+			long overflowCodesLength = 0;
+			long listCount = 0;
+			long overflowCount = 0;
+
+			for (long index = 0; index < count; index++) {
+				long value = packedCodes.getLong(index);
+				CharSequence code = value < 0 ? overflowCode(~value) : null;
+				long packedCode = value < 0 ? PackedCode.pack(code) : value;
+				long list = find(keys, lists, overflowLists, overflowCount, overflowCodes, packedCode, code);
+
+				if (list < 0) {
+					list = listCount++;
+
+					if (8 * listCount > counts.length())
+						counts = counts.copyOf(2 * counts.length());
+
+					if (code != null) {
+						if (16 * (overflowCount + 1) > overflowLists.length())
+							overflowLists = overflowLists.copyOf(2 * overflowLists.length());
+
+						byte[] bytes = code.toString().getBytes(StandardCharsets.UTF_8);
+						overflowLists.putLong(2 * overflowCount, list);
+						overflowLists.putLong(2 * overflowCount + 1, overflowCodesLength);
+						overflowCodes = putCode(overflowCodes, overflowCodesLength, bytes);
+						overflowCodesLength = codeEnd(overflowCodesLength, bytes);
+						overflowCount++;
+					}
+
+					insert(keys, lists, packedCode, list);
+
+					if (2 * listCount > keys.length() / 8) { // at most half of the slots are used
+						OffHeapArray oldKeys = keys;
+						OffHeapArray oldLists = lists;
+						keys = newKeys(2 * oldKeys.length() / 8);
+						lists = OffHeapArray.allocate(2 * oldLists.length());
+
+						for (long slot = 0; slot < oldKeys.length() / 8; slot++) {
+							if (oldKeys.getLong(slot) != FREE)
+								insert(keys, lists, oldKeys.getLong(slot), oldLists.getInt(slot) & 0xffffffffL);
+						}
+					}
+				}
+
+				packedCodes.putLong(index, list);
+				counts.putLong(list, counts.getLong(list) + 1);
+			}
+
+			// second pass: the ids of the records at the positions of their posting lists
+
+			OffHeapArray starts = OffHeapArray.allocate(8 * (listCount + 1));
+
+			for (long list = 0; list < listCount; list++) {
+				starts.putLong(list + 1, starts.getLong(list) + counts.getLong(list));
+				counts.putLong(list, starts.getLong(list)); // from now on the next position of each list
+			}
+
+			OffHeapArray ids = OffHeapArray.allocate((intRange ? 4 : 8) * count);
+
+			for (long index = 0; index < count; index++) {
+				long list = packedCodes.getLong(index);
+				long position = counts.getLong(list);
+				counts.putLong(list, position + 1);
+
+				if (intRange)
+					ids.putInt(position, (int) recordIds.getLong(index));
+				else
+					ids.putLong(position, recordIds.getLong(index));
+			}
+
+			packedCodes = null;
+			recordIds = null;
+			codeBytes = null;
+
+			return new OffHeapPhoneticIndex(encoder, count, listCount, !intRange, keys, lists, starts, ids, overflowCount, overflowLists.copyOf(16 * overflowCount), overflowCodes.copyOf(overflowCodesLength));
+		}
+
+		private String overflowCode(long offset) {
+			byte[] bytes = new byte[codeBytes.getInt(offset / 4)];
+
+			for (int index = 0; index < bytes.length; index++) {
+				bytes[index] = codeBytes.getByte(offset + 4 + index);
+			}
+
+			return new String(bytes, StandardCharsets.UTF_8);
+		}
+
+		private static long codeEnd(long offset, byte[] bytes) {
+			return (offset + 4 + bytes.length + 3) & ~3L; // the lengths are read as ints
+		}
+
+		/**
+		 * Puts the length and the bytes of a code at an offset, growing the area if needed.
+		 *
+		 * @return The area or its grown copy.
+		 */
+		private static OffHeapArray putCode(OffHeapArray area, long offset, byte[] bytes) {
+			long end = codeEnd(offset, bytes);
+			OffHeapArray target = end > area.length() ? area.copyOf(Math.max(2 * area.length(), end)) : area;
+
+			target.putInt(offset / 4, bytes.length);
+
+			for (int index = 0; index < bytes.length; index++) {
+				target.putByte(offset + 4 + index, bytes[index]);
+			}
+
+			return target;
+		}
+
+		private static OffHeapArray newKeys(long capacity) {
+			OffHeapArray keys = OffHeapArray.allocate(8 * capacity);
+			keys.fill(FREE);
+
+			return keys;
+		}
+
+		private static void insert(OffHeapArray keys, OffHeapArray lists, long packedCode, long list) {
+			long mask = keys.length() / 8 - 1;
+			long slot = PackedCode.hash(packedCode) & mask;
+
+			while (keys.getLong(slot) != FREE) {
+				slot = (slot + 1) & mask;
+			}
+
+			keys.putLong(slot, packedCode);
+			lists.putInt(slot, (int) list);
+		}
+
+	}
+
+}
@@ -0,0 +1,147 @@
+package de.franzmue.nameencoder;
+
+/**
+ * Packs codes into a single {@code long} in order to keep and compare them without a {@link String} object.
+ * <p>
+ * The codes of the encoders consist of few lower case letters. A code of up to {@value #MAXIMUM_LENGTH} letters
+ * {@code a} to {@code z} is packed exactly by 5 bits per letter, the first letter in the highest bits below the sign bit
+ * and unused letters as zero bits. So two such packed codes are equal if their codes are equal, and they compare like
+ * their codes by {@link String#compareTo}. The empty code is packed to {@value #EMPTY}.
+ * </p><p>
+ * Any other code, e. g. a longer one, is packed in its overflow form: the sign bit and a 63 bit hash of the code. Equal
+ * codes still have equal packed codes, but different codes may have the same overflow form, so equal overflow forms
+ * have to be confirmed by comparing the codes themselves; see {@link #isOverflow(long)}.
+ * </p>
+ *
+ * @author Franz Muehlbauer, info@franz-mue.de
+ */
+public final class PackedCode {
+
+	public final static int MAXIMUM_LENGTH = 12;
+	public final static long EMPTY = 0L;
+
+	private final static String OVERFLOW_ERROR_MESSAGE = "The packed code %016x is an overflow form and cannot be unpacked!%n";
+
+	private final static int SYMBOL_BITS = 5;
+	private final static int SYMBOL_MASK = (1 << SYMBOL_BITS) - 1;
+	private final static int FIRST_SHIFT = Long.SIZE - 1 - SYMBOL_BITS; // the first letter follows the sign bit
+	private final static int LAST_SHIFT = FIRST_SHIFT - (MAXIMUM_LENGTH - 1) * SYMBOL_BITS;
+	private final static long OVERFLOW_BIT = Long.MIN_VALUE;
+	private final static long HASH_PRIME = 0x100000001b3L;
+	private final static long HASH_OFFSET = 0xcbf29ce484222325L;
+	private final static long MIXING_CONSTANT = 0x9e3779b97f4a7c15L;
+
+	private PackedCode() {
+	}
+
+	/**
+	 * @param code The code to pack.
+	 * @return The exactly packed code or, if the code cannot be packed exactly, its overflow form.
+	 */
+	public static long pack(CharSequence code) {
+		int length = code.length();
+
+		if (length > MAXIMUM_LENGTH)
+			return overflowOf(code);
+
+		long packedCode = EMPTY;
+		int shift = FIRST_SHIFT;
+
+		for (int index = 0; index < length; index++) {
+			int symbol = code.charAt(index) - ('a' - 1);
+
+			if (symbol < 1 || symbol > 26)
+				return overflowOf(code);
+
+			packedCode |= (long) symbol << shift;
+			shift -= SYMBOL_BITS;
+		}
+
+		return packedCode;
+	}
+
+	/**
+	 * @param code The code.
+	 * @return Can the code be packed exactly?
+	 */
+	public static boolean canPack(CharSequence code) {
+		return !isOverflow(pack(code));
+	}
+
+	/**
+	 * @param packedCode The packed code.
+	 * @return Is the code packed in its overflow form, i. e. can other codes have the same packed code?
+	 */
+	public static boolean isOverflow(long packedCode) {
+		return packedCode < 0;
+	}
+
+	/**
+	 * @param packedCode An exactly packed code.
+	 * @return The code.
+	 * @throws IllegalArgumentException If the packed code is an overflow form.
+	 */
+	public static String unpack(long packedCode) {
+		if (isOverflow(packedCode))
+			throw new IllegalArgumentException(String.format(OVERFLOW_ERROR_MESSAGE, packedCode));
+
+		char[] code = new char[MAXIMUM_LENGTH];
+		int length = 0;
+
+		for (int shift = FIRST_SHIFT; length < MAXIMUM_LENGTH; shift -= SYMBOL_BITS) {
+			int symbol = (int) (packedCode >>> shift) & SYMBOL_MASK;
+
+			if (symbol == 0)
+				break;
+
+			code[length++] = (char) (symbol + ('a' - 1));
+		}
+
+		return new String(code, 0, length);
+	}
+
+	/**
+	 * @param packedCode An exactly packed code.
+	 * @return The length of the code.
+	 * @throws IllegalArgumentException If the packed code is an overflow form.
+	 */
+	public static int length(long packedCode) {
+		if (isOverflow(packedCode))
+			throw new IllegalArgumentException(String.format(OVERFLOW_ERROR_MESSAGE, packedCode));
+
+		// the trailing zero bits are the unused letters, the bits below the last possible letter and less than a letter
+		return packedCode == EMPTY ? 0 : MAXIMUM_LENGTH - (Long.numberOfTrailingZeros(packedCode) - LAST_SHIFT) / SYMBOL_BITS;
+	}
+
+	/**
+	 * Compares packed codes; exactly packed codes are ordered like their codes, overflow forms come first.
+	 *
+	 * @return A negative number, zero or a positive number if the first packed code is less than, equal to or greater than the second one.
+	 */
+	public static int compare(long packedCode, long otherPackedCode) {
+		return Long.compare(packedCode, otherPackedCode);
+	}
+
+	/**
+	 * Spreads the bits of a packed code over the 32 bits of a hash, also for hash tables using its lowest bits.
+	 *
+	 * @param packedCode The packed code.
+	 * @return The hash of the packed code.
+	 */
+	public static int hash(long packedCode) {
+		long hash = packedCode * MIXING_CONSTANT;
+
+		return (int) (hash ^ (hash >>> 32));
+	}
+
+	private static long overflowOf(CharSequence code) { // FNV-1a over the characters
+		long hash = HASH_OFFSET;
+
+		for (int index = 0; index < code.length(); index++) {
+			hash = (hash ^ code.charAt(index)) * HASH_PRIME;
+		}
+
+		return OVERFLOW_BIT | (hash ^ (hash >>> 31));
+	}
+
+}
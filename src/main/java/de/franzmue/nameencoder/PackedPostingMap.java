@@ -0,0 +1,353 @@
+package de.franzmue.nameencoder;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.LongConsumer;
+import java.util.stream.IntStream;
+
+import de.franzmue.nameencoder.NameEncoderInterface;
+import de.franzmue.nameencoder.PackedCode;
+import de.franzmue.nameencoder.Postings;
+
+/**
+ * An immutable map from codes to the ids of their records, kept in primitive arrays instead of objects per code or id.
+ * <p>
+ * The exactly packed codes (see {@link PackedCode}) are kept in an open addressing hash table with linear probing. Each
+ * slot holds a packed code and the number of its posting list. The posting lists follow each other in one array of ids,
+ * so a code costs no object of its own, however many or few ids it has: the few very large clusters like {@code milr}
+ * are one stretch of the array, and the many codes of a single record take one table slot and one id. The ids are kept
+ * as {@code int} values if all of them fit, otherwise as {@code long} values.
+ * </p><p>
+ * Codes which have to be packed in their overflow form are rare; they are kept by their code strings in a separate map.
+ * </p><p>
+ * The map is built at once by a {@link Builder}. It is not changed afterwards and can be read by any number of threads
+ * without locking.
+ * </p>
+ *
+ * @author Franz Muehlbauer, info@franz-mue.de
+ */
+public final class PackedPostingMap {
+
+	private final static long[] NO_IDS = new long[0];
+	private final static long FREE = -1L; // an overflow form, which is never kept in the table
+	private final static int MINIMUM_CAPACITY = 16;
+
+	private final static String OVERFLOW_ERROR_MESSAGE = "Packed codes in their overflow form have to be given by their codes!\n";
+	private final static String LENGTH_ERROR_MESSAGE = "There have to be as many ids as names!\n";
+	private final static String SIZE_ERROR_MESSAGE = "The map is too large for arrays!\n";
+
+	private final long[] keys;
+	private final int[] lists; // the number of the posting list of each slot
+	private final int[] starts; // the start of each posting list in the ids and the end of the last one
+	private final int[] intIds;
+	private final long[] longIds;
+	private final Map<String, long[]> overflowPostings;
+	private final long size;
+
+	private PackedPostingMap(long[] keys, int[] lists, int[] starts, int[] intIds, long[] longIds, Map<String, long[]> overflowPostings, long size) {
+		this.keys = keys;
+		this.lists = lists;
+		this.starts = starts;
+		this.intIds = intIds;
+		this.longIds = longIds;
+		this.overflowPostings = overflowPostings;
+		this.size = size;
+	}
+
+	/**
+	 * Returns the ids of all records with the given code.
+	 *
+	 * @param code The code to look up.
+	 * @return The ids in the order they have been added; an empty array if there is no such code.
+	 */
+	public long[] lookup(CharSequence code) {
+		long packedCode = PackedCode.pack(code);
+
+		if (PackedCode.isOverflow(packedCode)) {
+			long[] ids = overflowPostings.get(code.toString());
+
+			return ids == null ? NO_IDS : ids.clone();
+		}
+
+		return lookupPacked(packedCode);
+	}
+
+	/**
+	 * Returns the ids of all records with the given exactly packed code.
+	 *
+	 * @param packedCode The packed code to look up.
+	 * @return The ids in the order they have been added; an empty array if there is no such code.
+	 * @throws IllegalArgumentException If the packed code is an overflow form.
+	 */
+	public long[] lookupPacked(long packedCode) {
+		int list = listOf(packedCode);
+
+		if (list < 0)
+			return NO_IDS;
+
+		int start = starts[list];
+		int end = starts[list + 1];
+
+		if (longIds != null)
+			return Arrays.copyOfRange(longIds, start, end);
+
+		long[] ids = new long[end - start];
+
+		for (int index = start; index < end; index++) {
+			ids[index - start] = intIds[index];
+		}
+
+		return ids;
+	}
+
+	/**
+	 * Calls the given action for each id with the given exactly packed code without copying the ids.
+	 *
+	 * @param packedCode The packed code to look up.
+	 * @param action The action to call.
+	 * @throws IllegalArgumentException If the packed code is an overflow form.
+	 */
+	public void forEachId(long packedCode, LongConsumer action) {
+		int list = listOf(packedCode);
+
+		if (list < 0)
+			return;
+
+		for (int index = starts[list]; index < starts[list + 1]; index++) {
+			action.accept(longIds != null ? longIds[index] : intIds[index]);
+		}
+	}
+
+	/**
+	 * @param packedCode The exactly packed code.
+	 * @return The number of records with the code.
+	 * @throws IllegalArgumentException If the packed code is an overflow form.
+	 */
+	public int count(long packedCode) {
+		int list = listOf(packedCode);
+
+		return list < 0 ? 0 : starts[list + 1] - starts[list];
+	}
+
+	/**
+	 * @return The number of distinct codes.
+	 */
+	public int getCodeCount() {
+		return starts.length - 1 + overflowPostings.size();
+	}
+
+	/**
+	 * @return The number of records.
+	 */
+	public long size() {
+		return size;
+	}
+
+	private int listOf(long packedCode) {
+		if (PackedCode.isOverflow(packedCode))
+			throw new IllegalArgumentException(OVERFLOW_ERROR_MESSAGE);
+
+		int mask = keys.length - 1;
+
+		for (int slot = PackedCode.hash(packedCode) & mask; keys[slot] != FREE; slot = (slot + 1) & mask) {
+			if (keys[slot] == packedCode)
+				return lists[slot];
+		}
+
+		return -1;
+	}
+
+	/**
+	 * Collects the records of a {@link PackedPostingMap}; it is not thread safe.
+	 */
+	public final static class Builder {
+
+		private long[] packedCodes = new long[MINIMUM_CAPACITY];
+		private long[] ids = new long[MINIMUM_CAPACITY];
+		private int count;
+		private final Map<String, Postings> overflowPostings = new HashMap<>();
+
+		/**
+		 * Adds a record.
+		 *
+		 * @param code The code of the name of the record.
+		 * @param id The id of the record.
+		 * @return The Builder object itself in order to provide a fluent interface.
+		 */
+		public Builder add(CharSequence code, long id) {
+			long packedCode = PackedCode.pack(code);
+
+			if (PackedCode.isOverflow(packedCode))
+				addOverflow(code.toString(), id);
+			else
+				addPacked(packedCode, id);
+
+			return this;
+		}
+
+		/**
+		 * Adds a record with an exactly packed code.
+		 *
+		 * @param packedCode The packed code of the name of the record.
+		 * @param id The id of the record.
+		 * @return The Builder object itself in order to provide a fluent interface.
+		 * @throws IllegalArgumentException If the packed code is an overflow form.
+		 */
+		public Builder addPacked(long packedCode, long id) {
+			if (PackedCode.isOverflow(packedCode))
+				throw new IllegalArgumentException(OVERFLOW_ERROR_MESSAGE);
+
+			if (count == packedCodes.length) {
+				if (count == Integer.MAX_VALUE - 8)
+					throw new RuntimeException(SIZE_ERROR_MESSAGE);
+
+				int capacity = (int) Math.min(2L * count, Integer.MAX_VALUE - 8);
+				packedCodes = Arrays.copyOf(packedCodes, capacity);
+				ids = Arrays.copyOf(ids, capacity);
+			}
+
+			packedCodes[count] = packedCode;
+			ids[count++] = id;
+
+			return this;
+		}
+
+		/**
+		 * Encodes names in parallel and adds their records.
+		 *
+		 * @param encoder The encoder calculating the codes; it is shared by the encoding threads.
+		 * @param names The names of the records.
+		 * @param recordIds The ids of the records in the order of the names.
+		 * @return The Builder object itself in order to provide a fluent interface.
+		 */
+		public Builder addNames(NameEncoderInterface encoder, String[] names, long[] recordIds) {
+			if (names.length != recordIds.length)
+				throw new IllegalArgumentException(LENGTH_ERROR_MESSAGE);
+
+			long[] namePackedCodes = encoder.packedCodesOf(names);
+
+			for (int index = 0; index < names.length; index++) {
+				if (PackedCode.isOverflow(namePackedCodes[index]))
+					addOverflow(encoder.codeOf(names[index]), recordIds[index]);
+				else
+					addPacked(namePackedCodes[index], recordIds[index]);
+			}
+
+			return this;
+		}
+
+		private void addOverflow(String code, long id) {
+			overflowPostings.computeIfAbsent(code, key -> new Postings()).add(id);
+		}
+
+		/**
+		 * Builds the map of all records added so far.
+		 *
+		 * @return The immutable map.
+		 */
+		public PackedPostingMap build() {
+			// first pass: the posting list of each record and the number of ids of each list
+
+			long[] keys = newKeys(MINIMUM_CAPACITY);
+			int[] lists = new int[MINIMUM_CAPACITY];
+			int[] counts = new int[MINIMUM_CAPACITY];
+			int[] recordLists = new int[count];
+			int listCount = 0;
+
+			for (int index = 0; index < count; index++) {
+				long packedCode = packedCodes[index];
+				int mask = keys.length - 1;
+				int slot = PackedCode.hash(packedCode) & mask;
+
+				while (keys[slot] != FREE && keys[slot] != packedCode) {
+					slot = (slot + 1) & mask;
+				}
+
+				int list;
+
+				if (keys[slot] == FREE) {
+					if (listCount == counts.length)
+						counts = Arrays.copyOf(counts, 2 * listCount);
+
+					list = listCount++;
+					keys[slot] = packedCode;
+					lists[slot] = list;
+
+					if (2 * listCount > keys.length) { // at most half of the slots are used
+						long[] oldKeys = keys;
+						int[] oldLists = lists;
+						keys = newKeys(2 * oldKeys.length);
+						lists = new int[keys.length];
+						rehash(oldKeys, oldLists, keys, lists);
+					}
+				} else {
+					list = lists[slot];
+				}
+
+				recordLists[index] = list;
+				counts[list]++;
+			}
+
+			// second pass: the ids of the records at the positions of their posting lists
+
+			int[] starts = new int[listCount + 1];
+
+			for (int list = 0; list < listCount; list++) {
+				starts[list + 1] = starts[list] + counts[list];
+			}
+
+			int[] positions = Arrays.copyOf(starts, listCount);
+			boolean intRange = IntStream.range(0, count).allMatch(index -> ids[index] == (int) ids[index]);
+			int[] intIds = intRange ? new int[count] : null;
+			long[] longIds = intRange ? null : new long[count];
+
+			for (int index = 0; index < count; index++) {
+				int position = positions[recordLists[index]]++;
+
+				if (intRange)
+					intIds[position] = (int) ids[index];
+				else
+					longIds[position] = ids[index];
+			}
+
+			Map<String, long[]> overflowIds = new HashMap<>();
+			long size = count;
+
+			for (Map.Entry<String, Postings> entry: overflowPostings.entrySet()) {
+				overflowIds.put(entry.getKey(), entry.getValue().toArray());
+				size += entry.getValue().size();
+			}
+
+			return new PackedPostingMap(keys, lists, starts, intIds, longIds, Collections.unmodifiableMap(overflowIds), size);
+		}
+
+		private static long[] newKeys(int capacity) {
+			long[] keys = new long[capacity];
+			Arrays.fill(keys, FREE);
+
+			return keys;
+		}
+
+		private static void rehash(long[] oldKeys, int[] oldLists, long[] keys, int[] lists) {
+			int mask = keys.length - 1;
+
+			for (int oldSlot = 0; oldSlot < oldKeys.length; oldSlot++) {
+				if (oldKeys[oldSlot] == FREE)
+					continue;
+
+				int slot = PackedCode.hash(oldKeys[oldSlot]) & mask;
+
+				while (keys[slot] != FREE) {
+					slot = (slot + 1) & mask;
+				}
+
+				keys[slot] = oldKeys[oldSlot];
+				lists[slot] = oldLists[oldSlot];
+			}
+		}
+
+	}
+
+}
@@ -0,0 +1,236 @@
+package de.franzmue.nameencoder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+import java.util.stream.Stream;
+
+import de.franzmue.nameencoder.CodeTree;
+import de.franzmue.nameencoder.NameEncoderInterface;
+import de.franzmue.nameencoder.Postings;
+
+/**
+ * An in-memory index of record ids grouped by the codes of their names.
+ * <p>
+ * Each record is added once with its name and id. Looking up all records with a name similar to a given name then
+ * takes one encoding plus one hash lookup instead of comparing the name with every stored name.
+ * </p><p>
+ * Names whose codes differ by a few characters, e. g. {@code milbaur} and {@code milbar}, are found by
+ * {@link #lookupSimilar(String, int)}. The codes are then kept in a {@link CodeTree} as well, which is built on the first
+ * such lookup and searched instead of comparing the code with every stored code.
+ * </p><p>
+ * The index can be read and extended concurrently by any number of threads.
+ * </p>
+ *
+ * @author Franz Muehlbauer, info@franz-mue.de
+ */
+public class PhoneticIndex {
+
+	private final static long[] NO_IDS = new long[0];
+	private final static String DISTANCE_ERROR_MESSAGE = "The maximum distance must not be negative!\n";
+
+	private final NameEncoderInterface encoder;
+	private final ConcurrentHashMap<String, Postings> postings = new ConcurrentHashMap<>();
+	private final LongAdder size = new LongAdder();
+	private volatile CodeTree codeTree;
+
+	/**
+	 * @param encoder The encoder calculating the codes; it has to be thread safe for concurrent use of the index.
+	 */
+	public PhoneticIndex(NameEncoderInterface encoder) {
+		this.encoder = encoder;
+	}
+
+	public NameEncoderInterface getEncoder() {
+		return encoder;
+	}
+
+	/**
+	 * Adds a record.
+	 *
+	 * @param name The name of the record.
+	 * @param id The id of the record.
+	 * @return The PhoneticIndex object itself in order to provide a fluent interface.
+	 */
+	public PhoneticIndex add(String name, long id) {
+		addCode(encoder.codeOf(name), id);
+		return this;
+	}
+
+	/**
+	 * Adds a record with an already calculated code.
+	 *
+	 * @param code The code of the name of the record.
+	 * @param id The id of the record.
+	 * @return The PhoneticIndex object itself in order to provide a fluent interface.
+	 */
+	public PhoneticIndex addCode(String code, long id) {
+		Postings codePostings = postings.get(code);
+
+		if (codePostings == null) {
+			codePostings = postings.computeIfAbsent(code, key -> new Postings());
+			CodeTree currentTree = codeTree;
+
+			if (currentTree != null)
+				currentTree.add(code); // a known code is not added again
+		}
+
+		codePostings.add(id);
+		size.increment();
+
+		return this;
+	}
+
+	/**
+	 * Adds a stream of records in parallel.
+	 *
+	 * @param records The records to add.
+	 * @param nameFunction Returns the name of a record.
+	 * @param idFunction Returns the id of a record.
+	 * @return The PhoneticIndex object itself in order to provide a fluent interface.
+	 */
+	public <T> PhoneticIndex addAll(Stream<T> records, Function<? super T, String> nameFunction, ToLongFunction<? super T> idFunction) {
+		records.parallel().forEach(record -> add(nameFunction.apply(record), idFunction.applyAsLong(record)));
+		return this;
+	}
+
+	/**
+	 * Returns the ids of all records with a name similar to the given name.
+	 *
+	 * @param name The name to look up.
+	 * @return The ids in the order they have been added; an empty array if there is no similar name.
+	 */
+	public long[] lookup(String name) {
+		return lookupCode(encoder.codeOf(name));
+	}
+
+	/**
+	 * Returns the ids of all records whose names have the given code.
+	 *
+	 * @param code The code to look up.
+	 * @return The ids in the order they have been added; an empty array if there is no such code.
+	 */
+	public long[] lookupCode(String code) {
+		Postings codePostings = postings.get(code);
+
+		return codePostings == null ? NO_IDS : codePostings.toArray();
+	}
+
+	/**
+	 * Returns the ids of all records whose codes are within an edit distance of the code of the given name.
+	 *
+	 * @param name The name to look up.
+	 * @param maxDistance The maximum number of inserted, deleted or replaced characters of the codes.
+	 * @return The ids ordered by the distance of their codes, then by the codes and then in the order they have been added.
+	 */
+	public long[] lookupSimilar(String name, int maxDistance) {
+		return lookupSimilarCode(encoder.codeOf(name), maxDistance);
+	}
+
+	/**
+	 * Returns the ids of all records whose codes are within an edit distance of the given code.
+	 *
+	 * @param code The code to look up.
+	 * @param maxDistance The maximum number of inserted, deleted or replaced characters of the codes.
+	 * @return The ids ordered by the distance of their codes, then by the codes and then in the order they have been added.
+	 */
+	public long[] lookupSimilarCode(String code, int maxDistance) {
+		List<long[]> idArrays = new ArrayList<>();
+		int count = 0;
+
+		for (String similarCode: similarCodes(code, maxDistance)) {
+			long[] ids = lookupCode(similarCode);
+			idArrays.add(ids);
+			count += ids.length;
+		}
+
+		long[] similarIds = new long[count];
+		int position = 0;
+
+		for (long[] ids: idArrays) {
+			System.arraycopy(ids, 0, similarIds, position, ids.length);
+			position += ids.length;
+		}
+
+		return similarIds;
+	}
+
+	/**
+	 * Returns all codes of the index within an edit distance of the given code.
+	 *
+	 * @param code The code to look up.
+	 * @param maxDistance The maximum number of inserted, deleted or replaced characters.
+	 * @return The codes ordered by their distance and then by the codes themselves.
+	 */
+	public List<String> similarCodes(String code, int maxDistance) {
+		if (maxDistance < 0)
+			throw new IllegalArgumentException(DISTANCE_ERROR_MESSAGE);
+
+		List<String> codes = new ArrayList<>();
+
+		for (CodeTree.Match match: codeTree().search(code, maxDistance)) {
+			codes.add(match.code);
+		}
+
+		return codes;
+	}
+
+	private CodeTree codeTree() {
+		CodeTree currentTree = codeTree;
+
+		if (currentTree == null) {
+			synchronized (this) {
+				currentTree = codeTree;
+
+				if (currentTree == null) {
+					currentTree = new CodeTree();
+
+					for (String code: postings.keySet()) {
+						currentTree.add(code);
+					}
+
+					codeTree = currentTree;
+
+					if (currentTree.size() != postings.size()) { // codes added concurrently may have been missed by the first pass
+						for (String code: postings.keySet()) {
+							currentTree.add(code);
+						}
+					}
+				}
+			}
+		}
+
+		return currentTree;
+	}
+
+	/**
+	 * Calls the given action for each code and its ids in no particular order.
+	 *
+	 * @param action The action to call.
+	 */
+	public void forEach(BiConsumer<String, long[]> action) {
+		for (Map.Entry<String, Postings> entry: postings.entrySet()) {
+			action.accept(entry.getKey(), entry.getValue().toArray());
+		}
+	}
+
+	/**
+	 * @return The number of distinct codes.
+	 */
+	public int getCodeCount() {
+		return postings.size();
+	}
+
+	/**
+	 * @return The number of records.
+	 */
+	public long size() {
+		return size.sum();
+	}
+
+}
@@ -0,0 +1,435 @@
+package de.franzmue.nameencoder;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import de.franzmue.nameencoder.CachingNameEncoder;
+import de.franzmue.nameencoder.NameEncoder;
+import de.franzmue.nameencoder.NameEncoderInterface;
+import de.franzmue.nameencoder.PhoneticIndex;
+
+/**
+ * A read-only phonetic index stored in a file which is memory mapped instead of being loaded.
+ * <p>
+ * The file is written once from a {@link PhoneticIndex}. Lookups are served directly from the mapped file by a binary
+ * search in the sorted code dictionary, so opening even a large index takes no time and no heap.
+ * </p><p>
+ * File layout (big endian):
+ * </p>
+ * <pre>
+ * int     magic number "PHIX"
+ * int     format version
+ * int     length of the encoder class name, followed by the UTF-8 bytes of the name
+ * byte[]  rule set fingerprint of the encoder (32 bytes)
+ * int     number of codes n
+ * long    number of records
+ * int     length of the code area
+ * int     length of the posting area
+ * int[]   n + 1 offsets of the codes in the code area
+ * int[]   n + 1 offsets of the posting lists in the posting area
+ * byte[]  code area: the UTF-8 bytes of the codes sorted by their unsigned bytes
+ * byte[]  posting area: for each code the number of ids, the first id and the differences between the sorted ids as varints
+ * </pre>
+ * <p>
+ * An index file is only opened by an encoder of the same class and with the same rules as the one which created it.
+ * </p>
+ *
+ * @author Franz Muehlbauer, info@franz-mue.de
+ */
+public final class PhoneticIndexFile {
+
+	final static int MAGIC = 0x50484958; // "PHIX"
+	final static int VERSION = 1;
+
+	private final static int FINGERPRINT_LENGTH = 32;
+	private final static long[] NO_IDS = new long[0];
+
+	private final static String FORMAT_ERROR_MESSAGE = "The file is not a phonetic index file: ";
+	private final static String VERSION_ERROR_MESSAGE = "The phonetic index file has an unsupported version: ";
+	private final static String ENCODER_ERROR_MESSAGE = "The phonetic index file has been created by another encoder: ";
+	private final static String RULES_ERROR_MESSAGE = "The phonetic index file has been created by other rules of the encoder: ";
+	private final static String DAMAGED_ERROR_MESSAGE = "The phonetic index file is damaged: ";
+	private final static String ENCODER_TYPE_ERROR_MESSAGE = "Index files are only supported for a NameEncoder or a CachingNameEncoder: ";
+	private final static String SIZE_ERROR_MESSAGE = "The phonetic index is too large for one file!\n";
+
+	private final NameEncoderInterface encoder;
+	private final ByteBuffer buffer;
+	private final int codeCount;
+	private final long recordCount;
+	private final int codeOffsetsPosition;
+	private final int postingOffsetsPosition;
+	private final int codeAreaPosition;
+	private final int postingAreaPosition;
+
+	private PhoneticIndexFile(NameEncoderInterface encoder, ByteBuffer buffer, int position) {
+		this.encoder = encoder;
+		this.buffer = buffer;
+
+		codeCount = buffer.getInt(position);
+		recordCount = buffer.getLong(position + 4);
+		int codeAreaLength = buffer.getInt(position + 12);
+
+		codeOffsetsPosition = position + 20;
+		postingOffsetsPosition = codeOffsetsPosition + (codeCount + 1) * 4;
+		codeAreaPosition = postingOffsetsPosition + (codeCount + 1) * 4;
+		postingAreaPosition = codeAreaPosition + codeAreaLength;
+	}
+
+	/**
+	 * Writes a phonetic index to a file.
+	 *
+	 * @param index The index to write; its encoder has to be a NameEncoder or a CachingNameEncoder.
+	 * @param file The file to write; an existing file is replaced.
+	 * @throws IOException If writing fails.
+	 * @throws IllegalArgumentException If the encoder of the index is neither a NameEncoder nor a CachingNameEncoder.
+	 */
+	public static void write(PhoneticIndex index, Path file) throws IOException {
+		NameEncoder encoder = nameEncoderOf(index.getEncoder());
+
+		List<byte[]> codes = new ArrayList<>(index.getCodeCount());
+		List<long[]> postings = new ArrayList<>(index.getCodeCount());
+
+		index.forEach((code, ids) -> {
+			codes.add(code.getBytes(StandardCharsets.UTF_8));
+			postings.add(ids);
+		});
+
+		Integer[] order = new Integer[codes.size()];
+
+		for (int position = 0; position < order.length; position++) {
+			order[position] = position;
+		}
+
+		Arrays.sort(order, (left, right) -> compare(codes.get(left), codes.get(right)));
+
+		long codeAreaLength = 0;
+		long postingAreaLength = 0;
+		long recordCount = 0;
+
+		for (int position = 0; position < order.length; position++) {
+			long[] ids = postings.get(order[position]);
+			Arrays.sort(ids);
+
+			codeAreaLength += codes.get(order[position]).length;
+			postingAreaLength += postingLength(ids);
+			recordCount += ids.length;
+		}
+
+		byte[] className = encoder.getClass().getName().getBytes(StandardCharsets.UTF_8);
+		long fileLength = 4 * 3 + className.length + FINGERPRINT_LENGTH + 4 + 8 + 4 * 2
+			+ (order.length + 1) * 8L + codeAreaLength + postingAreaLength;
+
+		if (fileLength > Integer.MAX_VALUE)
+			throw new IOException(SIZE_ERROR_MESSAGE);
+
+		try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), 1 << 16))) {
+			writeHeader(output, encoder, MAGIC, VERSION);
+			output.writeInt(order.length);
+			output.writeLong(recordCount);
+			output.writeInt((int) codeAreaLength);
+			output.writeInt((int) postingAreaLength);
+
+			int offset = 0;
+			output.writeInt(offset);
+
+			for (int position = 0; position < order.length; position++) {
+				offset += codes.get(order[position]).length;
+				output.writeInt(offset);
+			}
+
+			offset = 0;
+			output.writeInt(offset);
+
+			for (int position = 0; position < order.length; position++) {
+				offset += postingLength(postings.get(order[position]));
+				output.writeInt(offset);
+			}
+
+			for (int position = 0; position < order.length; position++) {
+				output.write(codes.get(order[position]));
+			}
+
+			for (int position = 0; position < order.length; position++) {
+				long[] ids = postings.get(order[position]);
+				long previousId = 0;
+
+				writeVarint(output, ids.length);
+
+				for (long id: ids) {
+					writeVarint(output, id - previousId); // unsigned; the first id is stored as it is
+					previousId = id;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Opens a phonetic index file by mapping it into memory.
+	 *
+	 * @param file The file to open.
+	 * @param encoder The encoder for the lookups; it has to be of the same class and with the same rules as the one which created the file.
+	 * @return The index.
+	 * @throws IOException If the file cannot be read, is not an index file, is damaged or has been created by another encoder.
+	 * @throws IllegalArgumentException If the encoder is neither a NameEncoder nor a CachingNameEncoder.
+	 */
+	public static PhoneticIndexFile open(Path file, NameEncoderInterface encoder) throws IOException {
+		ByteBuffer buffer;
+
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()); // the mapping stays valid after closing
+		}
+
+		int position = readHeader(buffer, file, encoder, MAGIC, VERSION);
+
+		if (position + 20L > buffer.limit())
+			throw new IOException(DAMAGED_ERROR_MESSAGE + file);
+
+		long codeCount = buffer.getInt(position);
+		long codeAreaLength = buffer.getInt(position + 12);
+		long postingAreaLength = buffer.getInt(position + 16);
+		long codeOffsetsPosition = position + 20L;
+		long postingOffsetsPosition = codeOffsetsPosition + (codeCount + 1) * 4;
+
+		if (codeCount < 0 || codeAreaLength < 0 || postingAreaLength < 0 || buffer.getLong(position + 4) < 0
+			|| postingOffsetsPosition + (codeCount + 1) * 4 + codeAreaLength + postingAreaLength > buffer.limit()
+			|| buffer.getInt((int) (codeOffsetsPosition + codeCount * 4)) != codeAreaLength
+			|| buffer.getInt((int) (postingOffsetsPosition + codeCount * 4)) != postingAreaLength)
+			throw new IOException(DAMAGED_ERROR_MESSAGE + file);
+
+		return new PhoneticIndexFile(encoder, buffer, position);
+	}
+
+	/**
+	 * Writes the header identifying an index file and the encoder which created it.
+	 *
+	 * @param output The stream of the file.
+	 * @param encoder The encoder.
+	 * @param magic The magic number of the file format.
+	 * @param version The version of the file format.
+	 * @throws IOException If writing fails.
+	 */
+	static void writeHeader(DataOutputStream output, NameEncoder encoder, int magic, int version) throws IOException {
+		byte[] className = encoder.getClass().getName().getBytes(StandardCharsets.UTF_8);
+
+		output.writeInt(magic);
+		output.writeInt(version);
+		output.writeInt(className.length);
+		output.write(className);
+		output.write(encoder.getRuleSetFingerprint());
+	}
+
+	/**
+	 * Checks the header of an index file written by {@link #writeHeader(DataOutputStream, NameEncoder, int, int)}.
+	 *
+	 * @param buffer The start of the file.
+	 * @param file The file for the error messages.
+	 * @param encoder The encoder which is going to use the file.
+	 * @param magic The magic number of the file format.
+	 * @param version The version of the file format.
+	 * @return The position following the header.
+	 * @throws IOException If the file has another format or version or has been created by another encoder.
+	 */
+	static int readHeader(ByteBuffer buffer, Path file, NameEncoderInterface encoder, int magic, int version) throws IOException {
+		NameEncoder nameEncoder = nameEncoderOf(encoder);
+
+		if (buffer.limit() < 12 || buffer.getInt(0) != magic)
+			throw new IOException(FORMAT_ERROR_MESSAGE + file);
+
+		if (buffer.getInt(4) != version)
+			throw new IOException(VERSION_ERROR_MESSAGE + buffer.getInt(4));
+
+		int classNameLength = buffer.getInt(8);
+
+		if (classNameLength < 0 || 12L + classNameLength + FINGERPRINT_LENGTH > buffer.limit())
+			throw new IOException(FORMAT_ERROR_MESSAGE + file);
+
+		byte[] className = new byte[classNameLength];
+		int position = 12;
+		buffer.position(position);
+		buffer.get(className);
+		position += className.length;
+
+		String encoderClassName = new String(className, StandardCharsets.UTF_8);
+
+		if (!encoderClassName.equals(nameEncoder.getClass().getName()))
+			throw new IOException(ENCODER_ERROR_MESSAGE + encoderClassName);
+
+		byte[] fingerprint = new byte[FINGERPRINT_LENGTH];
+		buffer.get(fingerprint);
+		position += FINGERPRINT_LENGTH;
+
+		if (!Arrays.equals(fingerprint, nameEncoder.getRuleSetFingerprint()))
+			throw new IOException(RULES_ERROR_MESSAGE + encoderClassName);
+
+		return position;
+	}
+
+	/**
+	 * Returns the encoder whose class and rules identify an index file.
+	 *
+	 * @param encoder A NameEncoder or a CachingNameEncoder.
+	 * @return The encoder itself or the encoder used by the CachingNameEncoder.
+	 * @throws IllegalArgumentException If the encoder is neither a NameEncoder nor a CachingNameEncoder.
+	 */
+	static NameEncoder nameEncoderOf(NameEncoderInterface encoder) {
+		if (encoder instanceof CachingNameEncoder)
+			return nameEncoderOf(((CachingNameEncoder) encoder).getEncoder());
+
+		if (!(encoder instanceof NameEncoder))
+			throw new IllegalArgumentException(ENCODER_TYPE_ERROR_MESSAGE + encoder.getClass().getName());
+
+		return (NameEncoder) encoder;
+	}
+
+	/**
+	 * Returns the ids of all records with a name similar to the given name.
+	 *
+	 * @param name The name to look up.
+	 * @return The ids in ascending order; an empty array if there is no similar name.
+	 */
+	public long[] lookup(String name) {
+		return lookupCode(encoder.codeOf(name));
+	}
+
+	/**
+	 * Returns the ids of all records whose names have the given code.
+	 *
+	 * @param code The code to look up.
+	 * @return The ids in ascending order; an empty array if there is no such code.
+	 */
+	public long[] lookupCode(String code) {
+		int codeIndex = find(code.getBytes(StandardCharsets.UTF_8));
+
+		if (codeIndex < 0)
+			return NO_IDS;
+
+		int[] position = { postingAreaPosition + buffer.getInt(postingOffsetsPosition + codeIndex * 4) };
+		long[] ids = new long[(int) readVarint(position)];
+		long id = 0;
+
+		for (int index = 0; index < ids.length; index++) {
+			id += readVarint(position);
+			ids[index] = id;
+		}
+
+		return ids;
+	}
+
+	/**
+	 * @return The number of distinct codes.
+	 */
+	public int getCodeCount() {
+		return codeCount;
+	}
+
+	/**
+	 * @return The number of records.
+	 */
+	public long size() {
+		return recordCount;
+	}
+
+	private int find(byte[] code) {
+		int low = 0;
+		int high = codeCount - 1;
+
+		while (low <= high) {
+			int middle = (low + high) >>> 1;
+			int comparison = compareCodeAt(middle, code);
+
+			if (comparison < 0)
+				low = middle + 1;
+			else if (comparison > 0)
+				high = middle - 1;
+			else
+				return middle;
+		}
+
+		return -1;
+	}
+
+	private int compareCodeAt(int codeIndex, byte[] code) {
+		int start = codeAreaPosition + buffer.getInt(codeOffsetsPosition + codeIndex * 4);
+		int end = codeAreaPosition + buffer.getInt(codeOffsetsPosition + codeIndex * 4 + 4);
+		int length = Math.min(end - start, code.length);
+
+		for (int index = 0; index < length; index++) {
+			int comparison = Integer.compare(buffer.get(start + index) & 0xff, code[index] & 0xff);
+
+			if (comparison != 0)
+				return comparison;
+		}
+
+		return Integer.compare(end - start, code.length);
+	}
+
+	private static int compare(byte[] left, byte[] right) {
+		int length = Math.min(left.length, right.length);
+
+		for (int index = 0; index < length; index++) {
+			int comparison = Integer.compare(left[index] & 0xff, right[index] & 0xff);
+
+			if (comparison != 0)
+				return comparison;
+		}
+
+		return Integer.compare(left.length, right.length);
+	}
+
+	private static int postingLength(long[] ids) {
+		int length = varintLength(ids.length);
+		long previousId = 0;
+
+		for (long id: ids) {
+			length += varintLength(id - previousId);
+			previousId = id;
+		}
+
+		return length;
+	}
+
+	private static int varintLength(long value) {
+		int length = 1;
+
+		while ((value & ~0x7fL) != 0) {
+			value >>>= 7;
+			length++;
+		}
+
+		return length;
+	}
+
+	private static void writeVarint(DataOutputStream output, long value) throws IOException {
+		while ((value & ~0x7fL) != 0) {
+			output.write((int) ((value & 0x7f) | 0x80));
+			value >>>= 7;
+		}
+
+		output.write((int) value);
+	}
+
+	private long readVarint(int[] position) { // the position is passed by reference
+		long value = 0;
+		int shift = 0;
+		byte b;
+
+		do {
+			b = buffer.get(position[0]++);
+			value |= (long) (b & 0x7f) << shift;
+			shift += 7;
+		} while (b < 0);
+
+		return value;
+	}
+
+}
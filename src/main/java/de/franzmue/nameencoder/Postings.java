@@ -0,0 +1,39 @@
+package de.franzmue.nameencoder;
+
+import java.util.Arrays;
+
+/**
+ * The growing list of record ids of one code, used by {@link PhoneticIndex} and {@link PackedPostingMap}.
+ * <p>
+ * The ids are added by any number of threads; the lock is hardly ever contended.
+ * </p>
+ *
+ * @author Franz Muehlbauer, info@franz-mue.de
+ */
+final class Postings {
+
+	private long[] ids = new long[1];
+	private int count;
+
+	synchronized void add(long id) {
+		if (count == ids.length)
+			ids = Arrays.copyOf(ids, count * 2);
+
+		ids[count++] = id;
+	}
+
+	/**
+	 * @return The number of ids.
+	 */
+	synchronized int size() {
+		return count;
+	}
+
+	/**
+	 * @return A copy of the ids in the order they have been added.
+	 */
+	synchronized long[] toArray() {
+		return Arrays.copyOf(ids, count);
+	}
+
+}
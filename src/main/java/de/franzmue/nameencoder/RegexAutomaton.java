@@ -0,0 +1,1102 @@
+package de.franzmue.nameencoder;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import de.franzmue.nameencoder.RegexRule;
+
+/**
+ * A deterministic automaton applying a regex rule to a code without backtracking.
+ * <p>
+ * Only the regex subset used by name encoding rules is compiled: literal characters, escaped characters, character classes
+ * with ranges and negation, {@code .}, capturing groups, alternation, the greedy quantifier {@code ?} and the anchors
+ * {@code ^} and {@code $} at the beginning and the end of the input. Such a regex describes a finite set of fixed length
+ * alternatives. They are expanded in the order {@link java.util.regex.Pattern} tries them, so the match found at a position
+ * is the one of the alternative with the highest priority, and the group offsets of each alternative are constants.
+ * The alternatives are compiled into a DFA over the equivalence classes of the characters, which finds that match
+ * by reading each character once.
+ * </p><p>
+ * The replacement may contain escaped characters and group references {@code $n}. Regex rules outside of the subset are
+ * not compiled by {@link #compile(RegexRule)}; codes containing line terminators or surrogates, on which {@code .} and
+ * {@code $} behave differently, are rewritten by the matcher of the pattern.
+ * </p>
+ *
+ * @author Franz Muehlbauer, info@franz-mue.de
+ */
+final class RegexAutomaton implements CodeRewriter {
+
+	private final static int NONE = Integer.MAX_VALUE; // no alternative; the lowest priority
+	private final static int ABORTED = -2;
+	private final static int DEAD = -1;
+	private final static int UNSET = -1;
+	private final static int ABORT_CLASS = -1;
+	private final static int TABLE_SIZE = 256;
+
+	private final static int MAXIMUM_ALTERNATIVES = 256;
+	private final static int MAXIMUM_STATES = 4096;
+	private final static int MAXIMUM_EXPLICIT_CHARACTERS = 1024;
+
+	private final static String METACHARACTERS = "\\[](){}.*+?^$|";
+
+	private final static String TABLES_ERROR_MESSAGE = "The stored tables of the regex automaton are inconsistent: ";
+
+	private final RegexRewriter fallback;
+
+	private final int[] lengths;
+	private final int[][] groupStarts;
+	private final int[][] groupEnds;
+	private final String[] replacementTexts;
+	private final int[] replacementGroups;
+	private final String literalSource;
+
+	private final long[] requiredCharacters;
+	private final String[] requiredLiterals;
+	private final CharSet[] firstSets;
+	private final CharSet[] lastSets;
+
+	private final int[] classTable;
+	private final char[] extraCharacters;
+	private final int[] extraClasses;
+	private final int otherClass;
+	private final int classCount;
+
+	private final int startState;
+	private final int anchoredStartState;
+	private final int[] transitions;
+	private final int[] accepted;
+	private final int[] acceptedAtEnd;
+	private final int[] pending;
+
+	private RegexAutomaton(RegexRule rule, List<Alternative> alternatives, int groupCount, Replacement replacement) throws UnsupportedRegexException {
+		fallback = new RegexRewriter(rule);
+
+		int alternativeCount = alternatives.size();
+		lengths = new int[alternativeCount];
+		groupStarts = new int[alternativeCount][];
+		groupEnds = new int[alternativeCount][];
+		requiredCharacters = new long[alternativeCount];
+		requiredLiterals = new String[alternativeCount];
+		firstSets = new CharSet[alternativeCount];
+		lastSets = new CharSet[alternativeCount];
+
+		for (int index = 0; index < alternativeCount; index++) {
+			Alternative alternative = alternatives.get(index);
+			lengths[index] = alternative.sets.length;
+			requiredLiterals[index] = alternative.requiredLiterals();
+			requiredCharacters[index] = CharacterMask.of(requiredLiterals[index]);
+			firstSets[index] = alternative.startAnchored ? alternative.sets[0] : null;
+			lastSets[index] = alternative.endAnchored ? alternative.sets[alternative.sets.length - 1] : null;
+			groupStarts[index] = Arrays.copyOf(alternative.groupStarts, groupCount + 1);
+			groupEnds[index] = Arrays.copyOf(alternative.groupEnds, groupCount + 1);
+			groupStarts[index][0] = 0;
+			groupEnds[index][0] = lengths[index];
+		}
+
+		replacementTexts = replacement.texts;
+		replacementGroups = replacement.groups;
+		literalSource = literalSourceOf(alternatives, replacement);
+		classTable = new int[TABLE_SIZE];
+
+		// characters which no set distinguishes share one class
+
+		TreeSet<Character> explicitCharacters = new TreeSet<>();
+		int explicitCount = 0;
+
+		for (Alternative alternative: alternatives) {
+			for (CharSet set: alternative.sets) {
+				for (int range = 0; range < set.ranges.length; range += 2) {
+					explicitCount += set.ranges[range + 1] - set.ranges[range] + 1;
+
+					if (explicitCount > MAXIMUM_EXPLICIT_CHARACTERS)
+						throw new UnsupportedRegexException();
+
+					for (char c = set.ranges[range]; c <= set.ranges[range + 1] && c >= set.ranges[range]; c++) {
+						if (c >= TABLE_SIZE && !isAbortCharacter(c))
+							explicitCharacters.add(c);
+					}
+				}
+			}
+		}
+
+		Map<BitSet, Integer> classesBySignature = new HashMap<>();
+		List<Character> representatives = new ArrayList<>();
+
+		for (char c = 0; c < TABLE_SIZE; c++) {
+			classTable[c] = isAbortCharacter(c) ? ABORT_CLASS : classOf(c, alternatives, classesBySignature, representatives);
+		}
+
+		extraCharacters = new char[explicitCharacters.size()];
+		extraClasses = new int[explicitCharacters.size()];
+		int extraIndex = 0;
+
+		for (char c: explicitCharacters) {
+			extraCharacters[extraIndex] = c;
+			extraClasses[extraIndex++] = classOf(c, alternatives, classesBySignature, representatives);
+		}
+
+		char other = TABLE_SIZE;
+
+		while (explicitCharacters.contains(other) || isAbortCharacter(other)) {
+			other++;
+		}
+
+		otherClass = classOf(other, alternatives, classesBySignature, representatives);
+		classCount = representatives.size();
+
+		// the states are the sets of the alternatives still matching after reading the same number of characters
+
+		StateBuilder builder = new StateBuilder(alternatives, representatives);
+		BitSet all = new BitSet();
+		BitSet unanchored = new BitSet();
+
+		for (int index = 0; index < alternativeCount; index++) {
+			all.set(index);
+
+			if (!alternatives.get(index).startAnchored)
+				unanchored.set(index);
+		}
+
+		anchoredStartState = builder.stateOf(all, 0);
+		startState = builder.stateOf(unanchored, 0);
+		builder.buildTransitions();
+
+		transitions = builder.transitions.stream().mapToInt(Integer::intValue).toArray();
+		accepted = builder.accepted.stream().mapToInt(Integer::intValue).toArray();
+		acceptedAtEnd = builder.acceptedAtEnd.stream().mapToInt(Integer::intValue).toArray();
+		pending = builder.pending.stream().mapToInt(Integer::intValue).toArray();
+	}
+
+	private RegexAutomaton(RegexRule rule, DataInputStream input) throws IOException {
+		fallback = new RegexRewriter(rule);
+
+		lengths = readInts(input);
+		int alternativeCount = lengths.length;
+		groupStarts = new int[alternativeCount][];
+		groupEnds = new int[alternativeCount][];
+		requiredCharacters = new long[alternativeCount];
+		requiredLiterals = new String[alternativeCount];
+		firstSets = new CharSet[alternativeCount];
+		lastSets = new CharSet[alternativeCount];
+
+		for (int index = 0; index < alternativeCount; index++) {
+			groupStarts[index] = readInts(input);
+			groupEnds[index] = readInts(input);
+			requiredCharacters[index] = input.readLong();
+			requiredLiterals[index] = input.readUTF();
+			firstSets[index] = readCharSet(input);
+			lastSets[index] = readCharSet(input);
+		}
+
+		replacementTexts = new String[input.readInt()];
+
+		for (int index = 0; index < replacementTexts.length; index++) {
+			replacementTexts[index] = input.readUTF();
+		}
+
+		replacementGroups = readInts(input);
+		literalSource = input.readBoolean() ? input.readUTF() : null;
+
+		classTable = readInts(input);
+		extraCharacters = readChars(input);
+		extraClasses = readInts(input);
+		otherClass = input.readInt();
+		classCount = input.readInt();
+
+		startState = input.readInt();
+		anchoredStartState = input.readInt();
+		transitions = readInts(input);
+		accepted = readInts(input);
+		acceptedAtEnd = readInts(input);
+		pending = readInts(input);
+
+		if (!isConsistent())
+			throw new IOException(TABLES_ERROR_MESSAGE + rule);
+	}
+
+	/**
+	 * Compiles a regex rule.
+	 *
+	 * @param rule The rule to compile.
+	 * @return The automaton or null if the regex or the replacement is not in the supported subset.
+	 */
+	static RegexAutomaton compile(RegexRule rule) {
+		try {
+			Parser parser = new Parser(rule.getRegex());
+			List<Alternative> alternatives = parser.parse();
+
+			return new RegexAutomaton(rule, alternatives, parser.groupCount, new Replacement(rule.getDestination(), parser.groupCount));
+		} catch (UnsupportedRegexException exception) {
+			return null;
+		}
+	}
+
+	/**
+	 * Reads an automaton written by {@link #write(DataOutputStream)} without parsing the regex and building the DFA again.
+	 *
+	 * @param rule The compiled rule; its pattern is only needed for codes the automaton cannot handle.
+	 * @param input The stream to read the tables from.
+	 * @return The automaton.
+	 * @throws IOException If reading fails or the tables are inconsistent.
+	 */
+	static RegexAutomaton read(RegexRule rule, DataInputStream input) throws IOException {
+		return new RegexAutomaton(rule, input);
+	}
+
+	/**
+	 * Writes the tables of the automaton; the rule itself is not written.
+	 *
+	 * @param output The stream to write the tables to.
+	 * @throws IOException If writing fails.
+	 */
+	void write(DataOutputStream output) throws IOException {
+		writeInts(output, lengths);
+
+		for (int index = 0; index < lengths.length; index++) {
+			writeInts(output, groupStarts[index]);
+			writeInts(output, groupEnds[index]);
+			output.writeLong(requiredCharacters[index]);
+			output.writeUTF(requiredLiterals[index]);
+			writeCharSet(output, firstSets[index]);
+			writeCharSet(output, lastSets[index]);
+		}
+
+		output.writeInt(replacementTexts.length);
+
+		for (String text: replacementTexts) {
+			output.writeUTF(text);
+		}
+
+		writeInts(output, replacementGroups);
+		output.writeBoolean(literalSource != null);
+
+		if (literalSource != null)
+			output.writeUTF(literalSource);
+
+		writeInts(output, classTable);
+		writeChars(output, extraCharacters);
+		writeInts(output, extraClasses);
+		output.writeInt(otherClass);
+		output.writeInt(classCount);
+
+		output.writeInt(startState);
+		output.writeInt(anchoredStartState);
+		writeInts(output, transitions);
+		writeInts(output, accepted);
+		writeInts(output, acceptedAtEnd);
+		writeInts(output, pending);
+	}
+
+	/**
+	 * Checks the bounds of the read tables, so a damaged snapshot cannot make the matching fail.
+	 */
+	private boolean isConsistent() {
+		int stateCount = accepted.length;
+
+		if (replacementTexts.length != replacementGroups.length + 1 || classTable.length != TABLE_SIZE || extraClasses.length != extraCharacters.length
+			|| acceptedAtEnd.length != stateCount || pending.length != stateCount || (long) stateCount * classCount != transitions.length)
+			return false;
+
+		for (int index = 0; index < lengths.length; index++) {
+			if (lengths[index] < 0 || groupStarts[index].length != groupEnds[index].length)
+				return false;
+
+			for (int group = 0; group < groupStarts[index].length; group++) {
+				int start = groupStarts[index][group];
+				int end = groupEnds[index][group];
+
+				if (start != UNSET && (start < 0 || end < start || end > lengths[index]))
+					return false;
+			}
+		}
+
+		for (int group: replacementGroups) {
+			for (int index = 0; index < lengths.length; index++) {
+				if (group < 0 || group >= groupStarts[index].length)
+					return false;
+			}
+		}
+
+		for (int[] classes: new int[][] { classTable, extraClasses, { otherClass } }) {
+			for (int charClass: classes) {
+				if (charClass != ABORT_CLASS && (charClass < 0 || charClass >= classCount))
+					return false;
+			}
+		}
+
+		for (int[] states: new int[][] { transitions, { startState, anchoredStartState } }) {
+			for (int state: states) {
+				if (state < DEAD || state >= stateCount)
+					return false;
+			}
+		}
+
+		for (int[] alternatives: new int[][] { accepted, acceptedAtEnd, pending }) {
+			for (int alternative: alternatives) {
+				if (alternative != NONE && (alternative < 0 || alternative >= lengths.length))
+					return false;
+			}
+		}
+
+		return true;
+	}
+
+	private static void writeInts(DataOutputStream output, int[] values) throws IOException {
+		output.writeInt(values.length);
+
+		for (int value: values) {
+			output.writeInt(value);
+		}
+	}
+
+	private static int[] readInts(DataInputStream input) throws IOException {
+		int[] values = new int[input.readInt()];
+
+		for (int index = 0; index < values.length; index++) {
+			values[index] = input.readInt();
+		}
+
+		return values;
+	}
+
+	private static void writeChars(DataOutputStream output, char[] values) throws IOException {
+		output.writeInt(values.length);
+
+		for (char value: values) {
+			output.writeChar(value);
+		}
+	}
+
+	private static char[] readChars(DataInputStream input) throws IOException {
+		char[] values = new char[input.readInt()];
+
+		for (int index = 0; index < values.length; index++) {
+			values[index] = input.readChar();
+		}
+
+		return values;
+	}
+
+	private static void writeCharSet(DataOutputStream output, CharSet set) throws IOException {
+		output.writeBoolean(set != null);
+
+		if (set != null) {
+			output.writeBoolean(set.negated);
+			writeChars(output, set.ranges);
+		}
+	}
+
+	private static CharSet readCharSet(DataInputStream input) throws IOException {
+		if (!input.readBoolean())
+			return null;
+
+		boolean negated = input.readBoolean();
+
+		return new CharSet(negated, readChars(input));
+	}
+
+	/**
+	 * @return The compiled rule.
+	 */
+	RegexRule getRule() {
+		return fallback.getRule();
+	}
+
+	/**
+	 * Returns the literal source if the rule replaces a fixed string by a fixed string.
+	 * <p>
+	 * Such a rule gives the same result as a {@link ReplacementRule} with the literal source and destination.
+	 * </p>
+	 *
+	 * @return The string matched by the regex or null if the regex matches other strings or the replacement refers to groups.
+	 */
+	String getLiteralSource() {
+		return literalSource;
+	}
+
+	/**
+	 * @return The replacement of a rule with a literal source.
+	 */
+	String getLiteralDestination() {
+		return replacementTexts[0];
+	}
+
+	/**
+	 * Checks whether the regex cannot match any code lacking the given characters.
+	 *
+	 * @param absentCharacters The characters which do not occur in the code.
+	 * @return Does each alternative of the regex require one of the characters?
+	 */
+	boolean requiresAnyOf(Set<Character> absentCharacters) {
+		for (String literals: requiredLiterals) {
+			boolean excluded = false;
+
+			for (int index = 0; index < literals.length() && !excluded; index++) {
+				excluded = absentCharacters.contains(literals.charAt(index));
+			}
+
+			if (!excluded)
+				return false;
+		}
+
+		return true;
+	}
+
+	private static String literalSourceOf(List<Alternative> alternatives, Replacement replacement) {
+		if (alternatives.size() != 1 || replacement.groups.length > 0)
+			return null;
+
+		Alternative alternative = alternatives.get(0);
+
+		if (alternative.startAnchored || alternative.endAnchored)
+			return null;
+
+		StringBuilder source = new StringBuilder();
+
+		for (CharSet set: alternative.sets) {
+			if (set.negated || set.ranges.length != 2 || set.ranges[0] != set.ranges[1])
+				return null;
+
+			source.append(set.ranges[0]);
+		}
+
+		return source.toString();
+	}
+
+	private static int classOf(char c, List<Alternative> alternatives, Map<BitSet, Integer> classesBySignature, List<Character> representatives) {
+		BitSet signature = new BitSet();
+		int token = 0;
+
+		for (Alternative alternative: alternatives) {
+			for (CharSet set: alternative.sets) {
+				if (set.contains(c))
+					signature.set(token);
+
+				token++;
+			}
+		}
+
+		Integer charClass = classesBySignature.get(signature);
+
+		if (charClass == null) {
+			charClass = representatives.size();
+			classesBySignature.put(signature, charClass);
+			representatives.add(c);
+		}
+
+		return charClass;
+	}
+
+	private static boolean isAbortCharacter(char c) { // line terminators and surrogates
+		return c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029' || Character.isSurrogate(c);
+	}
+
+	private int classOf(char c) {
+		if (c < TABLE_SIZE)
+			return classTable[c];
+
+		if (isAbortCharacter(c))
+			return ABORT_CLASS;
+
+		if (extraCharacters.length > 0) {
+			int index = Arrays.binarySearch(extraCharacters, c);
+
+			if (index >= 0)
+				return extraClasses[index];
+		}
+
+		return otherClass;
+	}
+
+	@Override
+	public boolean canRewrite(CharSequence code, long characters) {
+		char last = code.charAt(code.length() - 1);
+
+		for (int index = 0; index < requiredCharacters.length; index++) {
+			if (CharacterMask.containsAll(characters, requiredCharacters[index])
+				&& (firstSets[index] == null || firstSets[index].contains(code.charAt(0)))
+				&& (lastSets[index] == null || lastSets[index].contains(last) || isAbortCharacter(last))) // $ also matches before a final line terminator
+				return true;
+		}
+
+		return false;
+	}
+
+	@Override
+	public String rewrite(String code) {
+		int length = code.length();
+
+		for (int start = 0; start < length; start++) {
+			int alternative = matchAt(code, start, length);
+
+			if (alternative == ABORTED)
+				return fallback.rewrite(code);
+
+			if (alternative != NONE) {
+				StringBuilder result = new StringBuilder(length + 16).append(code, 0, start);
+
+				return appendRewritten(code, start, alternative, result) ? result.toString() : fallback.rewrite(code);
+			}
+		}
+
+		return code;
+	}
+
+	@Override
+	public boolean rewrite(CharSequence code, StringBuilder result) {
+		int length = code.length();
+
+		for (int start = 0; start < length; start++) {
+			int alternative = matchAt(code, start, length);
+
+			if (alternative == ABORTED)
+				return fallback.rewrite(code, result);
+
+			if (alternative != NONE) {
+				int resultLength = result.length();
+				result.append(code, 0, start);
+
+				if (appendRewritten(code, start, alternative, result))
+					return true;
+
+				result.setLength(resultLength);
+
+				return fallback.rewrite(code, result);
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * Appends the code from the first match on with all matches replaced.
+	 *
+	 * @return False if the code has to be rewritten by the fallback.
+	 */
+	private boolean appendRewritten(CharSequence code, int start, int alternative, StringBuilder result) {
+		int length = code.length();
+
+		appendReplacement(code, start, alternative, result);
+
+		int position = start + lengths[alternative];
+		int copied = position;
+
+		while (position < length) {
+			alternative = matchAt(code, position, length);
+
+			if (alternative == ABORTED)
+				return false;
+
+			if (alternative == NONE) {
+				position++;
+			} else {
+				result.append(code, copied, position);
+				appendReplacement(code, position, alternative, result);
+				position += lengths[alternative];
+				copied = position;
+			}
+		}
+
+		result.append(code, copied, length);
+
+		return true;
+	}
+
+	private void appendReplacement(CharSequence code, int start, int alternative, StringBuilder result) {
+		result.append(replacementTexts[0]);
+
+		for (int index = 0; index < replacementGroups.length; index++) {
+			int group = replacementGroups[index];
+			int groupStart = groupStarts[alternative][group];
+
+			if (groupStart != UNSET) // like the matcher, a group which did not participate in the match is replaced by nothing
+				result.append(code, start + groupStart, start + groupEnds[alternative][group]);
+
+			result.append(replacementTexts[index + 1]);
+		}
+	}
+
+	/**
+	 * Returns the alternative with the highest priority matching at a position.
+	 */
+	private int matchAt(CharSequence code, int start, int length) {
+		int state = start == 0 ? anchoredStartState : startState;
+		int position = start;
+		int best = NONE;
+
+		while (state != DEAD) {
+			int candidate = position == length ? acceptedAtEnd[state] : accepted[state];
+
+			if (candidate < best)
+				best = candidate;
+
+			if (position == length || pending[state] >= best) // no alternative with a higher priority is left
+				break;
+
+			int charClass = classOf(code.charAt(position++));
+
+			if (charClass == ABORT_CLASS)
+				return ABORTED;
+
+			state = transitions[state * classCount + charClass];
+		}
+
+		return best;
+	}
+
+	private final static class StateBuilder {
+
+		private final List<Alternative> alternatives;
+		private final List<Character> representatives;
+
+		private final Map<String, Integer> statesByKey = new HashMap<>();
+		private final List<BitSet> remaining = new ArrayList<>();
+		private final List<Integer> depths = new ArrayList<>();
+
+		final List<Integer> transitions = new ArrayList<>();
+		final List<Integer> accepted = new ArrayList<>();
+		final List<Integer> acceptedAtEnd = new ArrayList<>();
+		final List<Integer> pending = new ArrayList<>();
+
+		StateBuilder(List<Alternative> alternatives, List<Character> representatives) {
+			this.alternatives = alternatives;
+			this.representatives = representatives;
+		}
+
+		int stateOf(BitSet alive, int depth) throws UnsupportedRegexException {
+			if (alive.isEmpty())
+				return DEAD;
+
+			String key = depth + ":" + alive;
+			Integer state = statesByKey.get(key);
+
+			if (state != null)
+				return state;
+
+			if (remaining.size() == MAXIMUM_STATES)
+				throw new UnsupportedRegexException();
+
+			int stateAccepted = NONE;
+			int stateAcceptedAtEnd = NONE;
+			BitSet stateRemaining = new BitSet();
+
+			for (int index = alive.nextSetBit(0); index >= 0; index = alive.nextSetBit(index + 1)) {
+				Alternative alternative = alternatives.get(index);
+
+				if (alternative.sets.length == depth) {
+					stateAcceptedAtEnd = Math.min(stateAcceptedAtEnd, index);
+
+					if (!alternative.endAnchored)
+						stateAccepted = Math.min(stateAccepted, index);
+				} else if (index < stateAccepted) { // alternatives of a lower priority than a match are never chosen
+					stateRemaining.set(index);
+				}
+			}
+
+			state = remaining.size();
+			statesByKey.put(key, state);
+			remaining.add(stateRemaining);
+			depths.add(depth);
+			accepted.add(stateAccepted);
+			acceptedAtEnd.add(stateAcceptedAtEnd);
+			pending.add(stateRemaining.isEmpty() ? NONE : stateRemaining.nextSetBit(0));
+
+			return state;
+		}
+
+		void buildTransitions() throws UnsupportedRegexException {
+			for (int state = 0; state < remaining.size(); state++) { // the list grows while the new states are added
+				BitSet stateRemaining = remaining.get(state);
+				int depth = depths.get(state);
+
+				for (char representative: representatives) {
+					BitSet next = new BitSet();
+
+					for (int index = stateRemaining.nextSetBit(0); index >= 0; index = stateRemaining.nextSetBit(index + 1)) {
+						if (alternatives.get(index).sets[depth].contains(representative))
+							next.set(index);
+					}
+
+					transitions.add(stateOf(next, depth + 1));
+				}
+			}
+		}
+
+	}
+
+	/**
+	 * A fixed length alternative of a regex.
+	 */
+	private final static class Alternative {
+
+		final static Alternative EMPTY = new Alternative(new CharSet[0], new int[0], new int[0], false, false);
+
+		final CharSet[] sets;
+		final int[] groupStarts;
+		final int[] groupEnds;
+		final boolean startAnchored;
+		final boolean endAnchored;
+
+		Alternative(CharSet[] sets, int[] groupStarts, int[] groupEnds, boolean startAnchored, boolean endAnchored) {
+			this.sets = sets;
+			this.groupStarts = groupStarts;
+			this.groupEnds = groupEnds;
+			this.startAnchored = startAnchored;
+			this.endAnchored = endAnchored;
+		}
+
+		/**
+		 * @return The alternative matching this one followed by the other or null if there is no such match.
+		 */
+		Alternative followedBy(Alternative other) {
+			if (endAnchored && other.sets.length > 0 || other.startAnchored && sets.length > 0)
+				return null;
+
+			int groupCount = Math.max(groupStarts.length, other.groupStarts.length);
+			int[] starts = Arrays.copyOf(groupStarts, groupCount);
+			int[] ends = Arrays.copyOf(groupEnds, groupCount);
+			Arrays.fill(starts, groupStarts.length, groupCount, UNSET);
+			Arrays.fill(ends, groupEnds.length, groupCount, UNSET);
+
+			for (int group = 0; group < other.groupStarts.length; group++) {
+				if (other.groupStarts[group] != UNSET) {
+					starts[group] = other.groupStarts[group] + sets.length;
+					ends[group] = other.groupEnds[group] + sets.length;
+				}
+			}
+
+			CharSet[] combinedSets = Arrays.copyOf(sets, sets.length + other.sets.length);
+			System.arraycopy(other.sets, 0, combinedSets, sets.length, other.sets.length);
+
+			return new Alternative(combinedSets, starts, ends, startAnchored || other.startAnchored, endAnchored || other.endAnchored);
+		}
+
+		/**
+		 * @return The characters which are the only one of their set.
+		 */
+		String requiredLiterals() {
+			StringBuilder literals = new StringBuilder();
+
+			for (CharSet set: sets) {
+				if (!set.negated && set.ranges.length == 2 && set.ranges[0] == set.ranges[1])
+					literals.append(set.ranges[0]);
+			}
+
+			return literals.toString();
+		}
+
+		Alternative withGroup(int group) {
+			int groupCount = Math.max(groupStarts.length, group + 1);
+			int[] starts = Arrays.copyOf(groupStarts, groupCount);
+			int[] ends = Arrays.copyOf(groupEnds, groupCount);
+			Arrays.fill(starts, groupStarts.length, groupCount, UNSET);
+			Arrays.fill(ends, groupEnds.length, groupCount, UNSET);
+			starts[group] = 0;
+			ends[group] = sets.length;
+
+			return new Alternative(sets, starts, ends, startAnchored, endAnchored);
+		}
+
+	}
+
+	/**
+	 * A set of characters given by sorted ranges.
+	 */
+	private final static class CharSet {
+
+		final static CharSet ANY = new CharSet(true, new char[] { '\n', '\n', '\r', '\r', '\u0085', '\u0085', '\u2028', '\u2029' });
+
+		final boolean negated;
+		final char[] ranges;
+
+		CharSet(boolean negated, char[] ranges) {
+			this.negated = negated;
+			this.ranges = ranges;
+		}
+
+		static CharSet of(char c) {
+			return new CharSet(false, new char[] { c, c });
+		}
+
+		boolean contains(char c) {
+			for (int range = 0; range < ranges.length; range += 2) {
+				if (c >= ranges[range] && c <= ranges[range + 1])
+					return !negated;
+			}
+
+			return negated;
+		}
+
+	}
+
+	/**
+	 * Expands a regex of the supported subset into its alternatives in the order of their priority.
+	 */
+	private final static class Parser {
+
+		private final String regex;
+		private int position = 0;
+		int groupCount = 0;
+
+		Parser(String regex) {
+			this.regex = regex;
+		}
+
+		List<Alternative> parse() throws UnsupportedRegexException {
+			List<Alternative> alternatives = parseAlternation();
+
+			if (position < regex.length() || alternatives.isEmpty())
+				throw new UnsupportedRegexException();
+
+			for (Alternative alternative: alternatives) {
+				if (alternative.sets.length == 0) // empty matches are not supported
+					throw new UnsupportedRegexException();
+			}
+
+			return alternatives;
+		}
+
+		private List<Alternative> parseAlternation() throws UnsupportedRegexException {
+			List<Alternative> alternatives = new ArrayList<>(parseSequence());
+
+			while (position < regex.length() && regex.charAt(position) == '|') {
+				position++;
+				alternatives.addAll(parseSequence());
+				checkSize(alternatives);
+			}
+
+			return alternatives;
+		}
+
+		private List<Alternative> parseSequence() throws UnsupportedRegexException {
+			List<Alternative> alternatives = Collections.singletonList(Alternative.EMPTY);
+
+			while (position < regex.length() && regex.charAt(position) != '|' && regex.charAt(position) != ')') {
+				List<Alternative> items = parseItem();
+				List<Alternative> combined = new ArrayList<>();
+
+				for (Alternative alternative: alternatives) {
+					for (Alternative item: items) {
+						Alternative sequence = alternative.followedBy(item);
+
+						if (sequence != null)
+							combined.add(sequence);
+					}
+
+					checkSize(combined);
+				}
+
+				alternatives = combined;
+			}
+
+			return alternatives;
+		}
+
+		private List<Alternative> parseItem() throws UnsupportedRegexException {
+			char c = regex.charAt(position++);
+			List<Alternative> alternatives;
+			boolean anchor = false;
+
+			switch (c) {
+			case '(':
+				if (position < regex.length() && regex.charAt(position) == '?') // special constructs
+					throw new UnsupportedRegexException();
+
+				int group = ++groupCount;
+				alternatives = new ArrayList<>();
+
+				for (Alternative alternative: parseAlternation()) {
+					alternatives.add(alternative.withGroup(group));
+				}
+
+				if (position == regex.length() || regex.charAt(position++) != ')')
+					throw new UnsupportedRegexException();
+
+				break;
+			case '[':
+				alternatives = singleSet(parseClass());
+				break;
+			case '.':
+				alternatives = singleSet(CharSet.ANY);
+				break;
+			case '^':
+				alternatives = Collections.singletonList(new Alternative(new CharSet[0], new int[0], new int[0], true, false));
+				anchor = true;
+				break;
+			case '$':
+				alternatives = Collections.singletonList(new Alternative(new CharSet[0], new int[0], new int[0], false, true));
+				anchor = true;
+				break;
+			case '\\':
+				alternatives = singleSet(CharSet.of(parseEscape()));
+				break;
+			default:
+				if (METACHARACTERS.indexOf(c) >= 0 && c != ']' && c != '}' || Character.isSurrogate(c))
+					throw new UnsupportedRegexException();
+
+				alternatives = singleSet(CharSet.of(c));
+			}
+
+			if (position < regex.length()) {
+				char quantifier = regex.charAt(position);
+
+				if (quantifier == '*' || quantifier == '+' || quantifier == '{')
+					throw new UnsupportedRegexException();
+
+				if (quantifier == '?') {
+					position++;
+
+					if (anchor || position < regex.length() && (regex.charAt(position) == '?' || regex.charAt(position) == '+'))
+						throw new UnsupportedRegexException(); // reluctant and possessive quantifiers
+
+					alternatives = new ArrayList<>(alternatives);
+					alternatives.add(Alternative.EMPTY); // greedy: the item is tried first
+				}
+			}
+
+			return alternatives;
+		}
+
+		private CharSet parseClass() throws UnsupportedRegexException {
+			boolean negated = position < regex.length() && regex.charAt(position) == '^';
+
+			if (negated)
+				position++;
+
+			StringBuilder ranges = new StringBuilder();
+
+			if (position < regex.length() && regex.charAt(position) == ']')
+				throw new UnsupportedRegexException();
+
+			while (position < regex.length() && regex.charAt(position) != ']') {
+				char low = parseClassCharacter();
+				char high = low;
+
+				if (position + 1 < regex.length() && regex.charAt(position) == '-' && regex.charAt(position + 1) != ']') {
+					position++;
+					high = parseClassCharacter();
+
+					if (high < low)
+						throw new UnsupportedRegexException();
+				}
+
+				ranges.append(low).append(high);
+			}
+
+			if (position++ == regex.length())
+				throw new UnsupportedRegexException();
+
+			return new CharSet(negated, ranges.toString().toCharArray());
+		}
+
+		private char parseClassCharacter() throws UnsupportedRegexException {
+			char c = regex.charAt(position++);
+
+			if (c == '\\')
+				return parseEscape();
+
+			if (c == '[' || c == '&' || Character.isSurrogate(c)) // unions and intersections
+				throw new UnsupportedRegexException();
+
+			return c;
+		}
+
+		private char parseEscape() throws UnsupportedRegexException {
+			if (position == regex.length())
+				throw new UnsupportedRegexException();
+
+			char c = regex.charAt(position++);
+
+			if (Character.isLetterOrDigit(c) || Character.isSurrogate(c)) // predefined classes, control characters and back references
+				throw new UnsupportedRegexException();
+
+			return c;
+		}
+
+		private static List<Alternative> singleSet(CharSet set) {
+			return Collections.singletonList(new Alternative(new CharSet[] { set }, new int[0], new int[0], false, false));
+		}
+
+		private static void checkSize(List<Alternative> alternatives) throws UnsupportedRegexException {
+			if (alternatives.size() > MAXIMUM_ALTERNATIVES)
+				throw new UnsupportedRegexException();
+		}
+
+	}
+
+	/**
+	 * A replacement split into the texts between the group references.
+	 */
+	private final static class Replacement {
+
+		final String[] texts;
+		final int[] groups;
+
+		Replacement(String replacement, int groupCount) throws UnsupportedRegexException {
+			List<String> textList = new ArrayList<>();
+			List<Integer> groupList = new ArrayList<>();
+			StringBuilder text = new StringBuilder();
+			int position = 0;
+
+			while (position < replacement.length()) { // the syntax of Matcher.appendReplacement
+				char c = replacement.charAt(position++);
+
+				if (c == '\\') {
+					if (position == replacement.length())
+						throw new UnsupportedRegexException();
+
+					text.append(replacement.charAt(position++));
+				} else if (c == '$') {
+					if (position == replacement.length() || !isDigit(replacement.charAt(position))) // also named groups
+						throw new UnsupportedRegexException();
+
+					int group = replacement.charAt(position++) - '0';
+
+					while (position < replacement.length() && isDigit(replacement.charAt(position))
+						&& group * 10 + replacement.charAt(position) - '0' <= groupCount) {
+						group = group * 10 + replacement.charAt(position++) - '0';
+					}
+
+					if (group > groupCount)
+						throw new UnsupportedRegexException();
+
+					textList.add(text.toString());
+					groupList.add(group);
+					text.setLength(0);
+				} else {
+					text.append(c);
+				}
+			}
+
+			textList.add(text.toString());
+
+			texts = textList.toArray(new String[textList.size()]);
+			groups = groupList.stream().mapToInt(Integer::intValue).toArray();
+		}
+
+		private static boolean isDigit(char c) {
+			return c >= '0' && c <= '9';
+		}
+
+	}
+
+	private final static class UnsupportedRegexException extends Exception {
+
+		private static final long serialVersionUID = 1L;
+
+		UnsupportedRegexException() {
+			super(null, null, false, false);
+		}
+
+	}
+
+}
@@ -0,0 +1,116 @@
+package de.franzmue.nameencoder;
+
+import java.util.regex.Matcher;
+
+import de.franzmue.nameencoder.RegexRule;
+
+/**
+ * Applies a regex rule to a code by the matcher of its pattern.
+ * <p>
+ * When rewriting into a buffer a matcher per thread is reset and reused instead of creating a new one.
+ * </p><p>
+ * The literal characters at the beginning of a regex without top level alternation are required for a match.
+ * </p>
+ *
+ * @author Franz Muehlbauer, info@franz-mue.de
+ */
+final class RegexRewriter implements CodeRewriter {
+
+	private final static String METACHARACTERS = "\\[](){}.*+?^$|";
+	private final static String QUANTIFIERS = "?*+{";
+
+	private final RegexRule rule;
+	private final ThreadLocal<Matcher> matchers;
+	private final long requiredCharacters;
+
+	RegexRewriter(RegexRule rule) {
+		this.rule = rule;
+		this.matchers = ThreadLocal.withInitial(() -> rule.getPattern().matcher(""));
+		this.requiredCharacters = leadingLiteralCharacters(rule.getRegex());
+	}
+
+	private static long leadingLiteralCharacters(String regex) {
+		if (hasTopLevelAlternation(regex))
+			return 0L;
+
+		long mask = 0L;
+
+		for (int index = 0; index < regex.length(); index++) {
+			char c = regex.charAt(index);
+
+			if (METACHARACTERS.indexOf(c) >= 0 || Character.isSurrogate(c))
+				break;
+
+			if (index + 1 < regex.length() && QUANTIFIERS.indexOf(regex.charAt(index + 1)) >= 0)
+				break;
+
+			mask |= CharacterMask.of(c);
+		}
+
+		return mask;
+	}
+
+	private static boolean hasTopLevelAlternation(String regex) {
+		if (regex.contains("\\Q")) // quoted parentheses are not counted
+			return true;
+
+		int depth = 0;
+		boolean inClass = false;
+
+		for (int index = 0; index < regex.length(); index++) {
+			char c = regex.charAt(index);
+
+			if (c == '\\')
+				index++; // the escaped character
+			else if (inClass)
+				inClass = c != ']';
+			else if (c == '[')
+				inClass = true;
+			else if (c == '(')
+				depth++;
+			else if (c == ')')
+				depth--;
+			else if (c == '|' && depth == 0)
+				return true;
+		}
+
+		return false;
+	}
+
+	/**
+	 * @return The applied rule.
+	 */
+	RegexRule getRule() {
+		return rule;
+	}
+
+	@Override
+	public boolean canRewrite(CharSequence code, long characters) {
+		return CharacterMask.containsAll(characters, requiredCharacters);
+	}
+
+	@Override
+	public String rewrite(String code) {
+		return rule.getPattern().matcher(code).replaceAll(rule.getDestination());
+	}
+
+	@Override
+	public boolean rewrite(CharSequence code, StringBuilder result) {
+		Matcher matcher = matchers.get().reset(code);
+
+		if (!matcher.find()) {
+			matcher.reset(""); // do not keep a reference to the code
+			return false;
+		}
+
+		do {
+			matcher.appendReplacement(result, rule.getDestination());
+		} while (matcher.find());
+
+		matcher.appendTail(result);
+		matcher.reset("");
+
+		return true;
+	}
+
+}
@@ -1,22 +1,56 @@
 package de.franzmue.nameencoder;
 
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Pattern;
 
 import de.franzmue.nameencoder.Rule;
 
 /**
  * A rule describing the matching of a string against a regular expression and replacing it.
+ * <p>
+ * Patterns are immutable, so the pattern of a regex is compiled once and shared by all rules with that regex.
+ * The rules of a rule set snapshot compile their pattern when it is first needed.
+ * </p>
  * 
  * @author Franz Muehlbauer, info@franz-mue.de
  */
 public final class RegexRule extends Rule {
 	
-	private Pattern pattern;
+	private final static Map<String, Pattern> PATTERNS = new ConcurrentHashMap<>();
+
+	private volatile Pattern pattern;
 
 	public RegexRule(String regex, String replacement) {
 		super(regex, replacement);
 
-		pattern =  Pattern.compile(source);
+		pattern = patternOf(source);
+	}
+
+	private RegexRule(String regex, String replacement, Pattern pattern) {
+		super(regex, replacement);
+
+		this.pattern = pattern;
+	}
+
+	/**
+	 * Creates a rule whose regex has already been checked, e. g. when it has been written to a rule set snapshot.
+	 *
+	 * @param regex The valid regex.
+	 * @param replacement The replacement.
+	 * @return The rule compiling its pattern when it is first needed.
+	 */
+	static RegexRule withoutPattern(String regex, String replacement) {
+		return new RegexRule(regex, replacement, null);
+	}
+
+	private static Pattern patternOf(String regex) {
+		Pattern cachedPattern = PATTERNS.get(regex);
+
+		if (cachedPattern == null)
+			cachedPattern = PATTERNS.computeIfAbsent(regex, Pattern::compile); // an invalid regex is not cached and fails again
+
+		return cachedPattern;
 	}
 	
 	@Override
@@ -26,7 +60,19 @@ public final class RegexRule extends Rule {
 	
 	@Override
 	public Pattern getPattern() {
-		return pattern;
+		Pattern currentPattern = pattern;
+
+		if (currentPattern == null) {
+			currentPattern = patternOf(source);
+			pattern = currentPattern;
+		}
+
+		return currentPattern;
+	}
+
+	@Override
+	public String toString() {
+		return "/" + source + "/ -> " + destination;
 	}
 
 }
@@ -0,0 +1,269 @@
+package de.franzmue.nameencoder;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import de.franzmue.nameencoder.ReplacementRule;
+
+/**
+ * A multi-pattern automaton applying a group of replacement rules to a code in a single pass.
+ * <p>
+ * The sources of the rules are stored in a trie. The code is scanned from left to right; at each position
+ * the rule with the lowest index whose source starts at that position is applied and the scan continues
+ * behind the replaced source. Because the sources of name encoding rules are only a few characters long the trie
+ * is walked from each position instead of following failure links, which keeps the rule ordering trivial.
+ * </p><p>
+ * The result is identical to applying the rules one after another with {@link String#replace} as long as
+ * the rules have been grouped by {@link #canJoin(List, ReplacementRule)}. A single rule is applied to strings by
+ * {@link String#replace} itself.
+ * </p>
+ *
+ * @author Franz Muehlbauer, info@franz-mue.de
+ */
+final class ReplacementAutomaton implements CodeRewriter {
+
+	private final static int ROOT = 0;
+	private final static int NONE = -1;
+	private final static int ROOT_TABLE_SIZE = 256;
+
+	private final int[] rootTargets = new int[ROOT_TABLE_SIZE];
+	private final char[][] labels;
+	private final int[][] targets;
+	private final int[] ruleIndexes;
+	private final int[] sourceLengths;
+	private final String[] destinations;
+	private final String singleSource;
+	private final long[] requiredCharacters;
+	private final List<ReplacementRule> rules;
+
+	ReplacementAutomaton(List<ReplacementRule> rules) {
+		this.rules = Collections.unmodifiableList(new ArrayList<>(rules));
+
+		List<StringBuilder> nodeLabels = new ArrayList<>();
+		List<List<Integer>> nodeTargets = new ArrayList<>();
+		List<Integer> nodeRules = new ArrayList<>();
+
+		addNode(nodeLabels, nodeTargets, nodeRules);
+
+		destinations = new String[rules.size()];
+		sourceLengths = new int[rules.size()];
+		singleSource = rules.size() == 1 ? rules.get(0).getSource() : null;
+		requiredCharacters = new long[rules.size()];
+
+		for (int ruleIndex = 0; ruleIndex < rules.size(); ruleIndex++) {
+			ReplacementRule rule = rules.get(ruleIndex);
+			String source = rule.getSource();
+			int node = ROOT;
+
+			for (int index = 0; index < source.length(); index++) {
+				char c = source.charAt(index);
+				int label = nodeLabels.get(node).indexOf(String.valueOf(c));
+
+				if (label < 0) {
+					int target = addNode(nodeLabels, nodeTargets, nodeRules);
+					nodeLabels.get(node).append(c);
+					nodeTargets.get(node).add(target);
+					node = target;
+				} else {
+					node = nodeTargets.get(node).get(label);
+				}
+			}
+
+			if (nodeRules.get(node) == NONE)
+				nodeRules.set(node, ruleIndex); // an earlier rule with the same source takes precedence
+
+			destinations[ruleIndex] = rule.getDestination();
+			sourceLengths[ruleIndex] = source.length();
+			requiredCharacters[ruleIndex] = CharacterMask.of(source);
+		}
+
+		int nodeCount = nodeLabels.size();
+		labels = new char[nodeCount][];
+		targets = new int[nodeCount][];
+		ruleIndexes = new int[nodeCount];
+
+		for (int node = 0; node < nodeCount; node++) {
+			labels[node] = nodeLabels.get(node).toString().toCharArray();
+			targets[node] = nodeTargets.get(node).stream().mapToInt(Integer::intValue).toArray();
+			ruleIndexes[node] = nodeRules.get(node);
+		}
+
+		Arrays.fill(rootTargets, NONE);
+
+		for (int label = 0; label < labels[ROOT].length; label++) {
+			if (labels[ROOT][label] < ROOT_TABLE_SIZE)
+				rootTargets[labels[ROOT][label]] = targets[ROOT][label];
+		}
+	}
+
+	private static int addNode(List<StringBuilder> nodeLabels, List<List<Integer>> nodeTargets, List<Integer> nodeRules) {
+		nodeLabels.add(new StringBuilder());
+		nodeTargets.add(new ArrayList<>());
+		nodeRules.add(NONE);
+
+		return nodeLabels.size() - 1;
+	}
+
+	/**
+	 * Checks whether a rule can be applied in the same pass as the rules of a group which precede it.
+	 * <p>
+	 * This is the case if no preceding rule can produce a new occurrence of the source of the rule,
+	 * i. e. the replacement does not contain any of its characters and does not join characters by deleting a source,
+	 * and if the source cannot hide an occurrence of a preceding source which starts inside of it.
+	 * </p>
+	 *
+	 * @param group The preceding rules which are already applied in one pass.
+	 * @param rule The rule to add.
+	 * @return Is the result unchanged when applying the rule in the same pass as the group?
+	 */
+	static boolean canJoin(List<ReplacementRule> group, ReplacementRule rule) {
+		String source = rule.getSource();
+
+		if (source.isEmpty())
+			return false;
+
+		for (ReplacementRule precedingRule: group) {
+			String precedingSource = precedingRule.getSource();
+			String precedingDestination = precedingRule.getDestination();
+
+			if (precedingSource.isEmpty())
+				return false;
+
+			if (precedingDestination.isEmpty() && source.length() > 1)
+				return false;
+
+			for (int index = 0; index < source.length(); index++) {
+				if (precedingDestination.indexOf(source.charAt(index)) >= 0)
+					return false;
+			}
+
+			if (source.indexOf(precedingSource, 1) > 0)
+				return false;
+
+			for (int suffix = 1; suffix < source.length(); suffix++) {
+				if (suffix + precedingSource.length() > source.length() && precedingSource.startsWith(source.substring(suffix)))
+					return false;
+			}
+		}
+
+		return true;
+	}
+
+	/**
+	 * @return The rules of the group in their order.
+	 */
+	List<ReplacementRule> getRules() {
+		return rules;
+	}
+
+	@Override
+	public String rewrite(String code) {
+		if (singleSource != null)
+			return code.replace(singleSource, destinations[0]);
+
+		int length = code.length();
+		int index = 0;
+
+		while (index < length && match(code, index) == NONE) {
+			index++;
+		}
+
+		if (index == length)
+			return code;
+
+		StringBuilder result = new StringBuilder(length + 16).append(code, 0, index);
+		appendRewritten(code, index, result);
+
+		return result.toString();
+	}
+
+	@Override
+	public boolean rewrite(CharSequence code, StringBuilder result) {
+		if (singleSource != null && singleSource.isEmpty()) { // inserts the destination between all characters
+			result.append(code.toString().replace(singleSource, destinations[0]));
+			return true;
+		}
+
+		int length = code.length();
+		int index = 0;
+
+		while (index < length && match(code, index) == NONE) {
+			index++;
+		}
+
+		if (index == length)
+			return false;
+
+		result.append(code, 0, index);
+		appendRewritten(code, index, result);
+
+		return true;
+	}
+
+	@Override
+	public boolean canRewrite(CharSequence code, long characters) {
+		for (long required: requiredCharacters) {
+			if (CharacterMask.containsAll(characters, required))
+				return true;
+		}
+
+		return false;
+	}
+
+	private void appendRewritten(CharSequence code, int start, StringBuilder result) {
+		int length = code.length();
+		int copied = start;
+		int index = start;
+
+		while (index < length) {
+			int ruleIndex = match(code, index);
+
+			if (ruleIndex == NONE) {
+				index++;
+			} else {
+				result.append(code, copied, index).append(destinations[ruleIndex]);
+				index += sourceLengths[ruleIndex];
+				copied = index;
+			}
+		}
+
+		result.append(code, copied, length);
+	}
+
+	private int match(CharSequence code, int index) {
+		int length = code.length();
+		int ruleIndex = NONE;
+		int node = ROOT;
+
+		for (int position = index; position < length; position++) {
+			node = next(node, code.charAt(position));
+
+			if (node == NONE)
+				break;
+
+			int candidate = ruleIndexes[node];
+
+			if (candidate != NONE && (ruleIndex == NONE || candidate < ruleIndex))
+				ruleIndex = candidate;
+		}
+
+		return ruleIndex;
+	}
+
+	private int next(int node, char c) {
+		if (node == ROOT && c < ROOT_TABLE_SIZE)
+			return rootTargets[c];
+
+		char[] nodeLabels = labels[node];
+
+		for (int label = 0; label < nodeLabels.length; label++) {
+			if (nodeLabels[label] == c)
+				return targets[node][label];
+		}
+
+		return NONE;
+	}
+
+}
@@ -18,4 +18,9 @@ public final class ReplacementRule extends Rule {
 		return source;
 	}
 
+	@Override
+	public String toString() {
+		return source + " -> " + destination;
+	}
+
 }
@@ -0,0 +1,138 @@
+package de.franzmue.nameencoder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.OutputStream;
+import java.lang.invoke.MethodHandles;
+import java.net.URI;
+import java.security.CodeSource;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.tools.FileObject;
+import javax.tools.ForwardingJavaFileManager;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileManager;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+
+import de.franzmue.nameencoder.CompiledRules;
+import de.franzmue.nameencoder.EncoderGenerator;
+import de.franzmue.nameencoder.Rules;
+
+/**
+ * Compiles rule layers at run time into a class with the straight-line code of the {@link EncoderGenerator}.
+ * <p>
+ * The source is compiled in memory by the system Java compiler and the class is defined in the package of the
+ * NameEncoder class by {@link MethodHandles.Lookup#defineClass}, so it can use the package private rewriters.
+ * Like all classes of the class loader, the compiled classes are not unloaded; an application should therefore
+ * compile a rule set once and share the encoder rather than compiling per request.
+ * </p><p>
+ * If no compiler is available, e. g. on a runtime image without the jdk.compiler module, or if the compilation
+ * fails, no class is created and the rules are interpreted.
+ * </p>
+ *
+ * @author Franz Muehlbauer, info@franz-mue.de
+ */
+final class RuleCompiler {
+
+	final static String CLASS_NAME_PREFIX = "CompiledRules";
+
+	private final static AtomicInteger CLASS_COUNTER = new AtomicInteger();
+
+	private RuleCompiler() {
+	}
+
+	/**
+	 * Compiles rule layers.
+	 *
+	 * @param layers The rule layers, applied with the standard processing of the NameEncoder class.
+	 * @return The compiled rule layers or null if they cannot be compiled.
+	 */
+	static CompiledRules compile(List<Rules> layers) {
+		JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+
+		if (compiler == null)
+			return null;
+
+		String className = CLASS_NAME_PREFIX + CLASS_COUNTER.incrementAndGet();
+		String qualifiedName = CompiledRules.class.getPackage().getName() + "." + className;
+		JavaFileObject source = new SourceFile(qualifiedName, EncoderGenerator.generateCompiledRules(layers, className));
+		Map<String, ByteArrayOutputStream> classFiles = new HashMap<>();
+
+		try (StandardJavaFileManager standardFileManager = compiler.getStandardFileManager(null, null, null)) {
+			JavaFileManager fileManager = new ClassFileManager(standardFileManager, classFiles);
+			List<String> options = Arrays.asList("-classpath", classPath(), "-proc:none", "-g:none", "-nowarn");
+
+			if (!compiler.getTask(null, fileManager, diagnostic -> {}, options, null, Collections.singletonList(source)).call())
+				return null;
+
+			Class<?> compiledClass = MethodHandles.lookup().defineClass(classFiles.get(qualifiedName).toByteArray());
+
+			return (CompiledRules) compiledClass.getDeclaredConstructor().newInstance();
+		} catch (Exception | LinkageError e) { // the rules are interpreted
+			return null;
+		}
+	}
+
+	private static String classPath() throws Exception {
+		String classPath = System.getProperty("java.class.path", "");
+		CodeSource codeSource = CompiledRules.class.getProtectionDomain().getCodeSource();
+
+		if (codeSource == null || codeSource.getLocation() == null)
+			return classPath;
+
+		String location = new File(codeSource.getLocation().toURI()).getPath(); // e. g. the library jar in an application server
+
+		return classPath.isEmpty() ? location : location + File.pathSeparator + classPath;
+	}
+
+	private final static class SourceFile extends SimpleJavaFileObject {
+
+		private final String source;
+
+		SourceFile(String qualifiedName, String source) {
+			super(URI.create("string:///" + qualifiedName.replace('.', '/') + Kind.SOURCE.extension), Kind.SOURCE);
+			this.source = source;
+		}
+
+		@Override
+		public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+			return source;
+		}
+
+	}
+
+	private final static class ClassFileManager extends ForwardingJavaFileManager<JavaFileManager> {
+
+		private final Map<String, ByteArrayOutputStream> classFiles;
+
+		ClassFileManager(JavaFileManager fileManager, Map<String, ByteArrayOutputStream> classFiles) {
+			super(fileManager);
+			this.classFiles = classFiles;
+		}
+
+		@Override
+		public JavaFileObject getJavaFileForOutput(Location location, String className, JavaFileObject.Kind kind, FileObject sibling) {
+			return new SimpleJavaFileObject(URI.create("bytes:///" + className.replace('.', '/') + kind.extension), kind) {
+
+				@Override
+				public OutputStream openOutputStream() {
+					ByteArrayOutputStream classFile = new ByteArrayOutputStream();
+					classFiles.put(className, classFile);
+
+					return classFile;
+				}
+
+			};
+		}
+
+	}
+
+}
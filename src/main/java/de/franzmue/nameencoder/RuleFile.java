@@ -0,0 +1,488 @@
+package de.franzmue.nameencoder;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import de.franzmue.nameencoder.NameEncoder;
+import de.franzmue.nameencoder.RegexRule;
+import de.franzmue.nameencoder.ReplacementRule;
+import de.franzmue.nameencoder.Rule;
+import de.franzmue.nameencoder.RuleSet;
+import de.franzmue.nameencoder.RuleSetOptimizer;
+import de.franzmue.nameencoder.Rules;
+
+/**
+ * Reads and writes the rule layers of an encoder, either as a text rule file or as a precompiled rule set snapshot.
+ * <p>
+ * A rule file is a UTF-8 text file with one rule per line:
+ * </p>
+ * <pre>
+ * # German umlauts
+ * layer 1
+ * \u00e4 -&gt; e
+ * \u00df -&gt; s
+ * layer 2
+ * /([^s])ch/ -&gt; $1k
+ * h -&gt;
+ * </pre>
+ * <p>
+ * A line {@code layer}, optionally followed by a blank and any text, starts a new rule layer. A replacement rule is written as
+ * {@code source -> destination}, a regex rule as {@code /regex/ -> replacement}; an empty destination is written as
+ * {@code source ->}. Sources and destinations are taken literally without any escaping. Blank lines and lines starting
+ * with {@code #} are ignored.
+ * </p><p>
+ * A snapshot additionally stores what is compiled from the rules: the groups of replacement rules applied in a single pass,
+ * the DFA tables and prefilters of the regex automata, and the rule layers optimized by the {@link RuleSetOptimizer}.
+ * Reading a snapshot therefore neither analyses the rules nor compiles any regex; a pattern is only compiled when a code
+ * has to be rewritten by its matcher. The tries of the replacement groups are rebuilt, which takes one pass over their sources.
+ * </p><p>
+ * Snapshot layout (big endian):
+ * </p>
+ * <pre>
+ * int     magic number "NERS"
+ * int     format version
+ * long    CRC-32 checksum of the content
+ * int     length of the content
+ * content:
+ * byte[]  rule set fingerprint (32 bytes)
+ * layers  the rule layers
+ * layers  the optimized rule layers
+ *
+ * layers:
+ * int     number of layers, for each layer:
+ * int     number of rules, for each rule its type 'R' (replacement) or 'X' (regex), its source and its destination
+ * int     number of rewriters, for each rewriter its type followed by
+ *         'A' replacement automaton: the number of its rules and their sources and destinations
+ *         'D' regex automaton: the regex, the replacement and the tables of the automaton
+ *         'M' regex matcher: the regex and the replacement
+ * </pre>
+ * <p>
+ * Strings are stored in modified UTF-8. A snapshot is only read by the same format version. The encoders read from
+ * rule files and snapshots are NameEncoder objects with the standard processing.
+ * </p>
+ *
+ * @see de.franzmue.nameencoder.RuleSet
+ * @author Franz Muehlbauer, info@franz-mue.de
+ */
+public final class RuleFile {
+
+	final static int MAGIC = 0x4e455253; // "NERS"
+	final static int VERSION = 1;
+
+	final static String SNAPSHOT_OPTION = "--snapshot";
+	final static String EXPORT_OPTION = "--export";
+	final static String USAGE_MESSAGE = "The given names are encoded by the rules of a rule file or snapshot: <file> <name>... or <file> --stream [--column <number>] [--compile] [<file>]%n"
+		+ "Use --snapshot <rule file, snapshot or encoder class> <snapshot file> to write a snapshot or --export <encoder class> <rule file> to write a rule file.%n";
+	final static String WRITTEN_MESSAGE = "Written %s%n";
+
+	private final static String LAYER_KEYWORD = "layer";
+	private final static String SEPARATOR = " ->";
+	private final static String COMMENT = "#";
+	private final static String REGEX_DELIMITER = "/";
+	private final static int HEADER_LENGTH = 4 + 4 + 8 + 4;
+	private final static int FINGERPRINT_LENGTH = 32;
+
+	private final static byte REPLACEMENT_RULE = 'R';
+	private final static byte REGEX_RULE = 'X';
+	private final static byte REPLACEMENT_AUTOMATON = 'A';
+	private final static byte REGEX_AUTOMATON = 'D';
+	private final static byte REGEX_MATCHER = 'M';
+
+	private final static String LINE_ERROR_MESSAGE = "Invalid line %d in the rule file %s: %s";
+	private final static String LAYER_ERROR_MESSAGE = "Rule before the first layer in line %d of the rule file %s";
+	private final static String FORMAT_ERROR_MESSAGE = "The file is not a rule set snapshot: ";
+	private final static String VERSION_ERROR_MESSAGE = "The rule set snapshot has an unsupported version: ";
+	private final static String TYPE_ERROR_MESSAGE = "The rule set snapshot contains an unknown type: ";
+	private final static String CHECKSUM_ERROR_MESSAGE = "The rule set snapshot is damaged: ";
+	private final static String PROCESSING_ERROR_MESSAGE = "Only encoders with the standard processing can be written: ";
+	private final static String RULE_ERROR_MESSAGE = "The rule cannot be written to a rule file: ";
+
+	private RuleFile() {
+	}
+
+	public static void main(String[] args) {
+		if (args.length < 2) {
+			System.out.printf(USAGE_MESSAGE);
+			return;
+		}
+
+		try {
+			if (SNAPSHOT_OPTION.equals(args[0]) && args.length == 3) {
+				writeSnapshot(encoderOf(args[1]), Paths.get(args[2]));
+				System.out.printf(WRITTEN_MESSAGE, args[2]);
+			} else if (EXPORT_OPTION.equals(args[0]) && args.length == 3) {
+				writeRules(encoderOf(args[1]), Paths.get(args[2]));
+				System.out.printf(WRITTEN_MESSAGE, args[2]);
+			} else {
+				NameEncoder encoder = read(Paths.get(args[0]));
+				NameEncoder.createCodes(Arrays.copyOfRange(args, 1, args.length), () -> encoder);
+			}
+		} catch (IOException e) {
+			System.err.println(e.getMessage());
+		}
+	}
+
+	private static NameEncoder encoderOf(String fileOrClassName) throws IOException {
+		Path file = Paths.get(fileOrClassName);
+
+		return Files.isRegularFile(file) ? read(file) : RuleSetOptimizer.createEncoder(fileOrClassName);
+	}
+
+	/**
+	 * Reads an encoder from a rule file or a snapshot, whichever the file is.
+	 *
+	 * @param file The rule file or snapshot.
+	 * @return The encoder with the rules of the file.
+	 * @throws IOException If the file cannot be read or is invalid.
+	 */
+	public static NameEncoder read(Path file) throws IOException {
+		return isSnapshot(file) ? readSnapshot(file) : readRules(file);
+	}
+
+	private static boolean isSnapshot(Path file) throws IOException {
+		try (DataInputStream input = new DataInputStream(Files.newInputStream(file))) {
+			return input.readInt() == MAGIC;
+		} catch (EOFException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Reads an encoder from a rule file.
+	 *
+	 * @param file The UTF-8 rule file.
+	 * @return The encoder with the rules of the file.
+	 * @throws IOException If the file cannot be read or contains an invalid line or regex.
+	 */
+	public static NameEncoder readRules(Path file) throws IOException {
+		NameEncoder encoder = new NameEncoder();
+
+		try (BufferedReader input = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+			int lineNumber = 0;
+			String line;
+
+			while ((line = input.readLine()) != null) {
+				lineNumber++;
+
+				if (line.trim().isEmpty() || line.startsWith(COMMENT))
+					continue;
+
+				if (isLayer(line)) {
+					encoder.addRuleLayer();
+				} else if (!encoder.hasRuleLayers()) {
+					throw new IOException(String.format(LAYER_ERROR_MESSAGE, lineNumber, file));
+				} else {
+					try {
+						addRule(encoder, line);
+					} catch (IllegalArgumentException e) { // including an invalid regex
+						throw new IOException(String.format(LINE_ERROR_MESSAGE, lineNumber, file, line), e);
+					}
+				}
+			}
+		}
+
+		return encoder;
+	}
+
+	private static boolean isLayer(String line) {
+		return !line.contains(SEPARATOR) && (line.equals(LAYER_KEYWORD) || line.startsWith(LAYER_KEYWORD + " "));
+	}
+
+	private static void addRule(NameEncoder encoder, String line) {
+		boolean regex = line.startsWith(REGEX_DELIMITER);
+		String separator = regex ? REGEX_DELIMITER + SEPARATOR : SEPARATOR;
+		int index = line.indexOf(separator + " ", regex ? REGEX_DELIMITER.length() : 0);
+
+		if (index < 0 && line.endsWith(separator) && line.length() >= (regex ? 2 * REGEX_DELIMITER.length() : 0) + SEPARATOR.length())
+			index = line.length() - separator.length(); // an empty destination
+
+		if (index < 0)
+			throw new IllegalArgumentException(line);
+
+		String source = line.substring(regex ? REGEX_DELIMITER.length() : 0, index);
+		String destination = index + separator.length() < line.length() ? line.substring(index + separator.length() + 1) : "";
+
+		if (regex)
+			encoder.addRegexRule(source, destination);
+		else
+			encoder.addReplacementRule(source, destination);
+	}
+
+	/**
+	 * Writes the rules of an encoder to a rule file.
+	 *
+	 * @param encoder The encoder.
+	 * @param file The file to write; an existing file is replaced.
+	 * @throws IOException If writing fails.
+	 * @throws IllegalArgumentException If a rule cannot be represented in a rule file, e. g. a source containing a line break.
+	 */
+	public static void writeRules(NameEncoder encoder, Path file) throws IOException {
+		List<String> lines = new ArrayList<>();
+		lines.add(COMMENT + " Rules of " + encoder.getClass().getName());
+
+		int layerNumber = 0;
+
+		for (List<Rule> layer: encoder.getRuleSet().getLayers()) {
+			lines.add(LAYER_KEYWORD + " " + ++layerNumber);
+
+			for (Rule rule: layer) {
+				lines.add(lineOf(rule));
+			}
+		}
+
+		try (BufferedWriter output = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+			for (String line: lines) {
+				output.write(line);
+				output.write('\n');
+			}
+		}
+	}
+
+	private static String lineOf(Rule rule) {
+		boolean regex = rule instanceof RegexRule;
+		String source = regex ? rule.getRegex() : rule.getSource();
+		String destination = rule.getDestination();
+		String line = (regex ? REGEX_DELIMITER + source + REGEX_DELIMITER : source) + SEPARATOR + (destination.isEmpty() ? "" : " " + destination);
+
+		boolean readable = !containsLineBreak(source) && !containsLineBreak(destination)
+			&& !source.contains(SEPARATOR) // the first separator ends the source
+			&& (regex || !source.startsWith(COMMENT) && !source.startsWith(REGEX_DELIMITER) && !source.endsWith(" "));
+
+		if (!readable)
+			throw new IllegalArgumentException(RULE_ERROR_MESSAGE + rule);
+
+		return line;
+	}
+
+	private static boolean containsLineBreak(String text) {
+		return text.indexOf('\n') >= 0 || text.indexOf('\r') >= 0;
+	}
+
+	/**
+	 * Writes the rules of an encoder together with their compiled rewriters and optimized layers to a snapshot.
+	 *
+	 * @param encoder The encoder with the standard processing.
+	 * @param file The file to write; an existing file is replaced.
+	 * @throws IOException If writing fails.
+	 */
+	public static void writeSnapshot(NameEncoder encoder, Path file) throws IOException {
+		if (encoder.overridesProcessingMethods())
+			throw new IllegalArgumentException(PROCESSING_ERROR_MESSAGE + encoder.getClass().getName());
+
+		RuleSet ruleSet = encoder.getRuleSet();
+		ByteArrayOutputStream content = new ByteArrayOutputStream();
+
+		try (DataOutputStream output = new DataOutputStream(content)) {
+			output.write(ruleSet.getFingerprint());
+			writeLayers(output, ruleSet.getRulesLayers());
+			writeLayers(output, ruleSet.getOptimizedLayers(encoder));
+		}
+
+		byte[] contentBytes = content.toByteArray();
+		CRC32 checksum = new CRC32();
+		checksum.update(contentBytes);
+
+		try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), 1 << 16))) {
+			output.writeInt(MAGIC);
+			output.writeInt(VERSION);
+			output.writeLong(checksum.getValue());
+			output.writeInt(contentBytes.length);
+			output.write(contentBytes);
+		}
+	}
+
+	private static void writeLayers(DataOutputStream output, List<Rules> layers) throws IOException {
+		output.writeInt(layers.size());
+
+		for (Rules layer: layers) {
+			List<Rule> rules = layer.getRules();
+			output.writeInt(rules.size());
+
+			for (Rule rule: rules) {
+				if (rule instanceof RegexRule) {
+					output.writeByte(REGEX_RULE);
+					output.writeUTF(rule.getRegex());
+				} else {
+					output.writeByte(REPLACEMENT_RULE);
+					output.writeUTF(rule.getSource());
+				}
+
+				output.writeUTF(rule.getDestination());
+			}
+
+			CodeRewriter[] rewriters = layer.getRewriters();
+			output.writeInt(rewriters.length);
+
+			for (CodeRewriter rewriter: rewriters) {
+				if (rewriter instanceof ReplacementAutomaton) {
+					List<ReplacementRule> group = ((ReplacementAutomaton) rewriter).getRules();
+					output.writeByte(REPLACEMENT_AUTOMATON);
+					output.writeInt(group.size());
+
+					for (ReplacementRule rule: group) {
+						output.writeUTF(rule.getSource());
+						output.writeUTF(rule.getDestination());
+					}
+				} else if (rewriter instanceof RegexAutomaton) {
+					RegexAutomaton automaton = (RegexAutomaton) rewriter;
+					output.writeByte(REGEX_AUTOMATON);
+					output.writeUTF(automaton.getRule().getRegex());
+					output.writeUTF(automaton.getRule().getDestination());
+					automaton.write(output);
+				} else {
+					RegexRule rule = ((RegexRewriter) rewriter).getRule();
+					output.writeByte(REGEX_MATCHER);
+					output.writeUTF(rule.getRegex());
+					output.writeUTF(rule.getDestination());
+				}
+			}
+		}
+	}
+
+	/**
+	 * Reads an encoder from a snapshot.
+	 * <p>
+	 * The rule set of the snapshot is shared with all encoders with the same rules like any other rule set.
+	 * </p>
+	 *
+	 * @param file The snapshot written by {@link #writeSnapshot(NameEncoder, Path)}.
+	 * @return The encoder with the rules and compiled rewriters of the snapshot.
+	 * @throws IOException If the file cannot be read, is not a snapshot, has another format version or is damaged.
+	 */
+	public static NameEncoder readSnapshot(Path file) throws IOException {
+		Snapshot snapshot = readContent(file);
+		RuleSet ruleSet = RuleSet.of(snapshot.layers, snapshot.optimizedLayers);
+
+		if (!Arrays.equals(snapshot.fingerprint, ruleSet.getFingerprint()))
+			throw new IOException(CHECKSUM_ERROR_MESSAGE + file);
+
+		return new NameEncoder().useRuleSet(ruleSet);
+	}
+
+	/**
+	 * Reads the content of a snapshot without interning its rule set.
+	 *
+	 * @param file The snapshot.
+	 * @return The fingerprint and the rule layers stored in the snapshot.
+	 * @throws IOException If the file cannot be read, is not a snapshot, has another format version or is damaged.
+	 */
+	static Snapshot readContent(Path file) throws IOException {
+		byte[] bytes = Files.readAllBytes(file);
+		ByteBuffer header = ByteBuffer.wrap(bytes);
+
+		if (bytes.length < HEADER_LENGTH || header.getInt(0) != MAGIC)
+			throw new IOException(FORMAT_ERROR_MESSAGE + file);
+
+		if (header.getInt(4) != VERSION)
+			throw new IOException(VERSION_ERROR_MESSAGE + header.getInt(4));
+
+		CRC32 checksum = new CRC32();
+		checksum.update(bytes, HEADER_LENGTH, bytes.length - HEADER_LENGTH);
+
+		if (header.getInt(16) != bytes.length - HEADER_LENGTH || header.getLong(8) != checksum.getValue())
+			throw new IOException(CHECKSUM_ERROR_MESSAGE + file);
+
+		try (DataInputStream input = new DataInputStream(new ByteArrayInputStream(bytes, HEADER_LENGTH, bytes.length - HEADER_LENGTH))) {
+			byte[] fingerprint = new byte[FINGERPRINT_LENGTH];
+			input.readFully(fingerprint);
+
+			Snapshot snapshot = new Snapshot(fingerprint, readLayers(input), readLayers(input));
+
+			if (input.read() >= 0)
+				throw new IOException(CHECKSUM_ERROR_MESSAGE + file);
+
+			return snapshot;
+		} catch (EOFException e) {
+			throw new IOException(CHECKSUM_ERROR_MESSAGE + file, e);
+		}
+	}
+
+	private static List<Rules> readLayers(DataInputStream input) throws IOException {
+		int layerCount = input.readInt();
+		List<Rules> layers = new ArrayList<>();
+
+		for (int layer = 0; layer < layerCount; layer++) {
+			int ruleCount = input.readInt();
+			List<Rule> rules = new ArrayList<>();
+
+			for (int rule = 0; rule < ruleCount; rule++) {
+				byte type = input.readByte();
+				String source = input.readUTF();
+				String destination = input.readUTF();
+
+				if (type == REPLACEMENT_RULE)
+					rules.add(new ReplacementRule(source, destination));
+				else if (type == REGEX_RULE)
+					rules.add(RegexRule.withoutPattern(source, destination));
+				else
+					throw new IOException(TYPE_ERROR_MESSAGE + (char) type);
+			}
+
+			CodeRewriter[] rewriters = new CodeRewriter[input.readInt()];
+
+			for (int index = 0; index < rewriters.length; index++) {
+				rewriters[index] = readRewriter(input);
+			}
+
+			layers.add(new Rules(rules, rewriters));
+		}
+
+		return layers;
+	}
+
+	private static CodeRewriter readRewriter(DataInputStream input) throws IOException {
+		byte type = input.readByte();
+
+		if (type == REPLACEMENT_AUTOMATON) {
+			int ruleCount = input.readInt();
+			List<ReplacementRule> group = new ArrayList<>();
+
+			for (int rule = 0; rule < ruleCount; rule++) {
+				group.add(new ReplacementRule(input.readUTF(), input.readUTF()));
+			}
+
+			return new ReplacementAutomaton(group);
+		}
+
+		if (type != REGEX_AUTOMATON && type != REGEX_MATCHER)
+			throw new IOException(TYPE_ERROR_MESSAGE + (char) type);
+
+		RegexRule rule = RegexRule.withoutPattern(input.readUTF(), input.readUTF());
+
+		return type == REGEX_AUTOMATON ? RegexAutomaton.read(rule, input) : new RegexRewriter(rule);
+	}
+
+	/**
+	 * The content of a snapshot.
+	 */
+	final static class Snapshot {
+
+		final byte[] fingerprint;
+		final List<Rules> layers;
+		final List<Rules> optimizedLayers;
+
+		Snapshot(byte[] fingerprint, List<Rules> layers, List<Rules> optimizedLayers) {
+			this.fingerprint = fingerprint;
+			this.layers = layers;
+			this.optimizedLayers = optimizedLayers;
+		}
+
+	}
+
+}
@@ -0,0 +1,311 @@
+package de.franzmue.nameencoder;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import de.franzmue.nameencoder.CompiledRules;
+import de.franzmue.nameencoder.NameEncoder;
+import de.franzmue.nameencoder.RegexRule;
+import de.franzmue.nameencoder.Rule;
+import de.franzmue.nameencoder.RuleCompiler;
+import de.franzmue.nameencoder.RuleSetOptimizer;
+import de.franzmue.nameencoder.Rules;
+
+/**
+ * An immutable snapshot of the rule layers of an encoder, shared by all encoders with the same rules.
+ * <p>
+ * Rule sets are interned by the types, sources and destinations of their rules. Everything derived from the rules
+ * is computed once per rule set: the rewriters of the layers are compiled when the rule set is created, the optimized
+ * layers and the rules compiled at run time when they are first needed. Creating another encoder with the same rules,
+ * e. g. one encoder per thread, therefore does not compile the rules again.
+ * </p><p>
+ * Interned rule sets are referenced weakly: a rule set is shared as long as an encoder uses it and is collected
+ * with its last encoder.
+ * </p>
+ *
+ * @see de.franzmue.nameencoder.NameEncoder#getRuleSet()
+ * @author Franz Muehlbauer, info@franz-mue.de
+ */
+public final class RuleSet {
+
+	private final static Map<Key, Entry> RULE_SETS = new ConcurrentHashMap<>();
+	private final static ReferenceQueue<RuleSet> COLLECTED_RULE_SETS = new ReferenceQueue<>();
+
+	private final List<Rules> layers;
+	private final List<List<Rule>> rules;
+	private final byte[] fingerprint;
+
+	private volatile List<Rules> optimizedLayers;
+	private boolean compiled;
+	private CompiledRules compiledRules;
+
+	private RuleSet(List<Rules> frozenLayers, List<Rules> frozenOptimizedLayers) {
+		List<List<Rule>> layerRules = new ArrayList<>(frozenLayers.size());
+
+		for (Rules layer: frozenLayers) {
+			layerRules.add(layer.getRules());
+		}
+
+		layers = Collections.unmodifiableList(frozenLayers);
+		rules = Collections.unmodifiableList(layerRules);
+		fingerprint = sha256(describe(layers));
+		optimizedLayers = frozenOptimizedLayers;
+	}
+
+	/**
+	 * Returns the interned rule set with the given rules.
+	 *
+	 * @param rulesLayers The rule layers; they are copied.
+	 * @return The shared rule set.
+	 */
+	static RuleSet of(List<Rules> rulesLayers) {
+		RuleSet ruleSet = lookup(new Key(rulesLayers));
+
+		if (ruleSet == null) {
+			List<Rules> copiedLayers = new ArrayList<>(rulesLayers.size());
+
+			for (Rules rulesLayer: rulesLayers) {
+				Rules layer = new Rules();
+
+				for (Rule rule: rulesLayer) {
+					layer.addRule(rule); // rules are immutable
+				}
+
+				layer.getRewriters();
+				copiedLayers.add(layer);
+			}
+
+			ruleSet = intern(new RuleSet(copiedLayers, null));
+		}
+
+		return ruleSet;
+	}
+
+	/**
+	 * Returns the interned rule set with the given rules, which have already been compiled, e. g. read from a snapshot.
+	 * <p>
+	 * If a rule set with the same rules has already been created it is returned instead.
+	 * </p>
+	 *
+	 * @param frozenLayers The rule layers with their compiled rewriters; they are taken over and must not be changed.
+	 * @param frozenOptimizedLayers The optimized rule layers with their compiled rewriters or null if they are optimized when needed.
+	 * @return The shared rule set.
+	 */
+	static RuleSet of(List<Rules> frozenLayers, List<Rules> frozenOptimizedLayers) {
+		RuleSet ruleSet = lookup(new Key(frozenLayers));
+
+		return ruleSet != null ? ruleSet : intern(new RuleSet(frozenLayers, frozenOptimizedLayers));
+	}
+
+	private static RuleSet lookup(Key key) {
+		Entry entry = RULE_SETS.get(key);
+
+		return entry != null ? entry.get() : null;
+	}
+
+	private static RuleSet intern(RuleSet newRuleSet) {
+		Reference<? extends RuleSet> collected;
+
+		while ((collected = COLLECTED_RULE_SETS.poll()) != null) {
+			RULE_SETS.remove(((Entry) collected).key, collected);
+		}
+
+		Key key = new Key(newRuleSet.layers); // the key must not refer to changing layers
+		Entry newEntry = new Entry(key, newRuleSet);
+
+		while (true) {
+			Entry entry = RULE_SETS.putIfAbsent(key, newEntry);
+
+			if (entry == null)
+				return newRuleSet;
+
+			RuleSet ruleSet = entry.get();
+
+			if (ruleSet != null)
+				return ruleSet;
+
+			if (RULE_SETS.replace(key, entry, newEntry)) // the interned rule set has been collected
+				return newRuleSet;
+		}
+	}
+
+	/**
+	 * @return The number of interned rule sets, including collected rule sets which have not been removed yet.
+	 */
+	static int internedCount() {
+		return RULE_SETS.size();
+	}
+
+	private static String describe(List<Rules> rulesLayers) {
+		StringBuilder description = new StringBuilder();
+
+		for (Rules rules: rulesLayers) {
+			description.append('L');
+
+			for (Rule rule: rules) {
+				if (rule instanceof RegexRule)
+					description.append('X').append(rule.getRegex());
+				else
+					description.append('R').append(rule.getSource());
+
+				description.append('\0').append(rule.getDestination()).append('\0');
+			}
+		}
+
+		return description.toString();
+	}
+
+	private static byte[] sha256(String description) {
+		try {
+			return MessageDigest.getInstance("SHA-256").digest(description.getBytes(StandardCharsets.UTF_8));
+		} catch (NoSuchAlgorithmException e) {
+			throw new RuntimeException(e); // every Java platform supports SHA-256
+		}
+	}
+
+	/**
+	 * Refers weakly to an interned rule set and keeps its key for removing it after it has been collected.
+	 */
+	private final static class Entry extends WeakReference<RuleSet> {
+
+		private final Key key;
+
+		Entry(Key key, RuleSet ruleSet) {
+			super(ruleSet, COLLECTED_RULE_SETS);
+			this.key = key;
+		}
+
+	}
+
+	/**
+	 * Compares rule layers by the types, sources and destinations of their rules without building their description.
+	 */
+	private final static class Key {
+
+		private final List<Rules> layers;
+		private final int hashCode;
+
+		Key(List<Rules> layers) {
+			int hash = layers.size();
+
+			for (Rules layer: layers) {
+				for (Rule rule: layer.rules) {
+					hash = 31 * (31 * (31 * hash + rule.getClass().hashCode()) + rule.source.hashCode()) + rule.destination.hashCode();
+				}
+
+				hash = 31 * hash + layer.rules.size();
+			}
+
+			this.layers = layers;
+			this.hashCode = hash;
+		}
+
+		@Override
+		public int hashCode() {
+			return hashCode;
+		}
+
+		@Override
+		public boolean equals(Object object) {
+			if (!(object instanceof Key))
+				return false;
+
+			Key key = (Key) object;
+
+			if (key.hashCode != hashCode || key.layers.size() != layers.size())
+				return false;
+
+			for (int layerIndex = 0; layerIndex < layers.size(); layerIndex++) {
+				List<Rule> rules = layers.get(layerIndex).rules;
+				List<Rule> otherRules = key.layers.get(layerIndex).rules;
+
+				if (rules.size() != otherRules.size())
+					return false;
+
+				for (int ruleIndex = 0; ruleIndex < rules.size(); ruleIndex++) {
+					Rule rule = rules.get(ruleIndex);
+					Rule otherRule = otherRules.get(ruleIndex);
+
+					if (rule.getClass() != otherRule.getClass() || !rule.source.equals(otherRule.source) || !rule.destination.equals(otherRule.destination))
+						return false;
+				}
+			}
+
+			return true;
+		}
+
+	}
+
+	/**
+	 * @return The rules of each layer in their order.
+	 */
+	public List<List<Rule>> getLayers() {
+		return rules;
+	}
+
+	/**
+	 * Returns the fingerprint of the rules.
+	 * <p>
+	 * The fingerprint is the SHA-256 hash of the types, sources and destinations of all rules in their layers.
+	 * </p>
+	 *
+	 * @return The 32 bytes of the fingerprint.
+	 */
+	public byte[] getFingerprint() {
+		return fingerprint.clone();
+	}
+
+	/**
+	 * @return The rule layers of the rule set with their compiled rewriters; they must not be changed.
+	 */
+	List<Rules> getRulesLayers() {
+		return layers;
+	}
+
+	/**
+	 * Returns the rule layers optimized by the {@link RuleSetOptimizer}.
+	 *
+	 * @param encoder An encoder with these rules and the standard processing, used for verifying the optimization.
+	 * @return The optimized rule layers or the rule layers of the rule set if they cannot be optimized.
+	 */
+	List<Rules> getOptimizedLayers(NameEncoder encoder) {
+		List<Rules> currentLayers = optimizedLayers;
+
+		if (currentLayers == null) {
+			currentLayers = RuleSetOptimizer.optimizedLayersOf(encoder, layers);
+			optimizedLayers = currentLayers;
+		}
+
+		return currentLayers;
+	}
+
+	/**
+	 * Returns the optimized rule layers compiled by the {@link RuleCompiler}; they are compiled at most once.
+	 *
+	 * @param encoder An encoder with these rules and the standard processing.
+	 * @return The compiled rules or null if they cannot be compiled.
+	 */
+	synchronized CompiledRules getCompiledRules(NameEncoder encoder) {
+		if (!compiled) {
+			try {
+				compiledRules = RuleCompiler.compile(getOptimizedLayers(encoder));
+			} catch (NoClassDefFoundError e) { // a runtime image without the java.compiler module; the rules are interpreted
+				compiledRules = null;
+			}
+
+			compiled = true;
+		}
+
+		return compiledRules;
+	}
+
+}
@@ -0,0 +1,348 @@
+package de.franzmue.nameencoder;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+
+import de.franzmue.nameencoder.NameEncoder;
+import de.franzmue.nameencoder.RegexRule;
+import de.franzmue.nameencoder.ReplacementRule;
+import de.franzmue.nameencoder.Rule;
+import de.franzmue.nameencoder.Rules;
+
+/**
+ * Creates a smaller plan of rule layers giving the same codes as the rule layers of an encoder.
+ * <p>
+ * The optimizer follows which characters cannot occur in the code any more, starting with the upper case letters
+ * and whitespaces removed by the preparation of the name. A rule replacing all occurrences of a single character
+ * by something else removes that character from the code until a later replacement brings it back.
+ * </p>
+ * <ul>
+ * <li>A rule which requires a character that cannot occur in the code never matches and is removed.</li>
+ * <li>A layer without rules only removes duplicates which have already been removed by the previous layer,
+ * so it is removed unless it is the first layer.</li>
+ * <li>A layer which only replaces single characters by at most one character gives the same result whether
+ * the consecutive duplicates have been removed before or not. It is therefore merged into the previous layer.</li>
+ * </ul>
+ * <p>
+ * Before an optimized plan is used it is verified to give the same codes as the original layers for a corpus of
+ * common family names and random words. The optimization requires the standard processing of the NameEncoder class.
+ * </p><p>
+ * Run the class with the names of encoder classes to print their optimized plans.
+ * </p>
+ *
+ * @see de.franzmue.nameencoder.NameEncoder#setCodePathTracing(boolean)
+ * @author Franz Muehlbauer, info@franz-mue.de
+ */
+public final class RuleSetOptimizer {
+
+	final static String USAGE_MESSAGE = "The rule layers of the given encoder classes are optimized, e. g. de.franzmue.nameencoder.GermanNameEncoder.%n";
+	final static String SUMMARY_MESSAGE = "%s: %d layers with %d rules optimized to %d layers with %d rules%n";
+	final static String VERIFICATION_MESSAGE = "Verified on %d names: %s%n";
+	final static String LAYER_MESSAGE = "Layer %d: %s%n";
+
+	private final static String DEAD_RULE_MESSAGE = "Rule %d.%d removed, it cannot match: %s";
+	private final static String EMPTY_LAYER_MESSAGE = "Layer %d removed, it has no rules";
+	private final static String MERGED_LAYER_MESSAGE = "Layer %d merged into layer %d, it maps single characters";
+
+	private final static String ENCODER_ERROR_MESSAGE = "The class is not a name encoder: ";
+
+	private final static String ABSENT_CHARACTERS = "ABCDEFGHIJKLMNOPQRSTUVWXYZ \t\n\u000B\f\r"; // removed by NameEncoder.prepareProcessing
+	private final static String CORPUS_CHARACTERS = "abcdefghijklmnopqrstuvwxyz\u00e4\u00f6\u00fc\u00df A";
+	private final static List<String> CORPUS_NAMES = Arrays.asList(
+		"M\u00fcller", "Schmidt", "Schneider", "Fischer", "Weber", "Meyer", "Wagner", "Becker", "Schulz", "Hoffmann",
+		"Sch\u00e4fer", "Koch", "Bauer", "Richter", "Klein", "Wolf", "Schr\u00f6der", "Neumann", "Schwarz", "Zimmermann",
+		"Braun", "Kr\u00fcger", "Hofmann", "Hartmann", "Lange", "Schmitt", "Werner", "Schmitz", "Krause", "Meier",
+		"Lehmann", "Schmid", "Schulze", "Maier", "K\u00f6hler", "Herrmann", "K\u00f6nig", "Walter", "Mayer", "Huber",
+		"Kaiser", "Fuchs", "Peters", "Lang", "Scholz", "M\u00f6ller", "Wei\u00df", "Jung", "Hahn", "Schubert",
+		"Vogel", "Friedrich", "Keller", "G\u00fcnther", "Frank", "Berger", "Winkler", "Roth", "Beck", "Lorenz",
+		"Baumann", "Franke", "Albrecht", "Schuster", "Simon", "Ludwig", "B\u00f6hm", "Winter", "Kraus", "Martin",
+		"Schumacher", "Kr\u00e4mer", "Vogt", "Stein", "J\u00e4ger", "Otto", "Sommer", "Gro\u00df", "Seidel", "Heinrich",
+		"Brandt", "Haas", "Schreiber", "Graf", "Schulte", "Dietrich", "Ziegler", "Kuhn", "K\u00fchn", "Pohl",
+		"Engel", "Horn", "Busch", "Bergmann", "Thomas", "Voigt", "Sauer", "Arnold", "Wolff", "Pfeiffer",
+		"Xaver", "Quandt", "Cziesla", "Czerny", "Ciesielski", "Yilmaz", "Drickamer", "Saalfeld", "Seidl", "Mehltretter");
+
+	private final static int RANDOM_CORPUS_SIZE = 2000;
+	private final static long RANDOM_CORPUS_SEED = 4711;
+	private final static int MAXIMUM_WORD_LENGTH = 12;
+
+	private RuleSetOptimizer() {
+	}
+
+	public static void main(String[] args) {
+		if (args.length == 0) {
+			System.out.printf(USAGE_MESSAGE);
+			return;
+		}
+
+		for (String className: args) {
+			NameEncoder encoder = createEncoder(className);
+			Plan plan = optimize(encoder.rulesLayers);
+			List<String> corpus = createCorpus(encoder.rulesLayers);
+
+			System.out.printf(SUMMARY_MESSAGE, className, encoder.rulesLayers.size(), ruleCountOf(encoder.rulesLayers),
+				plan.layers.size(), ruleCountOf(plan.layers));
+
+			for (String change: plan.changes) {
+				System.out.println(change);
+			}
+
+			System.out.printf(VERIFICATION_MESSAGE, corpus.size(), verify(encoder, plan.layers, corpus) ? "same codes" : "DIFFERENT CODES");
+
+			for (int index = 0; index < plan.layers.size(); index++) {
+				System.out.printf(LAYER_MESSAGE, index + 1, plan.layers.get(index).getRules());
+			}
+		}
+	}
+
+	static NameEncoder createEncoder(String className) {
+		try {
+			return (NameEncoder) Class.forName(className).getDeclaredConstructor().newInstance();
+		} catch (ReflectiveOperationException | ClassCastException e) {
+			throw new IllegalArgumentException(ENCODER_ERROR_MESSAGE + className, e);
+		}
+	}
+
+	/**
+	 * Returns the optimized rule layers of an encoder, which are shared by all encoders with the same rules.
+	 *
+	 * @param encoder The encoder with the standard processing.
+	 * @return The optimized rule layers or the rule layers of the rule set of the encoder if they cannot be optimized.
+	 * @see de.franzmue.nameencoder.RuleSet
+	 */
+	static List<Rules> optimizedLayersOf(NameEncoder encoder) {
+		return encoder.getRuleSet().getOptimizedLayers(encoder);
+	}
+
+	/**
+	 * Optimizes rule layers and verifies the result.
+	 *
+	 * @param encoder An encoder with the standard processing, used for applying the rule layers.
+	 * @param rulesLayers The rule layers to optimize.
+	 * @return The optimized rule layers or the given rule layers if the optimized ones give different codes.
+	 */
+	static List<Rules> optimizedLayersOf(NameEncoder encoder, List<Rules> rulesLayers) {
+		Plan plan = optimize(rulesLayers);
+
+		if (plan.changes.isEmpty() || !verify(encoder, rulesLayers, plan.layers, createCorpus(rulesLayers)))
+			return rulesLayers;
+
+		return plan.layers;
+	}
+
+	/**
+	 * Creates an optimized plan of rule layers.
+	 *
+	 * @param rulesLayers The rule layers to optimize; they are not changed.
+	 * @return The plan consisting of new layers with the kept rules, and the description of the changes.
+	 */
+	static Plan optimize(List<Rules> rulesLayers) {
+		Set<Character> absentCharacters = charactersOf(ABSENT_CHARACTERS);
+		List<Rules> layers = new ArrayList<>();
+		List<Integer> layerNumbers = new ArrayList<>();
+		List<String> changes = new ArrayList<>();
+
+		for (int layerIndex = 0; layerIndex < rulesLayers.size(); layerIndex++) {
+			Rules layer = new Rules();
+			List<Rule> rules = rulesLayers.get(layerIndex).getRules();
+
+			for (int ruleIndex = 0; ruleIndex < rules.size(); ruleIndex++) {
+				Rule rule = rules.get(ruleIndex);
+
+				if (cannotMatch(rule, absentCharacters)) {
+					changes.add(String.format(DEAD_RULE_MESSAGE, layerIndex + 1, ruleIndex + 1, rule));
+					continue;
+				}
+
+				layer.addRule(rule);
+				updateAbsentCharacters(rule, absentCharacters);
+			}
+
+			if (layerIndex > 0 && layer.getRules().isEmpty()) {
+				changes.add(String.format(EMPTY_LAYER_MESSAGE, layerIndex + 1));
+			} else if (layerIndex > 0 && mapsSingleCharacters(layer)) {
+				Rules previousLayer = layers.get(layers.size() - 1);
+
+				for (Rule rule: layer) {
+					previousLayer.addRule(rule);
+				}
+
+				changes.add(String.format(MERGED_LAYER_MESSAGE, layerIndex + 1, layerNumbers.get(layers.size() - 1)));
+			} else {
+				layers.add(layer);
+				layerNumbers.add(layerIndex + 1);
+			}
+		}
+
+		return new Plan(Collections.unmodifiableList(layers), Collections.unmodifiableList(changes));
+	}
+
+	private static boolean cannotMatch(Rule rule, Set<Character> absentCharacters) {
+		if (rule instanceof ReplacementRule) {
+			String source = rule.getSource();
+
+			for (int index = 0; index < source.length(); index++) {
+				if (absentCharacters.contains(source.charAt(index)))
+					return true;
+			}
+
+			return false;
+		}
+
+		RegexAutomaton automaton = RegexAutomaton.compile((RegexRule) rule);
+
+		return automaton != null && automaton.requiresAnyOf(absentCharacters);
+	}
+
+	private static void updateAbsentCharacters(Rule rule, Set<Character> absentCharacters) {
+		absentCharacters.removeAll(charactersOf(rule.getDestination())); // also escapes and group references of regex rules
+
+		String source = literalSourceOf(rule);
+
+		if (source != null && source.length() == 1 && rule.getDestination().indexOf(source.charAt(0)) < 0)
+			absentCharacters.add(source.charAt(0)); // all occurrences have been replaced
+	}
+
+	private static boolean mapsSingleCharacters(Rules layer) {
+		for (Rule rule: layer) {
+			String source = literalSourceOf(rule);
+
+			if (source == null || source.length() != 1 || literalDestinationOf(rule).length() > 1)
+				return false;
+		}
+
+		return true;
+	}
+
+	private static String literalSourceOf(Rule rule) {
+		if (rule instanceof ReplacementRule)
+			return rule.getSource();
+
+		RegexAutomaton automaton = RegexAutomaton.compile((RegexRule) rule);
+
+		return automaton == null ? null : automaton.getLiteralSource();
+	}
+
+	private static String literalDestinationOf(Rule rule) {
+		if (rule instanceof ReplacementRule)
+			return rule.getDestination();
+
+		return RegexAutomaton.compile((RegexRule) rule).getLiteralDestination();
+	}
+
+	/**
+	 * Creates the corpus to verify an optimized plan: common family names and reproducible random words
+	 * of the characters used by the rules, a part of them with doubled characters.
+	 *
+	 * @param rulesLayers The rule layers to create the corpus for.
+	 * @return The names of the corpus.
+	 */
+	static List<String> createCorpus(List<Rules> rulesLayers) {
+		Set<Character> characters = new TreeSet<>(charactersOf(CORPUS_CHARACTERS)); // a reproducible order
+
+		for (Rules rules: rulesLayers) {
+			for (Rule rule: rules) {
+				String source = rule instanceof RegexRule ? rule.getRegex() : rule.getSource();
+
+				for (char c: (source + rule.getDestination()).toCharArray()) {
+					if (Character.isLetter(c))
+						characters.add(c);
+				}
+			}
+		}
+
+		List<Character> alphabet = new ArrayList<>(characters);
+		List<String> corpus = new ArrayList<>(CORPUS_NAMES);
+		Random random = new Random(RANDOM_CORPUS_SEED);
+
+		for (int count = 0; count < RANDOM_CORPUS_SIZE; count++) {
+			StringBuilder word = new StringBuilder();
+
+			for (int length = 1 + random.nextInt(MAXIMUM_WORD_LENGTH); length > 0; length--) {
+				word.append(alphabet.get(random.nextInt(alphabet.size())));
+			}
+
+			if (count % 3 == 0) {
+				int index = random.nextInt(word.length());
+				word.insert(index, word.charAt(index));
+			}
+
+			corpus.add(word.toString());
+		}
+
+		return corpus;
+	}
+
+	/**
+	 * Checks whether optimized rule layers give the same codes as the rule layers of an encoder.
+	 *
+	 * @param encoder The encoder.
+	 * @param layers The optimized rule layers.
+	 * @param corpus The names to compare the codes of.
+	 * @return Are the codes of all names the same?
+	 */
+	static boolean verify(NameEncoder encoder, List<Rules> layers, Collection<String> corpus) {
+		return verify(encoder, encoder.rulesLayers, layers, corpus);
+	}
+
+	private static boolean verify(NameEncoder encoder, List<Rules> rulesLayers, List<Rules> layers, Collection<String> corpus) {
+		for (String word: corpus) {
+			String preparedCode = encoder.prepareProcessing(word);
+
+			if (!outcomeOf(encoder, rulesLayers, word, preparedCode).equals(outcomeOf(encoder, layers, word, preparedCode)))
+				return false;
+		}
+
+		return true;
+	}
+
+	private static String outcomeOf(NameEncoder encoder, List<Rules> layers, String word, String preparedCode) {
+		try {
+			return encoder.applyRules(layers, word, preparedCode, null, null);
+		} catch (RuntimeException e) { // a failing rule has to fail the same way
+			return "\0" + e;
+		}
+	}
+
+	private static int ruleCountOf(List<Rules> layers) {
+		int count = 0;
+
+		for (Rules rules: layers) {
+			count += rules.getRules().size();
+		}
+
+		return count;
+	}
+
+	private static Set<Character> charactersOf(String characters) {
+		Set<Character> set = new HashSet<>();
+
+		for (char c: characters.toCharArray()) {
+			set.add(c);
+		}
+
+		return set;
+	}
+
+	/**
+	 * Optimized rule layers with a description of the changes.
+	 */
+	final static class Plan {
+
+		final List<Rules> layers;
+		final List<String> changes;
+
+		Plan(List<Rules> layers, List<String> changes) {
+			this.layers = layers;
+			this.changes = changes;
+		}
+
+	}
+
+}
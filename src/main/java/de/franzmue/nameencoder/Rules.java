@@ -16,8 +16,27 @@ import java.util.ArrayList;
  * @author Franz Muehlbauer, info@franz-mue.de
  */
 public class Rules implements Iterable<Rule> {
+	private final static String INVALID_RULE_TYPE_MESSAGE = "Implementation error: The rule type is not existing!\n";
+
 	protected List<Rule> rules = new ArrayList<>();
 
+	private volatile CodeRewriter[] rewriters;
+	private volatile List<CodeRewriter> ruleRewriters;
+
+	public Rules() {
+	}
+
+	/**
+	 * Creates a layer with rewriters which have already been compiled from its rules, e. g. read from a rule set snapshot.
+	 *
+	 * @param rules The rules of the layer.
+	 * @param rewriters The rewriters giving the same result as the rules; the array is shared and must not be changed.
+	 */
+	Rules(List<Rule> rules, CodeRewriter[] rewriters) {
+		this.rules.addAll(rules);
+		this.rewriters = rewriters;
+	}
+
 	public List<Rule> getRules() {
 		return Collections.unmodifiableList(rules);
 	}
@@ -25,6 +44,7 @@ public class Rules implements Iterable<Rule> {
 	public Rules addReplacementRule(String source, String destination) {
 		ReplacementRule rule = new ReplacementRule(source, destination);
 		rules.add(rule);
+		discardRewriters();
 
 		return this;
 	}
@@ -32,10 +52,131 @@ public class Rules implements Iterable<Rule> {
 	public Rules addRegexRule(String regex, String replacement) {
 		RegexRule rule = new RegexRule(regex, replacement);
 		rules.add(rule);
+		discardRewriters();
 		
 		return this;
 	}
 
+	/**
+	 * Adds an existing rule, e. g. when building an optimized copy of rule layers.
+	 *
+	 * @param rule The rule to add.
+	 * @return The Rules object itself in order to provide a fluent interface.
+	 */
+	Rules addRule(Rule rule) {
+		rules.add(rule);
+		discardRewriters();
+
+		return this;
+	}
+
+	private void discardRewriters() {
+		if (rewriters != null || ruleRewriters != null) { // writing volatile fields is costly while the constructors add rules
+			rewriters = null;
+			ruleRewriters = null;
+		}
+	}
+
+	/**
+	 * Returns the rules of the layer compiled to rewriters which are applied one after another.
+	 * <p>
+	 * Consecutive replacement rules are grouped into as few single pass {@link ReplacementAutomaton}s as possible
+	 * without changing the result of applying the rules in their given order. Regex rules are compiled to
+	 * {@link RegexAutomaton}s if possible; those matching only a literal string are treated like replacement rules.
+	 * </p>
+	 *
+	 * @return The compiled rewriters; the array is shared and must not be changed.
+	 */
+	CodeRewriter[] getRewriters() {
+		CodeRewriter[] currentRewriters = rewriters;
+
+		if (currentRewriters == null) {
+			currentRewriters = compileRewriters();
+			rewriters = currentRewriters;
+		}
+
+		return currentRewriters;
+	}
+
+	/**
+	 * Returns the rules of the layer compiled to one rewriter per rule, e. g. for measuring each rule on its own.
+	 *
+	 * @return The compiled rewriters in the order of the rules.
+	 */
+	List<CodeRewriter> getRuleRewriters() {
+		List<CodeRewriter> currentRewriters = ruleRewriters;
+
+		if (currentRewriters == null) {
+			List<CodeRewriter> compiledRewriters = new ArrayList<>(rules.size());
+
+			for (Rule rule: rules) {
+				compiledRewriters.add(compileRule(rule));
+			}
+
+			currentRewriters = Collections.unmodifiableList(compiledRewriters);
+			ruleRewriters = currentRewriters;
+		}
+
+		return currentRewriters;
+	}
+
+	private static CodeRewriter compileRule(Rule rule) {
+		if (rule instanceof ReplacementRule)
+			return new ReplacementAutomaton(Collections.singletonList((ReplacementRule) rule));
+
+		if (rule instanceof RegexRule) {
+			RegexAutomaton automaton = RegexAutomaton.compile((RegexRule) rule);
+			return automaton != null ? automaton : new RegexRewriter((RegexRule) rule);
+		}
+
+		throw new RuntimeException(INVALID_RULE_TYPE_MESSAGE);
+	}
+
+	private CodeRewriter[] compileRewriters() {
+		List<CodeRewriter> compiledRewriters = new ArrayList<>();
+		List<ReplacementRule> group = new ArrayList<>();
+
+		for (Rule rule: rules) {
+			if (rule instanceof ReplacementRule) {
+				ReplacementRule replacementRule = (ReplacementRule) rule;
+
+				if (!ReplacementAutomaton.canJoin(group, replacementRule))
+					addReplacementGroup(compiledRewriters, group);
+
+				group.add(replacementRule);
+			} else if (rule instanceof RegexRule) {
+				RegexRule regexRule = (RegexRule) rule;
+				RegexAutomaton automaton = RegexAutomaton.compile(regexRule);
+
+				if (automaton != null && automaton.getLiteralSource() != null) { // joined with the replacement rules
+					ReplacementRule replacementRule = new ReplacementRule(automaton.getLiteralSource(), automaton.getLiteralDestination());
+
+					if (!ReplacementAutomaton.canJoin(group, replacementRule))
+						addReplacementGroup(compiledRewriters, group);
+
+					group.add(replacementRule);
+				} else {
+					addReplacementGroup(compiledRewriters, group);
+
+					compiledRewriters.add(automaton != null ? automaton : new RegexRewriter(regexRule));
+				}
+			} else {
+				throw new RuntimeException(INVALID_RULE_TYPE_MESSAGE);
+			}
+		}
+
+		addReplacementGroup(compiledRewriters, group);
+
+		return compiledRewriters.toArray(new CodeRewriter[compiledRewriters.size()]);
+	}
+
+	private void addReplacementGroup(List<CodeRewriter> compiledRewriters, List<ReplacementRule> group) {
+		if (!group.isEmpty())
+			compiledRewriters.add(new ReplacementAutomaton(group));
+
+		group.clear();
+	}
+
 	@Override
 	public Iterator<Rule> iterator() {
 		return new RulesIterator();
@@ -0,0 +1,147 @@
+package de.franzmue.nameencoder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import de.franzmue.nameencoder.EncoderProfile;
+import de.franzmue.nameencoder.Rule;
+import de.franzmue.nameencoder.Rules;
+
+/**
+ * Applies rule layers rule by rule while counting the invocations, changes, time and scanned characters of each rule and layer.
+ * <p>
+ * The counters are {@link LongAdder}s, which are striped between threads, so profiling a shared encoder does not
+ * serialize the encoding threads.
+ * </p>
+ *
+ * @author Franz Muehlbauer, info@franz-mue.de
+ */
+final class RulesProfiler {
+
+	private final Map<Rules, LayerCounters> layers = new ConcurrentHashMap<>(); // by identity
+
+	/**
+	 * Applies the rules of a layer to a code one by one.
+	 *
+	 * @param rules The layer.
+	 * @param code The code before the layer.
+	 * @return The code after applying all rules of the layer.
+	 */
+	String apply(Rules rules, String code) {
+		List<CodeRewriter> rewriters = rules.getRuleRewriters();
+		LayerCounters layer = countersOf(rules, rewriters.size());
+		String currentCode = code;
+		long characters = CharacterMask.of(currentCode);
+		long layerStart = System.nanoTime();
+
+		for (int index = 0; index < rewriters.size(); index++) {
+			if (currentCode.length() == 0)
+				break;
+
+			CodeRewriter rewriter = rewriters.get(index);
+			Counters counters = layer.rules[index];
+			counters.invocations.increment();
+
+			if (!rewriter.canRewrite(currentCode, characters)) {
+				counters.skips.increment();
+				continue;
+			}
+
+			long start = System.nanoTime();
+			String newCode = rewriter.rewrite(currentCode);
+			counters.nanoTime.add(System.nanoTime() - start);
+			counters.scannedCharacters.add(currentCode.length());
+
+			if (newCode != currentCode) {
+				if (!newCode.equals(currentCode))
+					counters.changes.increment();
+
+				currentCode = newCode;
+				characters = CharacterMask.of(currentCode);
+			}
+		}
+
+		layer.counters.nanoTime.add(System.nanoTime() - layerStart);
+		layer.counters.invocations.increment();
+		layer.counters.scannedCharacters.add(code.length());
+
+		if (!currentCode.equals(code))
+			layer.counters.changes.increment();
+
+		return currentCode;
+	}
+
+	private LayerCounters countersOf(Rules rules, int ruleCount) {
+		LayerCounters layer = layers.get(rules);
+
+		if (layer == null || layer.rules.length != ruleCount) // rules have been added to the layer
+			layer = layers.compute(rules, (key, current) -> current != null && current.rules.length == ruleCount ? current : new LayerCounters(ruleCount));
+
+		return layer;
+	}
+
+	/**
+	 * Takes a snapshot of the counters.
+	 *
+	 * @param rulesLayers The rule layers of the encoder.
+	 * @return The profile of the layers; layers which have not been applied yet have no counts.
+	 */
+	EncoderProfile snapshot(List<Rules> rulesLayers) {
+		List<EncoderProfile.LayerProfile> layerProfiles = new ArrayList<>(rulesLayers.size());
+
+		for (int layerIndex = 0; layerIndex < rulesLayers.size(); layerIndex++) {
+			Rules rules = rulesLayers.get(layerIndex);
+			List<Rule> ruleList = rules.getRules();
+			LayerCounters layer = layers.get(rules);
+
+			if (layer == null || layer.rules.length != ruleList.size())
+				layer = new LayerCounters(ruleList.size());
+
+			List<EncoderProfile.RuleProfile> ruleProfiles = new ArrayList<>(ruleList.size());
+
+			for (int ruleIndex = 0; ruleIndex < ruleList.size(); ruleIndex++) {
+				Counters counters = layer.rules[ruleIndex];
+
+				ruleProfiles.add(new EncoderProfile.RuleProfile(layerIndex + 1, ruleIndex + 1, ruleList.get(ruleIndex),
+					counters.invocations.sum(), counters.skips.sum(), counters.changes.sum(),
+					counters.scannedCharacters.sum(), counters.nanoTime.sum()));
+			}
+
+			Counters counters = layer.counters;
+
+			layerProfiles.add(new EncoderProfile.LayerProfile(layerIndex + 1, ruleProfiles,
+				counters.invocations.sum(), counters.changes.sum(), counters.scannedCharacters.sum(), counters.nanoTime.sum()));
+		}
+
+		return new EncoderProfile(layerProfiles);
+	}
+
+	private final static class LayerCounters {
+
+		final Counters counters = new Counters();
+		final Counters[] rules;
+
+		LayerCounters(int ruleCount) {
+			rules = new Counters[ruleCount];
+
+			for (int index = 0; index < ruleCount; index++) {
+				rules[index] = new Counters();
+			}
+		}
+
+	}
+
+	private final static class Counters {
+
+		final LongAdder invocations = new LongAdder();
+		final LongAdder skips = new LongAdder();
+		final LongAdder changes = new LongAdder();
+		final LongAdder scannedCharacters = new LongAdder();
+		final LongAdder nanoTime = new LongAdder();
+
+	}
+
+}
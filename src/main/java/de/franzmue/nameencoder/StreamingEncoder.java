@@ -0,0 +1,183 @@
+package de.franzmue.nameencoder;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.stream.IntStream;
+
+import de.franzmue.nameencoder.NameEncoder;
+
+/**
+ * Encodes the names of a line oriented input stream and writes each line followed by the code of its name.
+ * <p>
+ * Each line either contains a name or, if a column is given, tab separated values with the name in that column.
+ * The output line consists of the unchanged input line, a tab and the code, so all other columns are kept.
+ * </p><p>
+ * The lines are read and encoded in batches of a fixed size. A batch is encoded in parallel and written through a
+ * large buffer, so any input size is processed in constant memory.
+ * </p>
+ *
+ * @author Franz Muehlbauer, info@franz-mue.de
+ */
+public class StreamingEncoder {
+
+	final static String STREAM_OPTION = "--stream";
+	final static String COLUMN_OPTION = "--column";
+
+	final static String OPTION_ERROR_MESSAGE = "Invalid arguments; usage: --stream [--column <number>] [--compile] [<file>]%n";
+
+	private final static String COLUMN_ERROR_MESSAGE = "The column number has to be positive!\n";
+
+	private final static char SEPARATOR = '\t';
+	private final static int BATCH_SIZE = 8192;
+	private final static int BUFFER_SIZE = 1 << 16;
+
+	private final NameEncoder encoder;
+	private final int column;
+
+	/**
+	 * @param encoder The encoder to use; it is shared by the encoding threads.
+	 * @param column The number of the tab separated column containing the name starting with 1, or 0 if the whole line is the name.
+	 */
+	public StreamingEncoder(NameEncoder encoder, int column) {
+		if (column < 0)
+			throw new IllegalArgumentException(COLUMN_ERROR_MESSAGE);
+
+		this.encoder = encoder;
+		this.column = column;
+	}
+
+	/**
+	 * Runs the command line streaming mode: {@code --stream [--column <number>] [<file>]}.
+	 * <p>
+	 * Without a file the names are read from standard input. The output is written to standard output in UTF-8.
+	 * Invalid arguments and failing input or output are reported on standard error; a failing encoding is thrown.
+	 * </p>
+	 *
+	 * @param args The command line arguments starting with {@value #STREAM_OPTION}.
+	 * @param encoder The encoder to use.
+	 * @return The exit status; see {@link NameEncoder#USAGE_STATUS} and {@link NameEncoder#FAILURE_STATUS}.
+	 */
+	static int createCodes(String[] args, NameEncoder encoder) {
+		int column = 0;
+		String fileName = null;
+		StreamingEncoder streamingEncoder;
+
+		try {
+			for (int index = 1; index < args.length; index++) {
+				if (COLUMN_OPTION.equals(args[index]) && index + 1 < args.length)
+					column = Integer.parseInt(args[++index]);
+				else if (fileName == null && !args[index].startsWith("--"))
+					fileName = args[index];
+				else
+					throw new IllegalArgumentException(args[index]);
+			}
+		} catch (IllegalArgumentException e) {
+			System.err.printf(OPTION_ERROR_MESSAGE);
+			return NameEncoder.USAGE_STATUS;
+		}
+
+		try {
+			streamingEncoder = new StreamingEncoder(encoder, column);
+		} catch (IllegalArgumentException e) {
+			System.err.print(e.getMessage());
+			return NameEncoder.USAGE_STATUS;
+		}
+
+		try {
+			Reader reader = fileName == null
+				? new InputStreamReader(System.in, StandardCharsets.UTF_8)
+				: Files.newBufferedReader(Paths.get(fileName), StandardCharsets.UTF_8);
+
+			try (BufferedReader input = new BufferedReader(reader, BUFFER_SIZE)) {
+				Writer writer = new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8), BUFFER_SIZE);
+				streamingEncoder.encode(input, writer);
+				writer.flush();
+			}
+		} catch (IOException e) {
+			System.err.println(e.getMessage());
+			return NameEncoder.FAILURE_STATUS;
+		}
+
+		return 0;
+	}
+
+	/**
+	 * Encodes all lines of the input.
+	 * <p>
+	 * The writer is not flushed or closed. A line without the name column is written with an empty code.
+	 * </p>
+	 *
+	 * @param input The lines to encode.
+	 * @param output The writer for the lines with their codes.
+	 * @return The number of encoded lines.
+	 * @throws IOException If reading or writing fails.
+	 */
+	public long encode(BufferedReader input, Writer output) throws IOException {
+		String[] lines = new String[BATCH_SIZE];
+		String[] codes = new String[BATCH_SIZE];
+		long lineCount = 0;
+
+		int batchSize;
+
+		do {
+			batchSize = 0;
+
+			String line;
+
+			while (batchSize < BATCH_SIZE && (line = input.readLine()) != null) {
+				lines[batchSize++] = line;
+			}
+
+			IntStream.range(0, batchSize).parallel().forEach(index -> codes[index] = codeOf(lines[index]));
+
+			for (int index = 0; index < batchSize; index++) {
+				output.write(lines[index]);
+				output.write(SEPARATOR);
+				output.write(codes[index]);
+				output.write('\n');
+			}
+
+			lineCount += batchSize;
+		} while (batchSize == BATCH_SIZE);
+
+		return lineCount;
+	}
+
+	private String codeOf(String line) {
+		return encoder.codeOf(nameOf(line, column));
+	}
+
+	/**
+	 * Returns the name of a line.
+	 *
+	 * @param line The line.
+	 * @param column The number of the tab separated column containing the name starting with 1, or 0 if the whole line is the name.
+	 * @return The name or an empty name if the line has not got the column.
+	 */
+	static CharSequence nameOf(String line, int column) {
+		if (column == 0)
+			return line;
+
+		int start = 0;
+
+		for (int current = 1; current < column; current++) {
+			start = line.indexOf(SEPARATOR, start) + 1;
+
+			if (start == 0)
+				return "";
+		}
+
+		int end = line.indexOf(SEPARATOR, start);
+
+		return line.subSequence(start, end < 0 ? line.length() : end);
+	}
+
+}
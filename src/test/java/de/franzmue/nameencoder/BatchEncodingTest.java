@@ -0,0 +1,90 @@
+package de.franzmue.nameencoder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import de.franzmue.nameencoder.CachingNameEncoder;
+import de.franzmue.nameencoder.EncodingResult;
+import de.franzmue.nameencoder.GermanNameEncoder;
+
+public class BatchEncodingTest {
+
+	final static String[] WORDS = { "M\u00fcller", "Miller", "M\u00fchlbauer", "Dietrich", "Fuchs", "Gro\u00df" };
+
+	private GermanNameEncoder encoder;
+	private List<String> words;
+	private List<String> expectedCodes;
+
+	@Before
+	public void setUp() {
+		this.encoder = new GermanNameEncoder();
+		this.words = new ArrayList<>();
+		this.expectedCodes = new ArrayList<>();
+
+		for (int round = 0; round < 1000; round++) {
+			for (String word: WORDS) {
+				words.add(word + round % 7);
+				expectedCodes.add(encoder.codeOf(word + round % 7));
+			}
+		}
+	}
+
+	@Test
+	public void testEncodeAllList() {
+		assertEquals(expectedCodes, codesOf(encoder.encodeAll(new LinkedList<>(words))));
+	}
+
+	@Test
+	public void testEncodeAllArray() {
+		assertEquals(expectedCodes, codesOf(encoder.encodeAll(words.toArray(new String[0]))));
+	}
+
+	@Test
+	public void testEncodeAllInPool() {
+		ForkJoinPool pool = new ForkJoinPool(3);
+
+		assertEquals(expectedCodes, codesOf(encoder.encodeAll(words, pool)));
+
+		pool.shutdown();
+	}
+
+	@Test
+	public void testEncodeAllStream() {
+		List<EncodingResult> results = encoder.encodeAll(words.stream()).collect(Collectors.toList());
+
+		assertEquals(expectedCodes, codesOf(results));
+		assertEquals(words.get(words.size() - 1), results.get(results.size() - 1).getWord());
+	}
+
+	@Test
+	public void testEncodeAllEmpty() {
+		assertEquals(0, encoder.encodeAll(new String[0]).size());
+	}
+
+	@Test
+	public void testEncodeAllWithoutCodePath() {
+		CachingNameEncoder cachingEncoder = new CachingNameEncoder(encoder, 100);
+		List<EncodingResult> results = cachingEncoder.encodeAll(words);
+
+		assertTrue(encoder.isCodePathTracing());
+		assertFalse(results.get(0).isCodePathTraced());
+		assertFalse(encoder.encodeAll(words.stream()).anyMatch(EncodingResult::isCodePathTraced));
+		assertEquals(expectedCodes, codesOf(results));
+		assertEquals(words.size(), cachingEncoder.getHitCount() + cachingEncoder.getMissCount());
+	}
+
+	private static List<String> codesOf(List<EncodingResult> results) {
+		return results.stream().map(EncodingResult::getCode).collect(Collectors.toList());
+	}
+
+}
@@ -0,0 +1,82 @@
+package de.franzmue.nameencoder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import de.franzmue.nameencoder.ExtendedGermanNameEncoder;
+import de.franzmue.nameencoder.GermanNameEncoder;
+import de.franzmue.nameencoder.NameEncoder;
+
+public class BufferedEngineTest {
+
+	final static List<String> WORDS = Arrays.asList(
+		"M\u00fcller", "M\u00fchlbauer", "Dietrich", "Fuchssche", "Kroh\u00df", " von der  Heide ", "SCHMIDT", "Ho\u00eb\u00df",
+		"\u0130lhan", "\u0141ukasz", "\u03a3\u039f\u03a6\u039f\u03a3", "Meyer-L\u00fcdenscheidt", "ph", "tim", "123", "+-#*.,<>", "", "   ", "ccchhh");
+
+	@Test
+	public void testGermanNameEncoder() {
+		assertSameCodes(new GermanNameEncoder());
+	}
+
+	@Test
+	public void testExtendedGermanNameEncoder() {
+		assertSameCodes(new ExtendedGermanNameEncoder());
+	}
+
+	@Test
+	public void testEncoderWithoutRules() {
+		assertSameCodes(new NameEncoder());
+	}
+
+	@Test
+	public void testEmptySourceRule() {
+		NameEncoder encoder = new NameEncoder().addReplacementRuleLayer(new String[][] { { "", "-" } });
+
+		assertSameCodes(encoder);
+	}
+
+	@Test
+	public void testAppendCodeOf() {
+		GermanNameEncoder encoder = new GermanNameEncoder();
+		encoder.setBufferedEngine(true);
+
+		StringBuilder sink = new StringBuilder("codes:");
+		encoder.appendCodeOf("M\u00fcller", sink).append(',');
+		encoder.appendCodeOf("M\u00fchlbauer", sink);
+
+		assertEquals("codes:milr,milbaur", sink.toString());
+	}
+
+	@Test
+	public void testSetBufferedEngine() {
+		assertTrue(new GermanNameEncoder().setBufferedEngine(true).isBufferedEngine());
+	}
+
+	@Test
+	public void testOverriddenProcessingKeepsStringEngine() {
+		NameEncoder encoder = new GermanNameEncoder() {
+			@Override
+			protected String prepareProcessing(String word) {
+				return super.prepareProcessing(word).replace('-', ' ');
+			}
+		};
+
+		assertFalse(encoder.setBufferedEngine(true).isBufferedEngine());
+	}
+
+	private static void assertSameCodes(NameEncoder encoder) {
+		for (String word: WORDS) {
+			String expectedCode = encoder.setBufferedEngine(false).codeOf(word);
+
+			assertEquals(word, expectedCode, encoder.setBufferedEngine(true).codeOf(word));
+			assertEquals(word, expectedCode, encoder.appendCodeOf(word, new StringBuilder()).toString());
+		}
+	}
+
+}
@@ -0,0 +1,179 @@
+package de.franzmue.nameencoder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import de.franzmue.nameencoder.CachingNameEncoder;
+import de.franzmue.nameencoder.GermanNameEncoder;
+import de.franzmue.nameencoder.NameEncoder;
+import de.franzmue.nameencoder.NameEncoderInterface;
+
+public class CachingNameEncoderTest {
+
+	final static String WORD_MUELLER = "M\u00fcller";
+	final static String CODE_MILR = "milr";
+
+	final static String WORD_MUEHLBAUER = "M\u00fchlbauer";
+	final static String CODE_MILBAUR = "milbaur";
+
+	private GermanNameEncoder encoder;
+	private CachingNameEncoder cachingEncoder;
+
+	@Before
+	public void setUp() {
+		this.encoder = new GermanNameEncoder();
+		this.cachingEncoder = new CachingNameEncoder(encoder, 1000);
+	}
+
+	@Test
+	public void testCodeOf() {
+		assertEquals(CODE_MILR, cachingEncoder.codeOf(WORD_MUELLER));
+		assertEquals(CODE_MILR, cachingEncoder.codeOf(WORD_MUELLER));
+
+		assertEquals(1, cachingEncoder.getMissCount());
+		assertEquals(1, cachingEncoder.getHitCount());
+	}
+
+	@Test
+	public void testVariantsShareEntry() {
+		cachingEncoder.codeOf(WORD_MUELLER);
+		cachingEncoder.codeOf(" M\u00fc  ller ");
+		cachingEncoder.codeOf("M\u00dcLLER");
+
+		assertEquals(1, cachingEncoder.size());
+		assertEquals(2, cachingEncoder.getHitCount());
+	}
+
+	@Test
+	public void testIsEncodeEqual() {
+		assertTrue(cachingEncoder.isEncodeEqual(WORD_MUELLER, "Miller"));
+		assertEquals(CODE_MILBAUR, cachingEncoder.getEncodedName(WORD_MUEHLBAUER));
+	}
+
+	@Test
+	public void testResultOfWithoutTracing() {
+		assertEquals(CODE_MILR, cachingEncoder.resultOf(WORD_MUELLER, false).getCode());
+		assertEquals(1, cachingEncoder.getMissCount());
+	}
+
+	@Test
+	public void testResultOfWithTracing() {
+		assertEquals(encoder.resultOf(WORD_MUELLER).getCodePath(), cachingEncoder.resultOf(WORD_MUELLER).getCodePath());
+		assertEquals(0, cachingEncoder.getMissCount());
+	}
+
+	@Test
+	public void testEviction() {
+		CachingNameEncoder smallEncoder = new CachingNameEncoder(encoder, 16);
+
+		for (int index = 0; index < 1000; index++) {
+			smallEncoder.codeOf("Name" + index);
+		}
+
+		assertTrue(smallEncoder.size() <= 16);
+		assertEquals(1000 - smallEncoder.size(), smallEncoder.getEvictionCount());
+	}
+
+	@Test
+	public void testFrequentNameSurvivesScan() {
+		CachingNameEncoder smallEncoder = new CachingNameEncoder(encoder, 160);
+
+		smallEncoder.codeOf(WORD_MUELLER);
+		smallEncoder.codeOf(WORD_MUELLER);
+
+		for (int index = 0; index < 1000; index++) {
+			smallEncoder.codeOf("Name" + index);
+		}
+
+		long hitCount = smallEncoder.getHitCount();
+		smallEncoder.codeOf(WORD_MUELLER);
+
+		assertEquals(hitCount + 1, smallEncoder.getHitCount());
+	}
+
+	@Test
+	public void testEncoderWithoutRules() {
+		CachingNameEncoder emptyEncoder = new CachingNameEncoder(new NameEncoder(), 10);
+
+		assertEquals(" Kind ", emptyEncoder.codeOf(" Kind "));
+		assertEquals("Kind", emptyEncoder.codeOf("Kind"));
+	}
+
+	@Test
+	public void testSmallSize() {
+		CachingNameEncoder smallEncoder = new CachingNameEncoder(encoder, 2);
+
+		for (String word: new String[] { WORD_MUELLER, WORD_MUEHLBAUER, WORD_MUELLER, WORD_MUEHLBAUER, "Schmidt" }) {
+			smallEncoder.codeOf(word);
+		}
+
+		assertEquals(2, smallEncoder.size());
+		assertEquals(2, smallEncoder.getHitCount());
+		assertEquals(1, smallEncoder.getEvictionCount());
+	}
+
+	@Test
+	public void testOtherEncoder() {
+		NameEncoderInterface otherEncoder = new CachingNameEncoder(encoder, 10);
+		CachingNameEncoder outerEncoder = new CachingNameEncoder(otherEncoder, 10);
+
+		assertEquals(CODE_MILR, outerEncoder.codeOf(WORD_MUELLER));
+		assertEquals(CODE_MILR, outerEncoder.codeOf("M\u00dcLLER")); // not prepared, so another entry
+		assertEquals(CODE_MILR, outerEncoder.codeOf(WORD_MUELLER));
+
+		assertEquals(2, outerEncoder.size());
+		assertEquals(1, outerEncoder.getHitCount());
+		assertEquals(otherEncoder, outerEncoder.getEncoder());
+	}
+
+	@Test
+	public void testConcurrentReads() throws Exception {
+		CachingNameEncoder smallEncoder = new CachingNameEncoder(encoder, 100);
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		List<Callable<Boolean>> tasks = new ArrayList<>();
+
+		for (int thread = 0; thread < 4; thread++) {
+			int offset = thread;
+
+			tasks.add(() -> {
+				for (int round = 0; round < 20000; round++) {
+					String word = round % 2 == 0 ? WORD_MUELLER : "Name" + (round * 7 + offset) % 500;
+
+					if (!encoder.codeOf(word).equals(smallEncoder.codeOf(word)))
+						return false;
+				}
+				return true;
+			});
+		}
+
+		List<Boolean> results = new ArrayList<>();
+
+		for (Future<Boolean> future: executor.invokeAll(tasks)) {
+			results.add(future.get());
+		}
+
+		executor.shutdown();
+
+		assertEquals(Collections.nCopies(tasks.size(), true), results);
+		assertTrue(smallEncoder.size() <= 100);
+		assertEquals(4 * 20000, smallEncoder.getHitCount() + smallEncoder.getMissCount());
+		assertTrue(smallEncoder.getEvictionCount() <= smallEncoder.getMissCount() - smallEncoder.size()); // a name may be missed by two threads at once
+	}
+
+	@Test( expected = IllegalArgumentException.class )
+	public void testInvalidSize() {
+		new CachingNameEncoder(encoder, 0);
+	}
+
+}
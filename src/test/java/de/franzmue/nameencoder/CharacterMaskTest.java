@@ -0,0 +1,39 @@
+package de.franzmue.nameencoder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import de.franzmue.nameencoder.CharacterMask;
+
+public class CharacterMaskTest {
+
+	@Test
+	public void testLowerCaseLettersHaveTheirOwnBits() {
+		for (char c = 'a'; c <= 'z'; c++) {
+			for (char other = 'a'; other <= 'z'; other++) {
+				if (c != other)
+					assertNotEquals(CharacterMask.of(c), CharacterMask.of(other));
+			}
+		}
+	}
+
+	@Test
+	public void testMaskOfCharacters() {
+		assertEquals(CharacterMask.of('a') | CharacterMask.of('b'), CharacterMask.of("abba"));
+		assertEquals(0L, CharacterMask.of(""));
+	}
+
+	@Test
+	public void testContainsAll() {
+		long mask = CharacterMask.of("mueller");
+
+		assertTrue(CharacterMask.containsAll(mask, CharacterMask.of("ler")));
+		assertTrue(CharacterMask.containsAll(mask, 0L));
+		assertFalse(CharacterMask.containsAll(mask, CharacterMask.of("mb")));
+	}
+
+}
@@ -0,0 +1,80 @@
+package de.franzmue.nameencoder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.junit.Test;
+
+import de.franzmue.nameencoder.CodeTree;
+
+public class CodeTreeTest {
+
+	private final static String ALPHABET = "abfiklmnrst";
+
+	@Test
+	public void testDistance() {
+		assertEquals(0, CodeTree.distance("milbaur", "milbaur"));
+		assertEquals(1, CodeTree.distance("milbaur", "milbar"));
+		assertEquals(1, CodeTree.distance("milr", "mil"));
+		assertEquals(2, CodeTree.distance("smit", "snid"));
+		assertEquals(3, CodeTree.distance("kitten", "sitting"));
+		assertEquals(4, CodeTree.distance("", "milr"));
+		assertEquals(4, CodeTree.distance("milr", ""));
+	}
+
+	@Test
+	public void testAddIgnoresKnownCodes() {
+		CodeTree tree = new CodeTree();
+
+		assertTrue(tree.add("milr"));
+		assertTrue(tree.add("mil"));
+		assertFalse(tree.add("milr"));
+		assertEquals(2, tree.size());
+	}
+
+	@Test
+	public void testSearchFindsSameCodesAsComparingAll() {
+		Random random = new Random(4711);
+		CodeTree tree = new CodeTree();
+		TreeSet<String> codes = new TreeSet<>();
+
+		for (int count = 0; count < 2000; count++) {
+			String code = randomCode(random);
+			codes.add(code);
+			tree.add(code);
+		}
+
+		for (int count = 0; count < 200; count++) {
+			String query = randomCode(random);
+			int maxDistance = count % 4;
+			List<String> expected = new ArrayList<>();
+
+			for (int distance = 0; distance <= maxDistance; distance++) {
+				for (String code: codes) {
+					if (CodeTree.distance(query, code) == distance)
+						expected.add(code + ":" + distance);
+				}
+			}
+
+			assertEquals(query, expected.toString(), tree.search(query, maxDistance).toString());
+		}
+	}
+
+	private static String randomCode(Random random) {
+		StringBuilder code = new StringBuilder();
+		int length = 2 + random.nextInt(8);
+
+		for (int index = 0; index < length; index++) {
+			code.append(ALPHABET.charAt(random.nextInt(ALPHABET.length())));
+		}
+
+		return code.toString();
+	}
+
+}
@@ -0,0 +1,89 @@
+package de.franzmue.nameencoder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import de.franzmue.nameencoder.EncoderGenerator;
+import de.franzmue.nameencoder.EncoderProfile;
+import de.franzmue.nameencoder.ExtendedGermanNameEncoder;
+import de.franzmue.nameencoder.GeneratedExtendedGermanNameEncoder;
+import de.franzmue.nameencoder.GeneratedGermanNameEncoder;
+import de.franzmue.nameencoder.GermanNameEncoder;
+import de.franzmue.nameencoder.NameEncoder;
+
+public class EncoderGeneratorTest {
+
+	@Test
+	public void testGenerateUnrolledReplacementRules() {
+		String source = EncoderGenerator.generate(new GermanNameEncoder(), "GeneratedGermanNameEncoder");
+
+		assertTrue(source.contains("public final class GeneratedGermanNameEncoder extends de.franzmue.nameencoder.GermanNameEncoder {"));
+		assertTrue(source.contains("\t\t\tcase 'p':\n\t\t\t\tif (index + 2 <= length && code.charAt(index + 1) == 'h') {"));
+		assertTrue(source.contains("case '\\u00e4':"));
+		assertTrue(source.contains("RegexAutomaton.compile(new RegexRule(\"^c\", \"s\"))"));
+		assertFalse(source.contains("layer10("));
+	}
+
+	@Test
+	public void testGenerateRegexRewriterForUnsupportedRegex() {
+		String source = EncoderGenerator.generate(new ExtendedGermanNameEncoder(), "GeneratedExtendedGermanNameEncoder");
+
+		assertTrue(source.contains("new RegexRewriter(new RegexRule(\"al(i|t|u)(s.+)$\", \"al${2}\"))"));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testRejectEncoderWithOwnProcessing() {
+		EncoderGenerator.generate(new GermanNameEncoder() {
+			@Override
+			protected String postprocessCode(String newCode) {
+				return newCode;
+			}
+		}, "GeneratedEncoder");
+	}
+
+	@Test
+	public void testEscape() {
+		assertEquals("a\\\\b\\\"c\\'\\n\\u00e4\\ud83d\\ude00", EncoderGenerator.escape("a\\b\"c'\n\u00e4\ud83d\ude00", true));
+		assertEquals("\\\\u0041 \"x\" \\r", EncoderGenerator.escape("\\u0041 \"x\" \r", false));
+	}
+
+	@Test
+	public void testGeneratedEncoderKeepsCodePathAndProfile() {
+		NameEncoder encoder = new GermanNameEncoder();
+		NameEncoder generatedEncoder = new GeneratedGermanNameEncoder();
+
+		assertEquals(encoder.encode("Schmidt").getCodePath(), generatedEncoder.encode("Schmidt").getCodePath());
+
+		generatedEncoder.setProfiling(true);
+		generatedEncoder.codeOf("Schmidt");
+		EncoderProfile profile = generatedEncoder.getProfile();
+
+		assertEquals(encoder.rulesLayers.size(), profile.getLayers().size());
+		assertEquals(1, profile.getLayers().get(0).getInvocationCount());
+	}
+
+	@Test
+	public void testGeneratedEncoderMatchesRulesOnCorpus() {
+		NameEncoder encoder = new ExtendedGermanNameEncoder().setCodePathTracing(false);
+		NameEncoder generatedEncoder = new GeneratedExtendedGermanNameEncoder();
+
+		for (String word: RuleSetOptimizer.createCorpus(encoder.rulesLayers)) {
+			String expected;
+
+			try {
+				expected = encoder.codeOf(word);
+			} catch (IllegalArgumentException e) { // the rule al${2} refers to a named group
+				continue;
+			}
+
+			assertEquals(word, expected, generatedEncoder.codeOf(word));
+			assertEquals(word, expected, generatedEncoder.appendCodeOf(word, new StringBuilder()).toString());
+		}
+
+		assertEquals("milr", new GeneratedGermanNameEncoder().codeOf("M\u00fcller"));
+	}
+
+}
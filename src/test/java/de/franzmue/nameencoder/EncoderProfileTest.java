@@ -0,0 +1,113 @@
+package de.franzmue.nameencoder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import de.franzmue.nameencoder.EncoderProfile;
+import de.franzmue.nameencoder.ExtendedGermanNameEncoder;
+import de.franzmue.nameencoder.GermanNameEncoder;
+import de.franzmue.nameencoder.NameEncoder;
+
+public class EncoderProfileTest {
+
+	private final static List<String> NAMES = Arrays.asList("M\u00fcller", "Meyer", "Schmidt", "Xaver", "Philipp", "Becker", "Schulz");
+
+	private NameEncoder encoder;
+
+	@Before
+	public void setUp() {
+		this.encoder = new GermanNameEncoder().setProfiling(true);
+	}
+
+	@Test(expected = RuntimeException.class)
+	public void testProfileRequiresProfiling() {
+		new GermanNameEncoder().getProfile();
+	}
+
+	@Test
+	public void testProfilingKeepsCodes() {
+		NameEncoder referenceEncoder = new ExtendedGermanNameEncoder();
+		NameEncoder profiledEncoder = new ExtendedGermanNameEncoder().setProfiling(true).setBufferedEngine(true);
+
+		for (String name: NAMES) {
+			assertEquals(referenceEncoder.codeOf(name), profiledEncoder.codeOf(name));
+			assertEquals(referenceEncoder.resultOf(name).getCodePath(), profiledEncoder.resultOf(name).getCodePath());
+		}
+	}
+
+	@Test
+	public void testLayerCounts() {
+		encodeNames();
+
+		EncoderProfile profile = encoder.getProfile();
+		assertEquals(encoder.rulesLayers.size(), profile.getLayers().size());
+
+		for (EncoderProfile.LayerProfile layer: profile.getLayers()) {
+			assertEquals(NAMES.size(), layer.getInvocationCount());
+			assertTrue(layer.getChangeCount() <= layer.getInvocationCount());
+			assertTrue(layer.getNanoTime() >= 0);
+		}
+
+		EncoderProfile.LayerProfile umlautLayer = profile.getLayers().get(0);
+		assertEquals(1, umlautLayer.getLayerNumber());
+		assertEquals(1, umlautLayer.getChangeCount());
+		assertEquals("m\u00fcllermeyerschmidtxaverphilippbeckerschulz".length(), umlautLayer.getScannedCharacterCount());
+	}
+
+	@Test
+	public void testRuleCounts() {
+		encodeNames();
+
+		for (EncoderProfile.RuleProfile rule: encoder.getProfile().getRules()) {
+			assertTrue(rule.getSkipCount() <= rule.getInvocationCount());
+			assertTrue(rule.getChangeCount() <= rule.getInvocationCount() - rule.getSkipCount());
+
+			if (rule.getRule() instanceof ReplacementRule && rule.getRule().getSource().equals("x")) {
+				assertEquals(2, rule.getLayerNumber());
+				assertEquals(8, rule.getRuleNumber());
+				assertEquals(NAMES.size(), rule.getInvocationCount());
+				assertEquals(NAMES.size() - 1, rule.getSkipCount());
+				assertEquals(1, rule.getChangeCount());
+				assertEquals("xaver".length(), rule.getScannedCharacterCount());
+			}
+		}
+	}
+
+	@Test
+	public void testSwitchingOnStartsNewProfile() {
+		encodeNames();
+		encoder.setProfiling(true);
+
+		for (EncoderProfile.LayerProfile layer: encoder.getProfile().getLayers()) {
+			assertEquals(0, layer.getInvocationCount());
+		}
+
+		encoder.setProfiling(false);
+		assertFalse(encoder.isProfiling());
+	}
+
+	@Test
+	public void testDump() {
+		encodeNames();
+
+		String dump = encoder.getProfile().toString();
+
+		assertTrue(dump.startsWith("Layer / rule"));
+		assertTrue(dump.contains("2.5 ph -> f"));
+		assertTrue(dump.contains("/([^s])ca/ -> $1ka"));
+	}
+
+	private void encodeNames() {
+		for (String name: NAMES) {
+			encoder.codeOf(name);
+		}
+	}
+
+}
@@ -0,0 +1,159 @@
+package de.franzmue.nameencoder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import de.franzmue.nameencoder.EncodingResult;
+import de.franzmue.nameencoder.GermanNameEncoder;
+import de.franzmue.nameencoder.NameEncoder;
+import de.franzmue.nameencoder.NameEncoderInterface;
+
+public class EncodingResultTest {
+
+	final static String WORD_MUELLER = "M\u00fcller";
+	final static String CODE_MILR = "milr";
+
+	final static String WORD_MUEHLBAUER = "M\u00fchlbauer";
+	final static String CODE_MILBAUR = "milbaur";
+
+	private GermanNameEncoder encoder;
+
+	@Before
+	public void setUp() {
+		this.encoder = new GermanNameEncoder();
+	}
+
+	@Test
+	public void testCodeOf() {
+		assertEquals(CODE_MILR, encoder.codeOf(WORD_MUELLER));
+	}
+
+	@Test
+	public void testCodeOfStringBuilder() {
+		assertEquals(CODE_MILR, encoder.codeOf(new StringBuilder(WORD_MUELLER)));
+	}
+
+	@Test
+	public void testResultOf() {
+		EncodingResult result = encoder.resultOf(WORD_MUELLER);
+
+		assertEquals(WORD_MUELLER, result.getWord());
+		assertEquals(CODE_MILR, result.getCode());
+		assertEquals(encoder.encode(WORD_MUELLER).getCodePath(), result.getCodePath());
+	}
+
+	@Test
+	public void testResultOfKeepsEncoderState() {
+		encoder.encode(WORD_MUEHLBAUER);
+		encoder.resultOf(WORD_MUELLER);
+
+		assertEquals(CODE_MILBAUR, encoder.getCode());
+	}
+
+	@Test( expected = UnsupportedOperationException.class )
+	public void testImmutableCodePath() {
+		encoder.resultOf(WORD_MUELLER).getCodePath().add(CODE_MILR);
+	}
+
+	@Test
+	public void testResultOfWithoutTracing() {
+		EncodingResult result = encoder.resultOf(WORD_MUELLER, false);
+
+		assertEquals(CODE_MILR, result.getCode());
+		assertFalse(result.isCodePathTraced());
+	}
+
+	@Test( expected = RuntimeException.class )
+	public void testCodePathWithoutTracing() {
+		encoder.resultOf(WORD_MUELLER, false).getCodePath();
+	}
+
+	@Test
+	public void testResultOfFollowsEncoderTracing() {
+		encoder.setCodePathTracing(false);
+
+		assertFalse(encoder.resultOf(WORD_MUELLER).isCodePathTraced());
+		assertTrue(encoder.resultOf(WORD_MUELLER, true).isCodePathTraced());
+	}
+
+	@Test
+	public void testSharedEncoder() throws Exception {
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		List<Callable<Boolean>> tasks = new ArrayList<>();
+
+		for (int task = 0; task < 8; task++) {
+			tasks.add(() -> {
+				for (int round = 0; round < 1000; round++) {
+					if (!CODE_MILR.equals(encoder.codeOf(WORD_MUELLER)) || !CODE_MILBAUR.equals(encoder.codeOf(WORD_MUEHLBAUER)))
+						return false;
+				}
+				return true;
+			});
+		}
+
+		List<Boolean> results = new ArrayList<>();
+
+		for (Future<Boolean> future: executor.invokeAll(tasks)) {
+			results.add(future.get());
+		}
+
+		executor.shutdown();
+
+		assertEquals(Collections.nCopies(tasks.size(), true), results);
+	}
+
+	@Test
+	public void testDefaultMethods() {
+		NameEncoderInterface legacyEncoder = new LegacyEncoder(encoder);
+		EncodingResult result = legacyEncoder.resultOf(WORD_MUELLER);
+
+		assertEquals(CODE_MILR, legacyEncoder.codeOf(WORD_MUELLER));
+		assertEquals(CODE_MILR, result.getCode());
+		assertEquals(encoder.resultOf(WORD_MUELLER).getCodePath(), result.getCodePath());
+		assertFalse(legacyEncoder.resultOf(WORD_MUELLER, false).isCodePathTraced());
+		assertFalse(new LegacyEncoder(new GermanNameEncoder().setCodePathTracing(false)).resultOf(WORD_MUELLER).isCodePathTraced());
+	}
+
+	static class LegacyEncoder implements NameEncoderInterface { // implements only the methods of the first version
+
+		private final NameEncoder encoder;
+
+		LegacyEncoder(NameEncoder encoder) {
+			this.encoder = encoder;
+		}
+
+		public boolean isEncodeEqual(String word1, String word2) {
+			return getEncodedName(word1).equals(getEncodedName(word2));
+		}
+
+		public synchronized String getEncodedName(String word) {
+			return encode(word).getCode();
+		}
+
+		public NameEncoder encode(String word) {
+			return encoder.encode(word);
+		}
+
+		public String getCode() {
+			return encoder.getCode();
+		}
+
+		public List<String> getCodePath() {
+			return encoder.getCodePath();
+		}
+
+	}
+
+}
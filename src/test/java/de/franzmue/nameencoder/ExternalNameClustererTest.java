@@ -0,0 +1,241 @@
+package de.franzmue.nameencoder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryNotEmptyException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import de.franzmue.nameencoder.ExternalNameClusterer;
+import de.franzmue.nameencoder.GermanNameEncoder;
+import de.franzmue.nameencoder.NameEncoder;
+
+public class ExternalNameClustererTest {
+
+	final static String WORD_MUELLER = "M\u00fcller";
+	final static long MEGABYTE = 1L << 20;
+
+	private GermanNameEncoder encoder;
+	private Path directory;
+	private InputStream standardInput;
+	private PrintStream standardOutput;
+	private PrintStream standardError;
+
+	@Before
+	public void setUp() throws IOException {
+		this.encoder = new GermanNameEncoder();
+		this.directory = Files.createTempDirectory("clusters");
+		this.standardInput = System.in;
+		this.standardOutput = System.out;
+		this.standardError = System.err;
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		System.setIn(standardInput);
+		System.setOut(standardOutput);
+		System.setErr(standardError);
+
+		try (Stream<Path> files = Files.list(directory)) {
+			for (Path file: files.collect(Collectors.toList())) {
+				Files.delete(file);
+			}
+		}
+
+		Files.delete(directory);
+	}
+
+	@Test
+	public void testGroupInMemory() throws IOException {
+		StringWriter output = new StringWriter();
+		long count = new ExternalNameClusterer(encoder, 2, MEGABYTE, Long.MAX_VALUE, directory).group(reader("1\t" + WORD_MUELLER + "\n2\tSchmidt\n3\tMiller\n4\n"), output);
+
+		assertEquals(4, count);
+		assertEquals("4\t\n1\t" + WORD_MUELLER + "\tmilr\n3\tMiller\tmilr\n2\tSchmidt\tsmit\n", output.toString());
+		assertEquals(0, fileCount());
+	}
+
+	@Test
+	public void testGroupWithSpilledRuns() throws IOException {
+		List<String> lines = new ArrayList<>();
+
+		for (int index = 0; index < 100000; index++) {
+			lines.add(index + "\t" + (index % 3 == 0 ? WORD_MUELLER : "Name" + index % 1000));
+		}
+
+		StringWriter output = new StringWriter();
+		long count = new ExternalNameClusterer(encoder, 2, 2 * MEGABYTE, Long.MAX_VALUE, directory, 3).group(reader(String.join("\n", lines)), output);
+
+		List<String> expected = lines.stream()
+			.map(line -> line + "\t" + encoder.codeOf(line.substring(line.indexOf('\t') + 1)))
+			.sorted(Comparator.comparing(line -> line.substring(line.lastIndexOf('\t') + 1))) // stable like the grouping
+			.collect(Collectors.toList());
+
+		assertEquals(100000, count);
+		assertEquals(String.join("\n", expected) + "\n", output.toString());
+		assertEquals(0, fileCount());
+	}
+
+	@Test
+	public void testDiskBudgetIsExceeded() throws IOException {
+		StringBuilder input = new StringBuilder();
+
+		for (int index = 0; index < 50000; index++) {
+			input.append("Schmidt").append(index).append('\n');
+		}
+
+		try {
+			new ExternalNameClusterer(encoder, 0, MEGABYTE, 100000, directory).group(reader(input.toString()), new StringWriter());
+			fail();
+		} catch (IOException e) {
+			assertEquals(0, fileCount());
+		}
+	}
+
+	@Test
+	public void testFailedDeletionDoesNotHideFailure() throws IOException {
+		String failingName = "Failing";
+		List<Path> blockedFiles = new ArrayList<>();
+		GermanNameEncoder failingEncoder = new GermanNameEncoder() {
+
+			@Override
+			public String codeOf(CharSequence word) {
+				if (!failingName.contentEquals(word))
+					return super.codeOf(word);
+
+				try (Stream<Path> files = Files.list(directory)) { // the run files are replaced by directories, which cannot be deleted
+					for (Path file: files.collect(Collectors.toList())) {
+						Files.delete(file);
+						Files.createFile(Files.createDirectory(file).resolve("blocking"));
+						blockedFiles.add(file);
+					}
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+
+				throw new IllegalStateException(failingName);
+			}
+
+		};
+		StringBuilder input = new StringBuilder();
+
+		for (int index = 0; index < 50000; index++) {
+			input.append("Schmidt").append(index).append('\n');
+		}
+
+		input.append(failingName).append('\n');
+
+		try {
+			new ExternalNameClusterer(failingEncoder, 0, MEGABYTE, Long.MAX_VALUE, directory).group(reader(input.toString()), new StringWriter());
+			fail();
+		} catch (IllegalStateException e) {
+			assertTrue(e.getMessage(), e.getMessage().endsWith(failingName)); // rethrown by a parallel stream it is wrapped in a copy
+			assertFalse(blockedFiles.isEmpty());
+			assertEquals(1, e.getSuppressed().length);
+			assertTrue(e.getSuppressed()[0] instanceof DirectoryNotEmptyException);
+		} finally {
+			for (Path file: blockedFiles) {
+				Files.delete(file.resolve("blocking"));
+			}
+		}
+	}
+
+	@Test
+	public void testMainStandardInput() {
+		System.setIn(new ByteArrayInputStream((WORD_MUELLER + "\nSchmidt\nMiller\n").getBytes(StandardCharsets.UTF_8)));
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		System.setOut(new PrintStream(output));
+
+		GermanNameEncoder.main(new String[] { "--group", "--memory", "16", "--temp", directory.toString() });
+
+		assertEquals(WORD_MUELLER + "\tmilr\nMiller\tmilr\nSchmidt\tsmit\n", new String(output.toByteArray(), StandardCharsets.UTF_8));
+	}
+
+	@Test
+	public void testInvalidArguments() {
+		ByteArrayOutputStream error = new ByteArrayOutputStream();
+		System.setErr(new PrintStream(error));
+
+		assertEquals(NameEncoder.USAGE_STATUS, ExternalNameClusterer.createGroups(new String[] { "--group", "--disk", "x" }, encoder));
+		assertEquals(NameEncoder.USAGE_STATUS, ExternalNameClusterer.createGroups(new String[] { "--group", "--memory", "0" }, encoder));
+		assertEquals(NameEncoder.FAILURE_STATUS, ExternalNameClusterer.createGroups(new String[] { "--group", "missing/names.txt" }, encoder));
+		assertTrue(error.toString().contains("The memory budget has to be at least 1 MB!"));
+	}
+
+	@Test
+	public void testMainDiskBudgetIsExceeded() {
+		StringBuilder input = new StringBuilder();
+
+		for (int index = 0; index < 50000; index++) {
+			input.append("Schmidt").append(index).append('\n');
+		}
+
+		System.setIn(new ByteArrayInputStream(input.toString().getBytes(StandardCharsets.UTF_8)));
+		System.setOut(new PrintStream(new ByteArrayOutputStream()));
+		ByteArrayOutputStream error = new ByteArrayOutputStream();
+		System.setErr(new PrintStream(error));
+
+		String[] args = { "--group", "--memory", "1", "--disk", "0", "--temp", directory.toString() };
+
+		assertEquals(NameEncoder.FAILURE_STATUS, ExternalNameClusterer.createGroups(args, encoder));
+		assertTrue(error.toString().contains("disk budget"));
+	}
+
+	@Test
+	public void testFailingEncodingIsThrown() {
+		System.setIn(new ByteArrayInputStream((WORD_MUELLER + "\n").getBytes(StandardCharsets.UTF_8)));
+		GermanNameEncoder failingEncoder = new GermanNameEncoder() {
+
+			@Override
+			public String codeOf(CharSequence word) {
+				throw new IllegalArgumentException("failing rule");
+			}
+
+		};
+
+		try {
+			ExternalNameClusterer.createGroups(new String[] { "--group", "--temp", directory.toString() }, failingEncoder);
+			fail();
+		} catch (IllegalArgumentException e) {
+			assertEquals("failing rule", e.getMessage());
+		}
+	}
+
+	@Test( expected = IllegalArgumentException.class )
+	public void testTooSmallMemoryBudget() {
+		new ExternalNameClusterer(encoder, 0, 1000, Long.MAX_VALUE, directory);
+	}
+
+	private long fileCount() throws IOException {
+		try (Stream<Path> files = Files.list(directory)) {
+			return files.count();
+		}
+	}
+
+	private static BufferedReader reader(String input) {
+		return new BufferedReader(new StringReader(input));
+	}
+
+}
@@ -0,0 +1,48 @@
+package de.franzmue.nameencoder;
+
+import static org.junit.Assert.*;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+
+import de.franzmue.nameencoder.GermanNamesEncoderTest;
+import de.franzmue.nameencoder.GeneratedGermanNameEncoder;
+
+@RunWith(Parameterized.class)
+public class GeneratedGermanNamesEncoderTest {
+
+	private GeneratedGermanNameEncoder encoder;
+	
+	private String word;
+	private String expectedCode;
+
+	@Before
+	public void setUp() {
+		this.encoder = new GeneratedGermanNameEncoder();
+	}
+
+	public GeneratedGermanNamesEncoderTest(String word, String expectedCode) {
+		this.word = word;
+		this.expectedCode = expectedCode;
+	}
+
+	@Parameters(name= "{index}: encode[{0}] -> {1}")
+	public static Iterable<Object[]> encodeWords() {
+		return GermanNamesEncoderTest.encodeWords();
+	}
+
+	@Test
+	public void testCodeOf() {
+		assertEquals(expectedCode, encoder.codeOf(word));
+	}
+
+	@Test
+	public void testEncodeWords() {
+		assertEquals(expectedCode, encoder.encode(word).getCode());
+		assertEquals(expectedCode, encoder.setCodePathTracing(false).encode(word).getCode());
+	}
+
+}
@@ -172,6 +172,31 @@ public class GermanNameEncoderTest {
 		assertEquals(code, codePath.get(codePath.size() - 1));
 	}
 
+	@Test
+	public void testEncodeGetCodeWithoutTracing() {
+		String word = WORD_MUELLER;
+		String code = encoder.setCodePathTracing(false).encode(word).getCode();
+
+		String expectedCode = CODE_MILR;
+
+		assertEquals(expectedCode, code);
+	}
+
+	@Test( expected = RuntimeException.class )
+	public void testEncodeGetCodePathWithoutTracing() {
+		String word = WORD_MUELLER;
+		encoder.setCodePathTracing(false).encode(word).getCodePath();
+	}
+
+	@Test
+	public void testEncodeGetCodePathAfterSwitchingTracingOn() {
+		String word = WORD_MUELLER;
+		encoder.setCodePathTracing(false).encode(word);
+		List<String> codePath = encoder.setCodePathTracing(true).encode(word).getCodePath();
+
+		assertEquals(CODE_PATH_SIZE, codePath.size());
+	}
+
 	@Test
 	public void testIsEncodeEqualSameWords() {
 		String leftWord = WORD_MUELLER;
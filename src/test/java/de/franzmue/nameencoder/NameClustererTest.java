@@ -0,0 +1,170 @@
+package de.franzmue.nameencoder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import de.franzmue.nameencoder.GermanNameEncoder;
+import de.franzmue.nameencoder.NameClusterer;
+import de.franzmue.nameencoder.NameEncoder;
+import de.franzmue.nameencoder.NameClusterer.Cluster;
+
+public class NameClustererTest {
+
+	final static String WORD_MUELLER = "M\u00fcller";
+	final static String WORD_MUEHLBAUER = "M\u00fchlbauer";
+
+	private GermanNameEncoder encoder;
+	private InputStream standardInput;
+	private PrintStream standardOutput;
+	private PrintStream standardError;
+
+	@Before
+	public void setUp() {
+		this.encoder = new GermanNameEncoder();
+		this.standardInput = System.in;
+		this.standardOutput = System.out;
+		this.standardError = System.err;
+	}
+
+	@After
+	public void tearDown() {
+		System.setIn(standardInput);
+		System.setOut(standardOutput);
+		System.setErr(standardError);
+	}
+
+	@Test
+	public void testClusterNames() {
+		List<Cluster> clusters = new NameClusterer(encoder, 0).cluster(Arrays.asList(WORD_MUELLER, "Miller", "Schmidt", WORD_MUELLER, "", "Milpauer"));
+
+		assertEquals("[milr:3{M\u00fcller=2, Miller=1}, milbaur:1{Milpauer=1}, smit:1{Schmidt=1}]", clusters.toString());
+	}
+
+	@Test
+	public void testClusterColumnOfLines() throws Exception {
+		List<Cluster> clusters = new NameClusterer(encoder, 2).cluster(reader("1\t" + WORD_MUEHLBAUER + "\tMunich\n2\n3\tMilpauer\n"));
+
+		assertEquals("[milbaur:2{Milpauer=1, M\u00fchlbauer=1}]", clusters.toString());
+	}
+
+	@Test
+	public void testClusterMoreNamesThanBatch() {
+		List<String> names = new ArrayList<>();
+
+		for (int index = 0; index < 200000; index++) {
+			names.add(index % 3 == 0 ? WORD_MUELLER : "Name" + index % 1000);
+		}
+
+		List<Cluster> clusters = new NameClusterer(encoder, 0).cluster(names);
+		long size = clusters.stream().mapToLong(Cluster::getSize).sum();
+
+		assertEquals(200000, size);
+		assertEquals("milr", clusters.get(0).getCode());
+		assertEquals(66667, clusters.get(0).getSize());
+	}
+
+	@Test
+	public void testClusterLikeGroupingByCode() {
+		Random random = new Random(5);
+		List<String> names = new ArrayList<>();
+		Map<String, Long> expectedSizes = new HashMap<>();
+
+		for (int index = 0; index < 20000; index++) {
+			String name = "Schwarzkopf".substring(0, 1 + random.nextInt(11)) + random.nextInt(3000) % 700 + (random.nextBoolean() ? "bergmann" : "");
+			names.add(name); // many of the codes are longer than a packed code or contain digits
+
+			expectedSizes.merge(encoder.codeOf(name), 1L, Long::sum);
+		}
+
+		Map<String, Long> sizes = new HashMap<>();
+
+		for (Cluster cluster: new NameClusterer(encoder, 0).cluster(names)) {
+			assertNull(sizes.put(cluster.getCode(), cluster.getSize()));
+		}
+
+		assertEquals(expectedSizes, sizes);
+	}
+
+	@Test
+	public void testWriteLargeClusters() throws Exception {
+		StringWriter output = new StringWriter();
+		List<Cluster> clusters = new NameClusterer(encoder, 0).cluster(Arrays.asList(WORD_MUELLER, "Miller", "Schmidt"));
+
+		NameClusterer.write(clusters, 2, output);
+
+		assertEquals("2\tmilr\n\t1\tMiller\n\t1\t" + WORD_MUELLER + "\n", output.toString());
+	}
+
+	@Test
+	public void testMainStandardInput() {
+		System.setIn(new ByteArrayInputStream((WORD_MUELLER + "\nSchmidt\nMiller\n").getBytes(StandardCharsets.UTF_8)));
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		System.setOut(new PrintStream(output));
+
+		GermanNameEncoder.main(new String[] { "--cluster", "--min-size", "2" });
+
+		assertEquals("2\tmilr\n\t1\tMiller\n\t1\t" + WORD_MUELLER + "\n", new String(output.toByteArray(), StandardCharsets.UTF_8));
+	}
+
+	@Test
+	public void testInvalidArguments() {
+		ByteArrayOutputStream error = new ByteArrayOutputStream();
+		System.setErr(new PrintStream(error));
+
+		assertEquals(NameEncoder.USAGE_STATUS, NameClusterer.createClusters(new String[] { "--cluster", "--min-size" }, encoder));
+		assertEquals(NameEncoder.USAGE_STATUS, NameClusterer.createClusters(new String[] { "--cluster", "--column", "-1" }, encoder));
+		assertEquals(NameEncoder.FAILURE_STATUS, NameClusterer.createClusters(new String[] { "--cluster", "missing/names.txt" }, encoder));
+		assertTrue(error.toString().contains("The column number has to be positive!"));
+	}
+
+	@Test
+	public void testFailingEncodingIsThrown() {
+		System.setIn(new ByteArrayInputStream((WORD_MUELLER + "\n").getBytes(StandardCharsets.UTF_8)));
+		GermanNameEncoder failingEncoder = new GermanNameEncoder() {
+
+			@Override
+			public String codeOf(CharSequence word) {
+				throw new IllegalArgumentException("failing rule");
+			}
+
+		};
+
+		try {
+			NameClusterer.createClusters(new String[] { "--cluster" }, failingEncoder);
+			fail();
+		} catch (IllegalArgumentException e) {
+			assertEquals("failing rule", e.getMessage());
+		}
+	}
+
+	@Test( expected = IllegalArgumentException.class )
+	public void testNegativeColumn() {
+		new NameClusterer(encoder, -1);
+	}
+
+	private static BufferedReader reader(String input) {
+		return new BufferedReader(new StringReader(input));
+	}
+
+}
@@ -0,0 +1,95 @@
+package de.franzmue.nameencoder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import de.franzmue.nameencoder.CachingNameEncoder;
+import de.franzmue.nameencoder.ExtendedGermanNameEncoder;
+import de.franzmue.nameencoder.GeneratedExtendedGermanNameEncoder;
+import de.franzmue.nameencoder.GeneratedGermanNameEncoder;
+import de.franzmue.nameencoder.GermanNameEncoder;
+import de.franzmue.nameencoder.GermanNamesEncoderTest;
+import de.franzmue.nameencoder.NameEncoder;
+import de.franzmue.nameencoder.NameEncoderInterface;
+import de.franzmue.nameencoder.NameMatcher;
+
+public class NameMatcherTest {
+
+	final static String WORD_MUELLER = "M\u00fcller";
+	final static String CODE_MILR = "milr";
+
+	@Test
+	public void testMatches() {
+		NameMatcher matcher = new GermanNameEncoder().matcherFor(WORD_MUELLER);
+
+		assertEquals(WORD_MUELLER, matcher.getQuery());
+		assertEquals(CODE_MILR, matcher.getCode());
+		assertTrue(matcher.matches("Miller"));
+		assertTrue(matcher.matches("M\u00fcler"));
+		assertFalse(matcher.matches("Mahler"));
+		assertFalse(matcher.matches("Schmidt"));
+		assertFalse(matcher.matches(""));
+	}
+
+	@Test
+	public void testMatchesLikeEncodeEqual() {
+		List<NameEncoderInterface> encoders = Arrays.asList(new GermanNameEncoder(), new ExtendedGermanNameEncoder(),
+			new GermanNameEncoder().compile(), new ExtendedGermanNameEncoder().setBufferedEngine(true),
+			new GeneratedGermanNameEncoder(), new GeneratedExtendedGermanNameEncoder(),
+			new CachingNameEncoder(new ExtendedGermanNameEncoder(), 100), new GermanNameEncoder().setProfiling(true));
+		List<String> names = names();
+
+		for (NameEncoderInterface encoder: encoders) {
+			for (String query: names.subList(0, 40)) {
+				NameMatcher matcher = encoder.matcherFor(query);
+
+				for (String candidate: names) {
+					assertEquals(query + " / " + candidate, encoder.isEncodeEqual(query, candidate), matcher.matches(candidate));
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testFilter() {
+		List<String> candidates = new ArrayList<>();
+
+		for (int count = 0; count < 1000; count++) {
+			candidates.add(count % 3 == 0 ? (count % 2 == 0 ? "Miller" : "Myller") : "Mahler");
+		}
+
+		candidates.add("M\u00fcler");
+		List<String> matches = new ExtendedGermanNameEncoder().matcherFor(WORD_MUELLER).filter(candidates);
+
+		assertEquals(335, matches.size());
+		assertEquals("Miller", matches.get(0));
+		assertEquals("Myller", matches.get(1));
+		assertEquals("M\u00fcler", matches.get(334));
+	}
+
+	@Test
+	public void testEncoderWithoutRules() {
+		NameMatcher matcher = new NameEncoder().matcherFor(WORD_MUELLER);
+
+		assertTrue(matcher.matches(WORD_MUELLER));
+		assertFalse(matcher.matches("m\u00fcller"));
+	}
+
+	private static List<String> names() {
+		List<String> names = new ArrayList<>();
+
+		for (Object[] parameters: GermanNamesEncoderTest.encodeWords()) {
+			names.add((String) parameters[0]);
+		}
+
+		return names;
+	}
+
+}
@@ -0,0 +1,73 @@
+package de.franzmue.nameencoder;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import org.junit.Test;
+
+import de.franzmue.nameencoder.OffHeapArray;
+
+public class OffHeapArrayTest {
+
+	@Test
+	public void testValues() {
+		OffHeapArray array = OffHeapArray.allocate(64);
+		array.putLong(7, -2L);
+		array.putInt(2, 5);
+		array.putByte(3, (byte) 1);
+
+		assertEquals(-2L, array.getLong(7));
+		assertEquals(5, array.getInt(2));
+		assertEquals(1, array.getInt(0)); // big endian
+		assertEquals(0L, array.getLong(6));
+	}
+
+	@Test
+	public void testValuesAcrossChunks() {
+		long index = OffHeapArray.CHUNK_SIZE / 8 - 1;
+		OffHeapArray array = OffHeapArray.allocate(OffHeapArray.CHUNK_SIZE + 16L);
+		array.putLong(index, 1L);
+		array.putLong(index + 1, 2L);
+		array.putLong(index + 2, 3L);
+
+		OffHeapArray copy = array.copyOf(OffHeapArray.CHUNK_SIZE + 8L);
+
+		assertEquals(1L, copy.getLong(index));
+		assertEquals(2L, copy.getLong(index + 1));
+		assertEquals(OffHeapArray.CHUNK_SIZE + 8L, copy.length());
+	}
+
+	@Test
+	public void testWriteAndMap() throws IOException {
+		Path file = Files.createTempFile("array", ".bin");
+		OffHeapArray array = OffHeapArray.allocate(24);
+		array.fill(-1L);
+		array.putInt(2, 42);
+
+		try {
+			try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+				channel.write(ByteBuffer.wrap(new byte[8]));
+				array.write(channel, array.length());
+			}
+
+			OffHeapArray mapped;
+
+			try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+				mapped = OffHeapArray.map(channel, 8, 24);
+			}
+
+			assertEquals(-1L, mapped.getLong(0));
+			assertEquals(42, mapped.getInt(2));
+			assertEquals(-1L, mapped.getLong(2));
+		} finally {
+			Files.delete(file);
+		}
+	}
+
+}
@@ -0,0 +1,137 @@
+package de.franzmue.nameencoder;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import de.franzmue.nameencoder.ExtendedGermanNameEncoder;
+import de.franzmue.nameencoder.GermanNameEncoder;
+import de.franzmue.nameencoder.OffHeapPhoneticIndex;
+import de.franzmue.nameencoder.PhoneticIndex;
+
+public class OffHeapPhoneticIndexTest {
+
+	final static String[] WORDS = { "M\u00fcller", "Miller", "M\u00fchlbauer", "Milpauer", "Dietrich", "Schmidt" };
+	final static String LONG_CODE = "abcdefghijklmnop";
+
+	private GermanNameEncoder encoder;
+	private OffHeapPhoneticIndex index;
+	private Path file;
+
+	@Before
+	public void setUp() throws IOException {
+		this.encoder = new GermanNameEncoder();
+		this.file = Files.createTempFile("names", ".phoh");
+
+		OffHeapPhoneticIndex.Builder builder = new OffHeapPhoneticIndex.Builder(encoder);
+
+		for (int id = 0; id < WORDS.length; id++) {
+			builder.add(WORDS[id], id);
+		}
+
+		this.index = builder.add("Mi\u00dfler", -7).addCode(LONG_CODE, 9).add("Dittrich", 1L << 40).addCode(LONG_CODE, 8).build();
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		Files.deleteIfExists(file);
+	}
+
+	@Test
+	public void testLookup() {
+		assertLookup(index);
+	}
+
+	@Test
+	public void testLookupInFile() throws IOException {
+		index.write(file);
+
+		assertLookup(OffHeapPhoneticIndex.open(file, encoder));
+	}
+
+	@Test
+	public void testSameIdsAsPhoneticIndex() throws IOException {
+		Random random = new Random(3);
+		String[] names = new String[30000];
+		long[] ids = new long[names.length];
+		PhoneticIndex phoneticIndex = new PhoneticIndex(encoder);
+
+		for (int position = 0; position < names.length; position++) {
+			names[position] = random.nextInt(5) == 0 ? "M\u00fcller" : "Name" + random.nextInt(10000) + (random.nextInt(50) == 0 ? "schwartzkopfberger" : "");
+			ids[position] = random.nextInt(1000000);
+			phoneticIndex.add(names[position], ids[position]);
+		}
+
+		OffHeapPhoneticIndex offHeapIndex = new OffHeapPhoneticIndex.Builder(encoder).addNames(names, ids).build();
+		offHeapIndex.write(file);
+		OffHeapPhoneticIndex fileIndex = OffHeapPhoneticIndex.open(file, encoder);
+
+		for (OffHeapPhoneticIndex checkedIndex: Arrays.asList(offHeapIndex, fileIndex)) {
+			assertEquals(phoneticIndex.getCodeCount(), checkedIndex.getCodeCount());
+			assertEquals(phoneticIndex.size(), checkedIndex.size());
+
+			phoneticIndex.forEach((code, codeIds) -> {
+				assertArrayEquals(code, codeIds, checkedIndex.lookupCode(code));
+				assertEquals(code, codeIds.length, checkedIndex.count(code));
+			});
+		}
+	}
+
+	@Test
+	public void testRepeatedOverflowCodeStoredOnce() throws IOException {
+		Path otherFile = Files.createTempFile("names", ".phoh");
+		OffHeapPhoneticIndex.Builder builder = new OffHeapPhoneticIndex.Builder(encoder);
+
+		for (int id = 0; id < 1000; id++) {
+			builder.addCode(LONG_CODE, id);
+		}
+
+		try {
+			new OffHeapPhoneticIndex.Builder(encoder).addCode(LONG_CODE, 0).addCode(LONG_CODE, 1).build().write(file);
+			builder.build().write(otherFile);
+
+			assertEquals(Files.size(file) + 998 * 4, Files.size(otherFile)); // only the ids are added
+			assertEquals(1000, OffHeapPhoneticIndex.open(otherFile, encoder).count(LONG_CODE));
+		} finally {
+			Files.delete(otherFile);
+		}
+	}
+
+	@Test( expected = IOException.class )
+	public void testOpenWithOtherEncoder() throws IOException {
+		index.write(file);
+
+		OffHeapPhoneticIndex.open(file, new ExtendedGermanNameEncoder());
+	}
+
+	@Test( expected = IOException.class )
+	public void testOpenTruncatedFile() throws IOException {
+		index.write(file);
+		byte[] bytes = Files.readAllBytes(file);
+		Files.write(file, Arrays.copyOf(bytes, bytes.length - 9));
+
+		OffHeapPhoneticIndex.open(file, encoder);
+	}
+
+	private static void assertLookup(OffHeapPhoneticIndex index) {
+		assertArrayEquals(new long[] { 0, 1 }, index.lookup("Myller"));
+		assertArrayEquals(new long[] { 4, 1L << 40 }, index.lookup("Dietrich"));
+		assertArrayEquals(new long[] { -7 }, index.lookupCode("mislr"));
+		assertArrayEquals(new long[] { 9, 8 }, index.lookupCode(LONG_CODE));
+		assertEquals(0, index.lookupCode(LONG_CODE + "q").length);
+		assertEquals(0, index.lookup("Fuchs").length);
+		assertEquals(2, index.count("milr"));
+		assertEquals(6, index.getCodeCount());
+		assertEquals(10, index.size());
+	}
+
+}
@@ -0,0 +1,94 @@
+package de.franzmue.nameencoder;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+import de.franzmue.nameencoder.GermanNameEncoder;
+import de.franzmue.nameencoder.PackedCode;
+
+public class PackedCodeTest {
+
+	@Test
+	public void testPackAndUnpack() {
+		for (String code: new String[] { "", "a", "z", "milr", "smit", "milbaur", "zzzzzzzzzzzz", "abcdefghijkl" }) {
+			long packedCode = PackedCode.pack(code);
+
+			assertFalse(code, PackedCode.isOverflow(packedCode));
+			assertEquals(code, PackedCode.unpack(packedCode));
+			assertEquals(code, code.length(), PackedCode.length(packedCode));
+		}
+
+		assertEquals(PackedCode.EMPTY, PackedCode.pack(""));
+	}
+
+	@Test
+	public void testOverflowForms() {
+		for (String code: new String[] { "abcdefghijklm", "m\u00fcller", "Milr", "mil r", "a1" }) {
+			long packedCode = PackedCode.pack(code);
+
+			assertTrue(code, PackedCode.isOverflow(packedCode));
+			assertFalse(code, PackedCode.canPack(code));
+			assertEquals(code, packedCode, PackedCode.pack(new StringBuilder(code)));
+		}
+
+		assertNotEquals(PackedCode.pack("abcdefghijklm"), PackedCode.pack("abcdefghijkln"));
+	}
+
+	@Test( expected = IllegalArgumentException.class )
+	public void testOverflowFormCannotBeUnpacked() {
+		PackedCode.unpack(PackedCode.pack("abcdefghijklmn"));
+	}
+
+	@Test
+	public void testCompareLikeCodes() {
+		Random random = new Random(42);
+
+		for (int count = 0; count < 10000; count++) {
+			String code = randomCode(random);
+			String otherCode = randomCode(random);
+
+			assertEquals(code + " " + otherCode, Integer.signum(code.compareTo(otherCode)), Integer.signum(PackedCode.compare(PackedCode.pack(code), PackedCode.pack(otherCode))));
+			assertEquals(code.equals(otherCode), PackedCode.pack(code) == PackedCode.pack(otherCode));
+		}
+	}
+
+	@Test
+	public void testHashSpreadsLowBits() {
+		Set<Integer> buckets = new HashSet<>();
+
+		for (char letter = 'a'; letter <= 'z'; letter++) {
+			buckets.add(PackedCode.hash(PackedCode.pack("milbau" + letter)) & 63);
+		}
+
+		assertTrue(buckets.toString(), buckets.size() > 13);
+	}
+
+	@Test
+	public void testPackedCodesOfEncoder() {
+		GermanNameEncoder encoder = new GermanNameEncoder();
+		String[] names = { "M\u00fcller", "Miller", "Schmidt", "" };
+
+		assertEquals(PackedCode.pack("milr"), encoder.packedCodeOf("M\u00fcller"));
+		assertArrayEquals(new long[] { PackedCode.pack("milr"), PackedCode.pack("milr"), PackedCode.pack("smit"), PackedCode.EMPTY }, encoder.packedCodesOf(names));
+	}
+
+	private static String randomCode(Random random) {
+		char[] code = new char[random.nextInt(PackedCode.MAXIMUM_LENGTH + 1)];
+
+		for (int index = 0; index < code.length; index++) {
+			code[index] = (char) ('a' + random.nextInt(random.nextBoolean() ? 3 : 26));
+		}
+
+		return new String(code);
+	}
+
+}
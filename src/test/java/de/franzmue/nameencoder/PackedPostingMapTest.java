@@ -0,0 +1,121 @@
+package de.franzmue.nameencoder;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import org.junit.Test;
+
+import de.franzmue.nameencoder.GermanNameEncoder;
+import de.franzmue.nameencoder.PackedCode;
+import de.franzmue.nameencoder.PackedPostingMap;
+import de.franzmue.nameencoder.PhoneticIndex;
+
+public class PackedPostingMapTest {
+
+	final static String LONG_CODE = "abcdefghijklmnop";
+
+	@Test
+	public void testLookup() {
+		PackedPostingMap map = new PackedPostingMap.Builder()
+			.add("milr", 3)
+			.add("smit", 1)
+			.add("milr", 2)
+			.add("", 7)
+			.add(LONG_CODE, 5)
+			.add(LONG_CODE, 4)
+			.build();
+
+		assertArrayEquals(new long[] { 3, 2 }, map.lookup("milr"));
+		assertArrayEquals(new long[] { 3, 2 }, map.lookupPacked(PackedCode.pack("milr")));
+		assertArrayEquals(new long[] { 7 }, map.lookup(""));
+		assertArrayEquals(new long[] { 5, 4 }, map.lookup(LONG_CODE));
+		assertArrayEquals(new long[0], map.lookup("mil"));
+		assertArrayEquals(new long[0], map.lookup(LONG_CODE + "q"));
+		assertEquals(2, map.count(PackedCode.pack("milr")));
+		assertEquals(0, map.count(PackedCode.pack("mil")));
+		assertEquals(4, map.getCodeCount());
+		assertEquals(6, map.size());
+	}
+
+	@Test
+	public void testLongIds() {
+		PackedPostingMap map = new PackedPostingMap.Builder().add("milr", 1L << 40).add("milr", -1).add("smit", 2).build();
+
+		assertArrayEquals(new long[] { 1L << 40, -1 }, map.lookup("milr"));
+		assertArrayEquals(new long[] { 2 }, map.lookup("smit"));
+	}
+
+	@Test
+	public void testForEachId() {
+		PackedPostingMap map = new PackedPostingMap.Builder().add("milr", 3).add("milr", 2).build();
+		long[] sum = new long[1];
+
+		map.forEachId(PackedCode.pack("milr"), id -> sum[0] += id);
+		map.forEachId(PackedCode.pack("smit"), id -> sum[0] += 100);
+
+		assertEquals(5, sum[0]);
+	}
+
+	@Test( expected = IllegalArgumentException.class )
+	public void testOverflowFormIsNotLookedUp() {
+		new PackedPostingMap.Builder().add(LONG_CODE, 5).build().lookupPacked(PackedCode.pack(LONG_CODE));
+	}
+
+	@Test
+	public void testSameIdsAsPhoneticIndex() {
+		GermanNameEncoder encoder = new GermanNameEncoder();
+		Random random = new Random(7);
+		String[] names = new String[50000];
+		long[] ids = new long[names.length];
+
+		for (int index = 0; index < names.length; index++) {
+			names[index] = random.nextInt(4) == 0 ? "M\u00fcller" : "Name" + random.nextInt(20000) + (random.nextInt(100) == 0 ? "schwartzkopfberger" : "");
+			ids[index] = index;
+		}
+
+		PackedPostingMap map = new PackedPostingMap.Builder().addNames(encoder, names, ids).build();
+		PhoneticIndex index = new PhoneticIndex(encoder);
+
+		for (int position = 0; position < names.length; position++) {
+			index.add(names[position], ids[position]);
+		}
+
+		assertEquals(index.getCodeCount(), map.getCodeCount());
+		assertEquals(index.size(), map.size());
+
+		index.forEach((code, codeIds) -> assertArrayEquals(code, codeIds, map.lookup(code)));
+	}
+
+	@Test
+	public void testConcurrentLookup() {
+		PackedPostingMap.Builder builder = new PackedPostingMap.Builder();
+
+		for (int id = 0; id < 100000; id++) {
+			builder.add(codeOf(id % 1000), id);
+		}
+
+		PackedPostingMap map = builder.build();
+
+		IntStream.range(0, 1000).parallel().forEach(key -> {
+			long[] ids = map.lookup(codeOf(key));
+
+			assertEquals(100, ids.length);
+			assertEquals(key, ids[0]);
+		});
+	}
+
+	private static String codeOf(int number) {
+		StringBuilder code = new StringBuilder();
+
+		do {
+			code.append((char) ('a' + number % 26));
+			number /= 26;
+		} while (number > 0);
+
+		return code.toString();
+	}
+
+}
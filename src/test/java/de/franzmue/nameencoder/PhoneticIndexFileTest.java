@@ -0,0 +1,126 @@
+package de.franzmue.nameencoder;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import de.franzmue.nameencoder.CachingNameEncoder;
+import de.franzmue.nameencoder.EncodingResultTest;
+import de.franzmue.nameencoder.ExtendedGermanNameEncoder;
+import de.franzmue.nameencoder.GermanNameEncoder;
+import de.franzmue.nameencoder.PhoneticIndex;
+import de.franzmue.nameencoder.PhoneticIndexFile;
+
+public class PhoneticIndexFileTest {
+
+	final static String[] WORDS = { "M\u00fcller", "Miller", "M\u00fchlbauer", "Milpauer", "Dietrich", "Schmidt" };
+
+	private GermanNameEncoder encoder;
+	private Path file;
+
+	@Before
+	public void setUp() throws IOException {
+		this.encoder = new GermanNameEncoder();
+		this.file = Files.createTempFile("names", ".phix");
+
+		PhoneticIndex index = new PhoneticIndex(encoder);
+
+		for (int id = 0; id < WORDS.length; id++) {
+			index.add(WORDS[id], id);
+		}
+
+		index.add("Mi\u00dfler", -7);
+		index.add("Dittrich", 1L << 40);
+
+		PhoneticIndexFile.write(index, file);
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		Files.deleteIfExists(file);
+	}
+
+	@Test
+	public void testLookup() throws IOException {
+		PhoneticIndexFile indexFile = PhoneticIndexFile.open(file, encoder);
+
+		assertArrayEquals(new long[] { 0, 1 }, indexFile.lookup("Myller"));
+		assertArrayEquals(new long[] { 4, 1L << 40 }, indexFile.lookup("Dietrich"));
+		assertArrayEquals(new long[] { -7 }, indexFile.lookupCode("mislr"));
+		assertEquals(0, indexFile.lookup("Fuchs").length);
+		assertEquals(5, indexFile.getCodeCount());
+		assertEquals(8, indexFile.size());
+	}
+
+	@Test
+	public void testLookupAllCodes() throws IOException {
+		PhoneticIndexFile indexFile = PhoneticIndexFile.open(file, new CachingNameEncoder(encoder, 10));
+
+		for (String word: WORDS) {
+			assertTrue(word, indexFile.lookup(word).length > 0);
+		}
+	}
+
+	@Test( expected = IOException.class )
+	public void testOpenWithOtherEncoder() throws IOException {
+		PhoneticIndexFile.open(file, new ExtendedGermanNameEncoder());
+	}
+
+	@Test( expected = IOException.class )
+	public void testOpenWithOtherRules() throws IOException {
+		GermanNameEncoder otherEncoder = new GermanNameEncoder();
+		otherEncoder.addReplacementRuleLayer(new String[][] { { "t", "d" } });
+
+		PhoneticIndexFile.open(file, otherEncoder);
+	}
+
+	@Test( expected = IOException.class )
+	public void testOpenOtherFile() throws IOException {
+		Files.write(file, new byte[] { 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12 });
+
+		PhoneticIndexFile.open(file, encoder);
+	}
+
+	@Test
+	public void testOpenTruncatedFile() throws IOException {
+		byte[] bytes = Files.readAllBytes(file);
+		Files.write(file, Arrays.copyOf(bytes, bytes.length - 1));
+
+		assertDamaged();
+	}
+
+	@Test
+	public void testOpenFileWithInvalidCodeCount() throws IOException {
+		byte[] bytes = Files.readAllBytes(file);
+		ByteBuffer.wrap(bytes).putInt(12 + GermanNameEncoder.class.getName().length() + 32, Integer.MAX_VALUE);
+		Files.write(file, bytes);
+
+		assertDamaged();
+	}
+
+	@Test( expected = IllegalArgumentException.class )
+	public void testOpenWithOtherEncoderType() throws IOException {
+		PhoneticIndexFile.open(file, new CachingNameEncoder(new EncodingResultTest.LegacyEncoder(encoder), 10));
+	}
+
+	private void assertDamaged() {
+		try {
+			PhoneticIndexFile.open(file, encoder);
+			fail("The damaged file has been opened");
+		} catch (IOException e) {
+			assertTrue(e.getMessage(), e.getMessage().endsWith(file.toString()));
+		}
+	}
+
+}
@@ -0,0 +1,111 @@
+package de.franzmue.nameencoder;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import de.franzmue.nameencoder.GermanNameEncoder;
+import de.franzmue.nameencoder.PhoneticIndex;
+
+public class PhoneticIndexTest {
+
+	final static String[] WORDS = { "M\u00fcller", "Miller", "M\u00fchlbauer", "Milpauer", "Dietrich", "Schmidt" };
+
+	private PhoneticIndex index;
+
+	@Before
+	public void setUp() {
+		this.index = new PhoneticIndex(new GermanNameEncoder());
+	}
+
+	@Test
+	public void testLookup() {
+		for (int id = 0; id < WORDS.length; id++) {
+			index.add(WORDS[id], id);
+		}
+
+		assertArrayEquals(new long[] { 0, 1 }, index.lookup("Myller"));
+		assertArrayEquals(new long[] { 2, 3 }, index.lookup("Mielbauer"));
+		assertEquals(4, index.getCodeCount());
+		assertEquals(WORDS.length, index.size());
+	}
+
+	@Test
+	public void testLookupUnknownName() {
+		index.add(WORDS[0], 1);
+
+		assertEquals(0, index.lookup("Dietrich").length);
+	}
+
+	@Test
+	public void testLookupCode() {
+		index.add(WORDS[4], 42);
+
+		assertArrayEquals(new long[] { 42 }, index.lookupCode("titrik"));
+	}
+
+	@Test
+	public void testAddAll() {
+		index.addAll(IntStream.range(0, 6000).boxed(), id -> WORDS[id % WORDS.length], id -> id);
+
+		long[] ids = index.lookup("Miller");
+		Arrays.sort(ids);
+
+		assertEquals(2000, ids.length);
+		assertEquals(0, ids[0]);
+		assertEquals(5995, ids[ids.length - 1]);
+		assertEquals(6000, index.size());
+	}
+
+	@Test
+	public void testForEach() {
+		for (int id = 0; id < WORDS.length; id++) {
+			index.add(WORDS[id], id);
+		}
+
+		Map<String, long[]> entries = new HashMap<>();
+		index.forEach(entries::put);
+
+		assertEquals(4, entries.size());
+		assertArrayEquals(new long[] { 5 }, entries.get("smit"));
+	}
+
+	@Test
+	public void testLookupSimilar() {
+		for (int id = 0; id < WORDS.length; id++) {
+			index.add(WORDS[id], id);
+		}
+
+		index.addCode("milbar", 6);
+
+		assertArrayEquals(new long[] { 6, 2, 3 }, index.lookupSimilarCode("milbar", 1));
+		assertArrayEquals(new long[] { 2, 3, 6 }, index.lookupSimilar("Mielbauer", 1));
+		assertArrayEquals(new long[] { 2, 3 }, index.lookupSimilar("Mielbauer", 0));
+		assertEquals(Arrays.asList("milbaur", "milbar", "milr"), index.similarCodes("milbaur", 3));
+	}
+
+	@Test
+	public void testSimilarCodesAddedAfterFirstLookup() {
+		index.addCode("smit", 1);
+		assertEquals(Arrays.asList("smit"), index.similarCodes("smid", 1));
+
+		index.addAll(IntStream.range(0, 6000).boxed(), id -> WORDS[id % WORDS.length], id -> id);
+		index.addCode("smid", 2);
+
+		assertEquals(Arrays.asList("smid", "smit"), index.similarCodes("smid", 1));
+		assertEquals(Arrays.asList("milr", "smid", "smit", "titrik", "milbaur"), index.similarCodes("", 7));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testNegativeDistance() {
+		index.lookupSimilar("Miller", -1);
+	}
+
+}
@@ -0,0 +1,281 @@
+package de.franzmue.nameencoder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import de.franzmue.nameencoder.CharacterMask;
+import de.franzmue.nameencoder.ExtendedGermanNameEncoder;
+import de.franzmue.nameencoder.NameEncoder;
+import de.franzmue.nameencoder.RegexAutomaton;
+import de.franzmue.nameencoder.RegexRewriter;
+import de.franzmue.nameencoder.RegexRule;
+import de.franzmue.nameencoder.Rule;
+import de.franzmue.nameencoder.Rules;
+
+public class RegexAutomatonTest {
+
+	private final static String ALPHABET = "abcehiklnrstu\u00e4A$\\-";
+	private final static String SPECIAL_CHARACTERS = "\n\r\u0085\u2028\ud83d\ude00";
+
+	private final static String[][] SYNTHETIC_RULES = {
+		{ "(a|ab)(c|bcd)", "[$2$1]" },
+		{ "^(a)?b$", "<$1>" },
+		{ "a|^b|c$", "_" },
+		{ "[a-c]?b", "$0$0" },
+		{ "[^a-c\\]]k", "\\$1" },
+		{ "(a)(b)(c)(e)(h)(i)(k)(l)(n)(r)(s)", "$11$10$1" },
+		{ "(a(b)?)(c)?", "$3$2$1" },
+		{ "a.e", "." },
+		{ "\\$\\\\", "\\\\\\$" },
+		{ "e$|er", "r" },
+		{ "(ab|a)(bc|c)?", "[$1,$2]" },
+		{ "\u00e4(\u00e4|ae)", "$1" },
+	};
+
+	@Test
+	public void testCompileRulesOfEncoders() {
+		for (Rule rule: regexRulesOf(new ExtendedGermanNameEncoder())) {
+			RegexAutomaton automaton = RegexAutomaton.compile((RegexRule) rule);
+
+			if (rule.getDestination().contains("${"))
+				assertNull(rule.getRegex(), automaton);
+			else
+				assertNotNull(rule.getRegex(), automaton);
+		}
+	}
+
+	@Test
+	public void testUnsupportedRegexesAreNotCompiled() {
+		String[][] rules = {
+			{ "a.+", "a" }, { "a*b", "b" }, { "a{2}", "a" }, { "\\d", "0" }, { "(?i)a", "b" }, { "a?", "b" },
+			{ "a??b", "b" }, { "[a&&b]", "c" }, { "a^b", "c" }, { "(a)", "${1}" }, { "(a)", "$2" }, { "a", "$" },
+		};
+
+		for (String[] rule: rules) {
+			assertNull(rule[0], RegexAutomaton.compile(new RegexRule(rule[0], rule[1])));
+		}
+	}
+
+	@Test
+	public void testLiteralSource() {
+		RegexAutomaton literal = RegexAutomaton.compile(new RegexRule("mb", "m"));
+		assertEquals("mb", literal.getLiteralSource());
+		assertEquals("m", literal.getLiteralDestination());
+
+		assertEquals("a.", RegexAutomaton.compile(new RegexRule("a\\.", "\\$")).getLiteralSource());
+		assertEquals("$", RegexAutomaton.compile(new RegexRule("a\\.", "\\$")).getLiteralDestination());
+		assertNull(RegexAutomaton.compile(new RegexRule("kt$", "kr")).getLiteralSource());
+		assertNull(RegexAutomaton.compile(new RegexRule("(se)m", "$1n")).getLiteralSource());
+		assertNull(RegexAutomaton.compile(new RegexRule("a.", "b")).getLiteralSource());
+	}
+
+	@Test
+	public void testRewriteWithGroups() {
+		RegexAutomaton automaton = RegexAutomaton.compile(new RegexRule("([^s])ch", "$1k"));
+
+		assertEquals("bakhaus", automaton.rewrite("bachhaus"));
+		assertEquals("schule", automaton.rewrite("schule"));
+		assertEquals("chakchk", automaton.rewrite("chachchch"));
+	}
+
+	@Test
+	public void testRewriteWithAnchors() {
+		RegexAutomaton automaton = RegexAutomaton.compile(new RegexRule("(il|ele?r|le?r)$", "l"));
+
+		assertEquals("mehl", automaton.rewrite("mehler"));
+		assertEquals("ml", automaton.rewrite("mil"));
+		assertEquals("lerma", automaton.rewrite("lerma"));
+	}
+
+	@Test
+	public void testRewriteWithoutMatchReturnsSameCode() {
+		RegexAutomaton automaton = RegexAutomaton.compile(new RegexRule("^c", "s"));
+		String code = "acc";
+
+		assertSame(code, automaton.rewrite(code));
+		assertFalse(automaton.rewrite(code, new StringBuilder()));
+	}
+
+	@Test
+	public void testLineTerminatorsAreRewrittenByPattern() {
+		RegexAutomaton automaton = RegexAutomaton.compile(new RegexRule("r$", "x"));
+
+		assertEquals("ax\n", automaton.rewrite("ar\n"));
+		assertEquals("bx", automaton.rewrite("br"));
+
+		StringBuilder result = new StringBuilder("=");
+		assertTrue(automaton.rewrite("rr\u2028", result));
+		assertEquals("=rx\u2028", result.toString());
+	}
+
+	@Test
+	public void testEncoderRulesMatchPattern() {
+		List<Rule> rules = regexRulesOf(new ExtendedGermanNameEncoder());
+		Random random = new Random(4711);
+
+		for (Rule rule: rules) {
+			RegexAutomaton automaton = RegexAutomaton.compile((RegexRule) rule);
+
+			if (automaton != null)
+				assertMatchesPattern((RegexRule) rule, automaton, random, alphabetOf(rule.getRegex()));
+			else
+				assertFilterAllowsMatches((RegexRule) rule, new RegexRewriter((RegexRule) rule), random, alphabetOf(rule.getRegex()));
+		}
+	}
+
+	@Test
+	public void testCanRewriteChecksCharactersAndAnchors() {
+		RegexAutomaton startAnchored = RegexAutomaton.compile(new RegexRule("^c", "s"));
+		assertFalse(startAnchored.canRewrite("acc", CharacterMask.of("acc")));
+		assertTrue(startAnchored.canRewrite("ca", CharacterMask.of("ca")));
+
+		RegexAutomaton endAnchored = RegexAutomaton.compile(new RegexRule("(il|ele?r|le?r)$", "l"));
+		assertFalse(endAnchored.canRewrite("lei", CharacterMask.of("lei")));
+		assertFalse(endAnchored.canRewrite("mer", CharacterMask.of("mer")));
+		assertTrue(endAnchored.canRewrite("ler", CharacterMask.of("ler")));
+		assertTrue(endAnchored.canRewrite("ler\n", CharacterMask.of("ler\n")));
+
+		RegexAutomaton grouped = RegexAutomaton.compile(new RegexRule("([^s])cq", "$1k"));
+		assertFalse(grouped.canRewrite("acka", CharacterMask.of("acka")));
+		assertTrue(grouped.canRewrite("acqa", CharacterMask.of("acqa")));
+	}
+
+	@Test
+	public void testCanRewriteOfPatternRequiresLeadingLiterals() {
+		RegexRewriter rewriter = new RegexRewriter(new RegexRule("al(i|t|u)(s.+)$", "al${2}"));
+
+		assertFalse(rewriter.canRewrite("lise", CharacterMask.of("lise")));
+		assertTrue(rewriter.canRewrite("alis", CharacterMask.of("alis")));
+		assertTrue(new RegexRewriter(new RegexRule("ab?c", "")).canRewrite("ac", CharacterMask.of("ac")));
+		assertTrue(new RegexRewriter(new RegexRule("a|b", "")).canRewrite("b", CharacterMask.of("b")));
+	}
+
+	@Test
+	public void testSyntheticRulesMatchPattern() {
+		Random random = new Random(4711);
+
+		for (String[] rule: SYNTHETIC_RULES) {
+			RegexRule regexRule = new RegexRule(rule[0], rule[1]);
+			RegexAutomaton automaton = RegexAutomaton.compile(regexRule);
+
+			assertNotNull(rule[0], automaton);
+			assertMatchesPattern(regexRule, automaton, random, ALPHABET);
+		}
+	}
+
+	@Test
+	public void testWrittenAutomatonMatchesPattern() throws IOException {
+		Random random = new Random(4711);
+
+		for (String[] rule: SYNTHETIC_RULES) {
+			RegexRule regexRule = new RegexRule(rule[0], rule[1]);
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+			try (DataOutputStream output = new DataOutputStream(bytes)) {
+				RegexAutomaton.compile(regexRule).write(output);
+			}
+
+			try (DataInputStream input = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+				RegexRule readRule = RegexRule.withoutPattern(rule[0], rule[1]);
+
+				assertMatchesPattern(readRule, RegexAutomaton.read(readRule, input), random, ALPHABET);
+				assertEquals(-1, input.read());
+			}
+		}
+	}
+
+	@Test(expected = IOException.class)
+	public void testInconsistentTablesAreNotRead() throws IOException {
+		RegexRule rule = new RegexRule("([^s])ch", "$1k");
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+		try (DataOutputStream output = new DataOutputStream(bytes)) {
+			RegexAutomaton.compile(rule).write(output);
+		}
+
+		byte[] tables = bytes.toByteArray();
+		tables[tables.length - 1] = 0x7f; // the pending alternative of the last state
+
+		RegexAutomaton.read(rule, new DataInputStream(new ByteArrayInputStream(tables)));
+	}
+
+	private static void assertMatchesPattern(RegexRule rule, RegexAutomaton automaton, Random random, String alphabet) {
+		for (int round = 0; round < 500; round++) {
+			String code = randomCode(random, alphabet, round % 50 == 0);
+			String expected = rule.getPattern().matcher(code).replaceAll(rule.getDestination());
+
+			assertEquals(rule.getRegex() + " on " + code, expected, automaton.rewrite(code));
+
+			StringBuilder result = new StringBuilder("=");
+			boolean changed = automaton.rewrite(code, result);
+
+			assertEquals(rule.getRegex() + " on " + code, rule.getPattern().matcher(code).find(), changed);
+			assertEquals(rule.getRegex() + " on " + code, changed ? "=" + expected : "=", result.toString());
+		}
+
+		assertFilterAllowsMatches(rule, automaton, random, alphabet);
+	}
+
+	private static void assertFilterAllowsMatches(RegexRule rule, CodeRewriter rewriter, Random random, String alphabet) {
+		for (int round = 0; round < 500; round++) {
+			String code = randomCode(random, alphabet, round % 50 == 0);
+
+			if (!rewriter.canRewrite(code, CharacterMask.of(code)))
+				assertFalse(rule.getRegex() + " on " + code, rule.getPattern().matcher(code).find());
+		}
+	}
+
+	private static String alphabetOf(String regex) {
+		StringBuilder alphabet = new StringBuilder("xy");
+
+		for (char c: regex.toCharArray()) {
+			if (Character.isLetter(c) && alphabet.indexOf(String.valueOf(c)) < 0)
+				alphabet.append(c);
+		}
+
+		return alphabet.toString();
+	}
+
+	private static String randomCode(Random random, String alphabet, boolean special) {
+		StringBuilder code = new StringBuilder();
+		int length = 1 + random.nextInt(12);
+
+		for (int index = 0; index < length; index++) {
+			code.append(alphabet.charAt(random.nextInt(alphabet.length())));
+		}
+
+		if (special)
+			code.insert(random.nextInt(code.length() + 1), SPECIAL_CHARACTERS.charAt(random.nextInt(SPECIAL_CHARACTERS.length())));
+
+		return code.toString();
+	}
+
+	private static List<Rule> regexRulesOf(NameEncoder encoder) {
+		List<Rule> rules = new ArrayList<>();
+
+		for (Rules layer: encoder.rulesLayers) {
+			for (Rule rule: layer) {
+				if (rule instanceof RegexRule)
+					rules.add(rule);
+			}
+		}
+
+		return rules;
+	}
+
+}
@@ -0,0 +1,160 @@
+package de.franzmue.nameencoder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import de.franzmue.nameencoder.CharacterMask;
+import de.franzmue.nameencoder.ReplacementAutomaton;
+import de.franzmue.nameencoder.ReplacementRule;
+import de.franzmue.nameencoder.Rules;
+
+public class ReplacementAutomatonTest {
+
+	private final static String ALPHABET = "abcph";
+
+	@Test
+	public void testRewriteLiterals() {
+		ReplacementAutomaton automaton = new ReplacementAutomaton(Arrays.asList(
+			new ReplacementRule("ph", "f"),
+			new ReplacementRule("p", "b"),
+			new ReplacementRule("x", "chs")));
+
+		assertEquals("fibchsbchs", automaton.rewrite("phipxpx"));
+		assertEquals("bfchs", automaton.rewrite("pphx"));
+	}
+
+	@Test
+	public void testRewriteWithoutMatchReturnsSameCode() {
+		ReplacementAutomaton automaton = new ReplacementAutomaton(Arrays.asList(
+			new ReplacementRule("j", "i"),
+			new ReplacementRule("y", "i")));
+		String code = "muller";
+
+		assertSame(code, automaton.rewrite(code));
+	}
+
+	@Test
+	public void testRewriteNonLatinCharacters() {
+		ReplacementAutomaton automaton = new ReplacementAutomaton(Arrays.asList(
+			new ReplacementRule("\u0142", "l"),
+			new ReplacementRule("\u015b", "s")));
+
+		assertEquals("slusarski", automaton.rewrite("\u015b\u0142usarski"));
+	}
+
+	@Test
+	public void testCanJoinIndependentRules() {
+		List<ReplacementRule> group = Arrays.asList(new ReplacementRule("ph", "f"));
+
+		assertTrue(ReplacementAutomaton.canJoin(group, new ReplacementRule("p", "b")));
+	}
+
+	@Test
+	public void testCannotJoinRuleMatchingPrecedingDestination() {
+		List<ReplacementRule> group = Arrays.asList(new ReplacementRule("gk", "k"));
+
+		assertFalse(ReplacementAutomaton.canJoin(group, new ReplacementRule("tk", "s")));
+	}
+
+	@Test
+	public void testCannotJoinRuleAfterDeletion() {
+		List<ReplacementRule> group = Arrays.asList(new ReplacementRule("h", ""));
+
+		assertFalse(ReplacementAutomaton.canJoin(group, new ReplacementRule("sc", "s")));
+	}
+
+	@Test
+	public void testCannotJoinRuleHidingPrecedingSource() {
+		List<ReplacementRule> group = Arrays.asList(new ReplacementRule("bc", "x"));
+
+		assertFalse(ReplacementAutomaton.canJoin(group, new ReplacementRule("ab", "y")));
+	}
+
+	@Test
+	public void testCannotJoinEmptySource() {
+		assertFalse(ReplacementAutomaton.canJoin(new ArrayList<>(), new ReplacementRule("", "x")));
+	}
+
+	@Test
+	public void testGermanLayersAreGrouped() {
+		Rules rules = new Rules();
+
+		for (String[] rule: new String[][] {
+			{ "j", "i" }, { "y", "i" }, { "z", "s" }, { "v", "f" },
+			{ "ph", "f" }, { "p", "b" }, { "d", "t" }, { "x", "chs" } }) {
+			rules.addReplacementRule(rule[0], rule[1]);
+		}
+
+		assertEquals(1, rules.getRewriters().length);
+	}
+
+	@Test
+	public void testCanRewriteRequiresAllCharactersOfARule() {
+		ReplacementAutomaton automaton = new ReplacementAutomaton(Arrays.asList(
+			new ReplacementRule("mb", "m"),
+			new ReplacementRule("tw", "sw")));
+
+		assertFalse(automaton.canRewrite("mate", CharacterMask.of("mate")));
+		assertFalse(automaton.canRewrite("bt", CharacterMask.of("bt")));
+		assertTrue(automaton.canRewrite("bam", CharacterMask.of("bam")));
+		assertTrue(automaton.canRewrite("wt", CharacterMask.of("wt")));
+	}
+
+	@Test
+	public void testRandomRulesMatchSequentialReplacement() {
+		Random random = new Random(4711);
+
+		for (int round = 0; round < 2000; round++) {
+			Rules rules = new Rules();
+			List<ReplacementRule> ruleList = new ArrayList<>();
+
+			for (int count = 1 + random.nextInt(6); count > 0; count--) {
+				ReplacementRule rule = new ReplacementRule(randomWord(random, 1, 3), randomWord(random, 0, 2));
+				ruleList.add(rule);
+				rules.addReplacementRule(rule.getSource(), rule.getDestination());
+			}
+
+			for (int sample = 0; sample < 20; sample++) {
+				String code = randomWord(random, 1, 10);
+				String expected = code;
+
+				for (ReplacementRule rule: ruleList) {
+					expected = expected.replace(rule.getSource(), rule.getDestination());
+				}
+
+				String actual = code;
+
+				for (CodeRewriter rewriter: rules.getRewriters()) {
+					String rewritten = rewriter.rewrite(actual);
+
+					if (!actual.isEmpty() && !rewriter.canRewrite(actual, CharacterMask.of(actual)))
+						assertSame(actual, rewritten);
+
+					actual = rewritten;
+				}
+
+				assertEquals(code, expected, actual);
+			}
+		}
+	}
+
+	private static String randomWord(Random random, int minLength, int maxLength) {
+		StringBuilder word = new StringBuilder();
+
+		for (int length = minLength + random.nextInt(maxLength - minLength + 1); length > 0; length--) {
+			word.append(ALPHABET.charAt(random.nextInt(ALPHABET.length())));
+		}
+
+		return word.toString();
+	}
+
+}
@@ -0,0 +1,101 @@
+package de.franzmue.nameencoder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+
+import org.junit.Test;
+
+import de.franzmue.nameencoder.CompiledRules;
+import de.franzmue.nameencoder.ExtendedGermanNameEncoder;
+import de.franzmue.nameencoder.GermanNameEncoder;
+import de.franzmue.nameencoder.NameEncoder;
+import de.franzmue.nameencoder.RuleCompiler;
+import de.franzmue.nameencoder.RuleSetOptimizer;
+import de.franzmue.nameencoder.Rules;
+
+public class RuleCompilerTest {
+
+	@Test
+	public void testCompileRules() {
+		CompiledRules rules = RuleCompiler.compile(Collections.singletonList(new Rules().addReplacementRule("ph", "f").addRegexRule("^c", "s")));
+
+		assertNotNull(rules);
+		assertEquals("sof", rules.apply("Coph", "coph"));
+		assertEquals("Word", RuleCompiler.compile(Collections.emptyList()).apply("Word", "word"));
+	}
+
+	@Test
+	public void testCompiledEncoderMatchesRulesOnCorpus() {
+		NameEncoder encoder = new ExtendedGermanNameEncoder();
+		NameEncoder compiledEncoder = new ExtendedGermanNameEncoder().compile();
+
+		assertTrue(compiledEncoder.isCompiled());
+
+		for (String word: RuleSetOptimizer.createCorpus(encoder.rulesLayers)) {
+			String expected;
+
+			try {
+				expected = encoder.codeOf(word);
+			} catch (IllegalArgumentException e) { // the rule al${2} refers to a named group
+				continue;
+			}
+
+			assertEquals(word, expected, compiledEncoder.codeOf(word));
+			assertEquals(word, expected, compiledEncoder.resultOf(word, false).getCode());
+		}
+	}
+
+	@Test
+	public void testCompileRulesAddedAtRunTime() {
+		NameEncoder encoder = new NameEncoder();
+		encoder.addReplacementRuleLayer(new String[][] { { "dt", "t" }, { "th", "t" } });
+		encoder.addRegexRuleLayer(new String[][] { { "([aeiou])h", "$1" } });
+
+		encoder.compile().setBufferedEngine(true);
+
+		assertTrue(encoder.isCompiled());
+		assertEquals("smit", encoder.codeOf("Smidt"));
+		assertEquals("meier", encoder.codeOf("Mehier"));
+		assertEquals("meier", encoder.appendCodeOf("Mehier", new StringBuilder()).toString());
+	}
+
+	@Test
+	public void testAddingRulesDiscardsCompiledRules() {
+		NameEncoder encoder = new GermanNameEncoder().compile();
+		assertEquals("milr", encoder.codeOf("M\u00fcller"));
+
+		encoder.addReplacementRuleLayer(new String[][] { { "milr", "miller" } });
+
+		assertFalse(encoder.isCompiled());
+		assertEquals("miler", encoder.codeOf("M\u00fcller"));
+	}
+
+	@Test
+	public void testTracingAndProfilingUseRules() {
+		NameEncoder encoder = new GermanNameEncoder().compile();
+
+		assertEquals(new GermanNameEncoder().encode("Schmidt").getCodePath(), encoder.encode("Schmidt").getCodePath());
+
+		encoder.setProfiling(true).codeOf("Schmidt");
+
+		assertEquals(1, encoder.getProfile().getLayers().get(0).getInvocationCount());
+	}
+
+	@Test
+	public void testEncoderWithOwnProcessingIsNotCompiled() {
+		NameEncoder encoder = new GermanNameEncoder() {
+			@Override
+			protected String postprocessCode(String newCode) {
+				return newCode;
+			}
+		};
+
+		assertFalse(encoder.compile().isCompiled());
+		assertEquals("smiitt", encoder.codeOf("Schmiitt"));
+	}
+
+}
@@ -0,0 +1,215 @@
+package de.franzmue.nameencoder;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import de.franzmue.nameencoder.ExtendedGermanNameEncoder;
+import de.franzmue.nameencoder.ExtendedGermanNamesEncoderTest;
+import de.franzmue.nameencoder.GermanNameEncoder;
+import de.franzmue.nameencoder.GermanNamesEncoderTest;
+import de.franzmue.nameencoder.NameEncoder;
+import de.franzmue.nameencoder.RegexAutomaton;
+import de.franzmue.nameencoder.RuleFile;
+import de.franzmue.nameencoder.RuleSetOptimizer;
+import de.franzmue.nameencoder.Rules;
+
+public class RuleFileTest {
+
+	private final static String[] RULES = {
+		"# umlauts",
+		"layer 1",
+		"\u00e4 -> e",
+		"",
+		"layer",
+		"/([^s])ch/ -> $1k",
+		"/^c/ -> s",
+		"h ->",
+		"/al(i|t|u)(s.+)$/ -> al${2}",
+	};
+
+	private Path file;
+
+	@Before
+	public void setUp() throws IOException {
+		this.file = Files.createTempFile("rules", ".rules");
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		Files.deleteIfExists(file);
+	}
+
+	@Test
+	public void testReadRules() throws IOException {
+		Files.write(file, Arrays.asList(RULES), StandardCharsets.UTF_8);
+		NameEncoder encoder = RuleFile.read(file);
+
+		assertEquals(2, encoder.getRuleSet().getLayers().size());
+		assertEquals("[/([^s])ch/ -> $1k, /^c/ -> s, h -> , /al(i|t|u)(s.+)$/ -> al${2}]", encoder.getRuleSet().getLayers().get(1).toString());
+		assertEquals("sekak", encoder.codeOf("C\u00e4chach"));
+	}
+
+	@Test
+	public void testInvalidLinesAreReported() throws IOException {
+		String[][] files = { { "a -> b" }, { "layer", "a - b" }, { "layer", "/a(/ -> b" } };
+
+		for (String[] lines: files) {
+			Files.write(file, Arrays.asList(lines), StandardCharsets.UTF_8);
+
+			try {
+				RuleFile.readRules(file);
+				fail(lines[lines.length - 1]);
+			} catch (IOException e) {
+				assertTrue(e.getMessage(), e.getMessage().contains(" " + lines.length + " "));
+			}
+		}
+	}
+
+	@Test
+	public void testWrittenRulesGiveSameCodes() throws IOException {
+		assertSameCodes(new GermanNameEncoder(), writtenRulesOf(new GermanNameEncoder()), GermanNamesEncoderTest.encodeWords());
+		assertSameCodes(new ExtendedGermanNameEncoder(), writtenRulesOf(new ExtendedGermanNameEncoder()), ExtendedGermanNamesEncoderTest.encodeWords());
+	}
+
+	@Test
+	public void testUnusualRulesAreWrittenLiterally() throws IOException {
+		NameEncoder encoder = new NameEncoder();
+		encoder.addRuleLayer();
+		encoder.addReplacementRule("a->", " x ");
+		encoder.addReplacementRule("", "");
+		encoder.addRegexRule("a -b ", "");
+		encoder.addRegexRule("/", "/ -> /");
+
+		NameEncoder readEncoder = writtenRulesOf(encoder);
+
+		assertEquals(encoder.getRuleSet().getLayers().toString(), readEncoder.getRuleSet().getLayers().toString());
+		assertArrayEquals(encoder.getRuleSetFingerprint(), readEncoder.getRuleSetFingerprint());
+	}
+
+	@Test
+	public void testRulesWhichCannotBeWritten() throws IOException {
+		String[][] rules = { { "#a", "b" }, { "/a/", "b" }, { "a ->", "b" }, { "a ", "b" }, { "a", "b\nc" } };
+
+		for (String[] rule: rules) {
+			NameEncoder encoder = new NameEncoder();
+			encoder.addRuleLayer();
+			encoder.addReplacementRule(rule[0], rule[1]);
+
+			try {
+				RuleFile.writeRules(encoder, file);
+				fail(rule[0]);
+			} catch (IllegalArgumentException e) {
+				// expected
+			}
+		}
+	}
+
+	@Test
+	public void testSnapshotGivesSameCodes() throws IOException {
+		RuleFile.writeSnapshot(new ExtendedGermanNameEncoder(), file);
+		NameEncoder encoder = RuleFile.read(file);
+
+		assertArrayEquals(new ExtendedGermanNameEncoder().getRuleSetFingerprint(), encoder.getRuleSetFingerprint());
+		assertSame(new ExtendedGermanNameEncoder().getRuleSet(), encoder.getRuleSet());
+		assertSameCodes(new ExtendedGermanNameEncoder(), encoder, ExtendedGermanNamesEncoderTest.encodeWords());
+	}
+
+	@Test
+	public void testSnapshotLayersGiveSameCodes() throws IOException {
+		NameEncoder encoder = new ExtendedGermanNameEncoder();
+		RuleFile.writeSnapshot(encoder, file);
+		RuleFile.Snapshot snapshot = RuleFile.readContent(file);
+
+		assertArrayEquals(encoder.getRuleSetFingerprint(), snapshot.fingerprint);
+		assertEquals(encoder.getRuleSet().getRulesLayers().size(), snapshot.layers.size());
+		assertEquals(RuleSetOptimizer.optimizedLayersOf(encoder).size(), snapshot.optimizedLayers.size());
+		assertTrue(snapshot.layers.stream().flatMap(layer -> Arrays.stream(layer.getRewriters())).anyMatch(rewriter -> rewriter instanceof RegexAutomaton));
+
+		for (Object[] word: ExtendedGermanNamesEncoderTest.encodeWords()) {
+			String name = (String) word[0];
+
+			assertEquals(name, word[1], codeOf(encoder, snapshot.layers, name));
+			assertEquals(name, word[1], codeOf(encoder, snapshot.optimizedLayers, name));
+		}
+	}
+
+	@Test
+	public void testDamagedSnapshotIsNotRead() throws IOException {
+		RuleFile.writeSnapshot(new GermanNameEncoder(), file);
+		byte[] bytes = Files.readAllBytes(file);
+
+		for (int position: new int[] { 0, 7, 12, 30, bytes.length - 1 }) {
+			byte[] damaged = bytes.clone();
+			damaged[position] ^= 1;
+			Files.write(file, damaged);
+
+			try {
+				RuleFile.readSnapshot(file);
+				fail(String.valueOf(position));
+			} catch (IOException e) {
+				// expected
+			}
+		}
+
+		Files.write(file, Arrays.copyOf(bytes, bytes.length - 1));
+
+		try {
+			RuleFile.readSnapshot(file);
+			fail();
+		} catch (IOException e) {
+			// expected
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testSnapshotRequiresStandardProcessing() throws IOException {
+		RuleFile.writeSnapshot(new NameEncoder() {
+
+			@Override
+			protected String postprocessCode(String newCode) {
+				return newCode;
+			}
+
+		}, file);
+	}
+
+	private NameEncoder writtenRulesOf(NameEncoder encoder) throws IOException {
+		RuleFile.writeRules(encoder, file);
+
+		return RuleFile.read(file);
+	}
+
+	private static void assertSameCodes(NameEncoder encoder, NameEncoder readEncoder, Iterable<Object[]> words) {
+		for (Object[] word: words) {
+			String name = (String) word[0];
+
+			assertEquals(name, encoder.codeOf(name), readEncoder.codeOf(name));
+			assertEquals(name, encoder.resultOf(name).getCodePath(), readEncoder.resultOf(name).getCodePath());
+		}
+
+		readEncoder.setCodePathTracing(false);
+
+		for (Object[] word: words) {
+			assertEquals((String) word[0], encoder.codeOf((String) word[0]), readEncoder.codeOf((String) word[0]));
+		}
+	}
+
+	private static String codeOf(NameEncoder encoder, List<Rules> layers, String name) {
+		return encoder.applyRules(layers, name, encoder.prepareProcessing(name), null, null);
+	}
+
+}
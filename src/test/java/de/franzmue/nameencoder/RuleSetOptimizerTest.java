@@ -0,0 +1,114 @@
+package de.franzmue.nameencoder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import de.franzmue.nameencoder.ExtendedGermanNameEncoder;
+import de.franzmue.nameencoder.GermanNameEncoder;
+import de.franzmue.nameencoder.NameEncoder;
+import de.franzmue.nameencoder.RuleSetOptimizer;
+import de.franzmue.nameencoder.Rules;
+
+public class RuleSetOptimizerTest {
+
+	@Test
+	public void testMergeSingleCharacterLayers() {
+		NameEncoder encoder = new GermanNameEncoder();
+		RuleSetOptimizer.Plan plan = RuleSetOptimizer.optimize(encoder.rulesLayers);
+
+		assertEquals(encoder.rulesLayers.size() - 2, plan.layers.size());
+		assertEquals(Arrays.asList(
+			"Layer 6 merged into layer 5, it maps single characters",
+			"Layer 7 merged into layer 5, it maps single characters"), plan.changes);
+		assertEquals("[sc -> s, c -> s, h -> ]", plan.layers.get(4).getRules().toString());
+	}
+
+	@Test
+	public void testRemoveRuleRequiringReplacedCharacter() {
+		NameEncoder encoder = new ExtendedGermanNameEncoder();
+		RuleSetOptimizer.Plan plan = RuleSetOptimizer.optimize(encoder.rulesLayers);
+
+		assertTrue(plan.changes.contains("Rule 12.24 removed, it cannot match: /drik/ -> s"));
+		assertFalse(plan.layers.get(9).getRules().toString().contains("drik"));
+	}
+
+	@Test
+	public void testKeepRuleAfterCharacterIsProducedAgain() {
+		NameEncoder encoder = new NameEncoder();
+		encoder.addReplacementRuleLayer(new String[][] { { "d", "t" }, { "x", "d" } });
+		encoder.addReplacementRuleLayer(new String[][] { { "da", "ta" } });
+
+		RuleSetOptimizer.Plan plan = RuleSetOptimizer.optimize(encoder.rulesLayers);
+
+		assertTrue(plan.changes.isEmpty());
+	}
+
+	@Test
+	public void testRemoveEmptyLayersButTheFirst() {
+		NameEncoder encoder = new NameEncoder();
+		encoder.addRuleLayer();
+		encoder.addReplacementRuleLayer(new String[][] { { "ph", "f" } });
+		encoder.addRuleLayer();
+		encoder.addReplacementRuleLayer(new String[][] { { "A", "a" } });
+
+		RuleSetOptimizer.Plan plan = RuleSetOptimizer.optimize(encoder.rulesLayers);
+
+		assertEquals(2, plan.layers.size());
+		assertTrue(plan.layers.get(0).getRules().isEmpty());
+		assertEquals(Arrays.asList(
+			"Layer 3 removed, it has no rules",
+			"Rule 4.1 removed, it cannot match: A -> a",
+			"Layer 4 removed, it has no rules"), plan.changes);
+	}
+
+	@Test
+	public void testVerifyDetectsDifferentCodes() {
+		NameEncoder encoder = new GermanNameEncoder();
+		List<String> corpus = RuleSetOptimizer.createCorpus(encoder.rulesLayers);
+		List<Rules> layers = new ArrayList<>(encoder.rulesLayers);
+		layers.remove(layers.size() - 1);
+
+		assertTrue(RuleSetOptimizer.verify(encoder, RuleSetOptimizer.optimize(encoder.rulesLayers).layers, corpus));
+		assertFalse(RuleSetOptimizer.verify(encoder, layers, corpus));
+	}
+
+	@Test
+	public void testEncoderWithoutTracingUsesOptimizedLayers() {
+		NameEncoder tracingEncoder = new ExtendedGermanNameEncoder();
+		NameEncoder encoder = new ExtendedGermanNameEncoder().setCodePathTracing(false);
+		NameEncoder bufferedEncoder = new ExtendedGermanNameEncoder().setCodePathTracing(false).setBufferedEngine(true);
+
+		for (String name: Arrays.asList("M\u00fcller", "Schneider", "Dietrich", "Sch\u00e4fer", "Xaver", "Czerny")) {
+			assertEquals(tracingEncoder.codeOf(name), encoder.codeOf(name));
+			assertEquals(tracingEncoder.codeOf(name), bufferedEncoder.codeOf(name));
+			assertEquals(tracingEncoder.codeOf(name), encoder.encode(name).getCode());
+		}
+	}
+
+	@Test
+	public void testAddingRulesDiscardsOptimizedLayers() {
+		NameEncoder encoder = new GermanNameEncoder().setCodePathTracing(false);
+		assertEquals("milr", encoder.codeOf("M\u00fcller"));
+
+		encoder.addReplacementRuleLayer(new String[][] { { "milr", "miller" } });
+
+		assertEquals("miler", encoder.codeOf("M\u00fcller"));
+	}
+
+	@Test
+	public void testUnchangedLayersAreNotCopied() {
+		NameEncoder encoder = new NameEncoder();
+		encoder.addReplacementRuleLayer(new String[][] { { "ph", "f" } });
+
+		assertSame(encoder.getRuleSet().getRulesLayers(), RuleSetOptimizer.optimizedLayersOf(encoder));
+	}
+
+}
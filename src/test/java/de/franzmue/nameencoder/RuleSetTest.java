@@ -0,0 +1,124 @@
+package de.franzmue.nameencoder;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.lang.ref.WeakReference;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.regex.PatternSyntaxException;
+
+import org.junit.Test;
+
+import de.franzmue.nameencoder.ExtendedGermanNameEncoder;
+import de.franzmue.nameencoder.GermanNameEncoder;
+import de.franzmue.nameencoder.NameEncoder;
+import de.franzmue.nameencoder.RegexRule;
+import de.franzmue.nameencoder.RuleSet;
+
+public class RuleSetTest {
+
+	@Test
+	public void testEncodersWithSameRulesShareRuleSet() {
+		RuleSet ruleSet = new ExtendedGermanNameEncoder().getRuleSet();
+
+		assertSame(ruleSet, new ExtendedGermanNameEncoder().getRuleSet());
+		assertSame(ruleSet.getRulesLayers().get(0).getRewriters(), new ExtendedGermanNameEncoder().getRuleSet().getRulesLayers().get(0).getRewriters());
+		assertNotSame(ruleSet, new GermanNameEncoder().getRuleSet());
+	}
+
+	@Test
+	public void testEncodersWithSameRulesShareOptimizedLayers() {
+		NameEncoder encoder = new GermanNameEncoder().setCodePathTracing(false);
+		NameEncoder otherEncoder = new GermanNameEncoder().setCodePathTracing(false);
+
+		assertEquals(encoder.codeOf("M\u00fcller"), otherEncoder.codeOf("M\u00fcller"));
+		assertSame(RuleSetOptimizer.optimizedLayersOf(encoder), RuleSetOptimizer.optimizedLayersOf(otherEncoder));
+	}
+
+	@Test
+	public void testAddingRulesReplacesRuleSet() {
+		NameEncoder encoder = new NameEncoder();
+		encoder.addReplacementRuleLayer(new String[][] { { "ph", "f" } });
+		RuleSet ruleSet = encoder.getRuleSet();
+
+		encoder.addReplacementRule("dt", "t");
+
+		assertNotSame(ruleSet, encoder.getRuleSet());
+		assertEquals(1, ruleSet.getLayers().get(0).size());
+		assertEquals(2, encoder.getRuleSet().getLayers().get(0).size());
+		assertEquals("fot", encoder.codeOf("Phodt"));
+	}
+
+	@Test(expected = UnsupportedOperationException.class)
+	public void testRuleSetIsImmutable() {
+		new GermanNameEncoder().getRuleSet().getLayers().get(0).clear();
+	}
+
+	@Test
+	public void testFingerprint() throws Exception {
+		NameEncoder encoder = new NameEncoder();
+		encoder.addReplacementRuleLayer(new String[][] { { "ph", "f" } });
+		encoder.addRegexRuleLayer(new String[][] { { "^c", "s" } });
+		byte[] expected = MessageDigest.getInstance("SHA-256").digest("LRph\0f\0LX^c\0s\0".getBytes(StandardCharsets.UTF_8));
+
+		assertArrayEquals(expected, encoder.getRuleSetFingerprint());
+
+		encoder.getRuleSetFingerprint()[0]++;
+
+		assertArrayEquals(expected, encoder.getRuleSet().getFingerprint());
+	}
+
+	@Test
+	public void testUnusedRuleSetsAreCollected() throws Exception {
+		int internedCount = RuleSet.internedCount();
+		WeakReference<RuleSet> ruleSet = new WeakReference<>(encoderWithRule(0).getRuleSet());
+
+		for (int index = 1; index < 1000; index++) {
+			encoderWithRule(index);
+		}
+
+		for (int count = 0; count < 50 && ruleSet.get() != null; count++) {
+			System.gc();
+			Thread.sleep(10);
+		}
+
+		assertNull(ruleSet.get());
+
+		NameEncoder encoder = encoderWithRule(0);
+
+		assertSame(encoder.getRuleSet(), encoderWithRule(0).getRuleSet());
+		assertEquals("ko", encoder.codeOf("Qo"));
+		assertTrue(RuleSet.internedCount() < internedCount + 1000);
+	}
+
+	@Test
+	public void testRegexRulesSharePatterns() {
+		assertSame(new RegexRule("([^s])ch", "$1k").getPattern(), new RegexRule("([^s])ch", "k").getPattern());
+	}
+
+	@Test
+	public void testInvalidRegexFailsEachTime() {
+		for (int count = 0; count < 2; count++) {
+			try {
+				new RegexRule("(a", "b");
+				fail("The invalid regex has been accepted");
+			} catch (PatternSyntaxException e) {
+				// expected
+			}
+		}
+	}
+
+	private static NameEncoder encoderWithRule(int index) {
+		NameEncoder encoder = new NameEncoder();
+		encoder.addReplacementRuleLayer(new String[][] { { "q", "k" }, { "rule" + index, "" } });
+
+		return encoder;
+	}
+
+}
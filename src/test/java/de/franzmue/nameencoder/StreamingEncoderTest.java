@@ -0,0 +1,185 @@
+package de.franzmue.nameencoder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import de.franzmue.nameencoder.GermanNameEncoder;
+import de.franzmue.nameencoder.NameEncoder;
+import de.franzmue.nameencoder.StreamingEncoder;
+
+public class StreamingEncoderTest {
+
+	final static String WORD_MUELLER = "M\u00fcller";
+	final static String CODE_MILR = "milr";
+
+	final static String WORD_MUEHLBAUER = "M\u00fchlbauer";
+	final static String CODE_MILBAUR = "milbaur";
+
+	private GermanNameEncoder encoder;
+	private InputStream standardInput;
+	private PrintStream standardOutput;
+	private PrintStream standardError;
+
+	@Before
+	public void setUp() {
+		this.encoder = new GermanNameEncoder();
+		this.standardInput = System.in;
+		this.standardOutput = System.out;
+		this.standardError = System.err;
+	}
+
+	@After
+	public void tearDown() {
+		System.setIn(standardInput);
+		System.setOut(standardOutput);
+		System.setErr(standardError);
+	}
+
+	@Test
+	public void testEncodeLines() throws Exception {
+		StringWriter output = new StringWriter();
+
+		long count = new StreamingEncoder(encoder, 0).encode(reader(WORD_MUELLER + "\n" + WORD_MUEHLBAUER + "\n"), output);
+
+		assertEquals(2, count);
+		assertEquals(WORD_MUELLER + "\t" + CODE_MILR + "\n" + WORD_MUEHLBAUER + "\t" + CODE_MILBAUR + "\n", output.toString());
+	}
+
+	@Test
+	public void testEncodeColumnKeepsOtherColumns() throws Exception {
+		StringWriter output = new StringWriter();
+
+		new StreamingEncoder(encoder, 2).encode(reader("17\t" + WORD_MUELLER + "\tMunich\n18\n"), output);
+
+		assertEquals("17\t" + WORD_MUELLER + "\tMunich\t" + CODE_MILR + "\n18\t\n", output.toString());
+	}
+
+	@Test
+	public void testEncodeLastColumn() throws Exception {
+		StringWriter output = new StringWriter();
+
+		new StreamingEncoder(encoder, 2).encode(reader("17\t" + WORD_MUEHLBAUER), output);
+
+		assertEquals("17\t" + WORD_MUEHLBAUER + "\t" + CODE_MILBAUR + "\n", output.toString());
+	}
+
+	@Test
+	public void testEncodeMoreLinesThanBatch() throws Exception {
+		StringBuilder input = new StringBuilder();
+
+		for (int index = 0; index < 20000; index++) {
+			input.append(index % 2 == 0 ? WORD_MUELLER : WORD_MUEHLBAUER).append('\n');
+		}
+
+		StringWriter output = new StringWriter();
+		long count = new StreamingEncoder(encoder, 0).encode(reader(input.toString()), output);
+		String[] lines = output.toString().split("\n");
+
+		assertEquals(20000, count);
+		assertEquals(WORD_MUEHLBAUER + "\t" + CODE_MILBAUR, lines[19999]);
+	}
+
+	@Test
+	public void testMainStandardInput() {
+		System.setIn(new ByteArrayInputStream((WORD_MUELLER + "\n").getBytes(StandardCharsets.UTF_8)));
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		System.setOut(new PrintStream(output));
+
+		GermanNameEncoder.main(new String[] { "--stream" });
+
+		assertEquals(WORD_MUELLER + "\t" + CODE_MILR + "\n", new String(output.toByteArray(), StandardCharsets.UTF_8));
+	}
+
+	@Test
+	public void testMainFile() throws Exception {
+		Path file = Files.createTempFile("names", ".tsv");
+		Files.write(file, Arrays.asList("1\t" + WORD_MUEHLBAUER), StandardCharsets.UTF_8);
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		System.setOut(new PrintStream(output));
+
+		GermanNameEncoder.main(new String[] { "--stream", "--column", "2", file.toString() });
+		Files.delete(file);
+
+		assertEquals("1\t" + WORD_MUEHLBAUER + "\t" + CODE_MILBAUR + "\n", new String(output.toByteArray(), StandardCharsets.UTF_8));
+	}
+
+	@Test
+	public void testMainCompilesOnlyWithCompileOption() {
+		NameEncoder[] encoders = new NameEncoder[2];
+
+		for (int index = 0; index < encoders.length; index++) {
+			int encoderIndex = index;
+			System.setIn(new ByteArrayInputStream((WORD_MUELLER + "\n").getBytes(StandardCharsets.UTF_8)));
+			ByteArrayOutputStream output = new ByteArrayOutputStream();
+			System.setOut(new PrintStream(output));
+			String[] args = index == 0 ? new String[] { "--stream" } : new String[] { "--stream", "--compile" };
+
+			NameEncoder.createCodes(args, () -> encoders[encoderIndex] = new GermanNameEncoder());
+
+			assertEquals(WORD_MUELLER + "\t" + CODE_MILR + "\n", new String(output.toByteArray(), StandardCharsets.UTF_8));
+		}
+
+		assertFalse(encoders[0].isCompiled());
+		assertTrue(encoders[1].isCompiled());
+	}
+
+	@Test
+	public void testInvalidArguments() {
+		ByteArrayOutputStream error = new ByteArrayOutputStream();
+		System.setErr(new PrintStream(error));
+
+		assertEquals(NameEncoder.USAGE_STATUS, StreamingEncoder.createCodes(new String[] { "--stream", "--column", "x" }, encoder));
+		assertEquals(NameEncoder.USAGE_STATUS, StreamingEncoder.createCodes(new String[] { "--stream", "--column", "-1" }, encoder));
+		assertEquals(NameEncoder.FAILURE_STATUS, StreamingEncoder.createCodes(new String[] { "--stream", "missing/names.txt" }, encoder));
+		assertTrue(error.toString().contains("The column number has to be positive!"));
+	}
+
+	@Test
+	public void testFailingEncodingIsThrown() {
+		System.setIn(new ByteArrayInputStream((WORD_MUELLER + "\n").getBytes(StandardCharsets.UTF_8)));
+		System.setOut(new PrintStream(new ByteArrayOutputStream()));
+		GermanNameEncoder failingEncoder = new GermanNameEncoder() {
+
+			@Override
+			public String codeOf(CharSequence word) {
+				throw new IllegalArgumentException("failing rule");
+			}
+
+		};
+
+		try {
+			StreamingEncoder.createCodes(new String[] { "--stream" }, failingEncoder);
+			fail();
+		} catch (IllegalArgumentException e) {
+			assertEquals("failing rule", e.getMessage());
+		}
+	}
+
+	@Test( expected = IllegalArgumentException.class )
+	public void testNegativeColumn() {
+		new StreamingEncoder(encoder, -1);
+	}
+
+	private static BufferedReader reader(String input) {
+		return new BufferedReader(new StringReader(input));
+	}
+
+}